@@ -0,0 +1,20 @@
+package com.printezisn.moviestore.common.dto.movie;
+
+import lombok.Data;
+
+/**
+ * The data transfer object for a bucket of a search facet. The bucket holds
+ * the movies whose field is greater than or equal to the lower bound and less
+ * than the upper bound.
+ */
+@Data
+public class MovieFacetBucketDto {
+
+    private String key;
+
+    private Double from;
+
+    private Double to;
+
+    private long count;
+}
@@ -0,0 +1,18 @@
+package com.printezisn.moviestore.common.dto.movie;
+
+import java.util.List;
+
+import lombok.Data;
+
+/**
+ * The data transfer object for a record of a movie import that failed
+ */
+@Data
+public class MovieImportErrorDto {
+
+    private long line;
+
+    private String id;
+
+    private List<String> errors;
+}
@@ -0,0 +1,18 @@
+package com.printezisn.moviestore.common.dto.movie;
+
+import java.util.UUID;
+
+import lombok.Data;
+
+/**
+ * The data transfer object for the like status of a movie
+ */
+@Data
+public class MovieLikeStatusDto {
+
+    private UUID movieId;
+
+    private boolean liked;
+
+    private int totalLikes;
+}
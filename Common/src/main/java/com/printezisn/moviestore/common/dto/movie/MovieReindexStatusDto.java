@@ -0,0 +1,32 @@
+package com.printezisn.moviestore.common.dto.movie;
+
+import java.time.Instant;
+
+import lombok.Data;
+
+/**
+ * The data transfer object for the progress of a full reindex
+ */
+@Data
+public class MovieReindexStatusDto {
+
+    private String id;
+
+    private String status;
+
+    private String indexName;
+
+    private long total;
+
+    private long copied;
+
+    private double documentsPerSecond;
+
+    private Long etaSeconds;
+
+    private Instant creationTimestamp;
+
+    private Instant updateTimestamp;
+
+    private String error;
+}
@@ -0,0 +1,18 @@
+package com.printezisn.moviestore.common.dto.movie;
+
+import java.util.UUID;
+
+import lombok.Data;
+
+/**
+ * The data transfer object for the suggestion of a movie title
+ */
+@Data
+public class MovieSuggestionDto {
+
+    private UUID id;
+
+    private String title;
+
+    private int totalLikes;
+}
@@ -4,7 +4,7 @@ import java.util.List;
 
 /**
  * Model that holds paged entries
- *
+ * 
  * @param <T>
  *            The type of entries
  */
@@ -44,4 +44,12 @@ public interface PagedResult<T> {
      * @return True if the sorting is ascending, otherwise false
      */
     boolean isAscending();
+
+    /**
+     * Returns the cursor of the next page, which continues the results after the
+     * last entry of the current page
+     * 
+     * @return The cursor of the next page, or null if there is no next page
+     */
+    String getNextCursor();
 }
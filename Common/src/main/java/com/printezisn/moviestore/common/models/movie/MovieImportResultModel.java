@@ -0,0 +1,30 @@
+package com.printezisn.moviestore.common.models.movie;
+
+import java.util.LinkedList;
+import java.util.List;
+
+import com.printezisn.moviestore.common.dto.movie.MovieImportErrorDto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Class that holds the result of a movie import
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class MovieImportResultModel {
+
+    private long imported;
+
+    private long failed;
+
+    private boolean aborted;
+
+    @Builder.Default
+    private List<MovieImportErrorDto> errors = new LinkedList<>();
+}
@@ -2,8 +2,10 @@ package com.printezisn.moviestore.common.models.movie;
 
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 
 import com.printezisn.moviestore.common.dto.movie.MovieDto;
+import com.printezisn.moviestore.common.dto.movie.MovieFacetBucketDto;
 import com.printezisn.moviestore.common.models.PagedResult;
 
 import lombok.AllArgsConstructor;
@@ -27,7 +29,15 @@ public class MoviePagedResultModel implements PagedResult<MovieDto> {
 
     private int totalPages;
 
+    private boolean hasNext;
+
     private String sortField;
 
     private boolean isAscending;
+
+    private String nextCursor;
+
+    private Map<String, List<MovieFacetBucketDto>> facets;
+
+    private boolean degraded;
 }
@@ -0,0 +1,130 @@
+package com.printezisn.moviestore.movieservice.movie.helpers;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.text.Text;
+import org.elasticsearch.search.SearchHit;
+import org.elasticsearch.search.SearchHits;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.printezisn.moviestore.common.dto.movie.MovieDto;
+import com.printezisn.moviestore.movieservice.movie.entities.MovieIndex;
+
+/**
+ * Benchmark that compares the decoding of a page of search hits into movies
+ * by the MovieSearchHitReader with the previous decoding, which created a new
+ * object mapper per search, converted each source to a string and copied each
+ * index entity to a movie. The sample mode reports the p99 latency, and the gc
+ * profiler reports the allocations per search.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MovieSearchHitReaderBenchmark {
+
+    private static final String INDEX_TYPE = "movies";
+    private static final String SOURCE_FORMAT = "{\"id\":\"%s\",\"title\":\"Movie %d\","
+        + "\"description\":\"The description of the movie with number %d, which is long enough to be realistic\","
+        + "\"rating\":%d.5,\"releaseYear\":%d,\"totalLikes\":%d,\"creator\":\"creator%d\"}";
+
+    @Param({ "10", "100" })
+    private int pageSize;
+
+    private SearchHits searchHits;
+
+    private MovieSearchHitReader movieSearchHitReader;
+
+    /**
+     * Creates the search hits of a page
+     */
+    @Setup
+    public void setUp() {
+        final SearchHit[] hits = new SearchHit[pageSize];
+        for (int i = 0; i < pageSize; i++) {
+            final String id = UUID.randomUUID().toString();
+            final String source = String.format(SOURCE_FORMAT, id, i, i, i % 10, 1950 + i, i * 7, i);
+
+            hits[i] = new SearchHit(i, id, new Text(INDEX_TYPE), Collections.emptyMap());
+            hits[i].sourceRef(new BytesArray(source.getBytes(StandardCharsets.UTF_8)));
+        }
+
+        searchHits = new SearchHits(hits, pageSize, 1);
+        movieSearchHitReader = new MovieSearchHitReader(new ObjectMapper());
+    }
+
+    /**
+     * Decodes the page with the MovieSearchHitReader
+     * 
+     * @return The movies
+     * @throws IOException
+     *             Exception thrown if a source cannot be decoded
+     */
+    @Benchmark
+    public List<MovieDto> streaming() throws IOException {
+        return movieSearchHitReader.read(searchHits);
+    }
+
+    /**
+     * Decodes the page the way it was decoded before the MovieSearchHitReader
+     * 
+     * @return The movies
+     * @throws IOException
+     *             Exception thrown if a source cannot be decoded
+     */
+    @Benchmark
+    public List<MovieDto> legacy() throws IOException {
+        final ObjectMapper objectMapper = new ObjectMapper();
+        final List<MovieIndex> results = new LinkedList<>();
+        for (final SearchHit hit : searchHits.getHits()) {
+            results.add(objectMapper.readValue(hit.getSourceAsString(), MovieIndex.class));
+        }
+
+        final List<MovieDto> movies = new LinkedList<>();
+        for (final MovieIndex movieIndex : results) {
+            movies.add(toMovieDto(movieIndex));
+        }
+
+        return movies;
+    }
+
+    /**
+     * Copies an index entity to a movie, like the generated MovieMapper does
+     * 
+     * @param movieIndex
+     *            The index entity
+     * @return The movie
+     */
+    private MovieDto toMovieDto(final MovieIndex movieIndex) {
+        final MovieDto movieDto = new MovieDto();
+        movieDto.setId(UUID.fromString(movieIndex.getId()));
+        movieDto.setTitle(movieIndex.getTitle());
+        movieDto.setDescription(movieIndex.getDescription());
+        movieDto.setRating(movieIndex.getRating());
+        movieDto.setReleaseYear(movieIndex.getReleaseYear());
+        movieDto.setTotalLikes((int) movieIndex.getTotalLikes());
+        movieDto.setCreator(movieIndex.getCreator());
+
+        return movieDto;
+    }
+}
@@ -0,0 +1,142 @@
+package com.printezisn.moviestore.movieservice.movie.helpers;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.text.Text;
+import org.elasticsearch.search.SearchHit;
+import org.elasticsearch.search.SearchHits;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.printezisn.moviestore.common.dto.movie.MovieDto;
+import com.printezisn.moviestore.common.models.movie.MoviePagedResultModel;
+
+/**
+ * Benchmark that measures the payload of a page of search results, from the
+ * sources fetched from Elasticsearch to the response sent to the website, with
+ * all the fields and with the fields of the list of movies. The auxiliary
+ * counters report the bytes fetched and sent and the number of searches, so
+ * the bytes per search are their ratio.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MovieSearchPayloadBenchmark {
+
+    private static final String INDEX_TYPE = "movies";
+    private static final int DESCRIPTION_LENGTH = 2000;
+    private static final String FULL_SOURCE_FORMAT = "{\"id\":\"%s\",\"title\":\"Movie %d\","
+        + "\"description\":\"%s\",\"rating\":%d.5,\"releaseYear\":%d,\"totalLikes\":%d,\"creator\":\"creator%d\"}";
+    private static final String LIST_SOURCE_FORMAT = "{\"id\":\"%s\",\"title\":\"Movie %d\","
+        + "\"rating\":%d.5,\"releaseYear\":%d,\"creator\":\"creator%d\"}";
+
+    @Param({ "10", "100" })
+    private int pageSize;
+
+    @Param({ "full", "list" })
+    private String fieldset;
+
+    private SearchHits searchHits;
+
+    private long fetchedBytes;
+
+    private MovieSearchHitReader movieSearchHitReader;
+
+    private ObjectMapper objectMapper;
+
+    /**
+     * The bytes of a search, reported as auxiliary counters
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Payload {
+
+        public long fetchedBytes;
+
+        public long sentBytes;
+
+        public long searches;
+
+        /**
+         * Resets the counters
+         */
+        @Setup(Level.Iteration)
+        public void reset() {
+            fetchedBytes = 0;
+            sentBytes = 0;
+            searches = 0;
+        }
+    }
+
+    /**
+     * Creates the search hits of a page, with the sources filtered by the
+     * fieldset
+     */
+    @Setup
+    public void setUp() {
+        final String description = String.join("", Collections.nCopies(DESCRIPTION_LENGTH / 10, "Long text "));
+        final SearchHit[] hits = new SearchHit[pageSize];
+        fetchedBytes = 0;
+        for (int i = 0; i < pageSize; i++) {
+            final String id = UUID.randomUUID().toString();
+            final String source = "full".equals(fieldset)
+                ? String.format(FULL_SOURCE_FORMAT, id, i, description, i % 10, 1950 + i, i * 7, i)
+                : String.format(LIST_SOURCE_FORMAT, id, i, i % 10, 1950 + i, i);
+            final byte[] bytes = source.getBytes(StandardCharsets.UTF_8);
+            fetchedBytes += bytes.length;
+
+            hits[i] = new SearchHit(i, id, new Text(INDEX_TYPE), Collections.emptyMap());
+            hits[i].sourceRef(new BytesArray(bytes));
+        }
+
+        searchHits = new SearchHits(hits, pageSize, 1);
+        objectMapper = new ObjectMapper();
+        movieSearchHitReader = new MovieSearchHitReader(objectMapper);
+    }
+
+    /**
+     * Decodes a page of search hits and serializes the response
+     * 
+     * @param payload
+     *            The counters of the bytes
+     * @return The serialized response
+     * @throws IOException
+     *             Exception thrown if a source cannot be decoded
+     */
+    @Benchmark
+    public byte[] search(final Payload payload) throws IOException {
+        final List<MovieDto> entries = movieSearchHitReader.read(searchHits);
+        final byte[] response = objectMapper.writeValueAsBytes(MoviePagedResultModel.builder()
+            .entries(entries)
+            .pageNumber(0)
+            .totalPages(1)
+            .build());
+
+        payload.fetchedBytes += fetchedBytes;
+        payload.sentBytes += response.length;
+        payload.searches++;
+
+        return response;
+    }
+}
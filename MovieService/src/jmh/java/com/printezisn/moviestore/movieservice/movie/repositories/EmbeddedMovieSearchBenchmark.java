@@ -0,0 +1,284 @@
+package com.printezisn.moviestore.movieservice.movie.repositories;
+
+import static org.mockito.Mockito.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort.Direction;
+import org.springframework.data.util.CloseableIterator;
+
+import com.printezisn.moviestore.common.dto.movie.MovieDto;
+import com.printezisn.moviestore.movieservice.configuration.properties.EmbeddedSearchProperties;
+import com.printezisn.moviestore.movieservice.configuration.properties.SearchIndexProperties;
+import com.printezisn.moviestore.movieservice.movie.entities.Movie;
+import com.printezisn.moviestore.movieservice.movie.entities.MovieIndex;
+import com.printezisn.moviestore.movieservice.movie.helpers.EmbeddedMovieIndex;
+import com.printezisn.moviestore.movieservice.movie.helpers.MovieSearchCache;
+import com.printezisn.moviestore.movieservice.movie.mappers.MovieMapper;
+
+/**
+ * Benchmark that measures the latency of the searches of MovieSearchQueryBenchmark
+ * on the embedded search index, so that the two backends can be compared
+ * without the network. The movies are generated the same way, in an index under
+ * the temporary directory that is filled on the first run and is reused by the
+ * next runs.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class EmbeddedMovieSearchBenchmark {
+
+    private static final String INDEX_PATH_FORMAT = "movie_benchmark_embedded_%d";
+    private static final int VOCABULARY_SIZE = 20000;
+    private static final int BULK_SIZE = 5000;
+    private static final String[] SYLLABLES = { "ba", "ce", "di", "fo", "gu", "ha", "ke", "li", "mo", "nu", "pa",
+        "re", "si", "to", "vu", "xa", "ze", "an", "er", "is", "on", "ul", "tr", "st" };
+    private static final Pageable PAGEABLE = PageRequest.of(0, 10, Direction.DESC, "rating");
+
+    @Param({ "100000", "1000000" })
+    private int movieCount;
+
+    private EmbeddedMovieIndex embeddedMovieIndex;
+
+    private EmbeddedMovieIndexRepository repository;
+
+    private List<String> vocabulary;
+
+    private Random random;
+
+    /**
+     * Opens the index of the benchmark and fills it if needed
+     * 
+     * @throws Exception
+     *             Exception thrown if the index can't be opened or filled
+     */
+    @Setup
+    public void setUp() throws Exception {
+        random = new Random(movieCount);
+        vocabulary = IntStream.range(0, VOCABULARY_SIZE)
+            .mapToObj(i -> createWord())
+            .distinct()
+            .collect(Collectors.toList());
+
+        final EmbeddedSearchProperties embeddedSearchProperties = new EmbeddedSearchProperties();
+        embeddedSearchProperties.setPath(Paths.get(System.getProperty("java.io.tmpdir"),
+            String.format(INDEX_PATH_FORMAT, movieCount)).toString());
+        final SearchIndexProperties searchIndexProperties = new SearchIndexProperties();
+        searchIndexProperties.setBulkSize(BULK_SIZE);
+
+        final MovieRepository movieRepository = mock(MovieRepository.class);
+        when(movieRepository.streamActiveMovies(anyInt())).thenReturn(createEmptyIterator());
+
+        embeddedMovieIndex = new EmbeddedMovieIndex(embeddedSearchProperties, searchIndexProperties,
+            mock(MovieSearchCache.class), movieRepository, mock(MovieMapper.class));
+        embeddedMovieIndex.start();
+        while (!embeddedMovieIndex.isPopulated()) {
+            Thread.sleep(10);
+        }
+        fillIndex();
+
+        repository = new EmbeddedMovieIndexRepository(embeddedMovieIndex, searchIndexProperties);
+    }
+
+    /**
+     * Closes the index
+     * 
+     * @throws IOException
+     *             Exception thrown if the index can't be closed
+     */
+    @TearDown
+    public void tearDown() throws IOException {
+        embeddedMovieIndex.stop();
+    }
+
+    /**
+     * Searches for two words of a title with the n-gram query
+     * 
+     * @return The movies found
+     */
+    @Benchmark
+    public Page<MovieDto> ngram() {
+        return repository.search(Optional.of(createText()), Collections.emptySet(), Collections.emptySet(), false,
+            true, PAGEABLE);
+    }
+
+    /**
+     * Searches for two words of a title with the n-gram query, without counting
+     * all the matching movies
+     * 
+     * @return The movies found
+     */
+    @Benchmark
+    public Page<MovieDto> ngramCountFree() {
+        return repository.search(Optional.of(createText()), Collections.emptySet(), Collections.emptySet(), false,
+            false, PAGEABLE);
+    }
+
+    /**
+     * Searches for a misspelled word with the n-gram query, which finds too few
+     * hits and falls back to fuzzy matching
+     * 
+     * @return The movies found
+     */
+    @Benchmark
+    public Page<MovieDto> ngramFallback() {
+        final String word = randomWord();
+        return repository.search(Optional.of(word.charAt(1) + "" + word.charAt(0) + word.substring(2)),
+            Collections.emptySet(), Collections.emptySet(), false, true, PAGEABLE);
+    }
+
+    /**
+     * Searches for a common word, which matches a large part of the movies
+     * 
+     * @return The movies found
+     */
+    @Benchmark
+    public Page<MovieDto> broad() {
+        return repository.search(Optional.of(vocabulary.get(0)), Collections.emptySet(), Collections.emptySet(),
+            false, true, PAGEABLE);
+    }
+
+    /**
+     * Searches for a common word without counting all the matching movies
+     * 
+     * @return The movies found
+     */
+    @Benchmark
+    public Page<MovieDto> broadCountFree() {
+        return repository.search(Optional.of(vocabulary.get(0)), Collections.emptySet(), Collections.emptySet(),
+            false, false, PAGEABLE);
+    }
+
+    /**
+     * Fills the index with generated movies, unless it already contains them
+     * 
+     * @throws Exception
+     *             Exception thrown if the index can't be filled
+     */
+    private void fillIndex() throws Exception {
+        final int count = embeddedMovieIndex.search(searcher -> searcher.count(new MatchAllDocsQuery()));
+        if (count == movieCount) {
+            return;
+        }
+        if (count > 0) {
+            throw new IllegalStateException("The index of the benchmark is incomplete and must be deleted");
+        }
+
+        for (int i = 0; i < movieCount; i++) {
+            final MovieIndex movieIndex = new MovieIndex();
+            movieIndex.setId(UUID.randomUUID().toString());
+            movieIndex.setTitle(createSentence(2 + random.nextInt(3)));
+            movieIndex.setDescription(createSentence(15 + random.nextInt(20)));
+            movieIndex.setRating(random.nextInt(101) / 10.0);
+            movieIndex.setReleaseYear(1920 + random.nextInt(100));
+            movieIndex.setTotalLikes(random.nextInt(10000));
+            movieIndex.setCreator("creator" + random.nextInt(1000));
+
+            embeddedMovieIndex.index(movieIndex);
+        }
+        embeddedMovieIndex.flush();
+    }
+
+    /**
+     * Creates an iterator without movies, so that a new index is not populated
+     * 
+     * @return The iterator
+     */
+    private CloseableIterator<Movie> createEmptyIterator() {
+        final Iterator<Movie> movies = Collections.emptyIterator();
+
+        return new CloseableIterator<Movie>() {
+            @Override
+            public boolean hasNext() {
+                return movies.hasNext();
+            }
+
+            @Override
+            public Movie next() {
+                return movies.next();
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+
+    /**
+     * Creates the text of a search, with a whole word and part of another word
+     * 
+     * @return The text
+     */
+    private String createText() {
+        final String word = randomWord();
+        return randomWord() + " " + word.substring(0, Math.max(3, word.length() - 2));
+    }
+
+    /**
+     * Creates a sentence of random words of the vocabulary
+     * 
+     * @param words
+     *            The number of words
+     * @return The sentence
+     */
+    private String createSentence(final int words) {
+        return IntStream.range(0, words).mapToObj(i -> randomWord()).collect(Collectors.joining(" "));
+    }
+
+    /**
+     * Returns a random word of the vocabulary. Lower positions are more likely,
+     * so that some words are much more common than others.
+     * 
+     * @return The word
+     */
+    private String randomWord() {
+        final double position = Math.pow(random.nextDouble(), 3);
+        return vocabulary.get((int) (position * vocabulary.size()));
+    }
+
+    /**
+     * Creates a word of random syllables
+     * 
+     * @return The word
+     */
+    private String createWord() {
+        final StringBuilder word = new StringBuilder();
+        final int syllables = 2 + random.nextInt(3);
+        for (int i = 0; i < syllables; i++) {
+            word.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+        }
+
+        return word.toString();
+    }
+}
@@ -0,0 +1,306 @@
+package com.printezisn.moviestore.movieservice.movie.repositories;
+
+import java.net.InetAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.elasticsearch.action.bulk.BulkRequestBuilder;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.transport.TransportAddress;
+import org.elasticsearch.common.xcontent.XContentType;
+import org.elasticsearch.transport.client.PreBuiltTransportClient;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort.Direction;
+import org.springframework.data.elasticsearch.core.ElasticsearchTemplate;
+import org.springframework.util.StreamUtils;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.printezisn.moviestore.common.dto.movie.MovieDto;
+import com.printezisn.moviestore.movieservice.configuration.properties.SearchFacetProperties;
+import com.printezisn.moviestore.movieservice.configuration.properties.SearchIndexProperties;
+import com.printezisn.moviestore.movieservice.movie.helpers.MovieSearchFacets;
+import com.printezisn.moviestore.movieservice.movie.helpers.MovieSearchHitReader;
+
+/**
+ * Benchmark that compares the latency of the fuzzy search with the n-gram
+ * search, with and without the fuzzy fallback and with and without counting all
+ * the matching movies, on indices with 100k and 1M generated movies. It needs a running Elasticsearch, set with the
+ * elasticsearch.host, elasticsearch.port and elasticsearch.clusterName system
+ * properties. The indices are created with the definition of the movie index on
+ * the first run and are reused by the next runs.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class MovieSearchQueryBenchmark {
+
+    private static final String INDEX_NAME_FORMAT = "movie_benchmark_%d";
+    private static final String INDEX_TYPE = "movies";
+    private static final String DEFINITION_RESOURCE = "elasticsearch/movie-index.json";
+    private static final int VOCABULARY_SIZE = 20000;
+    private static final int BULK_SIZE = 5000;
+    private static final String[] SYLLABLES = { "ba", "ce", "di", "fo", "gu", "ha", "ke", "li", "mo", "nu", "pa",
+        "re", "si", "to", "vu", "xa", "ze", "an", "er", "is", "on", "ul", "tr", "st" };
+    private static final Pageable PAGEABLE = PageRequest.of(0, 10, Direction.DESC, "rating");
+
+    @Param({ "100000", "1000000" })
+    private int movieCount;
+
+    private Client client;
+
+    private CustomMovieIndexRepositoryImpl fuzzyRepository;
+
+    private CustomMovieIndexRepositoryImpl ngramRepository;
+
+    private List<String> vocabulary;
+
+    private Random random;
+
+    /**
+     * Connects to Elasticsearch and fills the index of the benchmark if needed
+     * 
+     * @throws Exception
+     *             Exception thrown if the index can't be created or filled
+     */
+    @Setup
+    public void setUp() throws Exception {
+        client = new PreBuiltTransportClient(Settings.builder()
+            .put("cluster.name", System.getProperty("elasticsearch.clusterName", "elasticsearch"))
+            .build())
+                .addTransportAddress(new TransportAddress(
+                    InetAddress.getByName(System.getProperty("elasticsearch.host", "localhost")),
+                    Integer.getInteger("elasticsearch.port", 9300)));
+
+        random = new Random(movieCount);
+        vocabulary = IntStream.range(0, VOCABULARY_SIZE)
+            .mapToObj(i -> createWord())
+            .distinct()
+            .collect(Collectors.toList());
+
+        final String indexName = String.format(INDEX_NAME_FORMAT, movieCount);
+        fillIndex(indexName);
+
+        final ElasticsearchTemplate elasticsearchTemplate = new ElasticsearchTemplate(client);
+        final MovieSearchHitReader movieSearchHitReader = new MovieSearchHitReader(new ObjectMapper());
+        final MovieSearchFacets movieSearchFacets = new MovieSearchFacets(new SearchFacetProperties());
+        final SearchIndexProperties fuzzyProperties = new SearchIndexProperties();
+        fuzzyProperties.setSearchMode(SearchIndexProperties.FUZZY_SEARCH_MODE);
+
+        // The searches of the benchmark don't sort by id, so they don't need the version of the index
+        fuzzyRepository = new CustomMovieIndexRepositoryImpl(indexName, elasticsearchTemplate, movieSearchHitReader,
+            fuzzyProperties, movieSearchFacets, null);
+        ngramRepository = new CustomMovieIndexRepositoryImpl(indexName, elasticsearchTemplate, movieSearchHitReader,
+            new SearchIndexProperties(), movieSearchFacets, null);
+    }
+
+    /**
+     * Closes the connection to Elasticsearch
+     */
+    @TearDown
+    public void tearDown() {
+        client.close();
+    }
+
+    /**
+     * Searches for two words of a title with the fuzzy query
+     * 
+     * @return The movies found
+     */
+    @Benchmark
+    public Page<MovieDto> fuzzy() {
+        return fuzzyRepository.search(Optional.of(createText()), Collections.emptySet(), Collections.emptySet(), false,
+            true, PAGEABLE);
+    }
+
+    /**
+     * Searches for two words of a title with the n-gram query
+     * 
+     * @return The movies found
+     */
+    @Benchmark
+    public Page<MovieDto> ngram() {
+        return ngramRepository.search(Optional.of(createText()), Collections.emptySet(), Collections.emptySet(), false,
+            true, PAGEABLE);
+    }
+
+    /**
+     * Searches for two words of a title with the n-gram query, without counting
+     * all the matching movies
+     * 
+     * @return The movies found
+     */
+    @Benchmark
+    public Page<MovieDto> ngramCountFree() {
+        return ngramRepository.search(Optional.of(createText()), Collections.emptySet(), Collections.emptySet(), false,
+            false, PAGEABLE);
+    }
+
+    /**
+     * Searches for a misspelled word with the n-gram query, which finds too few
+     * hits and falls back to fuzzy matching
+     * 
+     * @return The movies found
+     */
+    @Benchmark
+    public Page<MovieDto> ngramFallback() {
+        final String word = randomWord();
+        return ngramRepository.search(Optional.of(word.charAt(1) + "" + word.charAt(0) + word.substring(2)),
+            Collections.emptySet(), Collections.emptySet(), false, true, PAGEABLE);
+    }
+
+    /**
+     * Searches for a misspelled word with the n-gram query without counting all
+     * the matching movies, which falls back to fuzzy matching after the page of
+     * the n-gram query finds too few hits
+     * 
+     * @return The movies found
+     */
+    @Benchmark
+    public Page<MovieDto> ngramFallbackCountFree() {
+        final String word = randomWord();
+        return ngramRepository.search(Optional.of(word.charAt(1) + "" + word.charAt(0) + word.substring(2)),
+            Collections.emptySet(), Collections.emptySet(), false, false, PAGEABLE);
+    }
+
+    /**
+     * Searches for a common word, which matches a large part of the movies
+     * 
+     * @return The movies found
+     */
+    @Benchmark
+    public Page<MovieDto> broad() {
+        return ngramRepository.search(Optional.of(vocabulary.get(0)), Collections.emptySet(), Collections.emptySet(),
+            false, true, PAGEABLE);
+    }
+
+    /**
+     * Searches for a common word without counting all the matching movies, which
+     * should cost about the same as a narrow search
+     * 
+     * @return The movies found
+     */
+    @Benchmark
+    public Page<MovieDto> broadCountFree() {
+        return ngramRepository.search(Optional.of(vocabulary.get(0)), Collections.emptySet(), Collections.emptySet(),
+            false, false, PAGEABLE);
+    }
+
+    /**
+     * Creates the index of the benchmark and fills it with generated movies,
+     * unless it already contains them
+     * 
+     * @param indexName
+     *            The name of the index
+     * @throws Exception
+     *             Exception thrown if the index can't be created or filled
+     */
+    private void fillIndex(final String indexName) throws Exception {
+        if (client.admin().indices().prepareExists(indexName).get().isExists()) {
+            final long count = client.prepareSearch(indexName).setSize(0).get().getHits().getTotalHits();
+            if (count == movieCount) {
+                return;
+            }
+
+            client.admin().indices().prepareDelete(indexName).get();
+        }
+
+        final String definition = StreamUtils.copyToString(
+            new ClassPathResource(DEFINITION_RESOURCE).getInputStream(), StandardCharsets.UTF_8);
+        client.admin().indices().prepareCreate(indexName).setSource(definition, XContentType.JSON).get();
+
+        for (int start = 0; start < movieCount; start += BULK_SIZE) {
+            final BulkRequestBuilder bulkRequestBuilder = client.prepareBulk();
+            for (int i = start; i < Math.min(start + BULK_SIZE, movieCount); i++) {
+                final String id = UUID.randomUUID().toString();
+                final Map<String, Object> movie = new HashMap<>();
+                movie.put("id", id);
+                movie.put("title", createSentence(2 + random.nextInt(3)));
+                movie.put("description", createSentence(15 + random.nextInt(20)));
+                movie.put("rating", random.nextInt(101) / 10.0);
+                movie.put("releaseYear", 1920 + random.nextInt(100));
+                movie.put("totalLikes", random.nextInt(10000));
+                movie.put("creator", "creator" + random.nextInt(1000));
+
+                bulkRequestBuilder.add(client.prepareIndex(indexName, INDEX_TYPE, id).setSource(movie));
+            }
+            bulkRequestBuilder.get();
+        }
+
+        client.admin().indices().prepareRefresh(indexName).get();
+    }
+
+    /**
+     * Creates the text of a search, with a whole word and part of another word
+     * 
+     * @return The text
+     */
+    private String createText() {
+        final String word = randomWord();
+        return randomWord() + " " + word.substring(0, Math.max(3, word.length() - 2));
+    }
+
+    /**
+     * Creates a sentence of random words of the vocabulary
+     * 
+     * @param words
+     *            The number of words
+     * @return The sentence
+     */
+    private String createSentence(final int words) {
+        return IntStream.range(0, words).mapToObj(i -> randomWord()).collect(Collectors.joining(" "));
+    }
+
+    /**
+     * Returns a random word of the vocabulary. Lower positions are more likely,
+     * so that some words are much more common than others.
+     * 
+     * @return The word
+     */
+    private String randomWord() {
+        final double position = Math.pow(random.nextDouble(), 3);
+        return vocabulary.get((int) (position * vocabulary.size()));
+    }
+
+    /**
+     * Creates a word of random syllables
+     * 
+     * @return The word
+     */
+    private String createWord() {
+        final StringBuilder word = new StringBuilder();
+        final int syllables = 2 + random.nextInt(3);
+        for (int i = 0; i < syllables; i++) {
+            word.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+        }
+
+        return word.toString();
+    }
+}
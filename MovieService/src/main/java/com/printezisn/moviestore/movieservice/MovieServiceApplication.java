@@ -2,7 +2,6 @@ package com.printezisn.moviestore.movieservice;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
-import org.springframework.data.elasticsearch.repository.config.EnableElasticsearchRepositories;
 import org.springframework.scheduling.annotation.EnableScheduling;
 
 /**
@@ -11,7 +10,6 @@ import org.springframework.scheduling.annotation.EnableScheduling;
 @SpringBootApplication(scanBasePackages = { "com.printezisn.moviestore.movieservice",
     "com.printezisn.moviestore.common" })
 @EnableScheduling
-@EnableElasticsearchRepositories
 public class MovieServiceApplication {
 
     /**
@@ -3,11 +3,20 @@ package com.printezisn.moviestore.movieservice.configuration;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.elasticsearch.repository.config.EnableElasticsearchRepositories;
+
+import com.printezisn.moviestore.movieservice.movie.repositories.CustomMovieIndexRepository;
+import com.printezisn.moviestore.movieservice.movie.repositories.MovieIndexRepository;
 
 /**
- * Class with configuration for the connection with elasticsearch
+ * Class with configuration for the connection with elasticsearch. It's not
+ * used with the embedded search index.
  */
 @Configuration
+@Profile("!embedded-search")
+@EnableElasticsearchRepositories(basePackageClasses = MovieIndexRepository.class)
 public class ElasticsearchConfiguration {
 
     @Value("${elasticsearch.indexName}")
@@ -22,4 +31,18 @@ public class ElasticsearchConfiguration {
     public String elasticSearchIndexName() {
         return elasticSearchIndexName;
     }
+
+    /**
+     * Returns the repository that searches for movies. The implementation of the
+     * custom methods is a bean as well, so the repository is the primary one.
+     * 
+     * @param movieIndexRepository
+     *            The repository used for indexing movies
+     * @return The repository
+     */
+    @Bean
+    @Primary
+    public CustomMovieIndexRepository movieSearchRepository(final MovieIndexRepository movieIndexRepository) {
+        return movieIndexRepository;
+    }
 }
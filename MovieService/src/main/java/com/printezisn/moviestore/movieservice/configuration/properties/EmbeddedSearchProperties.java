@@ -0,0 +1,22 @@
+package com.printezisn.moviestore.movieservice.configuration.properties;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Properties regarding the embedded search index, which is used instead of
+ * Elasticsearch with the embedded-search profile
+ */
+@Component
+@ConfigurationProperties(prefix = "embedded-search")
+@Getter
+@Setter
+public class EmbeddedSearchProperties {
+
+    private String path = "search-index";
+    private double ramBufferSize = 16;
+    private long populateRetryDelay = 10000;
+}
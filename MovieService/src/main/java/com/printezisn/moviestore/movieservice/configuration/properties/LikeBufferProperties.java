@@ -0,0 +1,22 @@
+package com.printezisn.moviestore.movieservice.configuration.properties;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Properties regarding the write-behind buffer of likes
+ */
+@Component
+@ConfigurationProperties(prefix = "like-buffer")
+@Getter
+@Setter
+public class LikeBufferProperties {
+
+    private boolean enabled = false;
+    private long flushInterval = 100;
+    private int flushBatchSize = 1000;
+    private int maxEvents = 100000;
+}
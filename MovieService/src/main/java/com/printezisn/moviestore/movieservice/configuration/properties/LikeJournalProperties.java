@@ -0,0 +1,26 @@
+package com.printezisn.moviestore.movieservice.configuration.properties;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Properties regarding the journal of likes
+ */
+@Component
+@ConfigurationProperties(prefix = "like-journal")
+@Getter
+@Setter
+public class LikeJournalProperties {
+
+    private boolean enabled = false;
+    private long collectionSize = 64L * 1024 * 1024;
+    private int batchSize = 500;
+    private long maxAwaitTime = 1000;
+    private long retryDelay = 5000;
+    private boolean replayOnStartup = false;
+    private long leaseDuration = 30000;
+    private long checkpointMargin = 60000;
+}
@@ -0,0 +1,20 @@
+package com.printezisn.moviestore.movieservice.configuration.properties;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Properties regarding the reconciliation of the total likes of movies
+ */
+@Component
+@ConfigurationProperties(prefix = "like-reconciliation")
+@Getter
+@Setter
+public class LikeReconciliationProperties {
+
+    private long fixedRate = 60000;
+    private int chunkSize = 500;
+}
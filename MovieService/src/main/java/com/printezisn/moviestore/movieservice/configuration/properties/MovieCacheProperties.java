@@ -0,0 +1,22 @@
+package com.printezisn.moviestore.movieservice.configuration.properties;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Properties regarding the cache of movies
+ */
+@Component
+@ConfigurationProperties(prefix = "movie-cache")
+@Getter
+@Setter
+public class MovieCacheProperties {
+
+    private boolean enabled = true;
+    private int maxEntries = 10000;
+    private long timeToLive = 5000;
+    private long notFoundTimeToLive = 1000;
+}
@@ -0,0 +1,20 @@
+package com.printezisn.moviestore.movieservice.configuration.properties;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Properties regarding the export of movies
+ */
+@Component
+@ConfigurationProperties(prefix = "movie-export")
+@Getter
+@Setter
+public class MovieExportProperties {
+
+    private int batchSize = 1000;
+    private long timeout = 3600000;
+}
@@ -0,0 +1,20 @@
+package com.printezisn.moviestore.movieservice.configuration.properties;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Properties regarding the bulk import of movies
+ */
+@Component
+@ConfigurationProperties(prefix = "movie-import")
+@Getter
+@Setter
+public class MovieImportProperties {
+
+    private int batchSize = 1000;
+    private int maxErrors = 100;
+}
@@ -0,0 +1,22 @@
+package com.printezisn.moviestore.movieservice.configuration.properties;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Properties regarding the purge of deleted movies and their likes
+ */
+@Component
+@ConfigurationProperties(prefix = "movie-purge")
+@Getter
+@Setter
+public class MoviePurgeProperties {
+
+    private long fixedDelay = 10000;
+    private int moviesPerRun = 10;
+    private int batchSize = 1000;
+    private int maxLikesPerSecond = 5000;
+}
@@ -0,0 +1,21 @@
+package com.printezisn.moviestore.movieservice.configuration.properties;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Properties regarding the full reindex of movies
+ */
+@Component
+@ConfigurationProperties(prefix = "reindex")
+@Getter
+@Setter
+public class ReindexProperties {
+
+    private int partitions = 16;
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private int batchSize = 1000;
+}
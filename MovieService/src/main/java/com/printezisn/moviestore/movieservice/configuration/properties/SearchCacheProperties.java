@@ -0,0 +1,23 @@
+package com.printezisn.moviestore.movieservice.configuration.properties;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Properties regarding the cache of search results
+ */
+@Component
+@ConfigurationProperties(prefix = "search-cache")
+@Getter
+@Setter
+public class SearchCacheProperties {
+
+    private boolean enabled = true;
+    private int maxEntries = 1000;
+    private long timeToLive = 5000;
+    private long refreshDelay = 1000;
+    private int maxIndexedMovies = 10000;
+}
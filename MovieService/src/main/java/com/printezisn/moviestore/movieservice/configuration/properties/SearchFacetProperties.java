@@ -0,0 +1,24 @@
+package com.printezisn.moviestore.movieservice.configuration.properties;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Properties regarding the facets of movie searches
+ */
+@Component
+@ConfigurationProperties(prefix = "search-facets")
+@Getter
+@Setter
+public class SearchFacetProperties {
+
+    private int releaseYearInterval = 10;
+    private List<Double> ratingBoundaries = Arrays.asList(2.0, 4.0, 6.0, 8.0);
+    private List<Double> totalLikesBoundaries = Arrays.asList(10.0, 100.0, 1000.0, 10000.0);
+}
@@ -0,0 +1,24 @@
+package com.printezisn.moviestore.movieservice.configuration.properties;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Properties regarding the fallback of searches to the database when the
+ * search index is unavailable
+ */
+@Component
+@ConfigurationProperties(prefix = "search-fallback")
+@Getter
+@Setter
+public class SearchFallbackProperties {
+
+    private boolean enabled = true;
+    private int failureThreshold = 5;
+    private long slowCallThreshold = 2000;
+    private long openDuration = 30000;
+    private long maxTime = 2000;
+}
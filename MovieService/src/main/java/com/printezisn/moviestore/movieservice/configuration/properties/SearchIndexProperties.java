@@ -0,0 +1,84 @@
+package com.printezisn.moviestore.movieservice.configuration.properties;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Properties regarding the synchronization of movies with the search index
+ */
+@Component
+@ConfigurationProperties(prefix = "search-index")
+@Getter
+@Setter
+public class SearchIndexProperties {
+
+    public static final String CHANGE_STREAM_MODE = "change-stream";
+    public static final String POLL_MODE = "poll";
+    public static final String NGRAM_SEARCH_MODE = "ngram";
+    public static final String FUZZY_SEARCH_MODE = "fuzzy";
+
+    private String mode = CHANGE_STREAM_MODE;
+    private long fixedRate = 5000;
+    private long sweepRate = 60000;
+    private long changeStreamMaxAwaitTime = 1000;
+    private long changeStreamRetryDelay = 5000;
+    private int bulkSize = 500;
+    private long bulkFlushInterval = 200;
+    private String bulkRefreshPolicy = "none";
+    private boolean waitForIndexWrite = false;
+    private int sweepBatchSize = 100;
+    private int workerThreads = Runtime.getRuntime().availableProcessors();
+    private int maxInFlight = 1000;
+    private long rebuildDiscoveryInterval = 5000;
+    private long rebuildTimeout = 3600000;
+    private String searchMode = NGRAM_SEARCH_MODE;
+    private int fuzzyFallbackMinHits = 3;
+    private int defaultPageSize = 10;
+    private int maxPageSize = 100;
+
+    /**
+     * Indicates if movies are indexed by tailing the change stream of the movies
+     * collection
+     * 
+     * @return True if the change stream is used, otherwise false
+     */
+    public boolean isChangeStreamMode() {
+        return CHANGE_STREAM_MODE.equalsIgnoreCase(mode);
+    }
+
+    /**
+     * Returns the interval of the background job that indexes the updated movies.
+     * In change stream mode the job only acts as a safety sweep for movies whose
+     * indexing failed, so it runs less frequently.
+     * 
+     * @return The interval in milliseconds
+     */
+    public long getPollingRate() {
+        return isChangeStreamMode() ? sweepRate : fixedRate;
+    }
+
+    /**
+     * Indicates if the requests that create, edit or delete a movie wait for its
+     * bulk write, so that the change is searchable when they return. Waiting is
+     * useless if the bulk writes don't refresh the index.
+     * 
+     * @return True if the requests wait for the bulk write, otherwise false
+     */
+    public boolean isReadYourWrites() {
+        return waitForIndexWrite && !"none".equalsIgnoreCase(bulkRefreshPolicy);
+    }
+
+    /**
+     * Indicates if the text of searches is matched against the n-gram subfields
+     * of the index, falling back to fuzzy matching only when there are too few
+     * hits
+     * 
+     * @return True if the n-gram subfields are used, otherwise false
+     */
+    public boolean isNgramSearchMode() {
+        return NGRAM_SEARCH_MODE.equalsIgnoreCase(searchMode);
+    }
+}
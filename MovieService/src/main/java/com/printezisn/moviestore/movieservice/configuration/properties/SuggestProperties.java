@@ -0,0 +1,23 @@
+package com.printezisn.moviestore.movieservice.configuration.properties;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Properties regarding the suggestions of movie titles
+ */
+@Component
+@ConfigurationProperties(prefix = "suggest")
+@Getter
+@Setter
+public class SuggestProperties {
+
+    private boolean enabled = true;
+    private int maxResults = 10;
+    private int maxPrefixLength = 20;
+    private int loadBatchSize = 1000;
+    private long loadRetryDelay = 10000;
+}
@@ -1,11 +1,16 @@
 package com.printezisn.moviestore.movieservice.movie.controllers;
 
+import java.io.InputStream;
+import java.time.Instant;
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
+import javax.servlet.http.HttpServletResponse;
 import javax.validation.Valid;
 
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.BindingResult;
@@ -15,14 +20,21 @@ import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.async.WebAsyncTask;
 
 import com.printezisn.moviestore.common.AppUtils;
 import com.printezisn.moviestore.common.models.PagedResult;
 import com.printezisn.moviestore.common.models.Result;
+import com.printezisn.moviestore.common.models.movie.MovieImportResultModel;
 import com.printezisn.moviestore.common.models.movie.MovieResultModel;
 import com.printezisn.moviestore.common.dto.movie.MovieDto;
+import com.printezisn.moviestore.common.dto.movie.MovieLikeStatusDto;
+import com.printezisn.moviestore.common.dto.movie.MovieSuggestionDto;
+import com.printezisn.moviestore.movieservice.configuration.properties.MovieExportProperties;
 import com.printezisn.moviestore.movieservice.movie.exceptions.MovieConditionalException;
 import com.printezisn.moviestore.movieservice.movie.exceptions.MovieNotFoundException;
+import com.printezisn.moviestore.movieservice.movie.exceptions.MovieValidationException;
+import com.printezisn.moviestore.movieservice.movie.helpers.MovieExportFormat;
 import com.printezisn.moviestore.movieservice.movie.services.MovieService;
 
 import lombok.RequiredArgsConstructor;
@@ -34,8 +46,11 @@ import lombok.RequiredArgsConstructor;
 @RequiredArgsConstructor
 public class MovieController {
 
+    private static final String NDJSON_MEDIA_TYPE = "application/x-ndjson";
+
     private final MovieService movieService;
     private final AppUtils appUtils;
+    private final MovieExportProperties movieExportProperties;
 
     /**
      * Searches for movies
@@ -48,6 +63,20 @@ public class MovieController {
      *            The sorting field
      * @param isAscending
      *            Indicates if sorting is ascending or descending
+     * @param cursor
+     *            The cursor of the page, returned with the previous page
+     * @param filters
+     *            The filters of the search, each one with a field and the key of
+     *            a facet bucket
+     * @param withFacets
+     *            Indicates if the facets of the search are returned
+     * @param fields
+     *            The fields of the movies that are returned (Optional)
+     * @param size
+     *            The page size (Optional)
+     * @param countTotal
+     *            Indicates if all the matching movies are counted, or only the
+     *            next page is looked for
      * @return The movies found
      */
     @GetMapping("/movie/search")
@@ -55,9 +84,36 @@ public class MovieController {
         @RequestParam(value = "text") final Optional<String> text,
         @RequestParam(value = "page") final Optional<Integer> pageNumber,
         @RequestParam(value = "sort") final Optional<String> sortField,
-        @RequestParam(value = "asc", defaultValue = "true") final boolean isAscending) {
+        @RequestParam(value = "asc", defaultValue = "true") final boolean isAscending,
+        @RequestParam(value = "cursor") final Optional<String> cursor,
+        @RequestParam(value = "filter") final Optional<List<String>> filters,
+        @RequestParam(value = "facets", defaultValue = "false") final boolean withFacets,
+        @RequestParam(value = "fields") final Optional<List<String>> fields,
+        @RequestParam(value = "size") final Optional<Integer> size,
+        @RequestParam(value = "count", defaultValue = "true") final boolean countTotal) {
+
+        try {
+            final PagedResult<MovieDto> result = movieService.searchMovies(text, pageNumber, sortField, isAscending,
+                cursor, filters.orElse(Collections.emptyList()), withFacets, fields.orElse(Collections.emptyList()),
+                size, countTotal);
+
+            return ResponseEntity.ok(result);
+        }
+        catch (final MovieValidationException ex) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
 
-        final PagedResult<MovieDto> result = movieService.searchMovies(text, pageNumber, sortField, isAscending);
+    /**
+     * Suggests movies whose titles start with a prefix
+     * 
+     * @param prefix
+     *            The prefix
+     * @return The most liked movies whose titles start with the prefix
+     */
+    @GetMapping("/movie/suggest")
+    public ResponseEntity<?> suggestMovies(@RequestParam("prefix") final String prefix) {
+        final List<MovieSuggestionDto> result = movieService.suggestMovies(prefix);
 
         return ResponseEntity.ok(result);
     }
@@ -106,6 +162,138 @@ public class MovieController {
         return ResponseEntity.ok(result);
     }
 
+    /**
+     * Imports movies from a stream of newline delimited JSON records, one movie
+     * per line
+     * 
+     * @param ordered
+     *            Indicates if the import stops at the first record that fails, or
+     *            skips the records that fail
+     * @param input
+     *            The stream of the records
+     * @return The result of the import
+     */
+    @PostMapping(value = "/movie/import", consumes = NDJSON_MEDIA_TYPE)
+    public ResponseEntity<?> importMovies(
+        @RequestParam(value = "ordered", defaultValue = "false") final boolean ordered,
+        final InputStream input) {
+
+        final MovieImportResultModel result = movieService.importMovies(input, ordered);
+
+        return ResponseEntity.ok(result);
+    }
+
+    /**
+     * Exports the movies that are not deleted, streamed from the database as
+     * newline delimited JSON or as CSV
+     * 
+     * @param format
+     *            The format of the export, i.e. "ndjson" or "csv"
+     * @param updatedSince
+     *            The time since when the exported movies were created or edited,
+     *            for incremental exports (Optional)
+     * @param response
+     *            The response to which the movies are streamed
+     * @return The task that streams the movies, limited by the export timeout
+     */
+    @GetMapping("/movie/export")
+    public WebAsyncTask<ResponseEntity<Void>> exportMovies(
+        @RequestParam(value = "format", defaultValue = "ndjson") final String format,
+        @RequestParam(value = "updatedSince") final Optional<Instant> updatedSince,
+        final HttpServletResponse response) {
+
+        final MovieExportFormat exportFormat;
+        try {
+            exportFormat = MovieExportFormat.parse(format);
+        }
+        catch (final MovieValidationException ex) {
+            // The request is handled without starting the asynchronous task
+            response.setStatus(HttpStatus.BAD_REQUEST.value());
+            return null;
+        }
+
+        response.setContentType(exportFormat.getMediaType());
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+            String.format("attachment; filename=\"movies.%s\"", exportFormat.getExtension()));
+
+        return new WebAsyncTask<>(movieExportProperties.getTimeout(), () -> {
+            movieService.exportMovies(response.getOutputStream(), exportFormat, updatedSince);
+
+            return null;
+        });
+    }
+
+    /**
+     * Starts a full reindex, which copies all the movies to a fresh search index
+     * in parallel and moves the search index alias to it
+     * 
+     * @return The progress of the reindex
+     */
+    @PostMapping("/movie/reindex")
+    public ResponseEntity<?> startReindex() {
+        try {
+            return ResponseEntity.accepted().body(movieService.startReindex());
+        }
+        catch (final MovieNotFoundException ex) {
+            return ResponseEntity.notFound().build();
+        }
+        catch (final MovieConditionalException ex) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
+    }
+
+    /**
+     * Returns the progress of the most recent full reindex
+     * 
+     * @return The progress of the reindex, with its rate and the estimated
+     *         remaining time
+     */
+    @GetMapping("/movie/reindex")
+    public ResponseEntity<?> getReindexStatus() {
+        try {
+            return ResponseEntity.ok(movieService.getReindexStatus());
+        }
+        catch (final MovieNotFoundException ex) {
+            return ResponseEntity.notFound().build();
+        }
+    }
+
+    /**
+     * Cancels the full reindex in progress, which can be resumed later
+     * 
+     * @return The progress of the reindex
+     */
+    @PostMapping("/movie/reindex/cancel")
+    public ResponseEntity<?> cancelReindex() {
+        try {
+            return ResponseEntity.accepted().body(movieService.cancelReindex());
+        }
+        catch (final MovieNotFoundException ex) {
+            return ResponseEntity.notFound().build();
+        }
+        catch (final MovieConditionalException ex) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
+    }
+
+    /**
+     * Resumes the most recent full reindex from where it stopped
+     * 
+     * @return The progress of the reindex
+     */
+    @PostMapping("/movie/reindex/resume")
+    public ResponseEntity<?> resumeReindex() {
+        try {
+            return ResponseEntity.accepted().body(movieService.resumeReindex());
+        }
+        catch (final MovieNotFoundException ex) {
+            return ResponseEntity.notFound().build();
+        }
+        catch (final MovieConditionalException ex) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
+    }
+
     /**
      * Updates an existing movie
      * 
@@ -166,8 +354,6 @@ public class MovieController {
      * @param account
      *            The account that likes the movie
      * @return The result of the operation
-     * @throws MovieConditionalException
-     *             Exception thrown in case of conditional update failure
      */
     @GetMapping("/movie/like/{movieId}/{account}")
     public ResponseEntity<?> likeMovie(
@@ -182,9 +368,6 @@ public class MovieController {
         catch (final MovieNotFoundException ex) {
             return ResponseEntity.notFound().build();
         }
-        catch (final MovieConditionalException ex) {
-            return ResponseEntity.status(HttpStatus.CONFLICT).build();
-        }
     }
 
     /**
@@ -195,8 +378,6 @@ public class MovieController {
      * @param account
      *            The account whose like is removed from the movie
      * @return The result of the operation
-     * @throws MovieConditionalException
-     *             Exception thrown in case of conditional update failure
      */
     @GetMapping("/movie/unlike/{movieId}/{account}")
     public ResponseEntity<?> unlikeMovie(
@@ -211,9 +392,6 @@ public class MovieController {
         catch (final MovieNotFoundException ex) {
             return ResponseEntity.notFound().build();
         }
-        catch (final MovieConditionalException ex) {
-            return ResponseEntity.status(HttpStatus.CONFLICT).build();
-        }
     }
 
     /**
@@ -234,4 +412,23 @@ public class MovieController {
 
         return ResponseEntity.ok(result);
     }
+
+    /**
+     * Returns the like status of many movies for an account
+     * 
+     * @param account
+     *            The account to check (Optional)
+     * @param movieIds
+     *            The ids of the movies
+     * @return The like status of each movie that is found
+     */
+    @GetMapping({ "/movie/likestatus", "/movie/likestatus/{account}" })
+    public ResponseEntity<?> getLikeStatuses(
+        @PathVariable(value = "account", required = false) final Optional<String> account,
+        @RequestParam("ids") final List<UUID> movieIds) {
+
+        final List<MovieLikeStatusDto> result = movieService.getLikeStatuses(movieIds, account);
+
+        return ResponseEntity.ok(result);
+    }
 }
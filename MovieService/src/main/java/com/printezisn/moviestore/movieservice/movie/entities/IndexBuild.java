@@ -0,0 +1,21 @@
+package com.printezisn.moviestore.movieservice.movie.entities;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import lombok.Data;
+
+/**
+ * The entity that records a search index that is being built. The node that
+ * builds the index refreshes the update timestamp periodically, so that an
+ * index whose build was abandoned can be told apart from one in progress.
+ */
+@Document(collection = "indexbuilds")
+@Data
+public class IndexBuild {
+
+    @Id
+    private String id;
+
+    private long updateTimestamp;
+}
@@ -0,0 +1,22 @@
+package com.printezisn.moviestore.movieservice.movie.entities;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import lombok.Data;
+
+/**
+ * The entity that holds the position of a change stream consumer, so that it
+ * can resume where it stopped
+ */
+@Document(collection = "indexresumetokens")
+@Data
+public class IndexResumeToken {
+
+    @Id
+    private String id;
+
+    private String token;
+
+    private long updateTimestamp;
+}
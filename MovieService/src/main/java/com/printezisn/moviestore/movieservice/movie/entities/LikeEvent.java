@@ -0,0 +1,25 @@
+package com.printezisn.moviestore.movieservice.movie.entities;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import lombok.Data;
+
+/**
+ * The entity of a like or unlike, as it's appended to the like journal
+ */
+@Document(collection = "likeevents")
+@Data
+public class LikeEvent {
+
+    @Id
+    private String id;
+
+    private String movieId;
+
+    private String account;
+
+    private boolean liked;
+
+    private long timestamp;
+}
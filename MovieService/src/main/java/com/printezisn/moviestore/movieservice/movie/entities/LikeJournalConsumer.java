@@ -0,0 +1,27 @@
+package com.printezisn.moviestore.movieservice.movie.entities;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import lombok.Data;
+
+/**
+ * The entity of the consumer of the like journal. It holds the node that has
+ * the lease of the consumer until the lease expires, and the position of the
+ * last folded event, so that the consumer can resume where it stopped.
+ */
+@Document(collection = "likejournalconsumers")
+@Data
+public class LikeJournalConsumer {
+
+    @Id
+    private String id;
+
+    private String owner;
+
+    private long leaseExpiration;
+
+    private String lastEventId;
+
+    private long lastEventTimestamp;
+}
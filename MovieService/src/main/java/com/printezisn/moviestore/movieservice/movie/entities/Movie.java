@@ -3,16 +3,27 @@ package com.printezisn.moviestore.movieservice.movie.entities;
 import java.util.Set;
 
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
 import org.springframework.data.mongodb.core.index.IndexDirection;
 import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.index.TextIndexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import lombok.Data;
 
 /**
- * The movie entity
+ * The movie entity. The text index and the sort indexes serve the searches
+ * while the search index is unavailable, and the index of the update timestamp
+ * serves the exports.
  */
 @Document(collection = "movies")
+@CompoundIndexes({
+    @CompoundIndex(name = "deleted_rating_id", def = "{ 'deleted': 1, 'rating': 1, '_id': 1 }"),
+    @CompoundIndex(name = "deleted_releaseYear_id", def = "{ 'deleted': 1, 'releaseYear': 1, '_id': 1 }"),
+    @CompoundIndex(name = "deleted_totalLikes_id", def = "{ 'deleted': 1, 'totalLikes': 1, '_id': 1 }"),
+    @CompoundIndex(name = "deleted_updateTimestamp", def = "{ 'deleted': 1, 'updateTimestamp': 1 }")
+})
 @Data
 public class Movie {
 
@@ -21,8 +32,12 @@ public class Movie {
 
     private String revision;
 
+    private String likesRevision;
+
+    @TextIndexed
     private String title;
 
+    @TextIndexed
     private String description;
 
     private double rating;
@@ -45,4 +60,6 @@ public class Movie {
     private boolean updated;
 
     private boolean deleted;
+
+    private long purgedLikes;
 }
@@ -8,9 +8,10 @@ import org.springframework.data.elasticsearch.annotations.FieldType;
 import lombok.Data;
 
 /**
- * Movie index entity
+ * Movie index entity. The index is created by the MovieIndexManager, with the
+ * mapping defined in elasticsearch/movie-index.json.
  */
-@Document(indexName = "#{@elasticSearchIndexName}", type = "movies", createIndex = true)
+@Document(indexName = "#{@elasticSearchIndexName}", type = "movies", createIndex = false)
 @Data
 public class MovieIndex {
 
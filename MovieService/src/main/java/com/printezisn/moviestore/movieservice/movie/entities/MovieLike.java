@@ -1,6 +1,7 @@
 package com.printezisn.moviestore.movieservice.movie.entities;
 
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import lombok.Data;
@@ -17,5 +18,6 @@ public class MovieLike {
 
     private String account;
 
+    @Indexed
     private String movieId;
 }
@@ -0,0 +1,61 @@
+package com.printezisn.moviestore.movieservice.movie.entities;
+
+import java.util.List;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import lombok.Data;
+
+/**
+ * The entity that holds the progress of a full reindex. The movies are split
+ * into ranges of ids, and each range records the last movie that was copied,
+ * so that a cancelled or interrupted reindex can resume where it stopped.
+ */
+@Document(collection = "reindexjobs")
+@Data
+public class ReindexJob {
+
+    /**
+     * The states of a reindex
+     */
+    public enum Status {
+        RUNNING, CANCELLED, FAILED, COMPLETED
+    }
+
+    /**
+     * A range of movie ids, copied by a single worker
+     */
+    @Data
+    public static class Partition {
+
+        private String fromId;
+
+        private String toId;
+
+        private String lastId;
+
+        private long copied;
+
+        private boolean done;
+    }
+
+    @Id
+    private String id;
+
+    private Status status;
+
+    private String indexName;
+
+    private long total;
+
+    private long copied;
+
+    private List<Partition> partitions;
+
+    private long creationTimestamp;
+
+    private long updateTimestamp;
+
+    private String error;
+}
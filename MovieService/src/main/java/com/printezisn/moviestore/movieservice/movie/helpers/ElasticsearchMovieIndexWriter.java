@@ -0,0 +1,329 @@
+package com.printezisn.moviestore.movieservice.movie.helpers;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.elasticsearch.action.bulk.BulkItemResponse;
+import org.elasticsearch.action.bulk.BulkRequestBuilder;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.action.support.WriteRequest.RefreshPolicy;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.common.xcontent.XContentType;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.elasticsearch.core.ElasticsearchTemplate;
+import org.springframework.data.elasticsearch.core.mapping.ElasticsearchPersistentEntity;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.printezisn.moviestore.movieservice.configuration.properties.SearchIndexProperties;
+import com.printezisn.moviestore.movieservice.movie.entities.MovieIndex;
+import com.printezisn.moviestore.movieservice.movie.exceptions.MoviePersistenceException;
+
+import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Component that groups writes to the Elasticsearch index into bulk requests.
+ * The pending writes are flushed when their number reaches the bulk size or
+ * when the flush interval elapses, whichever comes first. Every flush that
+ * changes more than the total likes of movies invalidates the cached search
+ * results. The futures of the writes are completed on a pool of callback
+ * threads, so the work that follows a write doesn't delay the next flush.
+ */
+@Component
+@Profile("!embedded-search")
+@Slf4j
+public class ElasticsearchMovieIndexWriter implements MovieIndexWriter {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private final ElasticsearchTemplate elasticsearchTemplate;
+    private final SearchIndexProperties searchIndexProperties;
+    private final MovieSearchCache movieSearchCache;
+    private final MovieIndexManager movieIndexManager;
+    private final ExecutorService callbackExecutor;
+
+    private final BlockingQueue<PendingWrite> pendingWrites = new LinkedBlockingQueue<>();
+    private final ScheduledExecutorService executorService = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        final Thread thread = new Thread(runnable, "movie-index-writer");
+        thread.setDaemon(true);
+
+        return thread;
+    });
+
+    private volatile boolean stopped;
+
+    /**
+     * A write that waits to be sent to the search index
+     */
+    @AllArgsConstructor
+    private static class PendingWrite {
+        private final String id;
+        private final MovieIndex movieIndex;
+        private final CompletableFuture<Void> result;
+    }
+
+    /**
+     * The constructor
+     * 
+     * @param elasticsearchTemplate
+     *            The Elasticsearch template
+     * @param searchIndexProperties
+     *            The properties of the search index
+     * @param movieSearchCache
+     *            The cache of the search results
+     * @param movieIndexManager
+     *            The manager of the search indices
+     */
+    public ElasticsearchMovieIndexWriter(final ElasticsearchTemplate elasticsearchTemplate,
+        final SearchIndexProperties searchIndexProperties, final MovieSearchCache movieSearchCache,
+        final MovieIndexManager movieIndexManager) {
+
+        this.elasticsearchTemplate = elasticsearchTemplate;
+        this.searchIndexProperties = searchIndexProperties;
+        this.movieSearchCache = movieSearchCache;
+        this.movieIndexManager = movieIndexManager;
+
+        final AtomicInteger threadNumber = new AtomicInteger();
+        this.callbackExecutor = Executors.newFixedThreadPool(Math.max(searchIndexProperties.getWorkerThreads(), 1),
+            runnable -> {
+                final Thread thread = new Thread(runnable, "movie-index-callback-" + threadNumber.incrementAndGet());
+                thread.setDaemon(true);
+
+                return thread;
+            });
+    }
+
+    /**
+     * Starts the periodic flush of pending writes
+     */
+    @PostConstruct
+    public void start() {
+        final long interval = searchIndexProperties.getBulkFlushInterval();
+        executorService.scheduleWithFixedDelay(this::flush, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Flushes the pending writes and stops the writer. Writes that are queued
+     * after the writer is stopped are rejected.
+     */
+    @PreDestroy
+    public void stop() {
+        stopped = true;
+        executorService.shutdown();
+        try {
+            executorService.awaitTermination(1, TimeUnit.MINUTES);
+        }
+        catch (final InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+
+        flush();
+
+        callbackExecutor.shutdown();
+        try {
+            callbackExecutor.awaitTermination(1, TimeUnit.MINUTES);
+        }
+        catch (final InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CompletableFuture<Void> index(final MovieIndex movieIndex) {
+        return enqueue(new PendingWrite(movieIndex.getId(), movieIndex, new CompletableFuture<>()));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CompletableFuture<Void> delete(final String id) {
+        return enqueue(new PendingWrite(id, null, new CompletableFuture<>()));
+    }
+
+    /**
+     * Sends the pending writes to the search index, in bulk requests
+     */
+    public synchronized void flush() {
+        final List<PendingWrite> batch = new ArrayList<>(searchIndexProperties.getBulkSize());
+
+        while (pendingWrites.drainTo(batch, searchIndexProperties.getBulkSize()) > 0) {
+            try {
+                sendBulk(batch);
+            }
+            catch (final Exception ex) {
+                final String errorMessage = String.format("An error occured while writing %d movies to the index: %s",
+                    batch.size(), ex.getMessage());
+
+                log.error(errorMessage, ex);
+
+                // Even a failed bulk request may have written some of the movies
+                movieSearchCache.invalidate();
+                batch.forEach(write -> complete(write, new MoviePersistenceException(errorMessage, ex)));
+            }
+
+            batch.clear();
+        }
+    }
+
+    /**
+     * Queues a write and triggers a flush if the bulk size is reached
+     * 
+     * @param pendingWrite
+     *            The write to queue
+     * @return The future of the write
+     */
+    private CompletableFuture<Void> enqueue(final PendingWrite pendingWrite) {
+        if (stopped) {
+            pendingWrite.result.completeExceptionally(new MoviePersistenceException(
+                String.format("Movie %s can't be written to the index, as the writer is stopped", pendingWrite.id),
+                null));
+
+            return pendingWrite.result;
+        }
+
+        pendingWrites.add(pendingWrite);
+
+        // A write that is queued while the writer stops may miss the last flush, so it's
+        // flushed on the calling thread
+        if (stopped) {
+            flush();
+        }
+        else if (pendingWrites.size() >= searchIndexProperties.getBulkSize() && !executorService.isShutdown()) {
+            executorService.execute(this::flush);
+        }
+
+        return pendingWrite.result;
+    }
+
+    /**
+     * Completes the future of a write on a callback thread, or on the current
+     * thread if the writer is stopped
+     * 
+     * @param write
+     *            The write
+     * @param ex
+     *            The error of the write, or null if it succeeded
+     */
+    private void complete(final PendingWrite write, final Exception ex) {
+        final Runnable completion = () -> {
+            if (ex != null) {
+                write.result.completeExceptionally(ex);
+            }
+            else {
+                write.result.complete(null);
+            }
+        };
+
+        try {
+            callbackExecutor.execute(completion);
+        }
+        catch (final RejectedExecutionException rejectedEx) {
+            completion.run();
+        }
+    }
+
+    /**
+     * Sends a batch of writes as a single bulk request and completes the future of
+     * each write according to its own outcome. While a new version of the index
+     * is built, each write is sent to the new index as well, and it fails if any
+     * of its copies fails. Before the first index is built, the writes are only
+     * sent to the index that is being built.
+     * 
+     * @param batch
+     *            The batch of writes
+     * @throws Exception
+     *             Exception thrown if the bulk request fails as a whole
+     */
+    private void sendBulk(final List<PendingWrite> batch) throws Exception {
+        final Client client = elasticsearchTemplate.getClient();
+        final ElasticsearchPersistentEntity<?> entity = elasticsearchTemplate.getPersistentEntityFor(MovieIndex.class);
+        final BulkRequestBuilder bulkRequest = client.prepareBulk()
+            .setRefreshPolicy(getRefreshPolicy());
+        final List<String> indexNames = new ArrayList<>();
+        if (movieIndexManager.isAliasAvailable()) {
+            indexNames.add(entity.getIndexName());
+        }
+        indexNames.addAll(movieIndexManager.getBuildingIndices());
+
+        // Holds the write of each operation of the bulk request
+        final List<PendingWrite> operations = new ArrayList<>(batch.size() * indexNames.size());
+        for (final PendingWrite write : batch) {
+            for (final String indexName : indexNames) {
+                if (write.movieIndex != null) {
+                    bulkRequest.add(client.prepareIndex(indexName, entity.getIndexType(), write.id)
+                        .setSource(OBJECT_MAPPER.writeValueAsBytes(write.movieIndex), XContentType.JSON));
+                }
+                else {
+                    bulkRequest.add(client.prepareDelete(indexName, entity.getIndexType(), write.id));
+                }
+                operations.add(write);
+            }
+        }
+
+        final BulkResponse bulkResponse = bulkRequest.get();
+
+        final Map<PendingWrite, Exception> failures = new IdentityHashMap<>();
+        for (final BulkItemResponse item : bulkResponse.getItems()) {
+            final PendingWrite write = operations.get(item.getItemId());
+            if (item.isFailed()) {
+                final String errorMessage = String.format(
+                    "An error occured while writing movie %s to the index %s: %s", write.id, item.getIndex(),
+                    item.getFailureMessage());
+
+                log.error(errorMessage);
+                failures.putIfAbsent(write, new MoviePersistenceException(errorMessage,
+                    item.getFailure().getCause()));
+            }
+        }
+
+        // The cached search results are invalidated before the writes are reported as
+        // completed, so that the callers don't see results older than their writes. A
+        // movie whose write failed is treated as changed, so that its retry invalidates
+        // them as well.
+        movieSearchCache.invalidate(
+            batch.stream().filter(write -> write.movieIndex != null && !failures.containsKey(write))
+                .map(write -> write.movieIndex)
+                .collect(Collectors.toList()),
+            batch.stream().filter(write -> write.movieIndex == null || failures.containsKey(write))
+                .map(write -> write.id)
+                .collect(Collectors.toList()));
+
+        batch.forEach(write -> complete(write, failures.get(write)));
+    }
+
+    /**
+     * Returns the configured refresh policy of the bulk requests
+     * 
+     * @return The refresh policy
+     */
+    private RefreshPolicy getRefreshPolicy() {
+        switch (searchIndexProperties.getBulkRefreshPolicy().toLowerCase()) {
+            case "wait_for":
+                return RefreshPolicy.WAIT_UNTIL;
+            case "immediate":
+                return RefreshPolicy.IMMEDIATE;
+            default:
+                return RefreshPolicy.NONE;
+        }
+    }
+}
@@ -0,0 +1,602 @@
+package com.printezisn.moviestore.movieservice.movie.helpers;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.CharArraySet;
+import org.apache.lucene.analysis.LowerCaseFilter;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.Tokenizer;
+import org.apache.lucene.analysis.miscellaneous.PerFieldAnalyzerWrapper;
+import org.apache.lucene.analysis.ngram.EdgeNGramTokenizer;
+import org.apache.lucene.analysis.ngram.NGramTokenizer;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.DoubleDocValuesField;
+import org.apache.lucene.document.DoublePoint;
+import org.apache.lucene.document.Field.Store;
+import org.apache.lucene.document.IntPoint;
+import org.apache.lucene.document.LongPoint;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.document.SortedDocValuesField;
+import org.apache.lucene.document.StoredField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.IndexWriterConfig.OpenMode;
+import org.apache.lucene.index.IndexableField;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.MMapDirectory;
+import org.apache.lucene.util.BytesRef;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.util.CloseableIterator;
+import org.springframework.stereotype.Component;
+
+import com.printezisn.moviestore.common.dto.movie.MovieDto;
+import com.printezisn.moviestore.movieservice.configuration.properties.EmbeddedSearchProperties;
+import com.printezisn.moviestore.movieservice.configuration.properties.SearchIndexProperties;
+import com.printezisn.moviestore.movieservice.movie.entities.Movie;
+import com.printezisn.moviestore.movieservice.movie.entities.MovieIndex;
+import com.printezisn.moviestore.movieservice.movie.exceptions.MoviePersistenceException;
+import com.printezisn.moviestore.movieservice.movie.mappers.MovieMapper;
+import com.printezisn.moviestore.movieservice.movie.repositories.MovieRepository;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Component that keeps the search index in the JVM of the service, instead of
+ * Elasticsearch. The index is a Lucene index with memory-mapped segment files,
+ * whose fields and analysis follow the definition of the Elasticsearch index.
+ * Writes are committed in groups, when their number reaches the bulk size or
+ * when the flush interval elapses, and every commit refreshes the searcher, so
+ * a write is durable and visible when its future completes. When the index is
+ * new or its definition changed, it's populated from the database in the
+ * background.
+ */
+@Component
+@Profile("embedded-search")
+@RequiredArgsConstructor
+@Slf4j
+public class EmbeddedMovieIndex implements MovieIndexWriter {
+
+    public static final String ID_FIELD = "id";
+    public static final String TITLE_FIELD = "title";
+    public static final String DESCRIPTION_FIELD = "description";
+    public static final String RATING_FIELD = "rating";
+    public static final String RELEASE_YEAR_FIELD = "releaseYear";
+    public static final String TOTAL_LIKES_FIELD = "totalLikes";
+    public static final String CREATOR_FIELD = "creator";
+    public static final String TITLE_NGRAM_FIELD = "title.ngram";
+    public static final String TITLE_PREFIX_FIELD = "title.prefix";
+    public static final String DESCRIPTION_NGRAM_FIELD = "description.ngram";
+
+    // Must change whenever the fields or the analysis of the documents change, so
+    // that the index is built again
+    private static final String DEFINITION_VERSION = "1";
+    private static final String DEFINITION_VERSION_KEY = "definitionVersion";
+    private static final int TRIGRAM_LENGTH = 3;
+    private static final int MAX_PREFIX_LENGTH = 20;
+
+    private final EmbeddedSearchProperties embeddedSearchProperties;
+    private final SearchIndexProperties searchIndexProperties;
+    private final MovieSearchCache movieSearchCache;
+    private final MovieRepository movieRepository;
+    private final MovieMapper movieMapper;
+
+    private final Analyzer searchAnalyzer = createAnalyzer(false);
+    private final Object writeLock = new Object();
+    private final Set<String> writtenIds = ConcurrentHashMap.newKeySet();
+    private final ScheduledExecutorService executorService = Executors.newScheduledThreadPool(2, runnable -> {
+        final Thread thread = new Thread(runnable, "embedded-movie-index");
+        thread.setDaemon(true);
+
+        return thread;
+    });
+
+    private Directory directory;
+    private IndexWriter indexWriter;
+    private SearcherManager searcherManager;
+    private List<CompletableFuture<Void>> pendingWrites = new ArrayList<>();
+    private List<MovieIndex> pendingMovies = new ArrayList<>();
+    private List<String> pendingDeletedIds = new ArrayList<>();
+    private volatile boolean populating;
+
+    /**
+     * A search that runs with a searcher of the index
+     * 
+     * @param <T>
+     *            The type of the result
+     */
+    @FunctionalInterface
+    public interface SearchFunction<T> {
+
+        /**
+         * Runs the search
+         * 
+         * @param searcher
+         *            The searcher
+         * @return The result
+         * @throws IOException
+         *             Exception thrown if the index can't be read
+         */
+        T apply(final IndexSearcher searcher) throws IOException;
+    }
+
+    /**
+     * A write to the index
+     */
+    @FunctionalInterface
+    private interface IndexOperation {
+
+        /**
+         * Runs the write
+         * 
+         * @throws IOException
+         *             Exception thrown if the index can't be written
+         */
+        void run() throws IOException;
+    }
+
+    /**
+     * Opens the index, populating it in the background if needed, and starts the
+     * periodic flush of pending writes
+     * 
+     * @throws IOException
+     *             Exception thrown if the index can't be opened
+     */
+    @PostConstruct
+    public void start() throws IOException {
+        directory = new MMapDirectory(Paths.get(embeddedSearchProperties.getPath()));
+        indexWriter = new IndexWriter(directory, new IndexWriterConfig(createAnalyzer(true))
+            .setOpenMode(OpenMode.CREATE_OR_APPEND)
+            .setRAMBufferSizeMB(embeddedSearchProperties.getRamBufferSize()));
+        searcherManager = new SearcherManager(indexWriter, null);
+
+        if (DEFINITION_VERSION.equals(getDefinitionVersion())) {
+            log.info("The embedded search index is up to date");
+        }
+        else {
+            // The index is new or its definition changed, so it's built again from the
+            // database
+            indexWriter.deleteAll();
+            indexWriter.setLiveCommitData(Collections.<String, String> emptyMap().entrySet());
+            populating = true;
+            executorService.execute(this::populate);
+        }
+
+        final long interval = searchIndexProperties.getBulkFlushInterval();
+        executorService.scheduleWithFixedDelay(this::flush, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Flushes the pending writes and closes the index
+     * 
+     * @throws IOException
+     *             Exception thrown if the index can't be closed
+     */
+    @PreDestroy
+    public void stop() throws IOException {
+        executorService.shutdown();
+        try {
+            executorService.awaitTermination(1, TimeUnit.MINUTES);
+        }
+        catch (final InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+
+        flush();
+        searcherManager.close();
+        indexWriter.close();
+        directory.close();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CompletableFuture<Void> index(final MovieIndex movieIndex) {
+        return write(movieIndex.getId(), movieIndex,
+            () -> indexWriter.updateDocument(new Term(ID_FIELD, movieIndex.getId()), createDocument(movieIndex)));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CompletableFuture<Void> delete(final String id) {
+        return write(id, null, () -> indexWriter.deleteDocuments(new Term(ID_FIELD, id)));
+    }
+
+    /**
+     * Commits the pending writes, refreshes the searcher and completes the futures
+     * of the writes
+     */
+    public synchronized void flush() {
+        final List<CompletableFuture<Void>> batch;
+        final List<MovieIndex> movies;
+        final List<String> deletedIds;
+        final boolean populated;
+        synchronized (writeLock) {
+            populated = populating;
+            batch = pendingWrites;
+            movies = pendingMovies;
+            deletedIds = pendingDeletedIds;
+            pendingWrites = new ArrayList<>();
+            pendingMovies = new ArrayList<>();
+            pendingDeletedIds = new ArrayList<>();
+        }
+
+        try {
+            if (indexWriter.hasUncommittedChanges()) {
+                indexWriter.commit();
+                searcherManager.maybeRefreshBlocking();
+
+                // The cached search results are invalidated before the writes are reported
+                // as completed, so that the callers don't see results older than their writes.
+                // The movies that are copied by the population are not tracked, so while the
+                // index is populated every commit invalidates them.
+                if (populated) {
+                    movieSearchCache.invalidate();
+                }
+                else {
+                    movieSearchCache.invalidate(movies, deletedIds);
+                }
+            }
+
+            batch.forEach(write -> write.complete(null));
+        }
+        catch (final Exception ex) {
+            final String errorMessage = String.format(
+                "An error occured while committing %d movies to the embedded search index: %s", batch.size(),
+                ex.getMessage());
+
+            log.error(errorMessage, ex);
+            movieSearchCache.invalidate();
+            batch.forEach(write -> write.completeExceptionally(new MoviePersistenceException(errorMessage, ex)));
+        }
+    }
+
+    /**
+     * Indicates if the index has been populated with the movies of the database
+     * 
+     * @return True if the index is populated, otherwise false
+     */
+    public boolean isPopulated() {
+        return !populating;
+    }
+
+    /**
+     * Runs a search with the latest searcher of the index
+     * 
+     * @param search
+     *            The search
+     * @param <T>
+     *            The type of the result
+     * @return The result of the search
+     * @throws IOException
+     *             Exception thrown if the index can't be read
+     */
+    public <T> T search(final SearchFunction<T> search) throws IOException {
+        final IndexSearcher searcher = searcherManager.acquire();
+        try {
+            return search.apply(searcher);
+        }
+        finally {
+            searcherManager.release(searcher);
+        }
+    }
+
+    /**
+     * Analyzes a text the way it's analyzed when a field is searched
+     * 
+     * @param field
+     *            The field
+     * @param text
+     *            The text
+     * @return The terms of the text
+     */
+    public List<String> analyze(final String field, final String text) {
+        final List<String> terms = new ArrayList<>();
+        try (final TokenStream tokenStream = searchAnalyzer.tokenStream(field, text)) {
+            final CharTermAttribute term = tokenStream.addAttribute(CharTermAttribute.class);
+            tokenStream.reset();
+            while (tokenStream.incrementToken()) {
+                terms.add(term.toString());
+            }
+            tokenStream.end();
+        }
+        catch (final IOException ex) {
+            throw new IllegalStateException("The text could not be analyzed: " + ex.getMessage(), ex);
+        }
+
+        return terms;
+    }
+
+    /**
+     * Reads a movie from the stored fields of a document. The fields that were not
+     * loaded are left empty.
+     * 
+     * @param document
+     *            The document
+     * @return The movie
+     */
+    public MovieDto readMovie(final Document document) {
+        final MovieDto movieDto = new MovieDto();
+        final String id = document.get(ID_FIELD);
+        if (id != null) {
+            movieDto.setId(UUID.fromString(id));
+        }
+        movieDto.setTitle(document.get(TITLE_FIELD));
+        movieDto.setDescription(document.get(DESCRIPTION_FIELD));
+
+        final IndexableField rating = document.getField(RATING_FIELD);
+        if (rating != null) {
+            movieDto.setRating(rating.numericValue().doubleValue());
+        }
+        final IndexableField releaseYear = document.getField(RELEASE_YEAR_FIELD);
+        if (releaseYear != null) {
+            movieDto.setReleaseYear(releaseYear.numericValue().intValue());
+        }
+        final IndexableField totalLikes = document.getField(TOTAL_LIKES_FIELD);
+        if (totalLikes != null) {
+            movieDto.setTotalLikes(totalLikes.numericValue().intValue());
+        }
+        movieDto.setCreator(document.get(CREATOR_FIELD));
+
+        return movieDto;
+    }
+
+    /**
+     * Applies a write to the index and queues its future until the next commit.
+     * While the index is populated, the ids of the written movies are kept, so
+     * that the population doesn't replace them with older versions.
+     * 
+     * @param id
+     *            The id of the movie
+     * @param movieIndex
+     *            The indexed movie, or null if the movie is deleted
+     * @param operation
+     *            The write
+     * @return The future of the write
+     */
+    private CompletableFuture<Void> write(final String id, final MovieIndex movieIndex,
+        final IndexOperation operation) {
+        final CompletableFuture<Void> result = new CompletableFuture<>();
+        final int pendingCount;
+
+        try {
+            synchronized (writeLock) {
+                operation.run();
+                if (populating) {
+                    writtenIds.add(id);
+                }
+
+                pendingWrites.add(result);
+                if (movieIndex != null) {
+                    pendingMovies.add(movieIndex);
+                }
+                else {
+                    pendingDeletedIds.add(id);
+                }
+                pendingCount = pendingWrites.size();
+            }
+        }
+        catch (final Exception ex) {
+            final String errorMessage = String.format(
+                "An error occured while writing movie %s to the embedded search index: %s", id, ex.getMessage());
+
+            log.error(errorMessage, ex);
+            result.completeExceptionally(new MoviePersistenceException(errorMessage, ex));
+
+            return result;
+        }
+
+        // The flush is requested once per bulk, when the pending writes reach its size
+        if (pendingCount == searchIndexProperties.getBulkSize() && !executorService.isShutdown()) {
+            executorService.execute(this::flush);
+        }
+
+        return result;
+    }
+
+    /**
+     * Copies all the movies that are not deleted from the database to the index
+     * and marks the index with the version of its definition. If the copy fails,
+     * it's retried after a delay.
+     */
+    private void populate() {
+        long total = 0;
+
+        try (final CloseableIterator<Movie> movies = movieRepository
+            .streamActiveMovies(searchIndexProperties.getBulkSize())) {
+
+            while (movies.hasNext()) {
+                if (executorService.isShutdown()) {
+                    return;
+                }
+
+                final Movie movie = movies.next();
+                synchronized (writeLock) {
+                    // Movies written since the population started are at least as recent
+                    if (!writtenIds.contains(movie.getId())) {
+                        indexWriter.updateDocument(new Term(ID_FIELD, movie.getId()),
+                            createDocument(movieMapper.movieToMovieIndex(movie)));
+                    }
+                }
+                total++;
+            }
+
+            final Map<String, String> commitData = new HashMap<>();
+            commitData.put(DEFINITION_VERSION_KEY, DEFINITION_VERSION);
+            indexWriter.setLiveCommitData(commitData.entrySet());
+            flush();
+
+            synchronized (writeLock) {
+                populating = false;
+                writtenIds.clear();
+            }
+
+            log.info(String.format("Copied %d movies to the embedded search index", total));
+        }
+        catch (final Exception ex) {
+            log.error("An error occured while populating the embedded search index: " + ex.getMessage(), ex);
+            if (!executorService.isShutdown()) {
+                executorService.schedule(this::populate, embeddedSearchProperties.getPopulateRetryDelay(),
+                    TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    /**
+     * Returns the version of the definition that the index was populated with
+     * 
+     * @return The version, or null if the index was never populated
+     */
+    private String getDefinitionVersion() {
+        for (final Map.Entry<String, String> entry : indexWriter.getLiveCommitData()) {
+            if (entry.getKey().equals(DEFINITION_VERSION_KEY)) {
+                return entry.getValue();
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Creates the document of a movie. The text fields have the same subfields as
+     * in Elasticsearch, and the numeric fields can be filtered, sorted and
+     * loaded.
+     * 
+     * @param movieIndex
+     *            The movie
+     * @return The document
+     */
+    private Document createDocument(final MovieIndex movieIndex) {
+        final Document document = new Document();
+        document.add(new StringField(ID_FIELD, movieIndex.getId(), Store.YES));
+        document.add(new SortedDocValuesField(ID_FIELD, new BytesRef(movieIndex.getId())));
+
+        addText(document, TITLE_FIELD, movieIndex.getTitle(), TITLE_NGRAM_FIELD, TITLE_PREFIX_FIELD);
+        addText(document, DESCRIPTION_FIELD, movieIndex.getDescription(), DESCRIPTION_NGRAM_FIELD);
+
+        document.add(new DoublePoint(RATING_FIELD, movieIndex.getRating()));
+        document.add(new DoubleDocValuesField(RATING_FIELD, movieIndex.getRating()));
+        document.add(new StoredField(RATING_FIELD, movieIndex.getRating()));
+
+        document.add(new IntPoint(RELEASE_YEAR_FIELD, movieIndex.getReleaseYear()));
+        document.add(new NumericDocValuesField(RELEASE_YEAR_FIELD, movieIndex.getReleaseYear()));
+        document.add(new StoredField(RELEASE_YEAR_FIELD, movieIndex.getReleaseYear()));
+
+        document.add(new LongPoint(TOTAL_LIKES_FIELD, movieIndex.getTotalLikes()));
+        document.add(new NumericDocValuesField(TOTAL_LIKES_FIELD, movieIndex.getTotalLikes()));
+        document.add(new StoredField(TOTAL_LIKES_FIELD, movieIndex.getTotalLikes()));
+
+        if (movieIndex.getCreator() != null) {
+            document.add(new StoredField(CREATOR_FIELD, movieIndex.getCreator()));
+        }
+
+        return document;
+    }
+
+    /**
+     * Adds a stored text field and its subfields to a document
+     * 
+     * @param document
+     *            The document
+     * @param field
+     *            The name of the field
+     * @param value
+     *            The value of the field, or null if it has none
+     * @param subfields
+     *            The names of the subfields, which are analyzed differently
+     */
+    private void addText(final Document document, final String field, final String value,
+        final String... subfields) {
+
+        if (value == null) {
+            return;
+        }
+
+        document.add(new TextField(field, value, Store.YES));
+        for (final String subfield : subfields) {
+            document.add(new TextField(subfield, value, Store.NO));
+        }
+    }
+
+    /**
+     * Creates the analyzer of the fields, like the analyzers of the Elasticsearch
+     * index. The title prefixes are split into edge n-grams when they are
+     * indexed, but not when they are searched.
+     * 
+     * @param indexing
+     *            Indicates if the analyzer is used for indexing or for searching
+     * @return The analyzer
+     */
+    private static Analyzer createAnalyzer(final boolean indexing) {
+        final Map<String, Analyzer> analyzers = new HashMap<>();
+        analyzers.put(TITLE_NGRAM_FIELD, createNgramAnalyzer(false, TRIGRAM_LENGTH, TRIGRAM_LENGTH));
+        analyzers.put(DESCRIPTION_NGRAM_FIELD, createNgramAnalyzer(false, TRIGRAM_LENGTH, TRIGRAM_LENGTH));
+        if (indexing) {
+            analyzers.put(TITLE_PREFIX_FIELD, createNgramAnalyzer(true, 1, MAX_PREFIX_LENGTH));
+        }
+
+        return new PerFieldAnalyzerWrapper(new StandardAnalyzer(CharArraySet.EMPTY_SET), analyzers);
+    }
+
+    /**
+     * Creates an analyzer that splits the letters and digits of a text into
+     * lowercase n-grams
+     * 
+     * @param edge
+     *            Indicates if only the n-grams at the start of each word are kept
+     * @param minGram
+     *            The minimum length of the n-grams
+     * @param maxGram
+     *            The maximum length of the n-grams
+     * @return The analyzer
+     */
+    private static Analyzer createNgramAnalyzer(final boolean edge, final int minGram, final int maxGram) {
+        return new Analyzer() {
+            @Override
+            protected TokenStreamComponents createComponents(final String fieldName) {
+                final Tokenizer tokenizer = edge
+                    ? new EdgeNGramTokenizer(minGram, maxGram) {
+                        @Override
+                        protected boolean isTokenChar(final int chr) {
+                            return Character.isLetterOrDigit(chr);
+                        }
+                    }
+                    : new NGramTokenizer(minGram, maxGram) {
+                        @Override
+                        protected boolean isTokenChar(final int chr) {
+                            return Character.isLetterOrDigit(chr);
+                        }
+                    };
+
+                return new TokenStreamComponents(tokenizer, new LowerCaseFilter(tokenizer));
+            }
+        };
+    }
+}
@@ -0,0 +1,171 @@
+package com.printezisn.moviestore.movieservice.movie.helpers;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Supplier;
+
+import org.springframework.stereotype.Component;
+
+import com.printezisn.moviestore.common.dto.movie.MovieDto;
+import com.printezisn.moviestore.movieservice.configuration.properties.MovieCacheProperties;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.AllArgsConstructor;
+
+/**
+ * Component that caches movies in memory, including the ids of movies that
+ * don't exist. The cache is bounded by size and by time, and a movie is
+ * invalidated every time it's written. Each cached movie is tagged with the
+ * generation of its id at the time it was read, so a read that overlaps with a
+ * write is never cached.
+ */
+@Component
+public class MovieCache {
+
+    private static final int GENERATION_STRIPES = 64;
+
+    private final MovieCacheProperties movieCacheProperties;
+    private final Map<String, CachedMovie> entries;
+    private final AtomicLongArray generations = new AtomicLongArray(GENERATION_STRIPES);
+    private final Counter hitCounter;
+    private final Counter missCounter;
+    private final Counter evictionCounter;
+
+    /**
+     * A cached movie, or a cached miss if the movie is null
+     */
+    @AllArgsConstructor
+    private static class CachedMovie {
+        private final MovieDto movie;
+        private final long expiration;
+    }
+
+    /**
+     * The constructor
+     * 
+     * @param movieCacheProperties
+     *            The properties of the cache
+     * @param meterRegistry
+     *            The registry of the cache metrics
+     */
+    public MovieCache(final MovieCacheProperties movieCacheProperties, final MeterRegistry meterRegistry) {
+        this.movieCacheProperties = movieCacheProperties;
+        this.entries = new LinkedHashMap<String, CachedMovie>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<String, CachedMovie> eldest) {
+                if (size() <= movieCacheProperties.getMaxEntries()) {
+                    return false;
+                }
+
+                evictionCounter.increment();
+                return true;
+            }
+        };
+
+        this.hitCounter = Counter.builder("movies.cache.hits")
+            .description("The number of movie reads that were served from the cache")
+            .register(meterRegistry);
+        this.missCounter = Counter.builder("movies.cache.misses")
+            .description("The number of movie reads that were sent to the database")
+            .register(meterRegistry);
+        this.evictionCounter = Counter.builder("movies.cache.evictions")
+            .description("The number of cached movies that were evicted to respect the size limit")
+            .register(meterRegistry);
+        Gauge.builder("movies.cache.size", this, MovieCache::getSize)
+            .description("The number of cached movies")
+            .register(meterRegistry);
+    }
+
+    /**
+     * Returns a cached movie, or reads the movie and caches it
+     * 
+     * @param id
+     *            The id of the movie
+     * @param read
+     *            The read to run if the movie is not cached
+     * @return The movie, or empty if it doesn't exist
+     */
+    public Optional<MovieDto> get(final String id, final Supplier<Optional<MovieDto>> read) {
+        if (!movieCacheProperties.isEnabled()) {
+            return read.get();
+        }
+
+        final long generation = generations.get(stripe(id));
+        final long now = Instant.now().toEpochMilli();
+
+        synchronized (entries) {
+            final CachedMovie cachedMovie = entries.get(id);
+            if (cachedMovie != null && cachedMovie.expiration > now) {
+                hitCounter.increment();
+                return Optional.ofNullable(cachedMovie.movie);
+            }
+        }
+
+        missCounter.increment();
+        final Optional<MovieDto> movie = read.get();
+        final long timeToLive = movie.isPresent()
+            ? movieCacheProperties.getTimeToLive()
+            : movieCacheProperties.getNotFoundTimeToLive();
+
+        synchronized (entries) {
+            if (generations.get(stripe(id)) == generation) {
+                entries.put(id, new CachedMovie(movie.orElse(null), now + timeToLive));
+            }
+        }
+
+        return movie;
+    }
+
+    /**
+     * Invalidates a cached movie. It's called every time the movie is written.
+     * 
+     * @param id
+     *            The id of the movie
+     */
+    public void invalidate(final String id) {
+        synchronized (entries) {
+            generations.incrementAndGet(stripe(id));
+            entries.remove(id);
+        }
+    }
+
+    /**
+     * Invalidates many cached movies
+     * 
+     * @param ids
+     *            The ids of the movies
+     */
+    public void invalidate(final Collection<String> ids) {
+        ids.forEach(this::invalidate);
+    }
+
+    /**
+     * Returns the number of cached movies
+     * 
+     * @return The number of cached movies
+     */
+    public int getSize() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    /**
+     * Returns the generation stripe of a movie id
+     * 
+     * @param id
+     *            The id of the movie
+     * @return The index of the stripe
+     */
+    private int stripe(final String id) {
+        return Math.floorMod(id.hashCode(), GENERATION_STRIPES);
+    }
+}
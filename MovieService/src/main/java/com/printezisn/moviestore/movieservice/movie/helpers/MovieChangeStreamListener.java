@@ -0,0 +1,201 @@
+package com.printezisn.moviestore.movieservice.movie.helpers;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.bson.BsonDocument;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Component;
+
+import com.mongodb.MongoException;
+import com.mongodb.client.ChangeStreamIterable;
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.mongodb.client.model.changestream.FullDocument;
+import com.printezisn.moviestore.movieservice.configuration.properties.SearchIndexProperties;
+import com.printezisn.moviestore.movieservice.movie.entities.IndexResumeToken;
+import com.printezisn.moviestore.movieservice.movie.entities.Movie;
+import com.printezisn.moviestore.movieservice.movie.repositories.IndexResumeTokenRepository;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Component that tails the change stream of the movies collection and indexes
+ * every movie that is marked as updated
+ */
+@Component
+@ConditionalOnProperty(name = "searchIndex.mode", havingValue = SearchIndexProperties.CHANGE_STREAM_MODE,
+    matchIfMissing = true)
+@RequiredArgsConstructor
+@Slf4j
+public class MovieChangeStreamListener {
+
+    private static final String MOVIES_COLLECTION = "movies";
+    private static final String RESUME_TOKEN_ID = "movies";
+    private static final String OPERATION_TYPE_FIELD = "operationType";
+    private static final String UPDATED_FIELD = "fullDocument.updated";
+    private static final int CHANGE_STREAM_FATAL_ERROR = 280;
+    private static final int CHANGE_STREAM_HISTORY_LOST = 286;
+
+    private final MongoTemplate mongoTemplate;
+    private final IndexResumeTokenRepository indexResumeTokenRepository;
+    private final MovieIndexHelper movieIndexHelper;
+    private final SearchIndexProperties searchIndexProperties;
+
+    private final ExecutorService executorService = Executors.newSingleThreadExecutor(runnable -> {
+        final Thread thread = new Thread(runnable, "movie-change-stream");
+        thread.setDaemon(true);
+
+        return thread;
+    });
+
+    private volatile boolean running;
+    private CompletableFuture<Void> resumeTokenSaved = CompletableFuture.completedFuture(null);
+
+    /**
+     * Starts tailing the change stream
+     */
+    @PostConstruct
+    public void start() {
+        running = true;
+        executorService.submit(this::listen);
+    }
+
+    /**
+     * Stops tailing the change stream
+     */
+    @PreDestroy
+    public void stop() {
+        running = false;
+        executorService.shutdown();
+    }
+
+    /**
+     * Processes a single change of the movies collection. The resume token is
+     * saved after the movie is written to the search index, and only after the
+     * tokens of the previous changes, so that a restart resumes from the first
+     * change that may not have been indexed.
+     * 
+     * @param change
+     *            The change stream document
+     */
+    public void processChange(final ChangeStreamDocument<Document> change) {
+        CompletableFuture<Void> indexed = CompletableFuture.completedFuture(null);
+        if (change.getFullDocument() != null) {
+            final Movie movie = mongoTemplate.getConverter().read(Movie.class, change.getFullDocument());
+            indexed = movieIndexHelper.indexMovie(movie);
+        }
+
+        resumeTokenSaved = CompletableFuture.allOf(resumeTokenSaved, indexed)
+            .thenRun(() -> saveResumeToken(change));
+    }
+
+    /**
+     * Tails the change stream until the component is stopped, reopening it after
+     * failures
+     */
+    private void listen() {
+        while (running) {
+            try (final MongoCursor<ChangeStreamDocument<Document>> cursor = openChangeStream().iterator()) {
+                log.info("Listening to the change stream of the movies collection");
+
+                while (running) {
+                    final ChangeStreamDocument<Document> change = cursor.tryNext();
+                    if (change != null) {
+                        processChange(change);
+                    }
+                }
+            }
+            catch (final MongoException ex) {
+                if (ex.getCode() == CHANGE_STREAM_FATAL_ERROR || ex.getCode() == CHANGE_STREAM_HISTORY_LOST) {
+                    // The resume token is no longer valid, so the sweep has to catch up
+                    log.warn("The change stream of movies cannot be resumed, starting from now: " + ex.getMessage());
+                    resumeTokenSaved.join();
+                    indexResumeTokenRepository.deleteById(RESUME_TOKEN_ID);
+                    continue;
+                }
+
+                log.error("An error occured while reading the change stream of movies: " + ex.getMessage(), ex);
+                sleep(searchIndexProperties.getChangeStreamRetryDelay());
+            }
+            catch (final Exception ex) {
+                log.error("An error occured while reading the change stream of movies: " + ex.getMessage(), ex);
+                sleep(searchIndexProperties.getChangeStreamRetryDelay());
+            }
+        }
+    }
+
+    /**
+     * Saves the resume token of a processed change
+     * 
+     * @param change
+     *            The change stream document
+     */
+    private void saveResumeToken(final ChangeStreamDocument<Document> change) {
+        try {
+            final IndexResumeToken resumeToken = new IndexResumeToken();
+            resumeToken.setId(RESUME_TOKEN_ID);
+            resumeToken.setToken(change.getResumeToken().toJson());
+            resumeToken.setUpdateTimestamp(Instant.now().toEpochMilli());
+
+            indexResumeTokenRepository.save(resumeToken);
+        }
+        catch (final Exception ex) {
+            log.error("An error occured while saving the resume token of movies: " + ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * Opens the change stream of the movies collection, resuming from the last
+     * processed change if possible
+     * 
+     * @return The change stream
+     */
+    private ChangeStreamIterable<Document> openChangeStream() {
+        final List<Bson> pipeline = Arrays.asList(Aggregates.match(Filters.and(
+            Filters.in(OPERATION_TYPE_FIELD, "insert", "update", "replace"),
+            Filters.eq(UPDATED_FIELD, true))));
+
+        final ChangeStreamIterable<Document> changeStream = mongoTemplate.getCollection(MOVIES_COLLECTION)
+            .watch(pipeline)
+            .fullDocument(FullDocument.UPDATE_LOOKUP)
+            .maxAwaitTime(searchIndexProperties.getChangeStreamMaxAwaitTime(), TimeUnit.MILLISECONDS);
+
+        final Optional<IndexResumeToken> resumeToken = indexResumeTokenRepository.findById(RESUME_TOKEN_ID);
+
+        return resumeToken.isPresent()
+            ? changeStream.resumeAfter(BsonDocument.parse(resumeToken.get().getToken()))
+            : changeStream;
+    }
+
+    /**
+     * Pauses the current thread
+     * 
+     * @param millis
+     *            The pause duration in milliseconds
+     */
+    private void sleep(final long millis) {
+        try {
+            Thread.sleep(millis);
+        }
+        catch (final InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            running = false;
+        }
+    }
+}
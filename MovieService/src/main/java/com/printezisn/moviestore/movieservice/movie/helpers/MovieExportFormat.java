@@ -0,0 +1,37 @@
+package com.printezisn.moviestore.movieservice.movie.helpers;
+
+import java.util.Arrays;
+
+import com.printezisn.moviestore.movieservice.movie.exceptions.MovieValidationException;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * The formats of the movie export
+ */
+@Getter
+@RequiredArgsConstructor
+public enum MovieExportFormat {
+    NDJSON("ndjson", "application/x-ndjson"),
+    CSV("csv", "text/csv");
+
+    private final String extension;
+    private final String mediaType;
+
+    /**
+     * Parses a format by its name, ignoring the case
+     * 
+     * @param format
+     *            The name of the format, i.e. "ndjson" or "csv"
+     * @return The parsed format
+     * @throws MovieValidationException
+     *             Exception thrown if the format is unknown
+     */
+    public static MovieExportFormat parse(final String format) throws MovieValidationException {
+        return Arrays.stream(values())
+            .filter(value -> value.name().equalsIgnoreCase(format))
+            .findFirst()
+            .orElseThrow(() -> new MovieValidationException(String.format("Invalid export format %s", format)));
+    }
+}
@@ -0,0 +1,158 @@
+package com.printezisn.moviestore.movieservice.movie.helpers;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+import org.springframework.data.util.CloseableIterator;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.printezisn.moviestore.common.dto.movie.MovieDto;
+import com.printezisn.moviestore.movieservice.configuration.properties.MovieExportProperties;
+import com.printezisn.moviestore.movieservice.movie.entities.Movie;
+import com.printezisn.moviestore.movieservice.movie.mappers.MovieMapper;
+import com.printezisn.moviestore.movieservice.movie.repositories.MovieRepository;
+
+/**
+ * Component that exports the movies that are not deleted to a stream, as
+ * newline delimited JSON or as CSV. The movies are read from a database cursor
+ * and written one at a time, so the memory use doesn't depend on the number of
+ * movies. The stream is flushed after every batch of the cursor, and a client
+ * that reads slowly blocks the writes, which in turn delay the next batch.
+ */
+@Component
+public class MovieExporter {
+
+    private static final String JSON_SEPARATOR = "\n";
+    private static final String CSV_SEPARATOR = "\r\n";
+    private static final String CSV_HEADER = "id,title,description,rating,releaseYear,totalLikes,"
+        + "creationTimestamp,updateTimestamp,creator";
+
+    private final MovieRepository movieRepository;
+    private final MovieMapper movieMapper;
+    private final MovieExportProperties movieExportProperties;
+    private final ObjectWriter movieWriter;
+
+    /**
+     * The constructor
+     * 
+     * @param movieRepository
+     *            The movie repository
+     * @param movieMapper
+     *            The movie mapper
+     * @param objectMapper
+     *            The mapper that writes the JSON records
+     * @param movieExportProperties
+     *            The properties of the export
+     */
+    public MovieExporter(final MovieRepository movieRepository, final MovieMapper movieMapper,
+        final ObjectMapper objectMapper, final MovieExportProperties movieExportProperties) {
+
+        this.movieRepository = movieRepository;
+        this.movieMapper = movieMapper;
+        this.movieExportProperties = movieExportProperties;
+
+        // The stream is shared by all the records, so it's neither closed nor flushed after each one
+        this.movieWriter = objectMapper.writerFor(MovieDto.class)
+            .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+            .without(JsonGenerator.Feature.FLUSH_PASSED_TO_STREAM);
+    }
+
+    /**
+     * Exports the movies that are not deleted, ordered by their update
+     * timestamp. The stream is not closed.
+     * 
+     * @param output
+     *            The stream
+     * @param format
+     *            The format of the export
+     * @param updatedSince
+     *            The time since when the exported movies were created or edited
+     *            (Optional)
+     * @return The number of exported movies
+     * @throws IOException
+     *             Exception thrown if the stream can't be written
+     */
+    public long exportMovies(final OutputStream output, final MovieExportFormat format,
+        final Optional<Instant> updatedSince) throws IOException {
+
+        final int batchSize = movieExportProperties.getBatchSize();
+        final Writer writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8));
+        if (format == MovieExportFormat.CSV) {
+            writer.write(CSV_HEADER);
+            writer.write(CSV_SEPARATOR);
+        }
+
+        long exportedMovies = 0;
+        try (final CloseableIterator<Movie> movies = movieRepository
+            .streamExportedMovies(updatedSince.map(Instant::toEpochMilli).orElse(null), batchSize)) {
+
+            while (movies.hasNext()) {
+                final MovieDto movieDto = movieMapper.movieToMovieDto(movies.next());
+                if (format == MovieExportFormat.CSV) {
+                    writeCsv(writer, movieDto);
+                }
+                else {
+                    movieWriter.writeValue(writer, movieDto);
+                    writer.write(JSON_SEPARATOR);
+                }
+
+                exportedMovies++;
+                if (exportedMovies % batchSize == 0) {
+                    writer.flush();
+                }
+            }
+        }
+        writer.flush();
+
+        return exportedMovies;
+    }
+
+    /**
+     * Writes a movie as a CSV row
+     * 
+     * @param writer
+     *            The writer of the stream
+     * @param movieDto
+     *            The movie
+     * @throws IOException
+     *             Exception thrown if the stream can't be written
+     */
+    private void writeCsv(final Writer writer, final MovieDto movieDto) throws IOException {
+        final Object[] values = { movieDto.getId(), movieDto.getTitle(), movieDto.getDescription(),
+            movieDto.getRating(), movieDto.getReleaseYear(), movieDto.getTotalLikes(),
+            movieDto.getCreationTimestamp(), movieDto.getUpdateTimestamp(), movieDto.getCreator() };
+
+        writer.write(Arrays.stream(values)
+            .map(value -> escapeCsv(Objects.toString(value, "")))
+            .collect(Collectors.joining(",")));
+        writer.write(CSV_SEPARATOR);
+    }
+
+    /**
+     * Quotes a CSV value if it contains a comma, a quote or a line break, and
+     * doubles its quotes
+     * 
+     * @param value
+     *            The value
+     * @return The escaped value
+     */
+    private String escapeCsv(final String value) {
+        if (value.chars().noneMatch(c -> c == ',' || c == '"' || c == '\r' || c == '\n')) {
+            return value;
+        }
+
+        return "\"" + value.replace("\"", "\"\"") + "\"";
+    }
+}
@@ -0,0 +1,303 @@
+package com.printezisn.moviestore.movieservice.movie.helpers;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.stream.Collectors;
+
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.printezisn.moviestore.common.dto.movie.MovieDto;
+import com.printezisn.moviestore.common.dto.movie.MovieImportErrorDto;
+import com.printezisn.moviestore.common.models.movie.MovieImportResultModel;
+import com.printezisn.moviestore.movieservice.configuration.properties.MovieImportProperties;
+import com.printezisn.moviestore.movieservice.movie.entities.Movie;
+import com.printezisn.moviestore.movieservice.movie.mappers.MovieMapper;
+import com.printezisn.moviestore.movieservice.movie.repositories.MovieRepository;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Component that imports movies from a stream of newline delimited JSON
+ * records. The records are parsed and validated one at a time, and the valid
+ * ones are inserted in bulk batches and written to the search index. Only one
+ * batch is kept in memory, while the search index writes of the previous batch
+ * complete, so the memory use doesn't depend on the size of the stream.
+ */
+@Component
+@Slf4j
+public class MovieImporter {
+
+    private static final String ID_FIELD = "id";
+
+    private final MovieRepository movieRepository;
+    private final MovieIndexWriter movieIndexWriter;
+    private final MovieMapper movieMapper;
+    private final MovieSuggester movieSuggester;
+    private final Validator validator;
+    private final MovieImportProperties movieImportProperties;
+    private final ObjectReader movieReader;
+
+    /**
+     * The progress of an import
+     */
+    private static class ImportState {
+        private final MovieImportResultModel result = MovieImportResultModel.builder().build();
+        private List<Movie> batch = new ArrayList<>();
+        private List<Long> batchLines = new ArrayList<>();
+        private CompletableFuture<Void> previousBatch = CompletableFuture.completedFuture(null);
+    }
+
+    /**
+     * The constructor
+     * 
+     * @param movieRepository
+     *            The movie repository
+     * @param movieIndexWriter
+     *            The writer of the search index
+     * @param movieMapper
+     *            The movie mapper
+     * @param movieSuggester
+     *            The title suggester
+     * @param validator
+     *            The validator of the records
+     * @param objectMapper
+     *            The mapper that parses the records
+     * @param movieImportProperties
+     *            The properties of the import
+     */
+    public MovieImporter(final MovieRepository movieRepository, final MovieIndexWriter movieIndexWriter,
+        final MovieMapper movieMapper, final MovieSuggester movieSuggester, final Validator validator,
+        final ObjectMapper objectMapper, final MovieImportProperties movieImportProperties) {
+
+        this.movieRepository = movieRepository;
+        this.movieIndexWriter = movieIndexWriter;
+        this.movieMapper = movieMapper;
+        this.movieSuggester = movieSuggester;
+        this.validator = validator;
+        this.movieImportProperties = movieImportProperties;
+        this.movieReader = objectMapper.readerFor(MovieDto.class);
+    }
+
+    /**
+     * Imports movies from a stream with one JSON record per line. Records without
+     * an id get a new one. Invalid records are reported along with their line
+     * number, up to a maximum number of errors, and are skipped in unordered
+     * mode. In ordered mode, the import stops at the first record that fails.
+     * 
+     * @param input
+     *            The stream of the records
+     * @param ordered
+     *            Indicates if the import stops at the first record that fails
+     * @return The result of the import
+     * @throws IOException
+     *             Exception thrown if the stream can't be read
+     */
+    public MovieImportResultModel importMovies(final InputStream input, final boolean ordered) throws IOException {
+        final ImportState state = new ImportState();
+        final BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+
+        long lineNumber = 0;
+        String line;
+        while (!state.result.isAborted() && (line = reader.readLine()) != null) {
+            lineNumber++;
+            if (line.isBlank()) {
+                continue;
+            }
+
+            final Movie movie = parse(line, lineNumber, state);
+            if (movie == null) {
+                state.result.setAborted(ordered);
+                continue;
+            }
+
+            state.batch.add(movie);
+            state.batchLines.add(lineNumber);
+            if (state.batch.size() >= movieImportProperties.getBatchSize()) {
+                writeBatch(state, ordered);
+            }
+        }
+
+        if (!state.result.isAborted()) {
+            writeBatch(state, ordered);
+        }
+        state.previousBatch.join();
+
+        return state.result;
+    }
+
+    /**
+     * Parses and validates a record
+     * 
+     * @param line
+     *            The record
+     * @param lineNumber
+     *            The line number of the record
+     * @param state
+     *            The progress of the import
+     * @return The movie of the record, or null if the record is invalid
+     */
+    private Movie parse(final String line, final long lineNumber, final ImportState state) {
+        final MovieDto movieDto;
+        try {
+            movieDto = movieReader.readValue(line);
+        }
+        catch (final JsonProcessingException ex) {
+            addError(state, lineNumber, null,
+                Collections.singletonList(String.format("Invalid record: %s", ex.getOriginalMessage())));
+            return null;
+        }
+        catch (final IOException ex) {
+            addError(state, lineNumber, null,
+                Collections.singletonList(String.format("Invalid record: %s", ex.getMessage())));
+            return null;
+        }
+
+        if (movieDto == null) {
+            addError(state, lineNumber, null, Collections.singletonList("Invalid record: null"));
+            return null;
+        }
+
+        // The id is optional, as it's created for the records without one
+        final List<String> errors = validator.validate(movieDto).stream()
+            .filter(violation -> !ID_FIELD.equals(violation.getPropertyPath().toString()))
+            .map(ConstraintViolation::getMessage)
+            .sorted()
+            .collect(Collectors.toList());
+        if (!errors.isEmpty()) {
+            addError(state, lineNumber, movieDto.getId(), errors);
+            return null;
+        }
+
+        final Instant now = Instant.now();
+        if (movieDto.getId() == null) {
+            movieDto.setId(UUID.randomUUID());
+        }
+        if (movieDto.getCreationTimestamp() == null) {
+            movieDto.setCreationTimestamp(now);
+        }
+        movieDto.setUpdateTimestamp(now);
+
+        // The movie is written to the search index by the import, so it's not marked
+        // as updated unless the write fails
+        final Movie movie = movieMapper.movieDtoToMovie(movieDto);
+        movie.setRevision(UUID.randomUUID().toString());
+        movie.setUpdated(false);
+        movie.setDeleted(false);
+        movie.setTotalLikes(0);
+        movie.setPendingLikes(new HashSet<>());
+        movie.setPendingUnlikes(new HashSet<>());
+
+        return movie;
+    }
+
+    /**
+     * Inserts the current batch of movies and starts writing them to the search
+     * index, after the writes of the previous batch complete
+     * 
+     * @param state
+     *            The progress of the import
+     * @param ordered
+     *            Indicates if the import stops at the first movie that fails
+     */
+    private void writeBatch(final ImportState state, final boolean ordered) {
+        if (state.batch.isEmpty()) {
+            return;
+        }
+
+        final Map<Integer, String> failures = movieRepository.insertMovies(state.batch, ordered);
+        final int firstFailure = failures.keySet().stream().mapToInt(Integer::intValue).min()
+            .orElse(state.batch.size());
+
+        final List<Movie> insertedMovies = new ArrayList<>();
+        for (int i = 0; i < state.batch.size(); i++) {
+            final Movie movie = state.batch.get(i);
+            if (failures.containsKey(i)) {
+                addError(state, state.batchLines.get(i), UUID.fromString(movie.getId()),
+                    Collections.singletonList(failures.get(i)));
+            }
+            else if (!ordered || i < firstFailure) {
+                insertedMovies.add(movie);
+            }
+        }
+        state.result.setImported(state.result.getImported() + insertedMovies.size());
+        state.result.setAborted(ordered && !failures.isEmpty());
+        state.batch = new ArrayList<>();
+        state.batchLines = new ArrayList<>();
+
+        state.previousBatch.join();
+        state.previousBatch = index(insertedMovies);
+    }
+
+    /**
+     * Writes movies to the search index. The movies that fail to be written are
+     * marked as updated, so that they are indexed again later.
+     * 
+     * @param movies
+     *            The movies
+     * @return Future that completes when all the movies are processed
+     */
+    private CompletableFuture<Void> index(final List<Movie> movies) {
+        final Queue<String> failedIds = new ConcurrentLinkedQueue<>();
+        final CompletableFuture<?>[] writes = movies.stream()
+            .map(movie -> movieIndexWriter.index(movieMapper.movieToMovieIndex(movie))
+                .thenRun(() -> movieSuggester.update(movie.getId(), movie.getTitle(), movie.getTotalLikes()))
+                .exceptionally(ex -> {
+                    failedIds.add(movie.getId());
+                    return null;
+                }))
+            .toArray(CompletableFuture[]::new);
+
+        return CompletableFuture.allOf(writes).thenRun(() -> {
+            if (!failedIds.isEmpty()) {
+                log.warn(String.format("%d imported movies failed to be indexed and will be indexed again",
+                    failedIds.size()));
+                movieRepository.markUpdated(failedIds);
+            }
+        });
+    }
+
+    /**
+     * Counts a failed record and reports its errors, unless the maximum number of
+     * reported errors is reached
+     * 
+     * @param state
+     *            The progress of the import
+     * @param lineNumber
+     *            The line number of the record
+     * @param id
+     *            The id of the record, or null if it's not known
+     * @param errors
+     *            The errors of the record
+     */
+    private void addError(final ImportState state, final long lineNumber, final UUID id, final List<String> errors) {
+        state.result.setFailed(state.result.getFailed() + 1);
+        if (state.result.getErrors().size() >= movieImportProperties.getMaxErrors()) {
+            return;
+        }
+
+        final MovieImportErrorDto error = new MovieImportErrorDto();
+        error.setLine(lineNumber);
+        error.setId((id != null) ? id.toString() : null);
+        error.setErrors(errors);
+        state.result.getErrors().add(error);
+    }
+}
@@ -1,15 +1,15 @@
 package com.printezisn.moviestore.movieservice.movie.helpers;
 
 import java.util.HashSet;
-import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
 
 import org.springframework.stereotype.Component;
 
 import com.printezisn.moviestore.movieservice.movie.entities.Movie;
 import com.printezisn.moviestore.movieservice.movie.entities.MovieIndex;
-import com.printezisn.moviestore.movieservice.movie.entities.MovieLike;
 import com.printezisn.moviestore.movieservice.movie.mappers.MovieMapper;
-import com.printezisn.moviestore.movieservice.movie.repositories.MovieIndexRepository;
 import com.printezisn.moviestore.movieservice.movie.repositories.MovieLikeRepository;
 import com.printezisn.moviestore.movieservice.movie.repositories.MovieRepository;
 
@@ -26,58 +26,107 @@ public class MovieIndexHelper {
 
     private final MovieRepository movieRepository;
     private final MovieLikeRepository movieLikeRepository;
-    private final MovieIndexRepository movieIndexRepository;
+    private final MovieIndexWriter movieIndexWriter;
     private final MovieMapper movieMapper;
+    private final MovieCache movieCache;
+    private final MovieSuggester movieSuggester;
 
     /**
-     * Updates a movie in the search index and the database
+     * Updates a movie in the search index and the database. The movie is written
+     * to the search index in bulk with other movies, and it's only marked as
+     * indexed in the database after the write succeeds, so failed movies are
+     * retried later.
      * 
      * @param movie
      *            The movie to update
+     * @return Future that completes when the movie is processed
      */
-    public void indexMovie(final Movie movie) {
+    public CompletableFuture<Void> indexMovie(final Movie movie) {
+        return indexMovie(movie, Runnable::run);
+    }
+
+    /**
+     * Updates a movie in the search index and the database, running the updates
+     * that follow the write to the search index on the given executor
+     * 
+     * @param movie
+     *            The movie to update
+     * @param executor
+     *            The executor of the updates that follow the write to the search
+     *            index
+     * @return Future that completes when the movie is processed
+     */
+    public CompletableFuture<Void> indexMovie(final Movie movie, final Executor executor) {
         try {
-            // Deletes the movie if it's indicated as deleted
+            // Removes the movie from the search index if it's indicated as deleted. The
+            // movie is kept as a tombstone, marked as indexed, until the purger removes
+            // it and its likes in the background.
             if (movie.isDeleted()) {
-                movieIndexRepository.deleteById(movie.getId());
-                movieLikeRepository.deleteByMovieId(movie.getId());
-                movieRepository.deleteById(movie.getId());
-
-                return;
+                return movieIndexWriter.delete(movie.getId())
+                    .thenRunAsync(() -> {
+                        movieCache.invalidate(movie.getId());
+                        movieSuggester.remove(movie.getId());
+                        movie.setUpdated(false);
+                        movieRepository.updateIndexedMovie(movie, movie.getRevision(), movie.getLikesRevision());
+                    }, executor)
+                    .exceptionally(ex -> logError(movie, ex));
             }
 
-            // Saves the pending likes
-            movie.getPendingLikes().forEach(account -> {
-                final MovieLike movieLike = new MovieLike();
-                movieLike.setId(movie.getId() + "-" + account);
-                movieLike.setMovieId(movie.getId());
-                movieLike.setAccount(account);
-
-                movieLikeRepository.save(movieLike);
-            });
+            // Applies the pending likes and unlikes, counting only the likes that are
+            // actually added or removed
+            long likesDelta = 0;
+            for (final String account : movie.getPendingLikes()) {
+                if (movieLikeRepository.addLike(movie.getId(), account)) {
+                    likesDelta++;
+                }
+            }
             movie.setPendingLikes(new HashSet<>());
 
-            // Removes the pending unlikes
-            movie.getPendingUnlikes()
-                .forEach(account -> movieLikeRepository.deleteById(movie.getId() + "-" + account));
+            for (final String account : movie.getPendingUnlikes()) {
+                if (movieLikeRepository.removeLike(movie.getId(), account)) {
+                    likesDelta--;
+                }
+            }
             movie.setPendingUnlikes(new HashSet<>());
 
-            // Calculates the total likes
-            movie.setTotalLikes(movieLikeRepository.countByMovieId(movie.getId()));
+            // Adjusts the total likes right away, so that they follow the movie likes
+            // even if the movie isn't marked as indexed later
+            if (likesDelta != 0) {
+                movieRepository.incrementTotalLikes(movie.getId(), likesDelta);
+                movie.setTotalLikes(movie.getTotalLikes() + likesDelta);
+                movieCache.invalidate(movie.getId());
+            }
 
-            // Indexes the movie
+            // Indexes the movie and then updates it in the database
             final MovieIndex movieIndex = movieMapper.movieToMovieIndex(movie);
-            movieIndexRepository.save(movieIndex);
 
-            // Updates the movie in the database
-            final String currentRevision = movie.getRevision();
-            movie.setRevision(UUID.randomUUID().toString());
-            movie.setUpdated(false);
-            movieRepository.updateMovie(movie, currentRevision);
+            return movieIndexWriter.index(movieIndex)
+                .thenRunAsync(() -> {
+                    movieSuggester.update(movie.getId(), movie.getTitle(), movie.getTotalLikes());
+                    movie.setUpdated(false);
+                    movieRepository.updateIndexedMovie(movie, movie.getRevision(), movie.getLikesRevision());
+                }, executor)
+                .exceptionally(ex -> logError(movie, ex));
         }
         catch (final Exception ex) {
-            log.error(String.format("An error occured while indexing movie %s: %s", movie.getId(), ex.getMessage()),
-                ex);
+            return CompletableFuture.completedFuture(logError(movie, ex));
         }
     }
+
+    /**
+     * Logs an error that occured while indexing a movie
+     * 
+     * @param movie
+     *            The movie
+     * @param ex
+     *            The error
+     * @return Nothing
+     */
+    private Void logError(final Movie movie, final Throwable ex) {
+        final Throwable cause = (ex instanceof CompletionException && ex.getCause() != null) ? ex.getCause() : ex;
+        log.error(String.format("An error occured while indexing movie %s: %s", movie.getId(), cause.getMessage()),
+            cause);
+
+        return null;
+    }
 }
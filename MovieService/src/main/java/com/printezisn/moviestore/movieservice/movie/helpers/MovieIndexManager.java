@@ -0,0 +1,775 @@
+package com.printezisn.moviestore.movieservice.movie.helpers;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.elasticsearch.ResourceAlreadyExistsException;
+import org.elasticsearch.action.DocWriteRequest.OpType;
+import org.elasticsearch.action.admin.indices.alias.IndicesAliasesRequest.AliasActions;
+import org.elasticsearch.action.admin.indices.alias.IndicesAliasesRequestBuilder;
+import org.elasticsearch.action.admin.indices.get.GetIndexResponse;
+import org.elasticsearch.action.bulk.BulkItemResponse;
+import org.elasticsearch.action.bulk.BulkRequestBuilder;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.action.support.IndicesOptions;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.cluster.metadata.AliasMetaData;
+import org.elasticsearch.cluster.metadata.MappingMetaData;
+import org.elasticsearch.common.collect.ImmutableOpenMap;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.common.xcontent.XContentType;
+import org.elasticsearch.index.query.QueryBuilders;
+import org.elasticsearch.rest.RestStatus;
+import org.elasticsearch.search.SearchHit;
+import org.elasticsearch.search.sort.FieldSortBuilder;
+import org.elasticsearch.search.sort.SortBuilders;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.elasticsearch.core.ElasticsearchTemplate;
+import org.springframework.data.elasticsearch.core.mapping.ElasticsearchPersistentEntity;
+import org.springframework.data.util.CloseableIterator;
+import org.springframework.stereotype.Component;
+import org.springframework.util.DigestUtils;
+import org.springframework.util.StreamUtils;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.printezisn.moviestore.movieservice.configuration.properties.SearchIndexProperties;
+import com.printezisn.moviestore.movieservice.movie.entities.IndexBuild;
+import com.printezisn.moviestore.movieservice.movie.entities.Movie;
+import com.printezisn.moviestore.movieservice.movie.entities.MovieIndex;
+import com.printezisn.moviestore.movieservice.movie.exceptions.MoviePersistenceException;
+import com.printezisn.moviestore.movieservice.movie.mappers.MovieMapper;
+import com.printezisn.moviestore.movieservice.movie.repositories.IndexBuildRepository;
+import com.printezisn.moviestore.movieservice.movie.repositories.MovieRepository;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Component that manages the versions of the search index. Searches and writes
+ * use an alias, which points to a physical index whose name contains the
+ * version of its settings and mapping. When the settings or the mapping
+ * change, a new physical index is built from the database in the background
+ * and the alias is moved to it in a single atomic operation. While an index is
+ * built, every node writes to it as well, so no write is lost. A full reindex
+ * builds a fresh index of the current version in the same way, with the
+ * creation time as a suffix of its name. The indices that are being built are
+ * recorded in the database, and the node that builds an index refreshes its
+ * record periodically. An index whose record isn't refreshed within the
+ * rebuild timeout, or which has no record, is abandoned and deleted. The
+ * definition has a version in the metadata of its mapping, and an index is
+ * only rebuilt by a node whose version is newer than the version of the index
+ * in use, so that nodes of different versions don't move the alias back and
+ * forth during a rolling deployment.
+ */
+@Component
+@Profile("!embedded-search")
+@RequiredArgsConstructor
+@Slf4j
+public class MovieIndexManager {
+
+    private static final String DEFINITION_RESOURCE = "elasticsearch/movie-index.json";
+    private static final String CREATION_DATE_SETTING = "index.creation_date";
+    private static final String META_FIELD = "_meta";
+    private static final String VERSION_FIELD = "version";
+    private static final TimeValue SCROLL_KEEP_ALIVE = TimeValue.timeValueMinutes(1);
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private final ElasticsearchTemplate elasticsearchTemplate;
+    private final MovieRepository movieRepository;
+    private final MovieMapper movieMapper;
+    private final SearchIndexProperties searchIndexProperties;
+    private final IndexBuildRepository indexBuildRepository;
+
+    private final ScheduledExecutorService executorService = Executors.newScheduledThreadPool(2, runnable -> {
+        final Thread thread = new Thread(runnable, "movie-index-manager");
+        thread.setDaemon(true);
+
+        return thread;
+    });
+
+    private String definition;
+    private String versionedIndexName;
+    private int definitionVersion;
+    private volatile boolean versionChecked;
+    private volatile List<String> buildingIndices = Collections.emptyList();
+    private final Set<String> ownBuildingIndices = ConcurrentHashMap.newKeySet();
+    private volatile boolean currentVersionInUse;
+    private volatile boolean aliasAvailable;
+
+    /**
+     * The physical indices behind the alias
+     */
+    private static class IndexState {
+        private boolean legacyIndex;
+        private int aliasedVersion = -1;
+        private final Set<String> aliasedIndices = new HashSet<>();
+        private final Map<String, Long> buildingIndices = new HashMap<>();
+    }
+
+    /**
+     * Reads the definition of the index and starts watching for indices that are
+     * built by other nodes. The first time the search index can be read, the
+     * alias is checked to point to the current version of the index, which is
+     * built in the background if needed. The search index is only accessed in the
+     * background, so that the startup doesn't wait for it.
+     * 
+     * @throws IOException
+     *             Exception thrown if the definition of the index can't be read
+     */
+    @PostConstruct
+    public void start() throws IOException {
+        definition = StreamUtils.copyToString(new ClassPathResource(DEFINITION_RESOURCE).getInputStream(),
+            StandardCharsets.UTF_8);
+        versionedIndexName = getAlias() + "_"
+            + DigestUtils.md5DigestAsHex(definition.getBytes(StandardCharsets.UTF_8)).substring(0, 8);
+        definitionVersion = OBJECT_MAPPER.readTree(definition).path("mappings").path(getEntity().getIndexType())
+            .path(META_FIELD).path(VERSION_FIELD).asInt(0);
+
+        executorService.scheduleWithFixedDelay(this::discover, 0,
+            searchIndexProperties.getRebuildDiscoveryInterval(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops the background tasks
+     */
+    @PreDestroy
+    public void stop() {
+        executorService.shutdownNow();
+    }
+
+    /**
+     * Returns the indices that are being built, which must receive every write
+     * along with the alias
+     * 
+     * @return The names of the indices
+     */
+    public List<String> getBuildingIndices() {
+        return buildingIndices;
+    }
+
+    /**
+     * Indicates if the alias exists. Before the first index is built, the writes
+     * only go to the indices that are being built, so that the alias isn't
+     * created as an index by a write.
+     * 
+     * @return True if the alias exists, otherwise false
+     */
+    public boolean isAliasAvailable() {
+        return aliasAvailable;
+    }
+
+    /**
+     * Indicates if the alias points to an index of the current version. While an
+     * index of an older version is in use, the searches can't rely on the
+     * mapping of the current version.
+     * 
+     * @return True if the current version is in use, otherwise false
+     */
+    public boolean isCurrentVersionInUse() {
+        return currentVersionInUse;
+    }
+
+    /**
+     * Builds the current version of the index from the database in the
+     * background and moves the alias to it. Only one node builds a version of the
+     * index at a time.
+     * 
+     * @return Future that completes when the alias is moved
+     */
+    public CompletableFuture<Void> rebuild() {
+        return CompletableFuture.runAsync(() -> {
+            final String indexName = getVersionedIndexName();
+            try {
+                final IndexState state = readState();
+                if (state.aliasedIndices.stream().anyMatch(this::isCurrentVersion) || !isUpgrade(state)) {
+                    return;
+                }
+
+                final Long creationDate = state.buildingIndices.get(indexName);
+                if (creationDate != null) {
+                    if (!isAbandoned(creationDate, indexBuildRepository.findById(indexName).orElse(null))) {
+                        log.info(String.format("The search index %s is being built by another node", indexName));
+                        return;
+                    }
+
+                    log.warn(String.format("The build of the search index %s was abandoned, restarting it",
+                        indexName));
+                    deleteIndices(Collections.singletonList(indexName));
+                }
+
+                createIndex(indexName);
+                addBuildingIndex(indexName);
+
+                // Waits until every node writes to the new index as well
+                Thread.sleep(searchIndexProperties.getRebuildDiscoveryInterval() * 2);
+
+                populate(indexName);
+                removeDeletedDocuments(indexName);
+
+                final IndexState currentState = readState();
+                swapAlias(indexName, currentState);
+                deleteIndices(currentState.aliasedIndices);
+                removeBuildingIndex(indexName);
+                discoverBuildingIndices();
+
+                log.info(String.format("The search index %s was built and is now in use", indexName));
+            }
+            catch (final ResourceAlreadyExistsException ex) {
+                log.info(String.format("The search index %s is being built by another node", indexName));
+            }
+            catch (final InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            catch (final Exception ex) {
+                final String errorMessage = String.format("An error occured while building the search index %s: %s",
+                    indexName, ex.getMessage());
+
+                log.error(errorMessage, ex);
+                deleteIndices(Collections.singletonList(indexName));
+                removeBuildingIndex(indexName);
+                discoverBuildingIndices();
+
+                throw new MoviePersistenceException(errorMessage, ex);
+            }
+        }, executorService);
+    }
+
+    /**
+     * Creates a fresh index of the current version for a full reindex, and waits
+     * until every node writes to it as well
+     * 
+     * @return The name of the index
+     * @throws InterruptedException
+     *             Exception thrown if the wait is interrupted
+     */
+    public String createBuildingIndex() throws InterruptedException {
+        final String indexName = getVersionedIndexName() + "_" + Instant.now().toEpochMilli();
+        createIndex(indexName);
+        addBuildingIndex(indexName);
+
+        Thread.sleep(searchIndexProperties.getRebuildDiscoveryInterval() * 2);
+        log.info(String.format("Created the search index %s for a full reindex", indexName));
+
+        return indexName;
+    }
+
+    /**
+     * Continues writing to an index that was being built before it was
+     * interrupted
+     * 
+     * @param indexName
+     *            The name of the index
+     */
+    public void resumeBuildingIndex(final String indexName) {
+        if (!readState().buildingIndices.containsKey(indexName)) {
+            throw new MoviePersistenceException(String.format("The search index %s doesn't exist", indexName), null);
+        }
+
+        addBuildingIndex(indexName);
+    }
+
+    /**
+     * Stops refreshing the record of an index that this node no longer builds.
+     * The index keeps receiving the writes until the rebuild timeout expires, so
+     * that it can still be resumed, and is deleted afterwards.
+     * 
+     * @param indexName
+     *            The name of the index
+     */
+    public void releaseBuildingIndex(final String indexName) {
+        ownBuildingIndices.remove(indexName);
+    }
+
+    /**
+     * Moves the alias to an index that was built, and deletes the indices that the
+     * alias pointed to. The documents of movies that were deleted while the index
+     * was built are removed first.
+     * 
+     * @param indexName
+     *            The name of the index
+     */
+    public void completeBuildingIndex(final String indexName) {
+        removeDeletedDocuments(indexName);
+
+        final IndexState state = readState();
+        swapAlias(indexName, state);
+        deleteIndices(state.aliasedIndices);
+        removeBuildingIndex(indexName);
+        discoverBuildingIndices();
+
+        log.info(String.format("The search index %s was built and is now in use", indexName));
+    }
+
+    /**
+     * Deletes an index that was being built and is abandoned
+     * 
+     * @param indexName
+     *            The name of the index
+     */
+    public void deleteBuildingIndex(final String indexName) {
+        deleteIndices(Collections.singletonList(indexName));
+        removeBuildingIndex(indexName);
+        discoverBuildingIndices();
+    }
+
+    /**
+     * Returns the name of the physical index of the current version, which
+     * contains the hash of its definition
+     * 
+     * @return The name of the index
+     */
+    public String getVersionedIndexName() {
+        return versionedIndexName;
+    }
+
+    /**
+     * Copies all the movies that are not deleted from the database to an index.
+     * Movies that were already written to the index are not replaced, because
+     * they are at least as recent.
+     * 
+     * @param indexName
+     *            The name of the index
+     */
+    private void populate(final String indexName) {
+        final int batchSize = searchIndexProperties.getBulkSize();
+        long total = 0;
+
+        try (final CloseableIterator<Movie> movies = movieRepository.streamActiveMovies(batchSize)) {
+            final List<Movie> batch = new ArrayList<>(batchSize);
+            while (movies.hasNext()) {
+                batch.add(movies.next());
+                if (batch.size() >= batchSize || !movies.hasNext()) {
+                    createDocuments(indexName, batch);
+                    total += batch.size();
+                    batch.clear();
+                }
+            }
+        }
+
+        log.info(String.format("Copied %d movies to the search index %s", total, indexName));
+    }
+
+    /**
+     * Creates the documents of a batch of movies with a single bulk request.
+     * Movies that were already written to the index are not replaced, because
+     * they are at least as recent.
+     * 
+     * @param indexName
+     *            The name of the index
+     * @param movies
+     *            The movies
+     */
+    public void createDocuments(final String indexName, final List<Movie> movies) {
+        final Client client = elasticsearchTemplate.getClient();
+        final BulkRequestBuilder bulkRequest = client.prepareBulk();
+
+        try {
+            for (final Movie movie : movies) {
+                final MovieIndex movieIndex = movieMapper.movieToMovieIndex(movie);
+                bulkRequest.add(client.prepareIndex(indexName, getEntity().getIndexType(), movie.getId())
+                    .setOpType(OpType.CREATE)
+                    .setSource(OBJECT_MAPPER.writeValueAsBytes(movieIndex), XContentType.JSON));
+            }
+        }
+        catch (final IOException ex) {
+            throw new MoviePersistenceException("An error occured while serializing movies: " + ex.getMessage(), ex);
+        }
+
+        for (final BulkItemResponse item : bulkRequest.get().getItems()) {
+            if (item.isFailed() && item.getFailure().getStatus() != RestStatus.CONFLICT) {
+                throw new MoviePersistenceException(String.format(
+                    "An error occured while copying movie %s to the search index: %s", item.getId(),
+                    item.getFailureMessage()), item.getFailure().getCause());
+            }
+        }
+    }
+
+    /**
+     * Deletes the documents of an index whose movies are deleted. A movie that is
+     * deleted while the index is populated may be deleted from the index before
+     * it's copied to it, so the index is checked against the database after it's
+     * populated and before the alias is moved to it. Any later delete is written
+     * to the index after its copy.
+     * 
+     * @param indexName
+     *            The name of the index
+     */
+    private void removeDeletedDocuments(final String indexName) {
+        final Client client = elasticsearchTemplate.getClient();
+        final String indexType = getEntity().getIndexType();
+        long total = 0;
+
+        client.admin().indices().prepareRefresh(indexName).get();
+        SearchResponse response = client.prepareSearch(indexName)
+            .setTypes(indexType)
+            .setQuery(QueryBuilders.matchAllQuery())
+            .setFetchSource(false)
+            .addSort(SortBuilders.fieldSort(FieldSortBuilder.DOC_FIELD_NAME))
+            .setSize(searchIndexProperties.getBulkSize())
+            .setScroll(SCROLL_KEEP_ALIVE)
+            .get();
+
+        try {
+            while (response.getHits().getHits().length > 0) {
+                final List<String> ids = Arrays.stream(response.getHits().getHits())
+                    .map(SearchHit::getId)
+                    .collect(Collectors.toList());
+                final Set<String> activeIds = movieRepository.findActiveMovieIds(ids);
+                final List<String> deletedIds = ids.stream()
+                    .filter(id -> !activeIds.contains(id))
+                    .collect(Collectors.toList());
+
+                if (!deletedIds.isEmpty()) {
+                    final BulkRequestBuilder bulkRequest = client.prepareBulk();
+                    deletedIds.forEach(id -> bulkRequest.add(client.prepareDelete(indexName, indexType, id)));
+                    for (final BulkItemResponse item : bulkRequest.get().getItems()) {
+                        if (item.isFailed()) {
+                            throw new MoviePersistenceException(String.format(
+                                "An error occured while removing movie %s from the search index: %s", item.getId(),
+                                item.getFailureMessage()), item.getFailure().getCause());
+                        }
+                    }
+                    total += deletedIds.size();
+                }
+
+                response = client.prepareSearchScroll(response.getScrollId()).setScroll(SCROLL_KEEP_ALIVE).get();
+            }
+        }
+        finally {
+            client.prepareClearScroll().addScrollId(response.getScrollId()).get();
+        }
+
+        log.info(String.format("Removed %d deleted movies from the search index %s", total, indexName));
+    }
+
+    /**
+     * Creates a physical index with the current definition
+     * 
+     * @param indexName
+     *            The name of the index
+     */
+    private void createIndex(final String indexName) {
+        elasticsearchTemplate.getClient().admin().indices().prepareCreate(indexName)
+            .setSource(definition, XContentType.JSON)
+            .get();
+    }
+
+    /**
+     * Moves the alias to an index, in a single atomic operation. An index that
+     * was created with the name of the alias is deleted in the same operation.
+     * The alias is never moved to an older version of the index.
+     * 
+     * @param indexName
+     *            The name of the index
+     * @param state
+     *            The current physical indices behind the alias
+     */
+    private void swapAlias(final String indexName, final IndexState state) {
+        if (state.aliasedVersion > definitionVersion) {
+            throw new MoviePersistenceException(String.format(
+                "The search index in use has version %d, which is newer than the version %d of %s",
+                state.aliasedVersion, definitionVersion, indexName), null);
+        }
+
+        final IndicesAliasesRequestBuilder request = elasticsearchTemplate.getClient().admin().indices()
+            .prepareAliases()
+            .addAliasAction(AliasActions.add().index(indexName).alias(getAlias()));
+
+        state.aliasedIndices.stream()
+            .filter(aliasedIndex -> !aliasedIndex.equals(indexName))
+            .forEach(aliasedIndex -> request.addAliasAction(AliasActions.remove()
+                .index(aliasedIndex)
+                .alias(getAlias())));
+        if (state.legacyIndex) {
+            request.addAliasAction(AliasActions.removeIndex().index(getAlias()));
+        }
+
+        request.get();
+        aliasAvailable = true;
+    }
+
+    /**
+     * Deletes old indices, ignoring failures
+     * 
+     * @param indexNames
+     *            The names of the indices
+     */
+    private void deleteIndices(final Iterable<String> indexNames) {
+        for (final String indexName : indexNames) {
+            try {
+                elasticsearchTemplate.getClient().admin().indices().prepareDelete(indexName).get();
+            }
+            catch (final Exception ex) {
+                log.warn(String.format("The search index %s could not be deleted: %s", indexName, ex.getMessage()));
+            }
+        }
+    }
+
+    /**
+     * Reads which physical indices are behind the alias and which are being built
+     * 
+     * @return The state of the indices
+     */
+    private IndexState readState() {
+        final GetIndexResponse response = elasticsearchTemplate.getClient().admin().indices().prepareGetIndex()
+            .setIndices(getAlias(), getAlias() + "_*")
+            .setIndicesOptions(IndicesOptions.lenientExpandOpen())
+            .get();
+        final IndexState state = new IndexState();
+
+        for (final String indexName : response.getIndices()) {
+            final List<AliasMetaData> aliases = response.getAliases().get(indexName);
+            if (indexName.equals(getAlias())) {
+                state.legacyIndex = true;
+                state.aliasedVersion = Math.max(state.aliasedVersion, 0);
+            }
+            else if (aliases != null && aliases.stream().anyMatch(alias -> alias.alias().equals(getAlias()))) {
+                state.aliasedIndices.add(indexName);
+                state.aliasedVersion = Math.max(state.aliasedVersion, readVersion(response, indexName));
+            }
+            else {
+                final String creationDate = response.getSetting(indexName, CREATION_DATE_SETTING);
+                state.buildingIndices.put(indexName, creationDate != null ? Long.parseLong(creationDate) : 0);
+            }
+        }
+
+        return state;
+    }
+
+    /**
+     * Reads the version of the definition of an index from the metadata of its
+     * mapping. Indices without a version are older than any version.
+     * 
+     * @param response
+     *            The response with the indices
+     * @param indexName
+     *            The name of the index
+     * @return The version of the index
+     */
+    private int readVersion(final GetIndexResponse response, final String indexName) {
+        final ImmutableOpenMap<String, ImmutableOpenMap<String, MappingMetaData>> mappings = response.getMappings();
+        final ImmutableOpenMap<String, MappingMetaData> indexMappings = (mappings != null)
+            ? mappings.get(indexName)
+            : null;
+        final MappingMetaData mapping = (indexMappings != null) ? indexMappings.get(getEntity().getIndexType()) : null;
+        final Object meta = (mapping != null) ? mapping.getSourceAsMap().get(META_FIELD) : null;
+        final Object version = (meta instanceof Map) ? ((Map<?, ?>) meta).get(VERSION_FIELD) : null;
+
+        return (version instanceof Number) ? ((Number) version).intValue() : 0;
+    }
+
+    /**
+     * Checks if the version of this node is newer than the version of the index
+     * in use, or if there is no index yet, so that the current version must be
+     * built
+     * 
+     * @param state
+     *            The state of the indices
+     * @return True if the current version must be built, otherwise false
+     */
+    private boolean isUpgrade(final IndexState state) {
+        if (state.aliasedVersion < definitionVersion) {
+            return true;
+        }
+
+        log.warn(String.format("The search index in use has version %d, and the search index %s of version %d is "
+            + "not newer, so it isn't built", state.aliasedVersion, getVersionedIndexName(), definitionVersion));
+        return false;
+    }
+
+    /**
+     * Discovers the indices that are being built and, until it succeeds once,
+     * checks if the alias points to the current version of the index
+     */
+    private void discover() {
+        if (!versionChecked) {
+            versionChecked = checkVersion();
+        }
+
+        discoverBuildingIndices();
+    }
+
+    /**
+     * Checks if the alias points to the current version of the index, and starts
+     * building it in the background if this node's version is newer. When there
+     * is no index yet, the first one is built in the same way, and the searches
+     * fall back to the database until the alias is created.
+     * 
+     * @return True if the check was made, or false if the search index couldn't
+     *         be read
+     */
+    private boolean checkVersion() {
+        try {
+            final IndexState state = readState();
+            if (state.aliasedIndices.stream().anyMatch(this::isCurrentVersion)) {
+                log.info(String.format("The search index %s is up to date", getVersionedIndexName()));
+                currentVersionInUse = true;
+            }
+            else if (isUpgrade(state)) {
+                rebuild();
+            }
+
+            return true;
+        }
+        catch (final Exception ex) {
+            log.error("An error occured while checking the version of the search index: " + ex.getMessage(), ex);
+            return false;
+        }
+    }
+
+    /**
+     * Refreshes the records of the indices that this node builds, and then the
+     * indices that are being built, by this or by other nodes, and the version of
+     * the index in use. Abandoned indices are deleted along with their records,
+     * and the records of indices that are in use or no longer exist are deleted
+     * as well.
+     */
+    private void discoverBuildingIndices() {
+        try {
+            ownBuildingIndices.forEach(this::saveBuildingIndex);
+
+            final IndexState state = readState();
+            final Map<String, IndexBuild> builds = indexBuildRepository.findAll().stream()
+                .collect(Collectors.toMap(IndexBuild::getId, build -> build));
+            final List<String> indices = new ArrayList<>();
+
+            state.buildingIndices.forEach((indexName, creationDate) -> {
+                if (!isAbandoned(creationDate, builds.get(indexName))) {
+                    indices.add(indexName);
+                    return;
+                }
+
+                log.warn(String.format("The build of the search index %s was abandoned, deleting it", indexName));
+                deleteIndices(Collections.singletonList(indexName));
+                indexBuildRepository.deleteById(indexName);
+            });
+            builds.values().stream()
+                .filter(build -> !state.buildingIndices.containsKey(build.getId()))
+                .filter(build -> state.aliasedIndices.contains(build.getId()) || isAbandoned(0, build))
+                .forEach(build -> indexBuildRepository.deleteById(build.getId()));
+
+            buildingIndices = indices;
+            aliasAvailable = !state.aliasedIndices.isEmpty() || state.legacyIndex;
+            currentVersionInUse = state.aliasedIndices.stream().anyMatch(this::isCurrentVersion);
+        }
+        catch (final Exception ex) {
+            log.error("An error occured while reading the search indices: " + ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * Adds an index to the indices that are being built, and records that this
+     * node builds it
+     * 
+     * @param indexName
+     *            The name of the index
+     */
+    private void addBuildingIndex(final String indexName) {
+        saveBuildingIndex(indexName);
+        ownBuildingIndices.add(indexName);
+
+        final List<String> indices = new ArrayList<>(buildingIndices);
+        if (!indices.contains(indexName)) {
+            indices.add(indexName);
+        }
+
+        buildingIndices = indices;
+    }
+
+    /**
+     * Removes an index from the indices that are being built, along with its
+     * record
+     * 
+     * @param indexName
+     *            The name of the index
+     */
+    private void removeBuildingIndex(final String indexName) {
+        ownBuildingIndices.remove(indexName);
+        indexBuildRepository.deleteById(indexName);
+
+        final List<String> indices = new ArrayList<>(buildingIndices);
+        indices.remove(indexName);
+        buildingIndices = indices;
+    }
+
+    /**
+     * Records that an index is being built, as of now
+     * 
+     * @param indexName
+     *            The name of the index
+     */
+    private void saveBuildingIndex(final String indexName) {
+        final IndexBuild build = new IndexBuild();
+        build.setId(indexName);
+        build.setUpdateTimestamp(Instant.now().toEpochMilli());
+
+        indexBuildRepository.save(build);
+    }
+
+    /**
+     * Checks if the build of an index was abandoned, i.e. if its record wasn't
+     * refreshed within the rebuild timeout. An index without a record is
+     * abandoned if it was created before the rebuild timeout, because the record
+     * is saved right after the index is created.
+     * 
+     * @param creationDate
+     *            The creation date of the index
+     * @param build
+     *            The record of the index, or null if there is none
+     * @return True if the build was abandoned, otherwise false
+     */
+    private boolean isAbandoned(final long creationDate, final IndexBuild build) {
+        final long lastUpdate = (build != null) ? build.getUpdateTimestamp() : creationDate;
+
+        return Instant.now().toEpochMilli() - lastUpdate >= searchIndexProperties.getRebuildTimeout();
+    }
+
+    /**
+     * Checks if an index has the current version, either as the index of a
+     * rebuild or as the index of a full reindex
+     * 
+     * @param indexName
+     *            The name of the index
+     * @return True if the index has the current version, otherwise false
+     */
+    private boolean isCurrentVersion(final String indexName) {
+        return indexName.equals(getVersionedIndexName()) || indexName.startsWith(getVersionedIndexName() + "_");
+    }
+
+    /**
+     * Returns the alias of the index
+     * 
+     * @return The alias
+     */
+    private String getAlias() {
+        return getEntity().getIndexName();
+    }
+
+    /**
+     * Returns the persistent entity of the movie index
+     * 
+     * @return The persistent entity
+     */
+    private ElasticsearchPersistentEntity<?> getEntity() {
+        return elasticsearchTemplate.getPersistentEntityFor(MovieIndex.class);
+    }
+}
@@ -0,0 +1,154 @@
+package com.printezisn.moviestore.movieservice.movie.helpers;
+
+import java.util.Iterator;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.springframework.data.util.CloseableIterator;
+import org.springframework.stereotype.Component;
+
+import com.printezisn.moviestore.movieservice.configuration.properties.SearchIndexProperties;
+import com.printezisn.moviestore.movieservice.movie.entities.Movie;
+import com.printezisn.moviestore.movieservice.movie.repositories.MovieRepository;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Component that indexes large numbers of movies in parallel. The movies are
+ * partitioned by the hash of their id, and each partition is processed by a
+ * single worker, so the updates of a movie are always applied in order. The
+ * database updates that follow the write to the search index run on the worker
+ * of the movie as well, so they are spread over all the workers.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class MovieIndexSweeper {
+
+    private final MovieRepository movieRepository;
+    private final MovieIndexHelper movieIndexHelper;
+    private final SearchIndexProperties searchIndexProperties;
+
+    private ExecutorService[] workers;
+
+    /**
+     * Starts the workers
+     */
+    @PostConstruct
+    public void start() {
+        workers = new ExecutorService[Math.max(1, searchIndexProperties.getWorkerThreads())];
+        for (int i = 0; i < workers.length; i++) {
+            final String threadName = "movie-index-worker-" + i;
+            workers[i] = Executors.newSingleThreadExecutor(runnable -> {
+                final Thread thread = new Thread(runnable, threadName);
+                thread.setDaemon(true);
+
+                return thread;
+            });
+        }
+    }
+
+    /**
+     * Stops the workers
+     */
+    @PreDestroy
+    public void stop() {
+        for (final ExecutorService worker : workers) {
+            worker.shutdown();
+        }
+    }
+
+    /**
+     * Indexes all the movies that are marked as updated, streaming them from the
+     * database in batches
+     * 
+     * @return The number of movies processed
+     * @throws InterruptedException
+     *             Exception thrown if the thread is interrupted while waiting for
+     *             the movies to be indexed
+     */
+    public long sweep() throws InterruptedException {
+        try (final CloseableIterator<Movie> movies = movieRepository
+            .streamUpdatedMovies(searchIndexProperties.getSweepBatchSize())) {
+
+            return indexMovies(movies);
+        }
+    }
+
+    /**
+     * Indexes movies in parallel and waits until all of them are processed. The
+     * number of movies in process is bounded, so the movies are consumed from the
+     * iterator only as fast as they are indexed.
+     * 
+     * @param movies
+     *            The movies to index
+     * @return The number of movies processed
+     * @throws InterruptedException
+     *             Exception thrown if the thread is interrupted while waiting for
+     *             the movies to be indexed
+     */
+    public long indexMovies(final Iterator<Movie> movies) throws InterruptedException {
+        final int maxInFlight = searchIndexProperties.getMaxInFlight();
+        final Semaphore inFlight = new Semaphore(maxInFlight);
+        long total = 0;
+
+        while (movies.hasNext()) {
+            final Movie movie = movies.next();
+
+            inFlight.acquire();
+            try {
+                final ExecutorService worker = getWorker(movie.getId());
+                worker.execute(() -> indexMovie(movie, worker, inFlight));
+            }
+            catch (final Exception ex) {
+                inFlight.release();
+                throw ex;
+            }
+
+            total++;
+        }
+
+        // Waits until all the movies are processed
+        inFlight.acquire(maxInFlight);
+        inFlight.release(maxInFlight);
+
+        return total;
+    }
+
+    /**
+     * Indexes a movie and releases its slot when it's processed
+     * 
+     * @param movie
+     *            The movie to index
+     * @param worker
+     *            The worker of the partition that the movie belongs to
+     * @param inFlight
+     *            The semaphore that tracks the movies in process
+     */
+    private void indexMovie(final Movie movie, final ExecutorService worker, final Semaphore inFlight) {
+        try {
+            movieIndexHelper.indexMovie(movie, worker).whenComplete((result, ex) -> inFlight.release());
+        }
+        catch (final Exception ex) {
+            log.error(String.format("An error occured while indexing movie %s: %s", movie.getId(), ex.getMessage()),
+                ex);
+            inFlight.release();
+        }
+    }
+
+    /**
+     * Returns the worker of the partition that a movie belongs to
+     * 
+     * @param id
+     *            The id of the movie
+     * @return The worker
+     */
+    private ExecutorService getWorker(final String id) {
+        return workers[Math.floorMod(id.hashCode(), workers.length)];
+    }
+}
@@ -0,0 +1,32 @@
+package com.printezisn.moviestore.movieservice.movie.helpers;
+
+import java.util.concurrent.CompletableFuture;
+
+import com.printezisn.moviestore.movieservice.movie.entities.MovieIndex;
+
+/**
+ * Interface for the writes to the search index. Writes are applied in batches,
+ * so they complete asynchronously.
+ */
+public interface MovieIndexWriter {
+
+    /**
+     * Adds or replaces a movie in the search index
+     * 
+     * @param movieIndex
+     *            The movie to index
+     * @return Future that completes when the movie is written, or completes
+     *         exceptionally if the write failed
+     */
+    CompletableFuture<Void> index(final MovieIndex movieIndex);
+
+    /**
+     * Removes a movie from the search index
+     * 
+     * @param id
+     *            The id of the movie to remove
+     * @return Future that completes when the movie is removed, or completes
+     *         exceptionally if the removal failed
+     */
+    CompletableFuture<Void> delete(final String id);
+}
@@ -0,0 +1,276 @@
+package com.printezisn.moviestore.movieservice.movie.helpers;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.springframework.stereotype.Component;
+
+import com.printezisn.moviestore.movieservice.configuration.properties.LikeBufferProperties;
+import com.printezisn.moviestore.movieservice.movie.repositories.MovieRepository;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Component that buffers likes and unlikes in memory and writes them to the
+ * database in batches. Only the last event of each account is kept for a
+ * movie, so repeated likes and unlikes are collapsed before they are written.
+ * When the buffer is full, the event is written immediately instead, without
+ * waiting for the buffer to be flushed.
+ */
+@Component
+@Slf4j
+public class MovieLikeBuffer {
+
+    private final MovieRepository movieRepository;
+    private final LikeBufferProperties likeBufferProperties;
+    private final Timer flushTimer;
+    private final Counter overflowCounter;
+
+    private final ConcurrentHashMap<String, Map<String, Boolean>> events = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, CompletableFuture<Void>> writingMovies = new ConcurrentHashMap<>();
+    private final AtomicInteger depth = new AtomicInteger();
+    private final ScheduledExecutorService executorService = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        final Thread thread = new Thread(runnable, "movie-like-buffer");
+        thread.setDaemon(true);
+
+        return thread;
+    });
+
+    /**
+     * The constructor
+     * 
+     * @param movieRepository
+     *            The movie repository
+     * @param likeBufferProperties
+     *            The properties of the buffer
+     * @param meterRegistry
+     *            The registry of the buffer metrics
+     */
+    public MovieLikeBuffer(final MovieRepository movieRepository, final LikeBufferProperties likeBufferProperties,
+        final MeterRegistry meterRegistry) {
+
+        this.movieRepository = movieRepository;
+        this.likeBufferProperties = likeBufferProperties;
+
+        Gauge.builder("movies.likes.buffer.depth", depth, AtomicInteger::get)
+            .description("The number of buffered like events")
+            .register(meterRegistry);
+        this.flushTimer = Timer.builder("movies.likes.buffer.flush")
+            .description("The time needed to write a batch of buffered like events")
+            .register(meterRegistry);
+        this.overflowCounter = Counter.builder("movies.likes.buffer.overflow")
+            .description("The number of like events written immediately because the buffer was full")
+            .register(meterRegistry);
+    }
+
+    /**
+     * Starts the periodic flush of the buffer
+     */
+    @PostConstruct
+    public void start() {
+        if (likeBufferProperties.isEnabled()) {
+            final long interval = likeBufferProperties.getFlushInterval();
+            executorService.scheduleWithFixedDelay(this::flush, interval, interval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Flushes the buffer and stops it
+     */
+    @PreDestroy
+    public void stop() {
+        executorService.shutdown();
+        try {
+            executorService.awaitTermination(1, TimeUnit.MINUTES);
+        }
+        catch (final InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+
+        flush();
+    }
+
+    /**
+     * Indicates if likes are buffered
+     * 
+     * @return True if likes are buffered, otherwise false
+     */
+    public boolean isEnabled() {
+        return likeBufferProperties.isEnabled();
+    }
+
+    /**
+     * Returns the number of buffered events
+     * 
+     * @return The number of buffered events
+     */
+    public int getDepth() {
+        return depth.get();
+    }
+
+    /**
+     * Adds a like or an unlike to the buffer, replacing any buffered event of the
+     * same account for the same movie
+     * 
+     * @param movieId
+     *            The id of the movie
+     * @param account
+     *            The account
+     * @param liked
+     *            True if the account likes the movie, or false if it removes its
+     *            like
+     */
+    public void add(final String movieId, final String account, final boolean liked) {
+        while (!offer(movieId, account, liked)) {
+            // The buffer is full, so the event is written immediately. If the movie is
+            // part of the batch being written, the write waits for that batch only, so
+            // that no older event of the same account is written after it.
+            final CompletableFuture<Void> batchWritten = writingMovies.get(movieId);
+            if (batchWritten == null) {
+                overflowCounter.increment();
+                movieRepository.applyLikes(Collections.singletonMap(movieId, Collections.singletonMap(account, liked)));
+                return;
+            }
+
+            batchWritten.join();
+        }
+    }
+
+    /**
+     * Writes the buffered events to the database, in batches
+     */
+    public synchronized void flush() {
+        Map<String, Map<String, Boolean>> batch = new HashMap<>();
+        CompletableFuture<Void> batchWritten = new CompletableFuture<>();
+
+        for (final String movieId : events.keySet()) {
+            writingMovies.put(movieId, batchWritten);
+            final Map<String, Boolean> likes = events.remove(movieId);
+            if (likes == null) {
+                writingMovies.remove(movieId, batchWritten);
+                continue;
+            }
+
+            depth.addAndGet(-likes.size());
+            batch.put(movieId, likes);
+            if (batch.size() >= likeBufferProperties.getFlushBatchSize()) {
+                write(batch, batchWritten);
+                batch = new HashMap<>();
+                batchWritten = new CompletableFuture<>();
+            }
+        }
+
+        if (!batch.isEmpty()) {
+            write(batch, batchWritten);
+        }
+    }
+
+    /**
+     * Adds an event to the buffer, if the event replaces a buffered one or the
+     * buffer isn't full
+     * 
+     * @param movieId
+     *            The id of the movie
+     * @param account
+     *            The account
+     * @param liked
+     *            True if the account likes the movie, otherwise false
+     * @return True if the event is buffered, otherwise false
+     */
+    private boolean offer(final String movieId, final String account, final boolean liked) {
+        final boolean[] accepted = new boolean[1];
+
+        events.compute(movieId, (id, likes) -> {
+            final Map<String, Boolean> currentLikes = (likes != null) ? likes : new HashMap<>();
+            if (currentLikes.containsKey(account) || depth.get() < likeBufferProperties.getMaxEvents()) {
+                if (currentLikes.put(account, liked) == null) {
+                    depth.incrementAndGet();
+                }
+                accepted[0] = true;
+            }
+
+            return currentLikes.isEmpty() ? null : currentLikes;
+        });
+
+        return accepted[0];
+    }
+
+    /**
+     * Writes a batch of events to the database. If the write fails, the events
+     * are returned to the buffer, unless newer events of the same accounts have
+     * been buffered in the meantime or the buffer is full.
+     * 
+     * @param batch
+     *            The events per movie id
+     * @param batchWritten
+     *            The future that is completed when the batch is written or returned
+     *            to the buffer
+     */
+    private void write(final Map<String, Map<String, Boolean>> batch, final CompletableFuture<Void> batchWritten) {
+        try {
+            flushTimer.record(() -> movieRepository.applyLikes(batch));
+        }
+        catch (final Exception ex) {
+            log.error(String.format("An error occured while writing the likes of %d movies: %s", batch.size(),
+                ex.getMessage()), ex);
+
+            final AtomicInteger droppedEvents = new AtomicInteger();
+            batch.forEach((movieId, likes) -> likes.forEach((account, liked) -> {
+                if (!requeue(movieId, account, liked)) {
+                    droppedEvents.incrementAndGet();
+                }
+            }));
+            if (droppedEvents.get() > 0) {
+                log.error(String.format("The buffer is full, so %d failed like events were dropped",
+                    droppedEvents.get()));
+            }
+        }
+        finally {
+            batch.keySet().forEach(movieId -> writingMovies.remove(movieId, batchWritten));
+            batchWritten.complete(null);
+        }
+    }
+
+    /**
+     * Returns an event that failed to be written to the buffer, if no newer event
+     * of the same account has been buffered and the buffer isn't full
+     * 
+     * @param movieId
+     *            The id of the movie
+     * @param account
+     *            The account
+     * @param liked
+     *            True if the account likes the movie, otherwise false
+     * @return True if the event is buffered again, otherwise false
+     */
+    private boolean requeue(final String movieId, final String account, final boolean liked) {
+        final boolean[] accepted = new boolean[1];
+
+        events.compute(movieId, (id, likes) -> {
+            final Map<String, Boolean> currentLikes = (likes != null) ? likes : new HashMap<>();
+            if (!currentLikes.containsKey(account) && depth.get() < likeBufferProperties.getMaxEvents()) {
+                currentLikes.put(account, liked);
+                depth.incrementAndGet();
+                accepted[0] = true;
+            }
+
+            return currentLikes.isEmpty() ? null : currentLikes;
+        });
+
+        return accepted[0];
+    }
+}
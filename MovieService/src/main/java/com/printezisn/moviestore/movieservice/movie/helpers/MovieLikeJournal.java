@@ -0,0 +1,428 @@
+package com.printezisn.moviestore.movieservice.movie.helpers;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.bson.types.ObjectId;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.CollectionOptions;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+import com.mongodb.CursorType;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.result.UpdateResult;
+import com.printezisn.moviestore.movieservice.configuration.properties.LikeJournalProperties;
+import com.printezisn.moviestore.movieservice.movie.entities.LikeEvent;
+import com.printezisn.moviestore.movieservice.movie.entities.LikeJournalConsumer;
+import com.printezisn.moviestore.movieservice.movie.repositories.LikeEventRepository;
+import com.printezisn.moviestore.movieservice.movie.repositories.MovieLikeRepository;
+import com.printezisn.moviestore.movieservice.movie.repositories.MovieRepository;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Component that records likes and unlikes in an append-only journal, which is
+ * a capped collection shared by all the nodes. A consumer tails the journal in
+ * insertion order and folds the events into the movie likes and the total
+ * likes of the movies. Folding an event twice has no effect, so the journal can
+ * be replayed safely. Only the node that holds the lease of the consumer
+ * consumes the journal, and the lease is renewed before every batch. The
+ * position of the last folded event is stored only while the lease is held, so
+ * that another node takes over from there when the lease expires.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class MovieLikeJournal {
+
+    private static final String CONSUMER_ID = "likeevents";
+    private static final String ID_FIELD = "_id";
+    private static final String OWNER_FIELD = "owner";
+    private static final String LEASE_EXPIRATION_FIELD = "leaseExpiration";
+    private static final String LAST_EVENT_ID_FIELD = "lastEventId";
+    private static final String LAST_EVENT_TIMESTAMP_FIELD = "lastEventTimestamp";
+    private static final String TIMESTAMP_FIELD = "timestamp";
+
+    private final MongoTemplate mongoTemplate;
+    private final LikeEventRepository likeEventRepository;
+    private final MovieLikeRepository movieLikeRepository;
+    private final MovieRepository movieRepository;
+    private final LikeJournalProperties likeJournalProperties;
+    private final MovieCache movieCache;
+
+    private final ExecutorService executorService = Executors.newSingleThreadExecutor(runnable -> {
+        final Thread thread = new Thread(runnable, "movie-like-journal");
+        thread.setDaemon(true);
+
+        return thread;
+    });
+
+    private final String nodeId = UUID.randomUUID().toString();
+    private final Object batchLock = new Object();
+
+    private volatile boolean running;
+    private volatile long leaseExpiration;
+
+    /**
+     * Creates the journal, if it doesn't exist, and starts consuming it
+     */
+    @PostConstruct
+    public void start() {
+        if (!likeJournalProperties.isEnabled()) {
+            return;
+        }
+
+        createJournal();
+        if (likeJournalProperties.isReplayOnStartup()) {
+            mongoTemplate.updateFirst(new Query(Criteria.where(ID_FIELD).is(CONSUMER_ID)),
+                new Update().unset(LAST_EVENT_ID_FIELD).unset(LAST_EVENT_TIMESTAMP_FIELD), LikeJournalConsumer.class);
+        }
+
+        running = true;
+        executorService.submit(this::consume);
+    }
+
+    /**
+     * Stops consuming the journal and releases the lease, so that another node
+     * takes over right away
+     */
+    @PreDestroy
+    public void stop() {
+        running = false;
+        executorService.shutdown();
+
+        if (leaseExpiration > 0) {
+            try {
+                synchronized (batchLock) {
+                    mongoTemplate.updateFirst(ownerQuery(), new Update().set(LEASE_EXPIRATION_FIELD, 0),
+                        LikeJournalConsumer.class);
+                    leaseExpiration = 0;
+                }
+            }
+            catch (final Exception ex) {
+                log.warn("The lease of the like journal could not be released: " + ex.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Indicates if likes are recorded in the journal
+     * 
+     * @return True if the journal is used, otherwise false
+     */
+    public boolean isEnabled() {
+        return likeJournalProperties.isEnabled();
+    }
+
+    /**
+     * Appends a like or an unlike to the journal
+     * 
+     * @param movieId
+     *            The id of the movie
+     * @param account
+     *            The account
+     * @param liked
+     *            True if the account likes the movie, or false if it removes its
+     *            like
+     */
+    public void append(final String movieId, final String account, final boolean liked) {
+        final LikeEvent likeEvent = new LikeEvent();
+        likeEvent.setMovieId(movieId);
+        likeEvent.setAccount(account);
+        likeEvent.setLiked(liked);
+        likeEvent.setTimestamp(Instant.now().toEpochMilli());
+
+        likeEventRepository.insert(likeEvent);
+    }
+
+    /**
+     * Acquires the lease of the consumer, if no other node holds it, or renews it
+     * if this node holds it
+     * 
+     * @return True if this node holds the lease, otherwise false
+     */
+    public boolean acquireLease() {
+        final long now = Instant.now().toEpochMilli();
+        final Query query = new Query(Criteria.where(ID_FIELD).is(CONSUMER_ID).orOperator(
+            Criteria.where(OWNER_FIELD).is(nodeId),
+            Criteria.where(LEASE_EXPIRATION_FIELD).lt(now)));
+        final Update update = new Update()
+            .set(OWNER_FIELD, nodeId)
+            .set(LEASE_EXPIRATION_FIELD, now + likeJournalProperties.getLeaseDuration());
+
+        try {
+            mongoTemplate.findAndModify(query, update, FindAndModifyOptions.options().upsert(true),
+                LikeJournalConsumer.class);
+            leaseExpiration = now + likeJournalProperties.getLeaseDuration();
+
+            return true;
+        }
+        catch (final DuplicateKeyException ex) {
+            // The consumer exists, and another node holds its lease
+            leaseExpiration = 0;
+
+            return false;
+        }
+    }
+
+    /**
+     * Runs a task between two batches of the consumer, if this node holds the
+     * lease. A task that reads the movie likes and the total likes of the movies
+     * doesn't see a like that was folded but not counted yet.
+     * 
+     * @param task
+     *            The task
+     * @return True if the task ran, otherwise false
+     */
+    public boolean runBetweenBatches(final Runnable task) {
+        synchronized (batchLock) {
+            if (leaseExpiration <= Instant.now().toEpochMilli()) {
+                return false;
+            }
+
+            task.run();
+
+            return true;
+        }
+    }
+
+    /**
+     * Folds a batch of events into the movie likes and the total likes of the
+     * movies. Only the last event of each account is applied to a movie, and the
+     * events of movies that don't exist or are deleted are ignored.
+     * 
+     * @param events
+     *            The events, in journal order
+     */
+    public void fold(final List<LikeEvent> events) {
+        final Map<String, LikeEvent> lastEvents = new LinkedHashMap<>();
+        events.forEach(event -> lastEvents.put(event.getMovieId() + "-" + event.getAccount(), event));
+
+        final Set<String> activeMovieIds = movieRepository.findActiveMovieIds(lastEvents.values().stream()
+            .map(LikeEvent::getMovieId)
+            .collect(Collectors.toSet()));
+        final Map<String, Long> deltas = new HashMap<>();
+
+        for (final LikeEvent event : lastEvents.values()) {
+            if (!activeMovieIds.contains(event.getMovieId())) {
+                continue;
+            }
+
+            if (event.isLiked() && movieLikeRepository.addLike(event.getMovieId(), event.getAccount())) {
+                deltas.merge(event.getMovieId(), 1L, Long::sum);
+            }
+            else if (!event.isLiked() && movieLikeRepository.removeLike(event.getMovieId(), event.getAccount())) {
+                deltas.merge(event.getMovieId(), -1L, Long::sum);
+            }
+        }
+
+        deltas.values().removeIf(delta -> delta == 0);
+        movieRepository.applyLikeCounts(deltas);
+        movieCache.invalidate(deltas.keySet());
+    }
+
+    /**
+     * Tails the journal while this node holds the lease, until the component is
+     * stopped, reopening it after failures. A node that doesn't hold the lease
+     * tries to acquire it periodically.
+     */
+    private void consume() {
+        while (running) {
+            try {
+                if (!acquireLease()) {
+                    sleep(likeJournalProperties.getLeaseDuration() / 2);
+                    continue;
+                }
+
+                consumeWithLease();
+            }
+            catch (final Exception ex) {
+                log.error("An error occured while reading the like journal: " + ex.getMessage(), ex);
+                sleep(likeJournalProperties.getRetryDelay());
+            }
+        }
+    }
+
+    /**
+     * Tails the journal from the last folded event, until the lease is lost or
+     * the component is stopped. The lease is renewed before every batch, and when
+     * half of it has elapsed while the journal is idle.
+     */
+    private void consumeWithLease() {
+        try (final MongoCursor<Document> cursor = openJournal()) {
+            final List<LikeEvent> batch = new ArrayList<>(likeJournalProperties.getBatchSize());
+
+            while (running) {
+                final Document document = cursor.tryNext();
+                if (document != null) {
+                    batch.add(mongoTemplate.getConverter().read(LikeEvent.class, document));
+                }
+                final boolean batchReady = !batch.isEmpty()
+                    && (document == null || batch.size() >= likeJournalProperties.getBatchSize());
+                final boolean renewalDue = leaseExpiration - Instant.now().toEpochMilli()
+                    < likeJournalProperties.getLeaseDuration() / 2;
+                if ((batchReady || renewalDue) && !acquireLease()) {
+                    log.warn("The lease of the like journal was lost, stopping the consumer");
+                    return;
+                }
+                if (batchReady) {
+                    synchronized (batchLock) {
+                        fold(batch);
+                        if (!saveCheckpoint(batch.get(batch.size() - 1))) {
+                            log.warn("The lease of the like journal was lost, stopping the consumer");
+                            return;
+                        }
+                    }
+                    batch.clear();
+                }
+
+                // A tailable cursor dies if the journal is empty when it's opened
+                if (document == null && cursor.getServerCursor() == null) {
+                    sleep(likeJournalProperties.getMaxAwaitTime());
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Opens a tailable cursor on the journal, positioned after the last folded
+     * event. Only the events that were appended up to the checkpoint margin
+     * before that event are read again. If that event is no longer in the
+     * journal, the journal is replayed from its oldest event.
+     * 
+     * @return The cursor
+     */
+    private MongoCursor<Document> openJournal() {
+        final MongoCollection<Document> journal = mongoTemplate.getCollection(
+            mongoTemplate.getCollectionName(LikeEvent.class));
+        final LikeJournalConsumer consumer = mongoTemplate.findById(CONSUMER_ID, LikeJournalConsumer.class);
+        final Optional<ObjectId> checkpoint = Optional.ofNullable(consumer)
+            .map(LikeJournalConsumer::getLastEventId)
+            .map(ObjectId::new);
+
+        if (!checkpoint.isPresent()) {
+            return tailJournal(journal, new Document());
+        }
+        if (journal.countDocuments(Filters.eq(ID_FIELD, checkpoint.get())) == 0) {
+            log.warn("The last folded like event is no longer in the journal, replaying the whole journal");
+            return tailJournal(journal, new Document());
+        }
+
+        // The journal is ordered by insertion, not by id, so the events are skipped
+        // until the last folded one is found
+        final MongoCursor<Document> cursor = tailJournal(journal, Filters.gte(TIMESTAMP_FIELD,
+            consumer.getLastEventTimestamp() - likeJournalProperties.getCheckpointMargin()));
+        Document document;
+        while (running && (document = cursor.tryNext()) != null) {
+            if (checkpoint.get().equals(document.getObjectId(ID_FIELD))) {
+                return cursor;
+            }
+        }
+
+        log.warn("The last folded like event was not found in the journal, continuing from its end");
+
+        return cursor;
+    }
+
+    /**
+     * Opens a tailable cursor on the events of the journal that match a filter
+     * 
+     * @param journal
+     *            The journal
+     * @param filter
+     *            The filter
+     * @return The cursor
+     */
+    private MongoCursor<Document> tailJournal(final MongoCollection<Document> journal, final Bson filter) {
+        return journal.find(filter)
+            .cursorType(CursorType.TailableAwait)
+            .maxAwaitTime(likeJournalProperties.getMaxAwaitTime(), TimeUnit.MILLISECONDS)
+            .batchSize(likeJournalProperties.getBatchSize())
+            .iterator();
+    }
+
+    /**
+     * Creates the journal as a capped collection, if it doesn't exist
+     */
+    private void createJournal() {
+        try {
+            if (!mongoTemplate.collectionExists(LikeEvent.class)) {
+                mongoTemplate.createCollection(LikeEvent.class,
+                    CollectionOptions.empty().capped().size(likeJournalProperties.getCollectionSize()));
+            }
+        }
+        catch (final Exception ex) {
+            // Another node may have created the journal in the meantime
+            log.warn("The like journal could not be created: " + ex.getMessage());
+        }
+    }
+
+    /**
+     * Stores the position of the last folded event, if this node still holds the
+     * lease
+     * 
+     * @param event
+     *            The event
+     * @return True if the position was stored, or false if another node holds the
+     *         lease
+     */
+    private boolean saveCheckpoint(final LikeEvent event) {
+        final Update update = new Update()
+            .set(LAST_EVENT_ID_FIELD, event.getId())
+            .set(LAST_EVENT_TIMESTAMP_FIELD, event.getTimestamp());
+        final UpdateResult updateResult = mongoTemplate.updateFirst(ownerQuery(), update,
+            LikeJournalConsumer.class);
+
+        return updateResult != null && updateResult.getMatchedCount() > 0;
+    }
+
+    /**
+     * Returns the query that matches the consumer while this node holds its lease
+     * 
+     * @return The query
+     */
+    private Query ownerQuery() {
+        return new Query(Criteria.where(ID_FIELD).is(CONSUMER_ID).and(OWNER_FIELD).is(nodeId));
+    }
+
+    /**
+     * Pauses the current thread
+     * 
+     * @param millis
+     *            The pause duration in milliseconds
+     */
+    private void sleep(final long millis) {
+        try {
+            Thread.sleep(millis);
+        }
+        catch (final InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            running = false;
+        }
+    }
+}
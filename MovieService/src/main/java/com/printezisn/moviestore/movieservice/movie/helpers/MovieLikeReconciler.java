@@ -0,0 +1,116 @@
+package com.printezisn.moviestore.movieservice.movie.helpers;
+
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import org.springframework.stereotype.Component;
+
+import com.printezisn.moviestore.movieservice.configuration.properties.LikeReconciliationProperties;
+import com.printezisn.moviestore.movieservice.movie.entities.Movie;
+import com.printezisn.moviestore.movieservice.movie.repositories.MovieLikeRepository;
+import com.printezisn.moviestore.movieservice.movie.repositories.MovieRepository;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Component that corrects the drift between the total likes of the movies and
+ * their movie likes. Each run checks a single chunk of movies, and the next run
+ * continues with the next chunk, so the whole collection is checked gradually.
+ */
+@Component
+@Slf4j
+public class MovieLikeReconciler {
+
+    private final MovieRepository movieRepository;
+    private final MovieLikeRepository movieLikeRepository;
+    private final LikeReconciliationProperties likeReconciliationProperties;
+    private final MovieCache movieCache;
+    private final Counter checkedCounter;
+    private final Counter correctedCounter;
+    private final Counter driftCounter;
+
+    private volatile String lastMovieId;
+
+    /**
+     * The constructor
+     * 
+     * @param movieRepository
+     *            The movie repository
+     * @param movieLikeRepository
+     *            The movie like repository
+     * @param likeReconciliationProperties
+     *            The properties of the reconciliation
+     * @param movieCache
+     *            The cache of movies
+     * @param meterRegistry
+     *            The registry of the reconciliation metrics
+     */
+    public MovieLikeReconciler(final MovieRepository movieRepository, final MovieLikeRepository movieLikeRepository,
+        final LikeReconciliationProperties likeReconciliationProperties, final MovieCache movieCache,
+        final MeterRegistry meterRegistry) {
+
+        this.movieRepository = movieRepository;
+        this.movieLikeRepository = movieLikeRepository;
+        this.likeReconciliationProperties = likeReconciliationProperties;
+        this.movieCache = movieCache;
+
+        this.checkedCounter = Counter.builder("movies.likes.reconciliation.checked")
+            .description("The number of movies whose total likes were checked")
+            .register(meterRegistry);
+        this.correctedCounter = Counter.builder("movies.likes.reconciliation.corrected")
+            .description("The number of movies whose total likes were corrected")
+            .register(meterRegistry);
+        this.driftCounter = Counter.builder("movies.likes.reconciliation.drift")
+            .description("The sum of the absolute differences that were corrected")
+            .register(meterRegistry);
+    }
+
+    /**
+     * Checks the next chunk of movies and corrects their total likes if they
+     * differ from the number of their movie likes. Movies with pending likes are
+     * skipped, because their total likes are about to change.
+     * 
+     * @return The sum of the absolute differences that were corrected
+     */
+    public long reconcile() {
+        final List<Movie> movies = movieRepository.findLikeCountsAfter(lastMovieId,
+            likeReconciliationProperties.getChunkSize());
+
+        // Starts over from the first movie after the last chunk
+        lastMovieId = movies.size() < likeReconciliationProperties.getChunkSize()
+            ? null
+            : movies.get(movies.size() - 1).getId();
+        if (movies.isEmpty()) {
+            return 0;
+        }
+
+        final Map<String, Long> likeCounts = movieLikeRepository.countByMovieIds(movies.stream()
+            .map(Movie::getId)
+            .collect(Collectors.toList()));
+        long drift = 0;
+
+        for (final Movie movie : movies) {
+            final long totalLikes = likeCounts.getOrDefault(movie.getId(), 0L);
+            if (movie.isUpdated() || movie.getTotalLikes() == totalLikes) {
+                continue;
+            }
+
+            if (movieRepository.correctTotalLikes(movie, totalLikes) > 0) {
+                movieCache.invalidate(movie.getId());
+                log.warn(String.format("Corrected the total likes of movie %s from %d to %d", movie.getId(),
+                    movie.getTotalLikes(), totalLikes));
+
+                correctedCounter.increment();
+                drift += Math.abs(totalLikes - movie.getTotalLikes());
+            }
+        }
+
+        checkedCounter.increment(movies.size());
+        driftCounter.increment(drift);
+
+        return drift;
+    }
+}
@@ -0,0 +1,174 @@
+package com.printezisn.moviestore.movieservice.movie.helpers;
+
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.springframework.stereotype.Component;
+
+import com.printezisn.moviestore.movieservice.configuration.properties.MoviePurgeProperties;
+import com.printezisn.moviestore.movieservice.movie.entities.Movie;
+import com.printezisn.moviestore.movieservice.movie.repositories.MovieLikeRepository;
+import com.printezisn.moviestore.movieservice.movie.repositories.MovieRepository;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Component that purges deleted movies in the background. A deleted movie is
+ * kept as a tombstone after it's removed from the search index, and the purger
+ * deletes its likes in batches, throttled to a maximum rate so that the
+ * database isn't overloaded, before it deletes the movie itself. The number of
+ * purged likes is recorded on the tombstone after every batch, and an
+ * interrupted purge continues from the remaining likes on the next run.
+ */
+@Component
+@Slf4j
+public class MoviePurger {
+
+    private final MovieRepository movieRepository;
+    private final MovieLikeRepository movieLikeRepository;
+    private final MoviePurgeProperties moviePurgeProperties;
+    private final Counter purgedMoviesCounter;
+    private final Counter purgedLikesCounter;
+
+    private final AtomicInteger pendingMovies = new AtomicInteger();
+    private final ScheduledExecutorService executorService = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        final Thread thread = new Thread(runnable, "movie-purger");
+        thread.setDaemon(true);
+
+        return thread;
+    });
+
+    /**
+     * The constructor
+     * 
+     * @param movieRepository
+     *            The movie repository
+     * @param movieLikeRepository
+     *            The movie like repository
+     * @param moviePurgeProperties
+     *            The properties of the purge
+     * @param meterRegistry
+     *            The registry of the purge metrics
+     */
+    public MoviePurger(final MovieRepository movieRepository, final MovieLikeRepository movieLikeRepository,
+        final MoviePurgeProperties moviePurgeProperties, final MeterRegistry meterRegistry) {
+
+        this.movieRepository = movieRepository;
+        this.movieLikeRepository = movieLikeRepository;
+        this.moviePurgeProperties = moviePurgeProperties;
+
+        this.purgedMoviesCounter = Counter.builder("movies.purge.movies")
+            .description("The number of deleted movies that were purged")
+            .register(meterRegistry);
+        this.purgedLikesCounter = Counter.builder("movies.purge.likes")
+            .description("The number of likes of deleted movies that were purged")
+            .register(meterRegistry);
+        Gauge.builder("movies.purge.pending", pendingMovies, AtomicInteger::get)
+            .description("The number of deleted movies found waiting to be purged by the last run")
+            .register(meterRegistry);
+    }
+
+    /**
+     * Starts the periodic purge
+     */
+    @PostConstruct
+    public void start() {
+        final long delay = moviePurgeProperties.getFixedDelay();
+        executorService.scheduleWithFixedDelay(this::run, delay, delay, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops the purge. A purge in progress is interrupted and continues on the
+     * next startup.
+     */
+    @PreDestroy
+    public void stop() {
+        executorService.shutdownNow();
+        try {
+            executorService.awaitTermination(1, TimeUnit.MINUTES);
+        }
+        catch (final InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Purges the next deleted movies and their likes
+     * 
+     * @return The number of movies purged
+     * @throws InterruptedException
+     *             Exception thrown if the purge is interrupted while throttled
+     */
+    public int purge() throws InterruptedException {
+        final List<Movie> movies = movieRepository.findPurgeableMovies(moviePurgeProperties.getMoviesPerRun());
+        pendingMovies.set(movies.size());
+
+        int purgedMovies = 0;
+        for (final Movie movie : movies) {
+            purgeLikes(movie);
+
+            movieRepository.deletePurgeableMovie(movie.getId());
+            purgedMoviesCounter.increment();
+            pendingMovies.decrementAndGet();
+            purgedMovies++;
+
+            log.info(String.format("Purged deleted movie %s with %d likes", movie.getId(), movie.getPurgedLikes()));
+        }
+
+        return purgedMovies;
+    }
+
+    /**
+     * Deletes the likes of a deleted movie in batches, waiting after every batch
+     * as long as needed to stay under the maximum rate. A maximum rate of zero or
+     * less disables the throttling.
+     * 
+     * @param movie
+     *            The movie
+     * @throws InterruptedException
+     *             Exception thrown if the purge is interrupted while throttled
+     */
+    private void purgeLikes(final Movie movie) throws InterruptedException {
+        while (true) {
+            final long deletedLikes = movieLikeRepository.deleteBatchByMovieId(movie.getId(),
+                moviePurgeProperties.getBatchSize());
+            if (deletedLikes == 0) {
+                return;
+            }
+
+            movieRepository.incrementPurgedLikes(movie.getId(), deletedLikes);
+            movie.setPurgedLikes(movie.getPurgedLikes() + deletedLikes);
+            purgedLikesCounter.increment(deletedLikes);
+            log.debug(String.format("Purged %d likes of deleted movie %s", movie.getPurgedLikes(), movie.getId()));
+
+            if (moviePurgeProperties.getMaxLikesPerSecond() > 0) {
+                Thread.sleep(deletedLikes * 1000 / moviePurgeProperties.getMaxLikesPerSecond());
+            }
+        }
+    }
+
+    /**
+     * Runs the purge and logs any error, so that the next runs are still
+     * scheduled
+     */
+    private void run() {
+        try {
+            purge();
+        }
+        catch (final InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        catch (final Exception ex) {
+            log.error(String.format("An error occured while purging deleted movies: %s", ex.getMessage()), ex);
+        }
+    }
+}
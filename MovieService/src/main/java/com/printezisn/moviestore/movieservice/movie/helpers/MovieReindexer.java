@@ -0,0 +1,425 @@
+package com.printezisn.moviestore.movieservice.movie.helpers;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.PreDestroy;
+
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.util.CloseableIterator;
+import org.springframework.stereotype.Component;
+
+import com.printezisn.moviestore.common.dto.movie.MovieReindexStatusDto;
+import com.printezisn.moviestore.movieservice.configuration.properties.ReindexProperties;
+import com.printezisn.moviestore.movieservice.movie.entities.Movie;
+import com.printezisn.moviestore.movieservice.movie.entities.ReindexJob;
+import com.printezisn.moviestore.movieservice.movie.entities.ReindexJob.Partition;
+import com.printezisn.moviestore.movieservice.movie.entities.ReindexJob.Status;
+import com.printezisn.moviestore.movieservice.movie.exceptions.MovieConditionalException;
+import com.printezisn.moviestore.movieservice.movie.exceptions.MovieNotFoundException;
+import com.printezisn.moviestore.movieservice.movie.exceptions.MoviePersistenceException;
+import com.printezisn.moviestore.movieservice.movie.repositories.MovieRepository;
+import com.printezisn.moviestore.movieservice.movie.repositories.ReindexJobRepository;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Component that rebuilds the search index from the database on demand. The
+ * movies are split into ranges of ids, which are read in parallel and copied
+ * to a fresh index with bulk requests, while every node writes to the fresh
+ * index as well. When all the ranges are copied, the alias is moved to the
+ * fresh index. The last copied movie of each range is recorded after every
+ * batch, so a reindex that is cancelled, fails or is interrupted by a restart
+ * can resume where it stopped. A reindex runs on the node that started it.
+ */
+@Component
+@Profile("!embedded-search")
+@Slf4j
+public class MovieReindexer {
+
+    private static final int MAX_PARTITIONS = 256;
+
+    private final MovieRepository movieRepository;
+    private final ReindexJobRepository reindexJobRepository;
+    private final MovieIndexManager movieIndexManager;
+    private final ReindexProperties reindexProperties;
+    private final Counter copiedCounter;
+    private final ExecutorService executorService;
+
+    private ReindexJob job;
+    private volatile boolean running;
+    private volatile boolean cancelled;
+    private long runStartTimestamp;
+    private long runStartCopied;
+
+    /**
+     * The constructor
+     * 
+     * @param movieRepository
+     *            The movie repository
+     * @param reindexJobRepository
+     *            The repository of the reindexes
+     * @param movieIndexManager
+     *            The manager of the search indices
+     * @param reindexProperties
+     *            The properties of the reindex
+     * @param meterRegistry
+     *            The registry of the reindex metrics
+     */
+    public MovieReindexer(final MovieRepository movieRepository, final ReindexJobRepository reindexJobRepository,
+        final MovieIndexManager movieIndexManager, final ReindexProperties reindexProperties,
+        final MeterRegistry meterRegistry) {
+
+        this.movieRepository = movieRepository;
+        this.reindexJobRepository = reindexJobRepository;
+        this.movieIndexManager = movieIndexManager;
+        this.reindexProperties = reindexProperties;
+
+        this.copiedCounter = Counter.builder("movies.reindex.copied")
+            .description("The number of movies copied to the search index by full reindexes")
+            .register(meterRegistry);
+
+        final AtomicInteger threadNumber = new AtomicInteger();
+        this.executorService = Executors.newFixedThreadPool(Math.max(reindexProperties.getThreads(), 1),
+            runnable -> {
+                final Thread thread = new Thread(runnable, "movie-reindexer-" + threadNumber.incrementAndGet());
+                thread.setDaemon(true);
+
+                return thread;
+            });
+    }
+
+    /**
+     * Stops the reindex in progress, which can resume after the next startup
+     */
+    @PreDestroy
+    public void stop() {
+        cancelled = true;
+        executorService.shutdownNow();
+        try {
+            executorService.awaitTermination(1, TimeUnit.MINUTES);
+        }
+        catch (final InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Starts a full reindex. The fresh index of an unfinished previous reindex is
+     * deleted.
+     * 
+     * @return The progress of the reindex
+     * @throws MovieConditionalException
+     *             Exception thrown if a reindex is already running
+     */
+    public synchronized MovieReindexStatusDto start() throws MovieConditionalException {
+        if (running) {
+            throw new MovieConditionalException("A reindex is already running");
+        }
+
+        reindexJobRepository.findFirstByOrderByCreationTimestampDesc()
+            .filter(lastJob -> lastJob.getStatus() != Status.COMPLETED && lastJob.getIndexName() != null)
+            .ifPresent(lastJob -> movieIndexManager.deleteBuildingIndex(lastJob.getIndexName()));
+
+        final long now = Instant.now().toEpochMilli();
+        final ReindexJob newJob = new ReindexJob();
+        newJob.setId(UUID.randomUUID().toString());
+        newJob.setStatus(Status.RUNNING);
+        newJob.setTotal(movieRepository.countActiveMovies());
+        newJob.setPartitions(createPartitions());
+        newJob.setCreationTimestamp(now);
+        newJob.setUpdateTimestamp(now);
+
+        job = reindexJobRepository.save(newJob);
+        run(true);
+        log.info(String.format("Started reindex %s of %d movies", job.getId(), job.getTotal()));
+
+        return toStatus(job);
+    }
+
+    /**
+     * Resumes the most recent reindex, if it didn't complete
+     * 
+     * @return The progress of the reindex
+     * @throws MovieNotFoundException
+     *             Exception thrown if there is no reindex to resume
+     * @throws MovieConditionalException
+     *             Exception thrown if a reindex is already running
+     */
+    public synchronized MovieReindexStatusDto resume() throws MovieNotFoundException, MovieConditionalException {
+        if (running) {
+            throw new MovieConditionalException("A reindex is already running");
+        }
+
+        final ReindexJob lastJob = reindexJobRepository.findFirstByOrderByCreationTimestampDesc()
+            .filter(candidate -> candidate.getStatus() != Status.COMPLETED && candidate.getIndexName() != null)
+            .orElseThrow(() -> new MovieNotFoundException("There is no reindex to resume"));
+
+        lastJob.setStatus(Status.RUNNING);
+        lastJob.setError(null);
+        lastJob.setUpdateTimestamp(Instant.now().toEpochMilli());
+
+        job = reindexJobRepository.save(lastJob);
+        run(false);
+        log.info(String.format("Resumed reindex %s at %d of %d movies", job.getId(), job.getCopied(),
+            job.getTotal()));
+
+        return toStatus(job);
+    }
+
+    /**
+     * Cancels the reindex in progress. The workers stop after their current
+     * batch, and the reindex can be resumed later.
+     * 
+     * @return The progress of the reindex
+     * @throws MovieConditionalException
+     *             Exception thrown if no reindex is running
+     */
+    public synchronized MovieReindexStatusDto cancel() throws MovieConditionalException {
+        if (!running) {
+            throw new MovieConditionalException("No reindex is running");
+        }
+
+        cancelled = true;
+        log.info(String.format("Cancelling reindex %s", job.getId()));
+
+        return toStatus(job);
+    }
+
+    /**
+     * Returns the progress of the most recent reindex
+     * 
+     * @return The progress, or empty if there was never a reindex
+     */
+    public synchronized Optional<MovieReindexStatusDto> getStatus() {
+        if (job == null) {
+            return reindexJobRepository.findFirstByOrderByCreationTimestampDesc().map(this::toStatus);
+        }
+
+        return Optional.of(toStatus(job));
+    }
+
+    /**
+     * Splits the ids of the movies into ranges by their first hexadecimal digits
+     * 
+     * @return The ranges
+     */
+    private List<Partition> createPartitions() {
+        final int count = Math.min(Math.max(reindexProperties.getPartitions(), 1), MAX_PARTITIONS);
+        final List<Partition> partitions = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            final Partition partition = new Partition();
+            partition.setFromId((i > 0) ? String.format("%02x", i * MAX_PARTITIONS / count) : null);
+            partition.setToId((i < count - 1) ? String.format("%02x", (i + 1) * MAX_PARTITIONS / count) : null);
+            partitions.add(partition);
+        }
+
+        return partitions;
+    }
+
+    /**
+     * Copies the ranges that are not done in parallel and completes the reindex
+     * in the background
+     * 
+     * @param create
+     *            Indicates if the fresh index is created, or if it already exists
+     */
+    private void run(final boolean create) {
+        final ReindexJob currentJob = job;
+        running = true;
+        cancelled = false;
+        runStartTimestamp = Instant.now().toEpochMilli();
+        runStartCopied = currentJob.getCopied();
+
+        CompletableFuture.runAsync(() -> prepare(currentJob, create), executorService)
+            .thenCompose(result -> CompletableFuture.allOf(currentJob.getPartitions().stream()
+                .filter(partition -> !partition.isDone())
+                .map(partition -> CompletableFuture.runAsync(() -> copy(currentJob, partition), executorService))
+                .toArray(CompletableFuture[]::new)))
+            .whenComplete((result, ex) -> finish(currentJob, ex));
+    }
+
+    /**
+     * Creates the fresh index of a new reindex, or makes sure that the fresh index
+     * of a resumed reindex still exists
+     * 
+     * @param currentJob
+     *            The reindex
+     * @param create
+     *            Indicates if the fresh index is created
+     */
+    private void prepare(final ReindexJob currentJob, final boolean create) {
+        if (!create) {
+            movieIndexManager.resumeBuildingIndex(currentJob.getIndexName());
+            return;
+        }
+
+        try {
+            final String indexName = movieIndexManager.createBuildingIndex();
+            synchronized (this) {
+                currentJob.setIndexName(indexName);
+                reindexJobRepository.save(currentJob);
+            }
+        }
+        catch (final InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new MoviePersistenceException("The reindex was interrupted", ex);
+        }
+    }
+
+    /**
+     * Copies a range of movies to the fresh index in batches, starting after the
+     * last copied movie of the range
+     * 
+     * @param currentJob
+     *            The reindex
+     * @param partition
+     *            The range
+     */
+    private void copy(final ReindexJob currentJob, final Partition partition) {
+        final int batchSize = reindexProperties.getBatchSize();
+        final boolean resumed = partition.getLastId() != null;
+
+        try (final CloseableIterator<Movie> movies = movieRepository.streamActiveMovieRange(
+            resumed ? partition.getLastId() : partition.getFromId(), !resumed, partition.getToId(), batchSize)) {
+
+            final List<Movie> batch = new ArrayList<>(batchSize);
+            while (!cancelled && movies.hasNext()) {
+                batch.add(movies.next());
+                if (batch.size() >= batchSize || !movies.hasNext()) {
+                    movieIndexManager.createDocuments(currentJob.getIndexName(), batch);
+                    checkpoint(currentJob, partition, batch.get(batch.size() - 1).getId(), batch.size());
+                    batch.clear();
+                }
+            }
+        }
+
+        if (!cancelled) {
+            checkpoint(currentJob, partition, partition.getLastId(), 0);
+        }
+    }
+
+    /**
+     * Records the progress of a range after a batch is copied. A range is done
+     * when it's recorded without a batch.
+     * 
+     * @param currentJob
+     *            The reindex
+     * @param partition
+     *            The range
+     * @param lastId
+     *            The id of the last copied movie
+     * @param count
+     *            The number of movies of the batch
+     */
+    private synchronized void checkpoint(final ReindexJob currentJob, final Partition partition,
+        final String lastId, final int count) {
+
+        partition.setLastId(lastId);
+        partition.setCopied(partition.getCopied() + count);
+        partition.setDone(count == 0);
+        currentJob.setCopied(currentJob.getCopied() + count);
+        currentJob.setUpdateTimestamp(Instant.now().toEpochMilli());
+        reindexJobRepository.save(currentJob);
+
+        copiedCounter.increment(count);
+    }
+
+    /**
+     * Moves the alias to the fresh index if all the ranges were copied, and
+     * records the outcome of the reindex. The fresh index of a cancelled or
+     * failed reindex is released, so it's deleted unless the reindex is resumed
+     * within the rebuild timeout.
+     * 
+     * @param currentJob
+     *            The reindex
+     * @param error
+     *            The error of the reindex, or null if it didn't fail
+     */
+    private synchronized void finish(final ReindexJob currentJob, final Throwable error) {
+        Throwable cause = (error instanceof CompletionException && error.getCause() != null) ? error.getCause()
+            : error;
+        if (cause == null && !cancelled) {
+            try {
+                movieIndexManager.completeBuildingIndex(currentJob.getIndexName());
+            }
+            catch (final Exception ex) {
+                cause = ex;
+            }
+        }
+
+        if ((cause != null || cancelled) && currentJob.getIndexName() != null) {
+            movieIndexManager.releaseBuildingIndex(currentJob.getIndexName());
+        }
+
+        if (cause != null) {
+            log.error(String.format("Reindex %s failed: %s", currentJob.getId(), cause.getMessage()), cause);
+            currentJob.setStatus(Status.FAILED);
+            currentJob.setError(cause.getMessage());
+        }
+        else if (cancelled) {
+            log.info(String.format("Reindex %s was cancelled at %d of %d movies", currentJob.getId(),
+                currentJob.getCopied(), currentJob.getTotal()));
+            currentJob.setStatus(Status.CANCELLED);
+        }
+        else {
+            log.info(String.format("Reindex %s copied %d movies", currentJob.getId(), currentJob.getCopied()));
+            currentJob.setStatus(Status.COMPLETED);
+        }
+        currentJob.setUpdateTimestamp(Instant.now().toEpochMilli());
+        running = false;
+
+        try {
+            reindexJobRepository.save(currentJob);
+        }
+        catch (final Exception ex) {
+            log.error(String.format("An error occured while saving reindex %s: %s", currentJob.getId(),
+                ex.getMessage()), ex);
+        }
+    }
+
+    /**
+     * Converts a reindex to its progress. The rate is measured since the reindex
+     * was started or resumed on this node, and the remaining time is estimated
+     * from the rate while the reindex runs.
+     * 
+     * @param reindexJob
+     *            The reindex
+     * @return The progress
+     */
+    private MovieReindexStatusDto toStatus(final ReindexJob reindexJob) {
+        final MovieReindexStatusDto status = new MovieReindexStatusDto();
+        status.setId(reindexJob.getId());
+        status.setStatus(reindexJob.getStatus().name());
+        status.setIndexName(reindexJob.getIndexName());
+        status.setTotal(reindexJob.getTotal());
+        status.setCopied(reindexJob.getCopied());
+        status.setCreationTimestamp(Instant.ofEpochMilli(reindexJob.getCreationTimestamp()));
+        status.setUpdateTimestamp(Instant.ofEpochMilli(reindexJob.getUpdateTimestamp()));
+        status.setError(reindexJob.getError());
+
+        if (reindexJob == job) {
+            final long end = running ? Instant.now().toEpochMilli() : reindexJob.getUpdateTimestamp();
+            final double seconds = (end - runStartTimestamp) / 1000.0;
+            final double rate = (seconds > 0) ? (reindexJob.getCopied() - runStartCopied) / seconds : 0;
+            status.setDocumentsPerSecond(rate);
+            if (running && rate > 0) {
+                status.setEtaSeconds((long) Math.ceil(Math.max(reindexJob.getTotal() - reindexJob.getCopied(), 0)
+                    / rate));
+            }
+        }
+
+        return status;
+    }
+}
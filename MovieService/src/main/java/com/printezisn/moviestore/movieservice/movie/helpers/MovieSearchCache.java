@@ -0,0 +1,345 @@
+package com.printezisn.moviestore.movieservice.movie.helpers;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import org.springframework.stereotype.Component;
+
+import com.printezisn.moviestore.common.dto.movie.MovieFacetBucketDto;
+import com.printezisn.moviestore.common.models.movie.MoviePagedResultModel;
+import com.printezisn.moviestore.movieservice.configuration.properties.SearchCacheProperties;
+import com.printezisn.moviestore.movieservice.movie.entities.MovieIndex;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.AllArgsConstructor;
+import lombok.Value;
+
+/**
+ * Component that caches search results in memory. The cache is bounded by size
+ * and by time, and it's invalidated every time the search index is written with
+ * a change that searches can see, by bumping its generation. Writes that only
+ * change the total likes of movies whose content is known don't invalidate it,
+ * so the total likes of cached results may be stale for up to the time to live.
+ * Results that are loaded while the last invalidating write may not be
+ * searchable yet are not cached. The facets of every search are also cached
+ * by the text and the filters, which they only depend on, so they are
+ * aggregated once for all the pages and sortings of a search. Degraded results
+ * are not cached, so that the search index serves them again once it recovers.
+ */
+@Component
+public class MovieSearchCache {
+
+    private final SearchCacheProperties searchCacheProperties;
+    private final Map<SearchKey, CachedResult<MoviePagedResultModel>> entries;
+    private final Map<FacetKey, CachedResult<Map<String, List<MovieFacetBucketDto>>>> facetEntries;
+    private final Map<String, MovieContent> indexedContents;
+    private final AtomicLong generation = new AtomicLong();
+    private final Counter hitCounter;
+    private final Counter missCounter;
+    private final Counter evictionCounter;
+
+    private volatile long lastInvalidation;
+
+    /**
+     * The key of a cached search
+     */
+    @Value
+    private static class SearchKey {
+        private final String text;
+        private final int pageNumber;
+        private final int pageSize;
+        private final String sortField;
+        private final boolean isAscending;
+        private final String cursor;
+        private final Set<MovieSearchFilter> filters;
+        private final Set<String> fields;
+        private final boolean withFacets;
+        private final boolean countTotal;
+    }
+
+    /**
+     * The key of the cached facets of a search
+     */
+    @Value
+    private static class FacetKey {
+        private final String text;
+        private final Set<MovieSearchFilter> filters;
+    }
+
+    /**
+     * The fields of an indexed movie that searches match, filter or sort by,
+     * except for the total likes
+     */
+    @Value
+    private static class MovieContent {
+        private final String title;
+        private final String description;
+        private final double rating;
+        private final int releaseYear;
+        private final String creator;
+    }
+
+    /**
+     * A cached search result
+     * 
+     * @param <T>
+     *            The type of the result
+     */
+    @AllArgsConstructor
+    private static class CachedResult<T> {
+        private final T result;
+        private final long generation;
+        private final long expiration;
+    }
+
+    /**
+     * The constructor
+     * 
+     * @param searchCacheProperties
+     *            The properties of the cache
+     * @param meterRegistry
+     *            The registry of the cache metrics
+     */
+    public MovieSearchCache(final SearchCacheProperties searchCacheProperties, final MeterRegistry meterRegistry) {
+        this.searchCacheProperties = searchCacheProperties;
+        this.entries = createEntries();
+        this.facetEntries = createEntries();
+        this.indexedContents = new LinkedHashMap<String, MovieContent>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<String, MovieContent> eldest) {
+                return size() > searchCacheProperties.getMaxIndexedMovies();
+            }
+        };
+
+        this.hitCounter = Counter.builder("movies.search.cache.hits")
+            .description("The number of searches that were served from the cache")
+            .register(meterRegistry);
+        this.missCounter = Counter.builder("movies.search.cache.misses")
+            .description("The number of searches that were sent to the search index")
+            .register(meterRegistry);
+        this.evictionCounter = Counter.builder("movies.search.cache.evictions")
+            .description("The number of cached searches that were evicted to respect the size limit")
+            .register(meterRegistry);
+        Gauge.builder("movies.search.cache.size", this, MovieSearchCache::getSize)
+            .description("The number of cached searches")
+            .register(meterRegistry);
+    }
+
+    /**
+     * Returns the cached result of a search, or runs the search and caches its
+     * result
+     * 
+     * @param text
+     *            The search text
+     * @param pageNumber
+     *            The page number
+     * @param pageSize
+     *            The page size
+     * @param sortField
+     *            The sort field
+     * @param isAscending
+     *            Indicates if the sorting is ascending or descending
+     * @param cursor
+     *            The cursor of the page
+     * @param filters
+     *            The filters of the search
+     * @param fields
+     *            The fields of the movies of the result
+     * @param withFacets
+     *            Indicates if the result has facets
+     * @param countTotal
+     *            Indicates if the result has the total of the matching movies
+     * @param search
+     *            The search to run if there is no cached result
+     * @return The result of the search
+     */
+    public MoviePagedResultModel get(final Optional<String> text, final int pageNumber, final int pageSize,
+        final String sortField, final boolean isAscending, final Optional<String> cursor,
+        final Set<MovieSearchFilter> filters, final Set<String> fields, final boolean withFacets,
+        final boolean countTotal, final Supplier<MoviePagedResultModel> search) {
+
+        if (!searchCacheProperties.isEnabled()) {
+            return search.get();
+        }
+
+        final SearchKey key = new SearchKey(normalize(text), pageNumber, pageSize, sortField, isAscending,
+            cursor.orElse(null), filters, fields, withFacets, countTotal);
+        final long currentGeneration = generation.get();
+        final long now = Instant.now().toEpochMilli();
+
+        synchronized (entries) {
+            final CachedResult<MoviePagedResultModel> cachedResult = entries.get(key);
+            if (isValid(cachedResult, currentGeneration, now)) {
+                hitCounter.increment();
+                return cachedResult.result;
+            }
+        }
+
+        missCounter.increment();
+        final MoviePagedResultModel result = search.get();
+
+        // The result isn't cached if the index was written during the search, if the
+        // last write may not be visible to searches yet, or if it was served by the
+        // fallback of the search index
+        if (now >= lastInvalidation + searchCacheProperties.getRefreshDelay() && !result.isDegraded()) {
+            synchronized (entries) {
+                if (generation.get() == currentGeneration) {
+                    final long expiration = now + searchCacheProperties.getTimeToLive();
+                    entries.put(key, new CachedResult<>(result, currentGeneration, expiration));
+                    if (result.getFacets() != null) {
+                        facetEntries.put(new FacetKey(key.getText(), filters),
+                            new CachedResult<>(result.getFacets(), currentGeneration, expiration));
+                    }
+                }
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the cached facets of a search. The facets are cached along with
+     * every search result that has them.
+     * 
+     * @param text
+     *            The search text
+     * @param filters
+     *            The filters of the search
+     * @return The facets, or null if they are not cached
+     */
+    public Map<String, List<MovieFacetBucketDto>> getFacets(final Optional<String> text,
+        final Set<MovieSearchFilter> filters) {
+
+        if (!searchCacheProperties.isEnabled()) {
+            return null;
+        }
+
+        synchronized (entries) {
+            final CachedResult<Map<String, List<MovieFacetBucketDto>>> cachedResult = facetEntries.get(
+                new FacetKey(normalize(text), filters));
+
+            return isValid(cachedResult, generation.get(), Instant.now().toEpochMilli())
+                ? cachedResult.result
+                : null;
+        }
+    }
+
+    /**
+     * Invalidates all the cached results after movies are written to the search
+     * index, unless the writes only changed the total likes of the movies. The
+     * content of the most recently written movies is kept, and a movie whose
+     * previous content isn't known is considered changed.
+     * 
+     * @param movies
+     *            The movies that were indexed
+     * @param deletedIds
+     *            The ids of the movies that were removed from the index
+     */
+    public void invalidate(final Collection<MovieIndex> movies, final Collection<String> deletedIds) {
+        synchronized (entries) {
+            boolean changed = !deletedIds.isEmpty();
+            deletedIds.forEach(indexedContents::remove);
+            for (final MovieIndex movie : movies) {
+                final MovieContent content = new MovieContent(movie.getTitle(), movie.getDescription(),
+                    movie.getRating(), movie.getReleaseYear(), movie.getCreator());
+                if (!content.equals(indexedContents.put(movie.getId(), content))) {
+                    changed = true;
+                }
+            }
+
+            if (changed) {
+                invalidate();
+            }
+        }
+    }
+
+    /**
+     * Invalidates all the cached results. It's called when the changes to the
+     * search index are not known, e.g. when a write fails.
+     */
+    public void invalidate() {
+        synchronized (entries) {
+            lastInvalidation = Instant.now().toEpochMilli();
+            generation.incrementAndGet();
+            entries.clear();
+            facetEntries.clear();
+        }
+    }
+
+    /**
+     * Returns the number of cached results
+     * 
+     * @return The number of cached results
+     */
+    public int getSize() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    /**
+     * Creates a map of cached results, which evicts the least recently used
+     * result when it exceeds the size limit
+     * 
+     * @param <K>
+     *            The type of the keys
+     * @param <T>
+     *            The type of the results
+     * @return The map
+     */
+    private <K, T> Map<K, CachedResult<T>> createEntries() {
+        return new LinkedHashMap<K, CachedResult<T>>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<K, CachedResult<T>> eldest) {
+                if (size() <= searchCacheProperties.getMaxEntries()) {
+                    return false;
+                }
+
+                evictionCounter.increment();
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Indicates if a cached result can be used
+     * 
+     * @param cachedResult
+     *            The cached result, or null if there is none
+     * @param currentGeneration
+     *            The current generation of the cache
+     * @param now
+     *            The current time in milliseconds
+     * @return True if the result belongs to the current generation and hasn't
+     *         expired, otherwise false
+     */
+    private boolean isValid(final CachedResult<?> cachedResult, final long currentGeneration, final long now) {
+        return cachedResult != null && cachedResult.generation == currentGeneration && cachedResult.expiration > now;
+    }
+
+    /**
+     * Normalizes the search text, so that equivalent searches share the same
+     * cached result
+     * 
+     * @param text
+     *            The search text
+     * @return The normalized text
+     */
+    private String normalize(final Optional<String> text) {
+        return text.map(value -> value.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT)).orElse("");
+    }
+}
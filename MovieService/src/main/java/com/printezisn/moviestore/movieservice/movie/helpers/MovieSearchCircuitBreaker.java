@@ -0,0 +1,215 @@
+package com.printezisn.moviestore.movieservice.movie.helpers;
+
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.springframework.stereotype.Component;
+
+import com.printezisn.moviestore.movieservice.configuration.properties.SearchFallbackProperties;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Circuit breaker that tracks the health of the search index and sends the
+ * searches to a fallback while the index is unavailable. Failed searches and
+ * searches slower than a threshold count as failures. After a number of
+ * consecutive failures the circuit opens and every search goes to the fallback,
+ * so that the searches don't wait for the index. When the circuit has been open
+ * for a while, a single search is sent to the index as a probe, and the circuit
+ * closes again if it succeeds in time. A search only counts if the circuit
+ * hasn't changed state since the search was let through.
+ */
+@Component
+@Slf4j
+public class MovieSearchCircuitBreaker {
+
+    /**
+     * The states of the circuit
+     */
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final SearchFallbackProperties searchFallbackProperties;
+    private final Counter fallbackCounter;
+    private final Counter failureCounter;
+
+    private State state = State.CLOSED;
+    private long generation;
+    private int consecutiveFailures;
+    private long openedAt;
+    private boolean probing;
+
+    /**
+     * Permit of a search that is sent to the search index. It's only valid while
+     * the circuit stays in the state in which it was acquired.
+     */
+    @Value
+    private static class Permit {
+        private final long generation;
+    }
+
+    /**
+     * The constructor
+     * 
+     * @param searchFallbackProperties
+     *            The properties of the fallback
+     * @param meterRegistry
+     *            The registry of the circuit metrics
+     */
+    public MovieSearchCircuitBreaker(final SearchFallbackProperties searchFallbackProperties,
+        final MeterRegistry meterRegistry) {
+
+        this.searchFallbackProperties = searchFallbackProperties;
+
+        this.fallbackCounter = Counter.builder("movies.search.fallbacks")
+            .description("The number of searches that were served by the fallback")
+            .register(meterRegistry);
+        this.failureCounter = Counter.builder("movies.search.failures")
+            .description("The number of searches on the search index that failed or were too slow")
+            .register(meterRegistry);
+        Gauge.builder("movies.search.circuit.state", this, circuitBreaker -> circuitBreaker.getState().ordinal())
+            .description("The state of the search circuit: 0 closed, 1 open, 2 half open")
+            .register(meterRegistry);
+    }
+
+    /**
+     * Runs a search on the search index, or on the fallback if the circuit is
+     * open or the search fails
+     * 
+     * @param <T>
+     *            The type of the search result
+     * @param search
+     *            The search on the search index
+     * @param fallback
+     *            The fallback search
+     * @return The result of the search
+     */
+    public <T> T run(final Supplier<T> search, final Supplier<T> fallback) {
+        if (!searchFallbackProperties.isEnabled()) {
+            return search.get();
+        }
+        final Permit permit = tryAcquire();
+        if (permit == null) {
+            fallbackCounter.increment();
+            return fallback.get();
+        }
+
+        final long start = System.nanoTime();
+        final T result;
+        try {
+            result = search.get();
+        }
+        catch (final RuntimeException ex) {
+            log.warn(String.format("The search failed and is served by the fallback: %s", ex.getMessage()));
+            onFailure(permit);
+            fallbackCounter.increment();
+
+            return fallback.get();
+        }
+
+        // A slow search is still returned, but counts as a failure
+        final long duration = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        if (duration > searchFallbackProperties.getSlowCallThreshold()) {
+            log.warn(String.format("The search took %d ms", duration));
+            onFailure(permit);
+        }
+        else {
+            onSuccess(permit);
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the current state of the circuit
+     * 
+     * @return The state of the circuit
+     */
+    public synchronized State getState() {
+        return state;
+    }
+
+    /**
+     * Checks if a search can be sent to the search index. When the circuit has
+     * been open long enough, it becomes half open and only one search is let
+     * through as a probe.
+     * 
+     * @return The permit of the search, or null if the search can't be sent to
+     *         the search index
+     */
+    private synchronized Permit tryAcquire() {
+        if (state == State.OPEN
+            && Instant.now().toEpochMilli() >= openedAt + searchFallbackProperties.getOpenDuration()) {
+            changeState(State.HALF_OPEN);
+        }
+        if (state == State.CLOSED) {
+            return new Permit(generation);
+        }
+        if (state == State.HALF_OPEN && !probing) {
+            probing = true;
+            return new Permit(generation);
+        }
+
+        return null;
+    }
+
+    /**
+     * Records a successful search, which closes the circuit
+     * 
+     * @param permit
+     *            The permit of the search
+     */
+    private synchronized void onSuccess(final Permit permit) {
+        if (permit.getGeneration() != generation) {
+            return;
+        }
+        if (state != State.CLOSED) {
+            log.info("The search index is available again");
+            changeState(State.CLOSED);
+        }
+
+        consecutiveFailures = 0;
+        probing = false;
+    }
+
+    /**
+     * Records a failed search, which opens the circuit if it's a failed probe or
+     * if there are too many consecutive failures
+     * 
+     * @param permit
+     *            The permit of the search
+     */
+    private synchronized void onFailure(final Permit permit) {
+        failureCounter.increment();
+        if (permit.getGeneration() != generation) {
+            return;
+        }
+
+        consecutiveFailures++;
+        probing = false;
+
+        if (state == State.HALF_OPEN || consecutiveFailures >= searchFallbackProperties.getFailureThreshold()) {
+            log.warn("The search index is unavailable, searches are served by the fallback");
+            changeState(State.OPEN);
+            openedAt = Instant.now().toEpochMilli();
+        }
+    }
+
+    /**
+     * Changes the state of the circuit, which invalidates the permits of the
+     * searches that are still running
+     * 
+     * @param newState
+     *            The new state
+     */
+    private void changeState(final State newState) {
+        state = newState;
+        generation++;
+    }
+}
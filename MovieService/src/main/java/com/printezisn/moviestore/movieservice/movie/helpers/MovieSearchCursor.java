@@ -0,0 +1,90 @@
+package com.printezisn.moviestore.movieservice.movie.helpers;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.UUID;
+
+import com.printezisn.moviestore.movieservice.movie.exceptions.MovieValidationException;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * The cursor of a page of search results. It holds the sorting of the search
+ * and the sort values of the last movie of the previous page, so the page is
+ * found with search_after instead of skipping all the previous results, and
+ * it's encoded as an opaque string that is returned to the clients.
+ */
+@Getter
+@RequiredArgsConstructor
+public class MovieSearchCursor {
+
+    private static final String SEPARATOR = ":";
+    private static final int PARTS = 5;
+
+    private final int pageNumber;
+    private final String sortField;
+    private final boolean isAscending;
+    private final Number sortValue;
+    private final String id;
+
+    /**
+     * Returns the values used to continue the search after the last movie of the
+     * previous page
+     * 
+     * @return The values of the sort field and of the id of the last movie
+     */
+    public Object[] getSearchAfter() {
+        return new Object[] { sortValue, id };
+    }
+
+    /**
+     * Encodes the cursor
+     * 
+     * @return The encoded cursor
+     */
+    public String encode() {
+        final String value = String.join(SEPARATOR, String.valueOf(pageNumber), sortField,
+            String.valueOf(isAscending), String.valueOf(sortValue), id);
+
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decodes a cursor
+     * 
+     * @param cursor
+     *            The encoded cursor
+     * @return The decoded cursor
+     * @throws MovieValidationException
+     *             Exception thrown if the cursor is invalid
+     */
+    public static MovieSearchCursor decode(final String cursor) throws MovieValidationException {
+        try {
+            final String[] parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8)
+                .split(SEPARATOR, -1);
+            if (parts.length != PARTS) {
+                throw new IllegalArgumentException("Unexpected number of parts");
+            }
+
+            final int pageNumber = Integer.parseInt(parts[0]);
+            if (pageNumber < 0) {
+                throw new IllegalArgumentException("Negative page number");
+            }
+
+            final Number sortValue;
+            if (parts[3].contains(".") || parts[3].contains("E")) {
+                sortValue = Double.valueOf(parts[3]);
+            }
+            else {
+                sortValue = Long.valueOf(parts[3]);
+            }
+
+            return new MovieSearchCursor(pageNumber, parts[1], Boolean.parseBoolean(parts[2]), sortValue,
+                UUID.fromString(parts[4]).toString());
+        }
+        catch (final IllegalArgumentException ex) {
+            throw new MovieValidationException(String.format("Invalid cursor %s: %s", cursor, ex.getMessage()));
+        }
+    }
+}
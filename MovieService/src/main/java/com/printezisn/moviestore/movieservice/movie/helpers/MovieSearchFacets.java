@@ -0,0 +1,142 @@
+package com.printezisn.moviestore.movieservice.movie.helpers;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import org.elasticsearch.search.aggregations.AbstractAggregationBuilder;
+import org.elasticsearch.search.aggregations.AggregationBuilders;
+import org.elasticsearch.search.aggregations.Aggregations;
+import org.elasticsearch.search.aggregations.bucket.histogram.Histogram;
+import org.elasticsearch.search.aggregations.bucket.range.Range;
+import org.elasticsearch.search.aggregations.bucket.range.RangeAggregationBuilder;
+import org.springframework.stereotype.Component;
+
+import com.printezisn.moviestore.common.dto.movie.MovieFacetBucketDto;
+import com.printezisn.moviestore.movieservice.configuration.properties.SearchFacetProperties;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Component that creates the aggregations of the search facets and reads their
+ * buckets. The facets are a histogram of the release years and ranges of the
+ * ratings and the total likes.
+ */
+@Component
+@RequiredArgsConstructor
+public class MovieSearchFacets {
+
+    private static final String RELEASE_YEAR_FIELD = "releaseYear";
+    private static final String RATING_FIELD = "rating";
+    private static final String TOTAL_LIKES_FIELD = "totalLikes";
+
+    private final SearchFacetProperties searchFacetProperties;
+
+    /**
+     * Creates the aggregations of the facets
+     * 
+     * @return The aggregations
+     */
+    public List<AbstractAggregationBuilder<?>> createAggregations() {
+        return Arrays.asList(
+            AggregationBuilders.histogram(RELEASE_YEAR_FIELD)
+                .field(RELEASE_YEAR_FIELD)
+                .interval(searchFacetProperties.getReleaseYearInterval())
+                .minDocCount(1),
+            createRangeAggregation(RATING_FIELD, searchFacetProperties.getRatingBoundaries()),
+            createRangeAggregation(TOTAL_LIKES_FIELD, searchFacetProperties.getTotalLikesBoundaries()));
+    }
+
+    /**
+     * Reads the facets from the aggregations of a search. Empty buckets are
+     * skipped.
+     * 
+     * @param aggregations
+     *            The aggregations
+     * @return The buckets of each facet, by field
+     */
+    public Map<String, List<MovieFacetBucketDto>> read(final Aggregations aggregations) {
+        final Map<String, List<MovieFacetBucketDto>> facets = new LinkedHashMap<>();
+        if (aggregations == null) {
+            return facets;
+        }
+
+        final Histogram releaseYears = aggregations.get(RELEASE_YEAR_FIELD);
+        if (releaseYears != null) {
+            facets.put(RELEASE_YEAR_FIELD, releaseYears.getBuckets().stream()
+                .filter(bucket -> bucket.getDocCount() > 0)
+                .map(bucket -> {
+                    final double from = ((Number) bucket.getKey()).doubleValue();
+                    return createBucket(from, from + searchFacetProperties.getReleaseYearInterval(),
+                        bucket.getDocCount());
+                })
+                .collect(Collectors.toList()));
+        }
+
+        for (final String field : Arrays.asList(RATING_FIELD, TOTAL_LIKES_FIELD)) {
+            final Range range = aggregations.get(field);
+            if (range != null) {
+                facets.put(field, range.getBuckets().stream()
+                    .filter(bucket -> bucket.getDocCount() > 0)
+                    .map(bucket -> createBucket(((Number) bucket.getFrom()).doubleValue(),
+                        ((Number) bucket.getTo()).doubleValue(), bucket.getDocCount()))
+                    .collect(Collectors.toList()));
+            }
+        }
+
+        return facets;
+    }
+
+    /**
+     * Creates the aggregation of the ranges of a field
+     * 
+     * @param field
+     *            The field
+     * @param boundaries
+     *            The boundaries between the ranges, in ascending order
+     * @return The aggregation
+     */
+    private RangeAggregationBuilder createRangeAggregation(final String field, final List<Double> boundaries) {
+        final RangeAggregationBuilder aggregation = AggregationBuilders.range(field).field(field);
+        if (boundaries.isEmpty()) {
+            return aggregation;
+        }
+
+        aggregation.addUnboundedTo(MovieSearchFilter.createKey(null, boundaries.get(0)), boundaries.get(0));
+        for (int i = 1; i < boundaries.size(); i++) {
+            aggregation.addRange(MovieSearchFilter.createKey(boundaries.get(i - 1), boundaries.get(i)),
+                boundaries.get(i - 1), boundaries.get(i));
+        }
+
+        final Double last = boundaries.get(boundaries.size() - 1);
+        aggregation.addUnboundedFrom(MovieSearchFilter.createKey(last, null), last);
+
+        return aggregation;
+    }
+
+    /**
+     * Creates a facet bucket
+     * 
+     * @param from
+     *            The lower bound, which is infinite if there is none
+     * @param to
+     *            The upper bound, which is infinite if there is none
+     * @param count
+     *            The number of movies in the bucket
+     * @return The bucket
+     */
+    private MovieFacetBucketDto createBucket(final double from, final double to, final long count) {
+        final Double requiredFrom = Double.isInfinite(from) ? null : from;
+        final Double requiredTo = Double.isInfinite(to) ? null : to;
+
+        final MovieFacetBucketDto bucket = new MovieFacetBucketDto();
+        bucket.setKey(MovieSearchFilter.createKey(requiredFrom, requiredTo));
+        bucket.setFrom(requiredFrom);
+        bucket.setTo(requiredTo);
+        bucket.setCount(count);
+
+        return bucket;
+    }
+}
@@ -0,0 +1,110 @@
+package com.printezisn.moviestore.movieservice.movie.helpers;
+
+import java.util.Arrays;
+import java.util.List;
+
+import com.printezisn.moviestore.movieservice.movie.exceptions.MovieValidationException;
+
+import lombok.Value;
+
+/**
+ * A filter of a movie search, which keeps only the movies whose field is in a
+ * range. The lower bound is inclusive and the upper bound is exclusive, like
+ * the buckets of the search facets, so a bucket is selected by filtering with
+ * its field and its key, e.g. "releaseYear:1990-2000" or "rating:8-".
+ */
+@Value
+public class MovieSearchFilter {
+
+    public static final List<String> FIELDS = Arrays.asList("releaseYear", "rating", "totalLikes");
+
+    private static final String FIELD_SEPARATOR = ":";
+    private static final String RANGE_SEPARATOR = "-";
+
+    private final String field;
+    private final Double from;
+    private final Double to;
+
+    /**
+     * Parses a filter
+     * 
+     * @param filter
+     *            The filter, i.e. the field and the range separated by a colon
+     * @return The parsed filter
+     * @throws MovieValidationException
+     *             Exception thrown if the filter is invalid
+     */
+    public static MovieSearchFilter parse(final String filter) throws MovieValidationException {
+        final String[] parts = filter.split(FIELD_SEPARATOR, -1);
+        if (parts.length != 2 || !FIELDS.contains(parts[0])) {
+            throw new MovieValidationException(String.format("Invalid filter %s: unknown field", filter));
+        }
+
+        final String[] range = parts[1].split(RANGE_SEPARATOR, -1);
+        if (range.length != 2) {
+            throw new MovieValidationException(String.format("Invalid filter %s: invalid range", filter));
+        }
+
+        try {
+            final Double from = parseBound(range[0]);
+            final Double to = parseBound(range[1]);
+            if ((from == null && to == null) || (from != null && to != null && from >= to)) {
+                throw new IllegalArgumentException("Empty range");
+            }
+
+            return new MovieSearchFilter(parts[0], from, to);
+        }
+        catch (final IllegalArgumentException ex) {
+            throw new MovieValidationException(String.format("Invalid filter %s: %s", filter, ex.getMessage()));
+        }
+    }
+
+    /**
+     * Creates the key of a range, which is used both by the facet buckets and by
+     * the filters
+     * 
+     * @param from
+     *            The lower bound, or null if there is none
+     * @param to
+     *            The upper bound, or null if there is none
+     * @return The key
+     */
+    public static String createKey(final Double from, final Double to) {
+        return formatBound(from) + RANGE_SEPARATOR + formatBound(to);
+    }
+
+    /**
+     * Parses a bound of a range
+     * 
+     * @param bound
+     *            The bound
+     * @return The parsed bound, or null if it's empty
+     */
+    private static Double parseBound(final String bound) {
+        if (bound.isEmpty()) {
+            return null;
+        }
+
+        final Double value = Double.valueOf(bound);
+        if (value.isNaN() || value.isInfinite()) {
+            throw new IllegalArgumentException("Invalid bound " + bound);
+        }
+
+        return value;
+    }
+
+    /**
+     * Formats a bound of a range, without decimals if it's a whole number
+     * 
+     * @param bound
+     *            The bound, or null if there is none
+     * @return The formatted bound
+     */
+    private static String formatBound(final Double bound) {
+        if (bound == null) {
+            return "";
+        }
+
+        return (bound == Math.rint(bound)) ? String.valueOf(bound.longValue()) : bound.toString();
+    }
+}
@@ -0,0 +1,58 @@
+package com.printezisn.moviestore.movieservice.movie.helpers;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.search.SearchHit;
+import org.elasticsearch.search.SearchHits;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.printezisn.moviestore.common.dto.movie.MovieDto;
+
+/**
+ * Component that decodes the movies of search hits. The source of each hit is
+ * parsed directly from its bytes into a movie, without converting it to a
+ * string or to an intermediate index entity first.
+ */
+@Component
+public class MovieSearchHitReader {
+
+    private final ObjectReader movieReader;
+
+    /**
+     * The constructor
+     * 
+     * @param objectMapper
+     *            The object mapper used to create the shared reader of movies
+     */
+    public MovieSearchHitReader(final ObjectMapper objectMapper) {
+        this.movieReader = objectMapper.readerFor(MovieDto.class)
+            .without(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+    }
+
+    /**
+     * Decodes the movies of search hits
+     * 
+     * @param searchHits
+     *            The search hits
+     * @return The movies, in the order of the hits
+     * @throws IOException
+     *             Exception thrown if the source of a hit is not a valid movie
+     */
+    public List<MovieDto> read(final SearchHits searchHits) throws IOException {
+        final SearchHit[] hits = searchHits.getHits();
+        final List<MovieDto> movies = new ArrayList<>(hits.length);
+
+        for (final SearchHit hit : hits) {
+            final BytesRef source = hit.getSourceRef().toBytesRef();
+            movies.add(movieReader.readValue(source.bytes, source.offset, source.length));
+        }
+
+        return movies;
+    }
+}
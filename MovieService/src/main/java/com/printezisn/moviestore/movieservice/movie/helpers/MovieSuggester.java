@@ -0,0 +1,651 @@
+package com.printezisn.moviestore.movieservice.movie.helpers;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.springframework.data.util.CloseableIterator;
+import org.springframework.stereotype.Component;
+
+import com.printezisn.moviestore.common.dto.movie.MovieSuggestionDto;
+import com.printezisn.moviestore.movieservice.configuration.properties.SuggestProperties;
+import com.printezisn.moviestore.movieservice.movie.entities.Movie;
+import com.printezisn.moviestore.movieservice.movie.repositories.MovieRepository;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Component that suggests movies whose titles start with a prefix, from an
+ * in-memory index. The normalized titles are kept in a trie of limited depth,
+ * and every node keeps the most liked movies under it, so a suggestion only
+ * walks the characters of the prefix. The movies themselves are kept in
+ * parallel arrays and the nodes refer to them by position, which keeps the
+ * index compact. It's loaded from the database at startup and it's updated
+ * every time a movie is indexed or deleted.
+ */
+@Component
+@Slf4j
+public class MovieSuggester {
+
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final char[] NO_LABELS = new char[0];
+    private static final Node[] NO_CHILDREN = new Node[0];
+    private static final int[] NO_SLOTS = new int[0];
+    private static final Pattern DIACRITICS = Pattern.compile("\\p{M}+");
+    private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    private final MovieRepository movieRepository;
+    private final SuggestProperties suggestProperties;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Node root = new Node();
+    private final Map<String, Integer> slots = new HashMap<>();
+    private final Set<String> changedWhileLoading = new HashSet<>();
+
+    private final ScheduledExecutorService executorService = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        final Thread thread = new Thread(runnable, "movie-suggester");
+        thread.setDaemon(true);
+
+        return thread;
+    });
+
+    private String[] ids = new String[INITIAL_CAPACITY];
+    private String[] titles = new String[INITIAL_CAPACITY];
+    private long[] likes = new long[INITIAL_CAPACITY];
+    private int slotCount;
+    private int[] freeSlots = new int[INITIAL_CAPACITY];
+    private int freeSlotCount;
+    private boolean loaded;
+
+    /**
+     * A node of the trie. The children are sorted by their labels, so they are
+     * found with binary search.
+     */
+    private static class Node {
+        private char[] labels = NO_LABELS;
+        private Node[] children = NO_CHILDREN;
+        private int[] slots = NO_SLOTS;
+        private int[] top = NO_SLOTS;
+
+        /**
+         * Returns a child of the node
+         * 
+         * @param label
+         *            The label of the child
+         * @return The child, or null if it doesn't exist
+         */
+        private Node getChild(final char label) {
+            final int position = Arrays.binarySearch(labels, label);
+            return position >= 0 ? children[position] : null;
+        }
+
+        /**
+         * Adds a child to the node
+         * 
+         * @param label
+         *            The label of the child
+         * @param child
+         *            The child
+         */
+        private void addChild(final char label, final Node child) {
+            final int position = -Arrays.binarySearch(labels, label) - 1;
+            final char[] newLabels = new char[labels.length + 1];
+            final Node[] newChildren = new Node[children.length + 1];
+
+            System.arraycopy(labels, 0, newLabels, 0, position);
+            System.arraycopy(children, 0, newChildren, 0, position);
+            newLabels[position] = label;
+            newChildren[position] = child;
+            System.arraycopy(labels, position, newLabels, position + 1, labels.length - position);
+            System.arraycopy(children, position, newChildren, position + 1, children.length - position);
+
+            labels = newLabels;
+            children = newChildren;
+        }
+
+        /**
+         * Removes a child from the node
+         * 
+         * @param label
+         *            The label of the child
+         */
+        private void removeChild(final char label) {
+            final int position = Arrays.binarySearch(labels, label);
+            final char[] newLabels = new char[labels.length - 1];
+            final Node[] newChildren = new Node[children.length - 1];
+
+            System.arraycopy(labels, 0, newLabels, 0, position);
+            System.arraycopy(children, 0, newChildren, 0, position);
+            System.arraycopy(labels, position + 1, newLabels, position, labels.length - position - 1);
+            System.arraycopy(children, position + 1, newChildren, position, children.length - position - 1);
+
+            labels = newLabels;
+            children = newChildren;
+        }
+
+        /**
+         * Adds a movie whose key ends at the node
+         * 
+         * @param slot
+         *            The position of the movie
+         */
+        private void addSlot(final int slot) {
+            slots = Arrays.copyOf(slots, slots.length + 1);
+            slots[slots.length - 1] = slot;
+        }
+
+        /**
+         * Removes a movie whose key ends at the node
+         * 
+         * @param slot
+         *            The position of the movie
+         */
+        private void removeSlot(final int slot) {
+            for (int i = 0; i < slots.length; i++) {
+                if (slots[i] == slot) {
+                    slots[i] = slots[slots.length - 1];
+                    slots = slots.length == 1 ? NO_SLOTS : Arrays.copyOf(slots, slots.length - 1);
+                    return;
+                }
+            }
+        }
+
+        /**
+         * Indicates if the node can be removed
+         * 
+         * @return True if the node has no movies and no children, otherwise false
+         */
+        private boolean isEmpty() {
+            return slots.length == 0 && children.length == 0;
+        }
+    }
+
+    /**
+     * The constructor
+     * 
+     * @param movieRepository
+     *            The movie repository
+     * @param suggestProperties
+     *            The properties of the suggestions
+     * @param meterRegistry
+     *            The registry of the suggestion metrics
+     */
+    public MovieSuggester(final MovieRepository movieRepository, final SuggestProperties suggestProperties,
+        final MeterRegistry meterRegistry) {
+
+        this.movieRepository = movieRepository;
+        this.suggestProperties = suggestProperties;
+
+        Gauge.builder("movies.suggest.size", this, MovieSuggester::getSize)
+            .description("The number of movies in the suggestion index")
+            .register(meterRegistry);
+    }
+
+    /**
+     * Starts loading the movies in the background
+     */
+    @PostConstruct
+    public void start() {
+        if (suggestProperties.isEnabled()) {
+            executorService.execute(this::loadOrRetry);
+        }
+    }
+
+    /**
+     * Stops loading the movies
+     */
+    @PreDestroy
+    public void stop() {
+        executorService.shutdownNow();
+    }
+
+    /**
+     * Loads all the active movies from the database. Movies that are updated or
+     * removed while loading are skipped, because the database may return an older
+     * version of them.
+     */
+    public void load() {
+        long total = 0;
+
+        try (final CloseableIterator<Movie> movies = movieRepository.streamActiveMovies(
+            suggestProperties.getLoadBatchSize())) {
+
+            while (movies.hasNext()) {
+                final Movie movie = movies.next();
+
+                lock.writeLock().lock();
+                try {
+                    if (!changedWhileLoading.contains(movie.getId())) {
+                        put(movie.getId(), movie.getTitle(), movie.getTotalLikes());
+                        total++;
+                    }
+                }
+                finally {
+                    lock.writeLock().unlock();
+                }
+            }
+        }
+
+        lock.writeLock().lock();
+        try {
+            loaded = true;
+            changedWhileLoading.clear();
+        }
+        finally {
+            lock.writeLock().unlock();
+        }
+
+        log.info(String.format("Loaded %d movies to the suggestion index", total));
+    }
+
+    /**
+     * Adds or updates a movie
+     * 
+     * @param id
+     *            The id of the movie
+     * @param title
+     *            The title of the movie
+     * @param totalLikes
+     *            The total likes of the movie
+     */
+    public void update(final String id, final String title, final long totalLikes) {
+        if (!suggestProperties.isEnabled()) {
+            return;
+        }
+
+        lock.writeLock().lock();
+        try {
+            if (!loaded) {
+                changedWhileLoading.add(id);
+            }
+
+            put(id, title, totalLikes);
+        }
+        finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes a movie
+     * 
+     * @param id
+     *            The id of the movie
+     */
+    public void remove(final String id) {
+        if (!suggestProperties.isEnabled()) {
+            return;
+        }
+
+        lock.writeLock().lock();
+        try {
+            if (!loaded) {
+                changedWhileLoading.add(id);
+            }
+
+            final Integer slot = slots.remove(id);
+            if (slot != null) {
+                detach(slot);
+                freeSlot(slot);
+            }
+        }
+        finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the most liked movies whose titles start with a prefix. The prefix
+     * and the titles are compared without case, accents and punctuation.
+     * 
+     * @param prefix
+     *            The prefix
+     * @return The movies, ordered by their total likes
+     */
+    public List<MovieSuggestionDto> suggest(final String prefix) {
+        final String normalizedPrefix = normalize(prefix);
+        if (!suggestProperties.isEnabled() || normalizedPrefix.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        final String key = truncate(normalizedPrefix);
+
+        lock.readLock().lock();
+        try {
+            Node node = root;
+            for (int i = 0; i < key.length() && node != null; i++) {
+                node = node.getChild(key.charAt(i));
+            }
+            if (node == null) {
+                return Collections.emptyList();
+            }
+
+            // Prefixes longer than the depth of the trie end at a node that holds all
+            // the movies under it, which are filtered by their whole title
+            final int[] matches = (normalizedPrefix.length() == key.length())
+                ? node.top
+                : findMatches(node, normalizedPrefix);
+
+            final List<MovieSuggestionDto> suggestions = new ArrayList<>(matches.length);
+            for (final int slot : matches) {
+                final MovieSuggestionDto suggestion = new MovieSuggestionDto();
+                suggestion.setId(UUID.fromString(ids[slot]));
+                suggestion.setTitle(titles[slot]);
+                suggestion.setTotalLikes((int) likes[slot]);
+
+                suggestions.add(suggestion);
+            }
+
+            return suggestions;
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the number of movies in the index
+     * 
+     * @return The number of movies
+     */
+    public int getSize() {
+        lock.readLock().lock();
+        try {
+            return slots.size();
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Loads the movies, retrying later if loading fails
+     */
+    private void loadOrRetry() {
+        try {
+            load();
+        }
+        catch (final Exception ex) {
+            log.error(String.format("An error occured while loading the movie suggestions: %s", ex.getMessage()),
+                ex);
+            executorService.schedule(this::loadOrRetry, suggestProperties.getLoadRetryDelay(),
+                TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Adds or updates a movie. It must be called with the write lock.
+     * 
+     * @param id
+     *            The id of the movie
+     * @param title
+     *            The title of the movie
+     * @param totalLikes
+     *            The total likes of the movie
+     */
+    private void put(final String id, final String title, final long totalLikes) {
+        final String requiredTitle = (title == null) ? "" : title;
+        final Integer existingSlot = slots.get(id);
+
+        if (existingSlot == null) {
+            final int slot = allocateSlot();
+            ids[slot] = id;
+            titles[slot] = requiredTitle;
+            likes[slot] = totalLikes;
+            slots.put(id, slot);
+            attach(slot);
+        }
+        else if (createKey(titles[existingSlot]).equals(createKey(requiredTitle))) {
+            titles[existingSlot] = requiredTitle;
+            likes[existingSlot] = totalLikes;
+            refresh(createKey(requiredTitle), getPath(createKey(requiredTitle)));
+        }
+        else {
+            detach(existingSlot);
+            titles[existingSlot] = requiredTitle;
+            likes[existingSlot] = totalLikes;
+            attach(existingSlot);
+        }
+    }
+
+    /**
+     * Adds a movie to the node of its key
+     * 
+     * @param slot
+     *            The position of the movie
+     */
+    private void attach(final int slot) {
+        final String key = createKey(titles[slot]);
+        final Node[] path = getPath(key);
+
+        path[path.length - 1].addSlot(slot);
+        refresh(key, path);
+    }
+
+    /**
+     * Removes a movie from the node of its key
+     * 
+     * @param slot
+     *            The position of the movie
+     */
+    private void detach(final int slot) {
+        final String key = createKey(titles[slot]);
+        final Node[] path = getPath(key);
+
+        path[path.length - 1].removeSlot(slot);
+        refresh(key, path);
+    }
+
+    /**
+     * Recomputes the most liked movies of the nodes of a path, from the bottom
+     * up, and removes the nodes that became empty
+     * 
+     * @param key
+     *            The key of the path
+     * @param path
+     *            The nodes of the path, starting from the root
+     */
+    private void refresh(final String key, final Node[] path) {
+        for (int i = path.length - 1; i >= 0; i--) {
+            if (i > 0 && path[i].isEmpty()) {
+                path[i - 1].removeChild(key.charAt(i - 1));
+            }
+            else {
+                final int[] best = new int[suggestProperties.getMaxResults()];
+                int count = 0;
+                for (final int slot : path[i].slots) {
+                    count = offer(best, count, slot);
+                }
+                for (final Node child : path[i].children) {
+                    for (final int slot : child.top) {
+                        count = offer(best, count, slot);
+                    }
+                }
+
+                path[i].top = Arrays.copyOf(best, count);
+            }
+        }
+    }
+
+    /**
+     * Returns the most liked movies of a node whose titles start with a prefix
+     * 
+     * @param node
+     *            The node
+     * @param normalizedPrefix
+     *            The normalized prefix
+     * @return The positions of the movies
+     */
+    private int[] findMatches(final Node node, final String normalizedPrefix) {
+        final int[] best = new int[suggestProperties.getMaxResults()];
+        int count = 0;
+        for (final int slot : node.slots) {
+            if (normalize(titles[slot]).startsWith(normalizedPrefix)) {
+                count = offer(best, count, slot);
+            }
+        }
+
+        return Arrays.copyOf(best, count);
+    }
+
+    /**
+     * Offers a movie to a list of the most liked movies, which is kept sorted
+     * 
+     * @param best
+     *            The list of the most liked movies
+     * @param count
+     *            The number of movies in the list
+     * @param slot
+     *            The position of the offered movie
+     * @return The new number of movies in the list
+     */
+    private int offer(final int[] best, final int count, final int slot) {
+        int position = count;
+        while (position > 0 && isBetter(slot, best[position - 1])) {
+            position--;
+        }
+        if (position >= best.length) {
+            return count;
+        }
+
+        final int newCount = Math.min(count + 1, best.length);
+        System.arraycopy(best, position, best, position + 1, newCount - position - 1);
+        best[position] = slot;
+
+        return newCount;
+    }
+
+    /**
+     * Indicates if a movie ranks higher than another one
+     * 
+     * @param slot
+     *            The position of the movie
+     * @param otherSlot
+     *            The position of the other movie
+     * @return True if the movie has more likes, or the same likes and a title
+     *         that comes first, otherwise false
+     */
+    private boolean isBetter(final int slot, final int otherSlot) {
+        return likes[slot] != likes[otherSlot]
+            ? likes[slot] > likes[otherSlot]
+            : titles[slot].compareTo(titles[otherSlot]) < 0;
+    }
+
+    /**
+     * Returns the nodes of the path of a key, creating the missing ones
+     * 
+     * @param key
+     *            The key
+     * @return The nodes of the path, starting from the root
+     */
+    private Node[] getPath(final String key) {
+        final Node[] path = new Node[key.length() + 1];
+        path[0] = root;
+
+        for (int i = 0; i < key.length(); i++) {
+            Node child = path[i].getChild(key.charAt(i));
+            if (child == null) {
+                child = new Node();
+                path[i].addChild(key.charAt(i), child);
+            }
+
+            path[i + 1] = child;
+        }
+
+        return path;
+    }
+
+    /**
+     * Returns a free position for a movie
+     * 
+     * @return The position
+     */
+    private int allocateSlot() {
+        if (freeSlotCount > 0) {
+            return freeSlots[--freeSlotCount];
+        }
+        if (slotCount == ids.length) {
+            ids = Arrays.copyOf(ids, ids.length * 2);
+            titles = Arrays.copyOf(titles, titles.length * 2);
+            likes = Arrays.copyOf(likes, likes.length * 2);
+        }
+
+        return slotCount++;
+    }
+
+    /**
+     * Frees the position of a removed movie
+     * 
+     * @param slot
+     *            The position
+     */
+    private void freeSlot(final int slot) {
+        ids[slot] = null;
+        titles[slot] = null;
+        if (freeSlotCount == freeSlots.length) {
+            freeSlots = Arrays.copyOf(freeSlots, freeSlots.length * 2);
+        }
+
+        freeSlots[freeSlotCount++] = slot;
+    }
+
+    /**
+     * Returns the key of a title in the trie
+     * 
+     * @param title
+     *            The title
+     * @return The normalized title, truncated to the depth of the trie
+     */
+    private String createKey(final String title) {
+        return truncate(normalize(title));
+    }
+
+    /**
+     * Truncates a normalized text to the depth of the trie
+     * 
+     * @param text
+     *            The normalized text
+     * @return The truncated text
+     */
+    private String truncate(final String text) {
+        return text.length() > suggestProperties.getMaxPrefixLength()
+            ? text.substring(0, suggestProperties.getMaxPrefixLength())
+            : text;
+    }
+
+    /**
+     * Normalizes a text, removing case, accents and punctuation
+     * 
+     * @param text
+     *            The text
+     * @return The normalized text
+     */
+    private String normalize(final String text) {
+        if (text == null) {
+            return "";
+        }
+
+        final String withoutDiacritics = DIACRITICS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD))
+            .replaceAll("");
+
+        return SEPARATORS.matcher(withoutDiacritics.toLowerCase(Locale.ROOT)).replaceAll(" ").trim();
+    }
+}
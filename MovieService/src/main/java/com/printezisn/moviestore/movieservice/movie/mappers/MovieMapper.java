@@ -34,11 +34,13 @@ public interface MovieMapper {
      */
     @Mappings({
         @Mapping(target = "revision", ignore = true),
+        @Mapping(target = "likesRevision", ignore = true),
         @Mapping(target = "totalLikes", ignore = true),
         @Mapping(target = "pendingLikes", ignore = true),
         @Mapping(target = "pendingUnlikes", ignore = true),
         @Mapping(target = "updated", ignore = true),
-        @Mapping(target = "deleted", ignore = true)
+        @Mapping(target = "deleted", ignore = true),
+        @Mapping(target = "purgedLikes", ignore = true)
     })
     Movie movieDtoToMovie(final MovieDto movieDto);
 
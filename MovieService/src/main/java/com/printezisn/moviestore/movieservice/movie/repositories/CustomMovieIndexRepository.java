@@ -1,11 +1,13 @@
 package com.printezisn.moviestore.movieservice.movie.repositories;
 
 import java.util.Optional;
+import java.util.Set;
 
-import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.elasticsearch.core.aggregation.AggregatedPage;
 
-import com.printezisn.moviestore.movieservice.movie.entities.MovieIndex;
+import com.printezisn.moviestore.common.dto.movie.MovieDto;
+import com.printezisn.moviestore.movieservice.movie.helpers.MovieSearchFilter;
 
 /**
  * Interface with extra repository methods for indexing movies
@@ -17,9 +19,47 @@ public interface CustomMovieIndexRepository {
      * 
      * @param text
      *            The text used as filter
+     * @param filters
+     *            The ranges that the movies must be in
+     * @param fields
+     *            The fields of the movies that are fetched, or an empty set for all
+     *            the fields
+     * @param withFacets
+     *            Indicates if the facets of the search are aggregated
+     * @param countTotal
+     *            Indicates if all the matching movies are counted. Otherwise, the
+     *            total of the page only shows if there is a next page.
      * @param pageable
      *            The pageable criteria
-     * @return The movies found
+     * @return The movies found, with the aggregations of the facets
      */
-    Page<MovieIndex> search(final Optional<String> text, final Pageable pageable);
+    AggregatedPage<MovieDto> search(final Optional<String> text, final Set<MovieSearchFilter> filters,
+        final Set<String> fields, final boolean withFacets, final boolean countTotal, final Pageable pageable);
+
+    /**
+     * Searches for the movies that follow the last movie of a previous page,
+     * using full text search. The page number of the pageable criteria isn't used
+     * to skip any results.
+     * 
+     * @param text
+     *            The text used as filter
+     * @param filters
+     *            The ranges that the movies must be in
+     * @param fields
+     *            The fields of the movies that are fetched, or an empty set for all
+     *            the fields
+     * @param withFacets
+     *            Indicates if the facets of the search are aggregated
+     * @param countTotal
+     *            Indicates if all the matching movies are counted. Otherwise, the
+     *            total of the page only shows if there is a next page.
+     * @param pageable
+     *            The pageable criteria
+     * @param searchAfter
+     *            The sort values of the last movie of the previous page
+     * @return The movies found, with the aggregations of the facets
+     */
+    AggregatedPage<MovieDto> searchAfter(final Optional<String> text, final Set<MovieSearchFilter> filters,
+        final Set<String> fields, final boolean withFacets, final boolean countTotal, final Pageable pageable,
+        final Object[] searchAfter);
 }
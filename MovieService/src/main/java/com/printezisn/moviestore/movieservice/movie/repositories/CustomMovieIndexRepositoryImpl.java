@@ -1,29 +1,46 @@
 package com.printezisn.moviestore.movieservice.movie.repositories;
 
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.elasticsearch.core.ElasticsearchTemplate;
+import org.springframework.data.elasticsearch.core.aggregation.AggregatedPage;
+import org.springframework.data.elasticsearch.core.aggregation.impl.AggregatedPageImpl;
+import org.springframework.data.elasticsearch.core.query.FetchSourceFilter;
 import org.springframework.data.elasticsearch.core.query.NativeSearchQueryBuilder;
-import org.springframework.data.elasticsearch.core.query.SearchQuery;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.printezisn.moviestore.movieservice.movie.entities.MovieIndex;
+import com.printezisn.moviestore.common.dto.movie.MovieDto;
+import com.printezisn.moviestore.movieservice.configuration.properties.SearchIndexProperties;
+import com.printezisn.moviestore.movieservice.movie.helpers.MovieIndexManager;
+import com.printezisn.moviestore.movieservice.movie.helpers.MovieSearchFacets;
+import com.printezisn.moviestore.movieservice.movie.helpers.MovieSearchFilter;
+import com.printezisn.moviestore.movieservice.movie.helpers.MovieSearchHitReader;
 
 import lombok.RequiredArgsConstructor;
 
+import static org.elasticsearch.index.query.QueryBuilders.boolQuery;
 import static org.elasticsearch.index.query.QueryBuilders.multiMatchQuery;
 import static org.elasticsearch.index.query.QueryBuilders.matchAllQuery;
+import static org.elasticsearch.index.query.QueryBuilders.rangeQuery;
 
-import java.util.LinkedList;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
+import org.elasticsearch.action.search.SearchRequestBuilder;
+import org.elasticsearch.action.search.SearchResponse;
 import org.elasticsearch.common.unit.Fuzziness;
+import org.elasticsearch.index.query.BoolQueryBuilder;
 import org.elasticsearch.index.query.MultiMatchQueryBuilder;
 import org.elasticsearch.index.query.Operator;
-import org.elasticsearch.search.SearchHit;
+import org.elasticsearch.index.query.QueryBuilder;
+import org.elasticsearch.search.sort.SortBuilders;
+import org.elasticsearch.search.sort.SortOrder;
 
 /**
  * Implementation of the interface with extra repository methods for indexing
@@ -34,56 +51,344 @@ public class CustomMovieIndexRepositoryImpl implements CustomMovieIndexRepositor
 
     private static final String TITLE_FIELD = "title";
     private static final String DESCRIPTION_FIELD = "description";
+    private static final String TITLE_NGRAM_FIELD = "title.ngram";
+    private static final String TITLE_PREFIX_FIELD = "title.prefix";
+    private static final String DESCRIPTION_NGRAM_FIELD = "description.ngram";
+    private static final String ID_FIELD = "id";
+    private static final String LEGACY_ID_SORT_FIELD = "_id";
 
     @Value("${elasticsearch.indexName}")
     private final String indexName;
 
     private final ElasticsearchTemplate elasticsearchTemplate;
 
+    private final MovieSearchHitReader movieSearchHitReader;
+
+    private final SearchIndexProperties searchIndexProperties;
+
+    private final MovieSearchFacets movieSearchFacets;
+
+    private final MovieIndexManager movieIndexManager;
+
     /**
      * {@inheritDoc}
      */
     @Override
-    public Page<MovieIndex> search(final Optional<String> text, final Pageable pageable) {
-        final SearchQuery searchQuery;
+    public AggregatedPage<MovieDto> search(final Optional<String> text, final Set<MovieSearchFilter> filters,
+        final Set<String> fields, final boolean withFacets, final boolean countTotal, final Pageable pageable) {
 
-        if (text.isPresent() && !text.get().isBlank()) {
-            searchQuery = new NativeSearchQueryBuilder()
-                .withIndices(indexName)
-                .withQuery(multiMatchQuery("*" + text.get() + "*", TITLE_FIELD, DESCRIPTION_FIELD)
-                    .type(MultiMatchQueryBuilder.Type.BEST_FIELDS)
-                    .operator(Operator.AND)
-                    .fuzziness(Fuzziness.TWO))
-                .withPageable(pageable)
-                .build();
+        if (!countTotal) {
+            return search(text, filters, pageable, false, true,
+                query -> prepareSearch(query, fields, withFacets, false, pageable)
+                    .setFrom((int) pageable.getOffset())
+                    .get());
         }
-        else {
-            searchQuery = new NativeSearchQueryBuilder()
+
+        return search(text, filters, pageable, true, true, query -> {
+            final NativeSearchQueryBuilder searchQueryBuilder = new NativeSearchQueryBuilder()
                 .withIndices(indexName)
-                .withQuery(matchAllQuery())
-                .withPageable(pageable)
-                .build();
+                .withQuery(query)
+                .withPageable(toIndexPageable(pageable));
+            if (!fields.isEmpty()) {
+                searchQueryBuilder.withSourceFilter(new FetchSourceFilter(fields.toArray(new String[0]), null));
+            }
+            if (withFacets) {
+                movieSearchFacets.createAggregations().forEach(searchQueryBuilder::addAggregation);
+            }
+
+            return elasticsearchTemplate.query(searchQueryBuilder.build(), searchResponse -> searchResponse);
+        });
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public AggregatedPage<MovieDto> searchAfter(final Optional<String> text, final Set<MovieSearchFilter> filters,
+        final Set<String> fields, final boolean withFacets, final boolean countTotal, final Pageable pageable,
+        final Object[] searchAfter) {
+
+        return search(text, filters, pageable, countTotal, false,
+            query -> prepareSearch(query, fields, withFacets, countTotal, pageable)
+                .searchAfter(searchAfter)
+                .get());
+    }
+
+    /**
+     * Prepares a search of a page through the client. Without counting, the total
+     * hits are not tracked and one more movie than the page size is fetched, so
+     * that the movie shows if there is a next page.
+     * 
+     * @param query
+     *            The query
+     * @param fields
+     *            The fields of the movies that are fetched, or an empty set for all
+     *            the fields
+     * @param withFacets
+     *            Indicates if the facets of the search are aggregated
+     * @param countTotal
+     *            Indicates if all the matching movies are counted
+     * @param pageable
+     *            The pageable criteria
+     * @return The search request
+     */
+    private SearchRequestBuilder prepareSearch(final QueryBuilder query, final Set<String> fields,
+        final boolean withFacets, final boolean countTotal, final Pageable pageable) {
+
+        final SearchRequestBuilder searchRequestBuilder = elasticsearchTemplate.getClient()
+            .prepareSearch(indexName)
+            .setQuery(query)
+            .setSize(countTotal ? pageable.getPageSize() : pageable.getPageSize() + 1)
+            .setTrackTotalHits(countTotal);
+        toIndexPageable(pageable).getSort().forEach(order -> searchRequestBuilder.addSort(
+            SortBuilders.fieldSort(order.getProperty())
+                .order(order.isAscending() ? SortOrder.ASC : SortOrder.DESC)));
+        if (!fields.isEmpty()) {
+            searchRequestBuilder.setFetchSource(fields.toArray(new String[0]), null);
+        }
+        if (withFacets) {
+            movieSearchFacets.createAggregations().forEach(searchRequestBuilder::addAggregation);
         }
 
-        elasticsearchTemplate.putMapping(MovieIndex.class);
+        return searchRequestBuilder;
+    }
+
+    /**
+     * Returns the paging and sorting of a search as they are sent to the index.
+     * The id is sorted by its doc values, which the mappings of older versions
+     * don't have, so until the alias points to the current version the id is
+     * sorted by the _id metadata field instead.
+     * 
+     * @param pageable
+     *            The pageable criteria
+     * @return The pageable criteria of the index
+     */
+    private Pageable toIndexPageable(final Pageable pageable) {
+        if (pageable.getSort().getOrderFor(ID_FIELD) == null || movieIndexManager.isCurrentVersionInUse()) {
+            return pageable;
+        }
 
-        return elasticsearchTemplate.query(searchQuery, searchResponse -> {
-            try {
-                final ObjectMapper objectMapper = new ObjectMapper();
-                final long totalHits = searchResponse.getHits().getTotalHits();
+        final Sort sort = Sort.by(pageable.getSort().stream()
+            .map(order -> order.getProperty().equals(ID_FIELD) ? order.withProperty(LEGACY_ID_SORT_FIELD) : order)
+            .collect(Collectors.toList()));
 
-                final List<MovieIndex> results = new LinkedList<>();
-                for (final SearchHit hit : searchResponse.getHits().getHits()) {
-                    final MovieIndex searchMovie = objectMapper.readValue(hit.getSourceAsString(),
-                        MovieIndex.class);
-                    results.add(searchMovie);
-                }
+        return PageRequest.of(pageable.getPageNumber(), pageable.getPageSize(), sort);
+    }
 
-                return new PageImpl<MovieIndex>(results, pageable, totalHits);
-            }
-            catch (final Exception ex) {
-                throw new RuntimeException(ex);
+    /**
+     * Searches for movies using full text search. In n-gram search mode, the text
+     * is matched against the n-gram subfields first, and the page is searched
+     * again with fuzzy matching only if there are fewer hits than the configured
+     * minimum, so only searches with too few hits cost a second request. The
+     * decision depends on the total hits, so it's the same for every page of a
+     * search. The filters run in filter context, so they don't affect the scoring
+     * and they are cached by Elasticsearch.
+     * 
+     * @param text
+     *            The text used as filter
+     * @param filters
+     *            The ranges that the movies must be in
+     * @param pageable
+     *            The pageable criteria
+     * @param countTotal
+     *            Indicates if the searcher counts all the matching movies
+     * @param fromOffset
+     *            Indicates if the searcher returns the movies from the offset of
+     *            the page, or else after a cursor
+     * @param searcher
+     *            The function that runs a query for the page
+     * @return The movies found
+     */
+    private AggregatedPage<MovieDto> search(final Optional<String> text, final Set<MovieSearchFilter> filters,
+        final Pageable pageable, final boolean countTotal, final boolean fromOffset,
+        final Function<QueryBuilder, SearchResponse> searcher) {
+
+        final Function<QueryBuilder, SearchResponse> filteredSearcher = query -> searcher.apply(
+            applyFilters(query, filters));
+
+        if (!text.isPresent() || text.get().isBlank()) {
+            return createPage(filteredSearcher.apply(matchAllQuery()), pageable, countTotal);
+        }
+        if (!searchIndexProperties.isNgramSearchMode()) {
+            return createPage(filteredSearcher.apply(createFuzzyQuery(text.get())), pageable, countTotal);
+        }
+
+        final QueryBuilder ngramQuery = createNgramQuery(text.get());
+        final SearchResponse searchResponse = filteredSearcher.apply(ngramQuery);
+        if (hasMinHits(searchResponse, applyFilters(ngramQuery, filters), pageable, countTotal, fromOffset)) {
+            return createPage(searchResponse, pageable, countTotal);
+        }
+
+        return createPage(filteredSearcher.apply(createFallbackQuery(ngramQuery, text.get())), pageable, countTotal);
+    }
+
+    /**
+     * Checks if the n-gram query of a search matches at least the minimum hits.
+     * Without counting, the decision is made from the page when possible, i.e.
+     * when the page and the pages before it have at least the minimum movies, or
+     * when it's a first page that isn't full and so has all the matching movies.
+     * Otherwise the hits are counted with an extra request, which happens only for
+     * pages past the end of the results, for pages after a cursor with too few
+     * movies and for full first pages that are smaller than the minimum.
+     * 
+     * @param searchResponse
+     *            The response of the n-gram query for the page
+     * @param query
+     *            The n-gram query with the filters
+     * @param pageable
+     *            The pageable criteria
+     * @param countTotal
+     *            Indicates if the response counted all the matching movies
+     * @param fromOffset
+     *            Indicates if the response has the movies from the offset of the
+     *            page, or else after a cursor
+     * @return True if the query matches at least the minimum hits, otherwise
+     *         false
+     */
+    private boolean hasMinHits(final SearchResponse searchResponse, final QueryBuilder query,
+        final Pageable pageable, final boolean countTotal, final boolean fromOffset) {
+
+        final int minHits = searchIndexProperties.getFuzzyFallbackMinHits();
+        if (countTotal) {
+            return searchResponse.getHits().getTotalHits() >= minHits;
+        }
+
+        final int hits = searchResponse.getHits().getHits().length;
+        final long precedingHits = (fromOffset && hits > 0) ? pageable.getOffset() : 0;
+        if (precedingHits + hits >= minHits) {
+            return true;
+        }
+        if (fromOffset && pageable.getOffset() == 0 && hits < pageable.getPageSize()) {
+            return false;
+        }
+
+        return countHits(query, minHits) >= minHits;
+    }
+
+    /**
+     * Counts the hits of a query up to a maximum. The shards stop counting at the
+     * maximum, so the cost doesn't depend on how many movies match.
+     * 
+     * @param query
+     *            The query
+     * @param maxHits
+     *            The maximum hits that are counted
+     * @return The hits, up to the maximum
+     */
+    private long countHits(final QueryBuilder query, final int maxHits) {
+        return elasticsearchTemplate.getClient()
+            .prepareSearch(indexName)
+            .setQuery(query)
+            .setSize(0)
+            .setTerminateAfter(maxHits)
+            .get()
+            .getHits()
+            .getTotalHits();
+    }
+
+    /**
+     * Creates the query that adds fuzzy matching to the n-gram query
+     * 
+     * @param ngramQuery
+     *            The n-gram query
+     * @param text
+     *            The text used as filter
+     * @return The query
+     */
+    private QueryBuilder createFallbackQuery(final QueryBuilder ngramQuery, final String text) {
+        return boolQuery()
+            .should(ngramQuery)
+            .should(multiMatchQuery(text, TITLE_FIELD, DESCRIPTION_FIELD)
+                .type(MultiMatchQueryBuilder.Type.BEST_FIELDS)
+                .operator(Operator.AND)
+                .fuzziness(Fuzziness.AUTO))
+            .minimumShouldMatch(1);
+    }
+
+    /**
+     * Adds filters to a query
+     * 
+     * @param query
+     *            The query
+     * @param filters
+     *            The ranges that the movies must be in
+     * @return The query with the filters
+     */
+    private QueryBuilder applyFilters(final QueryBuilder query, final Set<MovieSearchFilter> filters) {
+        if (filters.isEmpty()) {
+            return query;
+        }
+
+        final BoolQueryBuilder filteredQuery = boolQuery().must(query);
+        filters.forEach(filter -> filteredQuery.filter(rangeQuery(filter.getField())
+            .from(filter.getFrom(), true)
+            .to(filter.getTo(), false)));
+
+        return filteredQuery;
+    }
+
+    /**
+     * Creates the query that matches the substrings of the text in the n-gram
+     * subfields. The title is also matched by prefix, for words that are too
+     * short to have n-grams.
+     * 
+     * @param text
+     *            The text used as filter
+     * @return The query
+     */
+    private QueryBuilder createNgramQuery(final String text) {
+        return multiMatchQuery(text, TITLE_NGRAM_FIELD, TITLE_PREFIX_FIELD, DESCRIPTION_NGRAM_FIELD)
+            .type(MultiMatchQueryBuilder.Type.BEST_FIELDS)
+            .operator(Operator.AND);
+    }
+
+    /**
+     * Creates the query that matches the words of the text with an edit distance
+     * of up to two
+     * 
+     * @param text
+     *            The text used as filter
+     * @return The query
+     */
+    private QueryBuilder createFuzzyQuery(final String text) {
+        return multiMatchQuery("*" + text + "*", TITLE_FIELD, DESCRIPTION_FIELD)
+            .type(MultiMatchQueryBuilder.Type.BEST_FIELDS)
+            .operator(Operator.AND)
+            .fuzziness(Fuzziness.TWO);
+    }
+
+    /**
+     * Creates the page of movies of a search response, with its aggregations.
+     * Without counting, the extra movie is dropped and the total only counts the
+     * movies up to it, so the page has a next page if the extra movie was found.
+     * 
+     * @param searchResponse
+     *            The search response
+     * @param pageable
+     *            The pageable criteria
+     * @param countTotal
+     *            Indicates if the search counted all the matching movies
+     * @return The page of movies
+     */
+    private AggregatedPage<MovieDto> createPage(final SearchResponse searchResponse, final Pageable pageable,
+        final boolean countTotal) {
+
+        try {
+            final List<MovieDto> movies = movieSearchHitReader.read(searchResponse.getHits());
+            if (countTotal) {
+                return new AggregatedPageImpl<MovieDto>(movies, pageable, searchResponse.getHits().getTotalHits(),
+                    searchResponse.getAggregations());
             }
-        });
+
+            final long total = pageable.getOffset() + movies.size();
+            final List<MovieDto> pageMovies = (movies.size() > pageable.getPageSize())
+                ? movies.subList(0, pageable.getPageSize())
+                : movies;
+
+            return new AggregatedPageImpl<MovieDto>(pageMovies, pageable, total, searchResponse.getAggregations());
+        }
+        catch (final IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
     }
 }
@@ -0,0 +1,54 @@
+package com.printezisn.moviestore.movieservice.movie.repositories;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Interface with extra repository methods for movie likes
+ */
+public interface CustomMovieLikeRepository {
+
+    /**
+     * Stores the like of an account for a movie, if it doesn't exist
+     * 
+     * @param movieId
+     *            The id of the movie
+     * @param account
+     *            The account that likes the movie
+     * @return True if the like was stored, or false if it already existed
+     */
+    boolean addLike(final String movieId, final String account);
+
+    /**
+     * Removes the like of an account for a movie, if it exists
+     * 
+     * @param movieId
+     *            The id of the movie
+     * @param account
+     *            The account that removes its like
+     * @return True if the like was removed, or false if it didn't exist
+     */
+    boolean removeLike(final String movieId, final String account);
+
+    /**
+     * Counts the likes of many movies in a single aggregation
+     * 
+     * @param movieIds
+     *            The ids of the movies
+     * @return The number of likes per movie id. Movies without likes are not
+     *         included.
+     */
+    Map<String, Long> countByMovieIds(final Collection<String> movieIds);
+
+    /**
+     * Deletes a batch of the likes of a movie
+     * 
+     * @param movieId
+     *            The id of the movie
+     * @param batchSize
+     *            The maximum number of likes to delete
+     * @return The number of likes deleted, which is 0 when the movie has no likes
+     *         left
+     */
+    long deleteBatchByMovieId(final String movieId, final int batchSize);
+}
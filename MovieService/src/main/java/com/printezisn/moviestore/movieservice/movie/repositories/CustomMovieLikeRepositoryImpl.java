@@ -0,0 +1,95 @@
+package com.printezisn.moviestore.movieservice.movie.repositories;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import org.bson.Document;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import com.mongodb.client.result.DeleteResult;
+import com.mongodb.client.result.UpdateResult;
+import com.printezisn.moviestore.movieservice.movie.entities.MovieLike;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * The implementation of the interface with extra repository methods for movie
+ * likes
+ */
+@RequiredArgsConstructor
+public class CustomMovieLikeRepositoryImpl implements CustomMovieLikeRepository {
+
+    private static final String ID_FIELD = "id";
+    private static final String MOVIE_ID_FIELD = "movieId";
+    private static final String ACCOUNT_FIELD = "account";
+    private static final String COUNT_FIELD = "count";
+
+    private final MongoTemplate mongoTemplate;
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean addLike(final String movieId, final String account) {
+        final Query query = new Query(Criteria.where(ID_FIELD).is(movieId + "-" + account));
+
+        final Update update = new Update();
+        update.setOnInsert(MOVIE_ID_FIELD, movieId);
+        update.setOnInsert(ACCOUNT_FIELD, account);
+
+        final UpdateResult updateResult = mongoTemplate.upsert(query, update, MovieLike.class);
+
+        return updateResult != null && updateResult.getUpsertedId() != null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean removeLike(final String movieId, final String account) {
+        final Query query = new Query(Criteria.where(ID_FIELD).is(movieId + "-" + account));
+
+        final DeleteResult deleteResult = mongoTemplate.remove(query, MovieLike.class);
+
+        return deleteResult != null && deleteResult.getDeletedCount() > 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Map<String, Long> countByMovieIds(final Collection<String> movieIds) {
+        final Aggregation aggregation = Aggregation.newAggregation(
+            Aggregation.match(Criteria.where(MOVIE_ID_FIELD).in(movieIds)),
+            Aggregation.group(MOVIE_ID_FIELD).count().as(COUNT_FIELD));
+
+        return mongoTemplate.aggregate(aggregation, MovieLike.class, Document.class).getMappedResults().stream()
+            .collect(Collectors.toMap(result -> result.getString("_id"),
+                result -> ((Number) result.get(COUNT_FIELD)).longValue()));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public long deleteBatchByMovieId(final String movieId, final int batchSize) {
+        // The ids of the batch are read first, because a delete can't be limited to
+        // a number of documents
+        final Query query = new Query(Criteria.where(MOVIE_ID_FIELD).is(movieId)).limit(batchSize);
+        query.fields().include(ID_FIELD);
+
+        final List<String> ids = mongoTemplate.find(query, MovieLike.class).stream()
+            .map(MovieLike::getId)
+            .collect(Collectors.toList());
+        if (ids.isEmpty()) {
+            return 0;
+        }
+
+        final DeleteResult deleteResult = mongoTemplate.remove(new Query(Criteria.where(ID_FIELD).in(ids)),
+            MovieLike.class);
+
+        return (deleteResult != null) ? deleteResult.getDeletedCount() : 0;
+    }
+}
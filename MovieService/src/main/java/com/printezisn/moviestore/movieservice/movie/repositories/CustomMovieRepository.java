@@ -1,6 +1,17 @@
 package com.printezisn.moviestore.movieservice.movie.repositories;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.util.CloseableIterator;
+
 import com.printezisn.moviestore.movieservice.movie.entities.Movie;
+import com.printezisn.moviestore.movieservice.movie.helpers.MovieSearchFilter;
 
 /**
  * Interface with extra repository methods for movies
@@ -8,7 +19,8 @@ import com.printezisn.moviestore.movieservice.movie.entities.Movie;
 public interface CustomMovieRepository {
 
     /**
-     * Updates a movie
+     * Updates the fields of a movie that are edited by users, and marks it as
+     * deleted when it's deleted. The likes of the movie are not affected.
      * 
      * @param movie
      *            The movie
@@ -17,4 +29,264 @@ public interface CustomMovieRepository {
      * @return The number of documents affected
      */
     long updateMovie(final Movie movie, final String currentRevision);
+
+    /**
+     * Updates a movie after it's indexed, by clearing its pending likes and
+     * unlikes and marking it as not updated. The update fails if the movie was
+     * edited or liked in the meantime.
+     * 
+     * @param movie
+     *            The indexed movie
+     * @param currentRevision
+     *            The current revision of the movie
+     * @param currentLikesRevision
+     *            The current revision of the likes of the movie
+     * @return The number of documents affected
+     */
+    long updateIndexedMovie(final Movie movie, final String currentRevision, final String currentLikesRevision);
+
+    /**
+     * Adds a pending like to a movie, in a single atomic operation that doesn't
+     * conflict with other likes or edits
+     * 
+     * @param movieId
+     *            The id of the movie
+     * @param account
+     *            The account that likes the movie
+     * @return The updated movie, or empty if the movie doesn't exist or is deleted
+     */
+    Optional<Movie> likeMovie(final String movieId, final String account);
+
+    /**
+     * Adds a pending unlike to a movie, in a single atomic operation that doesn't
+     * conflict with other likes or edits
+     * 
+     * @param movieId
+     *            The id of the movie
+     * @param account
+     *            The account that removes the like from the movie
+     * @return The updated movie, or empty if the movie doesn't exist or is deleted
+     */
+    Optional<Movie> unlikeMovie(final String movieId, final String account);
+
+    /**
+     * Applies the pending likes and unlikes of many movies in a single bulk
+     * operation. Movies that don't exist or are deleted are skipped.
+     * 
+     * @param likesByMovie
+     *            The likes per movie id, where each account is mapped to true if it
+     *            likes the movie or to false if it removes its like
+     */
+    void applyLikes(final Map<String, Map<String, Boolean>> likesByMovie);
+
+    /**
+     * Adjusts the total likes of many movies in a single bulk operation and marks
+     * them as updated
+     * 
+     * @param deltas
+     *            The change of the total likes per movie id
+     */
+    void applyLikeCounts(final Map<String, Long> deltas);
+
+    /**
+     * Adjusts the total likes of a movie, without affecting any other field
+     * 
+     * @param movieId
+     *            The id of the movie
+     * @param delta
+     *            The change of the total likes
+     */
+    void incrementTotalLikes(final String movieId, final long delta);
+
+    /**
+     * Returns a chunk of movies that are not deleted, ordered by id, with only
+     * the fields needed to reconcile their total likes
+     * 
+     * @param lastId
+     *            The id after which the chunk starts, or null to start from the
+     *            first movie
+     * @param limit
+     *            The maximum number of movies in the chunk
+     * @return The movies of the chunk
+     */
+    List<Movie> findLikeCountsAfter(final String lastId, final int limit);
+
+    /**
+     * Corrects the total likes of a movie and marks it as updated. The update
+     * fails if the movie was liked or updated since it was read.
+     * 
+     * @param movie
+     *            The movie, as it was read
+     * @param totalLikes
+     *            The correct total likes
+     * @return The number of documents affected
+     */
+    long correctTotalLikes(final Movie movie, final long totalLikes);
+
+    /**
+     * Returns a movie that is not deleted, without its pending likes and unlikes
+     * 
+     * @param id
+     *            The id of the movie
+     * @return The movie, or empty if the movie doesn't exist or is deleted
+     */
+    Optional<Movie> findActiveMovie(final String id);
+
+    /**
+     * Returns the movies with the given ids that are not deleted, with only their
+     * id and total likes
+     * 
+     * @param ids
+     *            The ids of the movies
+     * @return The movies
+     */
+    List<Movie> findTotalLikes(final Collection<String> ids);
+
+    /**
+     * Returns which of the given movies exist and are not deleted
+     * 
+     * @param ids
+     *            The ids of the movies
+     * @return The ids of the movies that exist and are not deleted
+     */
+    Set<String> findActiveMovieIds(final Collection<String> ids);
+
+    /**
+     * Streams the movies that are marked as updated, using a database cursor
+     * 
+     * @param batchSize
+     *            The number of movies fetched in each round trip of the cursor
+     * @return The iterator of the movies, which must be closed after use
+     */
+    CloseableIterator<Movie> streamUpdatedMovies(final int batchSize);
+
+    /**
+     * Streams the movies that are not deleted, using a database cursor
+     * 
+     * @param batchSize
+     *            The number of movies fetched in each round trip of the cursor
+     * @return The iterator of the movies, which must be closed after use
+     */
+    CloseableIterator<Movie> streamActiveMovies(final int batchSize);
+
+    /**
+     * Streams the movies that are not deleted in a range of ids, ordered by id,
+     * with a database cursor that doesn't time out while the movies are consumed
+     * slowly
+     * 
+     * @param fromId
+     *            The id from which the range starts, or null to start from the
+     *            first movie
+     * @param inclusive
+     *            Indicates if the movie with the starting id is included
+     * @param toId
+     *            The id before which the range ends, or null to end at the last
+     *            movie
+     * @param batchSize
+     *            The number of movies fetched in each round trip of the cursor
+     * @return The iterator of the movies, which must be closed after use
+     */
+    CloseableIterator<Movie> streamActiveMovieRange(final String fromId, final boolean inclusive, final String toId,
+        final int batchSize);
+
+    /**
+     * Counts the movies that are not deleted
+     * 
+     * @return The number of movies
+     */
+    long countActiveMovies();
+
+    /**
+     * Streams the movies that are not deleted, ordered by their update timestamp,
+     * with a database cursor that doesn't time out while the movies are consumed
+     * slowly
+     * 
+     * @param updatedSince
+     *            The update timestamp from which the movies are streamed, or null
+     *            to stream all the movies
+     * @param batchSize
+     *            The number of movies fetched in each round trip of the cursor
+     * @return The iterator of the movies, which must be closed after use
+     */
+    CloseableIterator<Movie> streamExportedMovies(final Long updatedSince, final int batchSize);
+
+    /**
+     * Inserts many movies in a single bulk operation
+     * 
+     * @param movies
+     *            The movies to insert
+     * @param ordered
+     *            Indicates if the movies are inserted in order, stopping at the
+     *            first failure, or in any order, inserting all the movies that
+     *            don't fail
+     * @return The errors of the movies that failed, by their position in the
+     *         list. In ordered mode, the movies after the failed one are not
+     *         inserted either.
+     */
+    Map<Integer, String> insertMovies(final List<Movie> movies, final boolean ordered);
+
+    /**
+     * Marks movies as updated, so that they are indexed again
+     * 
+     * @param ids
+     *            The ids of the movies
+     */
+    void markUpdated(final Collection<String> ids);
+
+    /**
+     * Returns deleted movies that are removed from the search index and wait to
+     * be purged, with only their id and the number of their purged likes
+     * 
+     * @param limit
+     *            The maximum number of movies
+     * @return The movies
+     */
+    List<Movie> findPurgeableMovies(final int limit);
+
+    /**
+     * Adds to the number of purged likes of a deleted movie, which records the
+     * progress of its purge
+     * 
+     * @param movieId
+     *            The id of the movie
+     * @param count
+     *            The number of likes that were purged
+     */
+    void incrementPurgedLikes(final String movieId, final long count);
+
+    /**
+     * Removes a deleted movie that is removed from the search index
+     * 
+     * @param movieId
+     *            The id of the movie
+     * @return The number of documents affected
+     */
+    long deletePurgeableMovie(final String movieId);
+
+    /**
+     * Searches for a page of movies that are not deleted, using the text index
+     * and the sort indexes of the collection. It's the fallback of the search
+     * index, so the text is matched by whole words and the matching movies are
+     * not counted; the total of the page only shows if there is a next page.
+     * 
+     * @param text
+     *            The text to search for
+     * @param filters
+     *            The filters of the search
+     * @param fields
+     *            The fields of the movies that are returned, or an empty set for
+     *            all the fields
+     * @param pageable
+     *            The paging and sorting of the search. Only the first sort field
+     *            is used, and its ties are broken by the id in the same
+     *            direction, so that the sort is served by an index.
+     * @param searchAfter
+     *            The sort value and the id of the movie after which the page
+     *            starts, or null if the page is found by its number
+     * @param maxTime
+     *            The maximum time of the search in milliseconds
+     * @return The movies found
+     */
+    Page<Movie> searchActiveMovies(final Optional<String> text, final Set<MovieSearchFilter> filters,
+        final Set<String> fields, final Pageable pageable, final Object[] searchAfter, final long maxTime);
 }
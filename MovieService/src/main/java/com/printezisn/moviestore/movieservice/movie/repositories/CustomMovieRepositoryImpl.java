@@ -1,12 +1,37 @@
 package com.printezisn.moviestore.movieservice.movie.repositories;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.BulkOperations.BulkMode;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Sort.Direction;
+import org.springframework.data.domain.Sort.Order;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
 import org.springframework.data.mongodb.core.MongoTemplate;
 import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.TextCriteria;
 import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.util.CloseableIterator;
 
+import com.mongodb.BulkWriteError;
+import com.mongodb.client.result.DeleteResult;
 import com.mongodb.client.result.UpdateResult;
 import com.printezisn.moviestore.movieservice.movie.entities.Movie;
+import com.printezisn.moviestore.movieservice.movie.helpers.MovieSearchFilter;
 
 import lombok.RequiredArgsConstructor;
 
@@ -27,6 +52,9 @@ public class CustomMovieRepositoryImpl implements CustomMovieRepository {
     private static final String PENDING_LIKES_FIELD = "pendingLikes";
     private static final String PENDING_UNLIKES_FIELD = "pendingUnlikes";
     private static final String UPDATED_FIELD = "updated";
+    private static final String DELETED_FIELD = "deleted";
+    private static final String LIKES_REVISION_FIELD = "likesRevision";
+    private static final String PURGED_LIKES_FIELD = "purgedLikes";
 
     private final MongoTemplate mongoTemplate;
 
@@ -46,8 +74,26 @@ public class CustomMovieRepositoryImpl implements CustomMovieRepository {
         update.set(DESCRIPTION_FIELD, movie.getDescription());
         update.set(RATING_FIELD, movie.getRating());
         update.set(RELEASE_YEAR_FIELD, movie.getReleaseYear());
-        update.set(TOTAL_LIKES_FIELD, movie.getTotalLikes());
         update.set(UPDATE_TIMESTAMP_FIELD, movie.getUpdateTimestamp());
+        update.set(UPDATED_FIELD, movie.isUpdated());
+        update.set(DELETED_FIELD, movie.isDeleted());
+
+        final UpdateResult updateResult = mongoTemplate.updateFirst(query, update, Movie.class);
+
+        return (updateResult != null) ? updateResult.getModifiedCount() : 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public long updateIndexedMovie(final Movie movie, final String currentRevision,
+        final String currentLikesRevision) {
+
+        final Query query = new Query(Criteria.where(ID_FIELD).is(movie.getId())
+            .and(REVISION_FIELD).is(currentRevision)
+            .and(LIKES_REVISION_FIELD).is(currentLikesRevision));
+
+        final Update update = new Update();
         update.set(PENDING_LIKES_FIELD, movie.getPendingLikes());
         update.set(PENDING_UNLIKES_FIELD, movie.getPendingUnlikes());
         update.set(UPDATED_FIELD, movie.isUpdated());
@@ -56,4 +102,383 @@ public class CustomMovieRepositoryImpl implements CustomMovieRepository {
 
         return (updateResult != null) ? updateResult.getModifiedCount() : 0;
     }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Optional<Movie> likeMovie(final String movieId, final String account) {
+        final Update update = new Update();
+        update.addToSet(PENDING_LIKES_FIELD, account);
+        update.pull(PENDING_UNLIKES_FIELD, account);
+
+        return updateLikes(movieId, update);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Optional<Movie> unlikeMovie(final String movieId, final String account) {
+        final Update update = new Update();
+        update.pull(PENDING_LIKES_FIELD, account);
+        update.addToSet(PENDING_UNLIKES_FIELD, account);
+
+        return updateLikes(movieId, update);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void applyLikes(final Map<String, Map<String, Boolean>> likesByMovie) {
+        if (likesByMovie.isEmpty()) {
+            return;
+        }
+
+        final BulkOperations bulkOperations = mongoTemplate.bulkOps(BulkMode.UNORDERED, Movie.class);
+        likesByMovie.forEach((movieId, likes) -> {
+            final Object[] likedBy = likes.entrySet().stream().filter(entry -> entry.getValue())
+                .map(entry -> entry.getKey()).toArray();
+            final Object[] unlikedBy = likes.entrySet().stream().filter(entry -> !entry.getValue())
+                .map(entry -> entry.getKey()).toArray();
+            final Query query = new Query(Criteria.where(ID_FIELD).is(movieId).and(DELETED_FIELD).is(false));
+
+            // The same field can't be added to and pulled from in a single update, so
+            // the additions and the removals are applied as two separate updates
+            final Update additions = new Update();
+            final Update removals = new Update();
+            if (likedBy.length > 0) {
+                additions.addToSet(PENDING_LIKES_FIELD).each(likedBy);
+                removals.pullAll(PENDING_UNLIKES_FIELD, likedBy);
+            }
+            if (unlikedBy.length > 0) {
+                additions.addToSet(PENDING_UNLIKES_FIELD).each(unlikedBy);
+                removals.pullAll(PENDING_LIKES_FIELD, unlikedBy);
+            }
+
+            // Both updates change the likes revision, so a movie indexed between them
+            // isn't marked as up to date
+            for (final Update update : new Update[] { additions, removals }) {
+                update.set(LIKES_REVISION_FIELD, UUID.randomUUID().toString());
+                update.set(UPDATED_FIELD, true);
+                bulkOperations.updateOne(query, update);
+            }
+        });
+
+        bulkOperations.execute();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void applyLikeCounts(final Map<String, Long> deltas) {
+        if (deltas.isEmpty()) {
+            return;
+        }
+
+        final BulkOperations bulkOperations = mongoTemplate.bulkOps(BulkMode.UNORDERED, Movie.class);
+        deltas.forEach((movieId, delta) -> {
+            final Update update = new Update();
+            update.inc(TOTAL_LIKES_FIELD, delta);
+            update.set(LIKES_REVISION_FIELD, UUID.randomUUID().toString());
+            update.set(UPDATED_FIELD, true);
+
+            bulkOperations.updateOne(new Query(Criteria.where(ID_FIELD).is(movieId)), update);
+        });
+
+        bulkOperations.execute();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void incrementTotalLikes(final String movieId, final long delta) {
+        final Query query = new Query(Criteria.where(ID_FIELD).is(movieId));
+
+        mongoTemplate.updateFirst(query, new Update().inc(TOTAL_LIKES_FIELD, delta), Movie.class);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public List<Movie> findLikeCountsAfter(final String lastId, final int limit) {
+        final Criteria criteria = Criteria.where(DELETED_FIELD).is(false);
+        if (lastId != null) {
+            criteria.and(ID_FIELD).gt(lastId);
+        }
+
+        final Query query = new Query(criteria).with(Sort.by(Direction.ASC, ID_FIELD)).limit(limit);
+        query.fields().include(ID_FIELD).include(TOTAL_LIKES_FIELD).include(LIKES_REVISION_FIELD)
+            .include(UPDATED_FIELD);
+
+        return mongoTemplate.find(query, Movie.class);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public long correctTotalLikes(final Movie movie, final long totalLikes) {
+        final Query query = new Query(Criteria.where(ID_FIELD).is(movie.getId())
+            .and(TOTAL_LIKES_FIELD).is(movie.getTotalLikes())
+            .and(LIKES_REVISION_FIELD).is(movie.getLikesRevision())
+            .and(UPDATED_FIELD).is(false));
+
+        final Update update = new Update();
+        update.set(TOTAL_LIKES_FIELD, totalLikes);
+        update.set(UPDATED_FIELD, true);
+
+        final UpdateResult updateResult = mongoTemplate.updateFirst(query, update, Movie.class);
+
+        return (updateResult != null) ? updateResult.getModifiedCount() : 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Optional<Movie> findActiveMovie(final String id) {
+        final Query query = new Query(Criteria.where(ID_FIELD).is(id).and(DELETED_FIELD).is(false));
+        query.fields().exclude(PENDING_LIKES_FIELD).exclude(PENDING_UNLIKES_FIELD);
+
+        return Optional.ofNullable(mongoTemplate.findOne(query, Movie.class));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public List<Movie> findTotalLikes(final Collection<String> ids) {
+        final Query query = new Query(Criteria.where(ID_FIELD).in(ids).and(DELETED_FIELD).is(false));
+        query.fields().include(ID_FIELD).include(TOTAL_LIKES_FIELD);
+
+        return mongoTemplate.find(query, Movie.class);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Set<String> findActiveMovieIds(final Collection<String> ids) {
+        final Query query = new Query(Criteria.where(ID_FIELD).in(ids).and(DELETED_FIELD).is(false));
+        query.fields().include(ID_FIELD);
+
+        return mongoTemplate.find(query, Movie.class).stream()
+            .map(Movie::getId)
+            .collect(Collectors.toSet());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public CloseableIterator<Movie> streamUpdatedMovies(final int batchSize) {
+        final Query query = new Query(Criteria.where(UPDATED_FIELD).is(true)).cursorBatchSize(batchSize);
+
+        return mongoTemplate.stream(query, Movie.class);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public CloseableIterator<Movie> streamActiveMovies(final int batchSize) {
+        final Query query = new Query(Criteria.where(DELETED_FIELD).is(false)).cursorBatchSize(batchSize);
+        query.fields().exclude(PENDING_LIKES_FIELD).exclude(PENDING_UNLIKES_FIELD);
+
+        return mongoTemplate.stream(query, Movie.class);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public CloseableIterator<Movie> streamActiveMovieRange(final String fromId, final boolean inclusive,
+        final String toId, final int batchSize) {
+
+        final Criteria criteria = Criteria.where(DELETED_FIELD).is(false);
+        if (fromId != null || toId != null) {
+            final Criteria idCriteria = criteria.and(ID_FIELD);
+            if (fromId != null) {
+                if (inclusive) {
+                    idCriteria.gte(fromId);
+                }
+                else {
+                    idCriteria.gt(fromId);
+                }
+            }
+            if (toId != null) {
+                idCriteria.lt(toId);
+            }
+        }
+
+        final Query query = new Query(criteria)
+            .with(Sort.by(Direction.ASC, ID_FIELD))
+            .cursorBatchSize(batchSize)
+            .noCursorTimeout();
+        query.fields().exclude(PENDING_LIKES_FIELD).exclude(PENDING_UNLIKES_FIELD);
+
+        return mongoTemplate.stream(query, Movie.class);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public long countActiveMovies() {
+        return mongoTemplate.count(new Query(Criteria.where(DELETED_FIELD).is(false)), Movie.class);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public CloseableIterator<Movie> streamExportedMovies(final Long updatedSince, final int batchSize) {
+        final Criteria criteria = Criteria.where(DELETED_FIELD).is(false);
+        if (updatedSince != null) {
+            criteria.and(UPDATE_TIMESTAMP_FIELD).gte(updatedSince);
+        }
+
+        final Query query = new Query(criteria)
+            .with(Sort.by(Direction.ASC, UPDATE_TIMESTAMP_FIELD))
+            .cursorBatchSize(batchSize)
+            .noCursorTimeout();
+        query.fields().exclude(PENDING_LIKES_FIELD).exclude(PENDING_UNLIKES_FIELD);
+
+        return mongoTemplate.stream(query, Movie.class);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Map<Integer, String> insertMovies(final List<Movie> movies, final boolean ordered) {
+        if (movies.isEmpty()) {
+            return Collections.emptyMap();
+        }
+
+        try {
+            mongoTemplate.bulkOps(ordered ? BulkMode.ORDERED : BulkMode.UNORDERED, Movie.class)
+                .insert(movies)
+                .execute();
+
+            return Collections.emptyMap();
+        }
+        catch (final BulkOperationException ex) {
+            return ex.getErrors().stream()
+                .collect(Collectors.toMap(BulkWriteError::getIndex, BulkWriteError::getMessage));
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void markUpdated(final Collection<String> ids) {
+        if (ids.isEmpty()) {
+            return;
+        }
+
+        final Query query = new Query(Criteria.where(ID_FIELD).in(ids));
+
+        mongoTemplate.updateMulti(query, new Update().set(UPDATED_FIELD, true), Movie.class);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public List<Movie> findPurgeableMovies(final int limit) {
+        final Query query = new Query(Criteria.where(DELETED_FIELD).is(true).and(UPDATED_FIELD).is(false))
+            .limit(limit);
+        query.fields().include(ID_FIELD).include(PURGED_LIKES_FIELD);
+
+        return mongoTemplate.find(query, Movie.class);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void incrementPurgedLikes(final String movieId, final long count) {
+        final Query query = new Query(Criteria.where(ID_FIELD).is(movieId));
+
+        mongoTemplate.updateFirst(query, new Update().inc(PURGED_LIKES_FIELD, count), Movie.class);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public long deletePurgeableMovie(final String movieId) {
+        final Query query = new Query(Criteria.where(ID_FIELD).is(movieId)
+            .and(DELETED_FIELD).is(true)
+            .and(UPDATED_FIELD).is(false));
+
+        final DeleteResult deleteResult = mongoTemplate.remove(query, Movie.class);
+
+        return (deleteResult != null) ? deleteResult.getDeletedCount() : 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Page<Movie> searchActiveMovies(final Optional<String> text, final Set<MovieSearchFilter> filters,
+        final Set<String> fields, final Pageable pageable, final Object[] searchAfter, final long maxTime) {
+
+        final Order order = pageable.getSort().iterator().next();
+        final List<Criteria> criteria = new ArrayList<>();
+        criteria.add(Criteria.where(DELETED_FIELD).is(false));
+        for (final MovieSearchFilter filter : filters) {
+            final Criteria filterCriteria = Criteria.where(filter.getField());
+            if (filter.getFrom() != null) {
+                filterCriteria.gte(filter.getFrom());
+            }
+            if (filter.getTo() != null) {
+                filterCriteria.lt(filter.getTo());
+            }
+            criteria.add(filterCriteria);
+        }
+
+        // The page continues after the movie of the cursor, comparing the ids when the
+        // sort values are equal
+        if (searchAfter != null) {
+            criteria.add(order.isAscending()
+                ? new Criteria().orOperator(
+                    Criteria.where(order.getProperty()).gt(searchAfter[0]),
+                    Criteria.where(order.getProperty()).is(searchAfter[0]).and(ID_FIELD).gt(searchAfter[1]))
+                : new Criteria().orOperator(
+                    Criteria.where(order.getProperty()).lt(searchAfter[0]),
+                    Criteria.where(order.getProperty()).is(searchAfter[0]).and(ID_FIELD).lt(searchAfter[1])));
+        }
+
+        final Query query = new Query(new Criteria().andOperator(criteria.toArray(new Criteria[criteria.size()])));
+        if (text.isPresent() && !text.get().isBlank()) {
+            query.addCriteria(TextCriteria.forDefaultLanguage().matching(text.get()));
+        }
+
+        // One more movie is fetched to find if there is a next page
+        final long offset = (searchAfter != null) ? 0 : pageable.getOffset();
+        query.with(Sort.by(order.getDirection(), order.getProperty(), ID_FIELD))
+            .skip(offset)
+            .limit(pageable.getPageSize() + 1)
+            .maxTimeMsec(maxTime);
+        if (fields.isEmpty()) {
+            query.fields().exclude(PENDING_LIKES_FIELD).exclude(PENDING_UNLIKES_FIELD);
+        }
+        else {
+            fields.forEach(field -> query.fields().include(field));
+        }
+
+        final List<Movie> movies = mongoTemplate.find(query, Movie.class);
+        final List<Movie> content = movies.subList(0, Math.min(movies.size(), pageable.getPageSize()));
+
+        return new PageImpl<>(content, pageable, pageable.getOffset() + movies.size());
+    }
+
+    /**
+     * Applies an update on the pending likes of a movie, marks the movie as
+     * updated and returns the new state of the movie
+     * 
+     * @param movieId
+     *            The id of the movie
+     * @param update
+     *            The update on the pending likes
+     * @return The updated movie, or empty if the movie doesn't exist or is deleted
+     */
+    private Optional<Movie> updateLikes(final String movieId, final Update update) {
+        final Query query = new Query(Criteria.where(ID_FIELD).is(movieId).and(DELETED_FIELD).is(false));
+
+        update.set(LIKES_REVISION_FIELD, UUID.randomUUID().toString());
+        update.set(UPDATED_FIELD, true);
+
+        final Movie movie = mongoTemplate.findAndModify(query, update,
+            FindAndModifyOptions.options().returnNew(true), Movie.class);
+
+        return Optional.ofNullable(movie);
+    }
 }
@@ -0,0 +1,420 @@
+package com.printezisn.moviestore.movieservice.movie.repositories;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.BiFunction;
+
+import org.apache.lucene.document.DoublePoint;
+import org.apache.lucene.document.IntPoint;
+import org.apache.lucene.document.LongPoint;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause.Occur;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.CollectionTerminatedException;
+import org.apache.lucene.search.DisjunctionMaxQuery;
+import org.apache.lucene.search.FieldDoc;
+import org.apache.lucene.search.FuzzyQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.MatchNoDocsQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.SimpleCollector;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.TopFieldCollector;
+import org.apache.lucene.util.BytesRef;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.elasticsearch.core.aggregation.AggregatedPage;
+import org.springframework.data.elasticsearch.core.aggregation.impl.AggregatedPageImpl;
+import org.springframework.stereotype.Repository;
+
+import com.printezisn.moviestore.common.dto.movie.MovieDto;
+import com.printezisn.moviestore.movieservice.configuration.properties.SearchIndexProperties;
+import com.printezisn.moviestore.movieservice.movie.helpers.EmbeddedMovieIndex;
+import com.printezisn.moviestore.movieservice.movie.helpers.MovieSearchFilter;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Implementation of the interface with extra repository methods for indexing
+ * movies, which searches the embedded search index. The queries are the Lucene
+ * equivalents of the queries sent to Elasticsearch, so the text, the filters,
+ * the sorting and the paging behave the same way. The facets are not
+ * aggregated.
+ */
+@Repository
+@Profile("embedded-search")
+@RequiredArgsConstructor
+public class EmbeddedMovieIndexRepository implements CustomMovieIndexRepository {
+
+    private static final int MAX_EDITS = 2;
+
+    private final EmbeddedMovieIndex embeddedMovieIndex;
+
+    private final SearchIndexProperties searchIndexProperties;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public AggregatedPage<MovieDto> search(final Optional<String> text, final Set<MovieSearchFilter> filters,
+        final Set<String> fields, final boolean withFacets, final boolean countTotal, final Pageable pageable) {
+
+        return search(text, filters, fields, countTotal, pageable, null);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public AggregatedPage<MovieDto> searchAfter(final Optional<String> text, final Set<MovieSearchFilter> filters,
+        final Set<String> fields, final boolean withFacets, final boolean countTotal, final Pageable pageable,
+        final Object[] searchAfter) {
+
+        return search(text, filters, fields, countTotal, pageable, searchAfter);
+    }
+
+    /**
+     * Searches for movies using full text search. In n-gram search mode, fuzzy
+     * matching is added only if the n-gram query has fewer hits than the
+     * configured minimum, like in Elasticsearch. Without counting, one more movie
+     * than the page size is collected, so that the movie shows if there is a next
+     * page.
+     * 
+     * @param text
+     *            The text used as filter
+     * @param filters
+     *            The ranges that the movies must be in
+     * @param fields
+     *            The fields of the movies that are loaded, or an empty set for all
+     *            the fields
+     * @param countTotal
+     *            Indicates if all the matching movies are counted
+     * @param pageable
+     *            The pageable criteria
+     * @param searchAfter
+     *            The sort values of the last movie of the previous page, or null
+     *            if the page is found by its number
+     * @return The movies found
+     */
+    private AggregatedPage<MovieDto> search(final Optional<String> text, final Set<MovieSearchFilter> filters,
+        final Set<String> fields, final boolean countTotal, final Pageable pageable, final Object[] searchAfter) {
+
+        try {
+            return embeddedMovieIndex.search(searcher -> {
+                final Query query = applyFilters(createQuery(searcher, text, filters), filters);
+                final Sort sort = createSort(pageable);
+                final FieldDoc after = (searchAfter != null) ? createAfter(sort, searchAfter) : null;
+                final int offset = (after != null) ? 0 : (int) pageable.getOffset();
+                final int size = countTotal ? pageable.getPageSize() : pageable.getPageSize() + 1;
+
+                final TopFieldCollector collector = TopFieldCollector.create(sort, offset + size, after, false,
+                    false, false, countTotal);
+                searcher.search(query, collector);
+                final TopDocs topDocs = collector.topDocs(offset, size);
+
+                final Set<String> fieldsToLoad = fields.isEmpty() ? null : fields;
+                final List<MovieDto> movies = new ArrayList<>(topDocs.scoreDocs.length);
+                for (final ScoreDoc scoreDoc : topDocs.scoreDocs) {
+                    movies.add(embeddedMovieIndex.readMovie(searcher.doc(scoreDoc.doc, fieldsToLoad)));
+                }
+
+                return createPage(movies, pageable, collector.getTotalHits(), countTotal);
+            });
+        }
+        catch (final IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    /**
+     * Creates the query of the text
+     * 
+     * @param searcher
+     *            The searcher, which decides if the n-gram query has enough hits
+     * @param text
+     *            The text used as filter
+     * @param filters
+     *            The ranges that the movies must be in
+     * @return The query
+     * @throws IOException
+     *             Exception thrown if the index can't be read
+     */
+    private Query createQuery(final IndexSearcher searcher, final Optional<String> text,
+        final Set<MovieSearchFilter> filters) throws IOException {
+
+        if (!text.isPresent() || text.get().isBlank()) {
+            return new MatchAllDocsQuery();
+        }
+        if (!searchIndexProperties.isNgramSearchMode()) {
+            return createMultiMatchQuery("*" + text.get() + "*",
+                (field, term) -> new FuzzyQuery(new Term(field, term), MAX_EDITS),
+                EmbeddedMovieIndex.TITLE_FIELD, EmbeddedMovieIndex.DESCRIPTION_FIELD);
+        }
+
+        final Query ngramQuery = createMultiMatchQuery(text.get(),
+            (field, term) -> new TermQuery(new Term(field, term)), EmbeddedMovieIndex.TITLE_NGRAM_FIELD,
+            EmbeddedMovieIndex.TITLE_PREFIX_FIELD, EmbeddedMovieIndex.DESCRIPTION_NGRAM_FIELD);
+        if (hasMinHits(searcher, applyFilters(ngramQuery, filters))) {
+            return ngramQuery;
+        }
+
+        return new BooleanQuery.Builder()
+            .add(ngramQuery, Occur.SHOULD)
+            .add(createMultiMatchQuery(text.get(), this::createAutoFuzzyQuery,
+                EmbeddedMovieIndex.TITLE_FIELD, EmbeddedMovieIndex.DESCRIPTION_FIELD), Occur.SHOULD)
+            .setMinimumNumberShouldMatch(1)
+            .build();
+    }
+
+    /**
+     * Checks if a query matches at least the minimum hits of the n-gram search.
+     * The collection stops at the minimum, so the cost doesn't depend on how many
+     * movies match.
+     * 
+     * @param searcher
+     *            The searcher
+     * @param query
+     *            The query
+     * @return True if the query matches at least the minimum hits, otherwise
+     *         false
+     * @throws IOException
+     *             Exception thrown if the index can't be read
+     */
+    private boolean hasMinHits(final IndexSearcher searcher, final Query query) throws IOException {
+        final int minHits = searchIndexProperties.getFuzzyFallbackMinHits();
+        final int[] hits = { 0 };
+
+        searcher.search(query, new SimpleCollector() {
+            @Override
+            protected void doSetNextReader(final LeafReaderContext context) throws IOException {
+                if (hits[0] >= minHits) {
+                    throw new CollectionTerminatedException();
+                }
+            }
+
+            @Override
+            public void collect(final int doc) throws IOException {
+                if (++hits[0] >= minHits) {
+                    throw new CollectionTerminatedException();
+                }
+            }
+
+            @Override
+            public boolean needsScores() {
+                return false;
+            }
+        });
+
+        return hits[0] >= minHits;
+    }
+
+    /**
+     * Creates a query that matches all the terms of the text in at least one of
+     * the fields, scored by the best field. A field where the text has no terms
+     * matches nothing.
+     * 
+     * @param text
+     *            The text used as filter
+     * @param termQuery
+     *            The function that creates the query of a term in a field
+     * @param fields
+     *            The fields
+     * @return The query
+     */
+    private Query createMultiMatchQuery(final String text, final BiFunction<String, String, Query> termQuery,
+        final String... fields) {
+
+        final List<Query> fieldQueries = new ArrayList<>();
+        for (final String field : fields) {
+            final List<String> terms = embeddedMovieIndex.analyze(field, text);
+            if (terms.isEmpty()) {
+                continue;
+            }
+
+            final BooleanQuery.Builder fieldQuery = new BooleanQuery.Builder();
+            terms.forEach(term -> fieldQuery.add(termQuery.apply(field, term), Occur.MUST));
+            fieldQueries.add(fieldQuery.build());
+        }
+
+        return fieldQueries.isEmpty() ? new MatchNoDocsQuery() : new DisjunctionMaxQuery(fieldQueries, 0);
+    }
+
+    /**
+     * Creates the query of a term with the automatic fuzziness of Elasticsearch,
+     * i.e. exact for up to two characters, one edit for up to five characters and
+     * two edits for longer terms
+     * 
+     * @param field
+     *            The field
+     * @param term
+     *            The term
+     * @return The query
+     */
+    private Query createAutoFuzzyQuery(final String field, final String term) {
+        final int length = term.codePointCount(0, term.length());
+        if (length < 3) {
+            return new TermQuery(new Term(field, term));
+        }
+
+        return new FuzzyQuery(new Term(field, term), (length < 6) ? 1 : MAX_EDITS);
+    }
+
+    /**
+     * Adds filters to a query. The filters don't affect the scoring.
+     * 
+     * @param query
+     *            The query
+     * @param filters
+     *            The ranges that the movies must be in
+     * @return The query with the filters
+     */
+    private Query applyFilters(final Query query, final Set<MovieSearchFilter> filters) {
+        if (filters.isEmpty()) {
+            return query;
+        }
+
+        final BooleanQuery.Builder filteredQuery = new BooleanQuery.Builder().add(query, Occur.MUST);
+        filters.forEach(filter -> filteredQuery.add(createRangeQuery(filter), Occur.FILTER));
+
+        return filteredQuery.build();
+    }
+
+    /**
+     * Creates the query of a filter. The points queries have inclusive bounds, so
+     * the exclusive upper bound becomes the previous value of the field type.
+     * 
+     * @param filter
+     *            The filter
+     * @return The query
+     */
+    private Query createRangeQuery(final MovieSearchFilter filter) {
+        final Double from = filter.getFrom();
+        final Double to = filter.getTo();
+
+        switch (filter.getField()) {
+        case EmbeddedMovieIndex.RELEASE_YEAR_FIELD:
+            return IntPoint.newRangeQuery(filter.getField(),
+                (from != null) ? (int) Math.ceil(from) : Integer.MIN_VALUE,
+                (to != null) ? (int) Math.ceil(to) - 1 : Integer.MAX_VALUE);
+        case EmbeddedMovieIndex.TOTAL_LIKES_FIELD:
+            return LongPoint.newRangeQuery(filter.getField(),
+                (from != null) ? (long) Math.ceil(from) : Long.MIN_VALUE,
+                (to != null) ? (long) Math.ceil(to) - 1 : Long.MAX_VALUE);
+        default:
+            return DoublePoint.newRangeQuery(filter.getField(),
+                (from != null) ? from : Double.NEGATIVE_INFINITY,
+                (to != null) ? Math.nextDown(to) : Double.POSITIVE_INFINITY);
+        }
+    }
+
+    /**
+     * Creates the sort of the pageable criteria
+     * 
+     * @param pageable
+     *            The pageable criteria
+     * @return The sort
+     */
+    private Sort createSort(final Pageable pageable) {
+        final List<SortField> sortFields = new ArrayList<>();
+        pageable.getSort().forEach(order -> sortFields.add(createSortField(order.getProperty(),
+            order.isDescending())));
+
+        return sortFields.isEmpty() ? Sort.INDEXORDER : new Sort(sortFields.toArray(new SortField[0]));
+    }
+
+    /**
+     * Creates the sort of a field, which is read from its doc values
+     * 
+     * @param property
+     *            The sorted property
+     * @param descending
+     *            Indicates if the sort is descending
+     * @return The sort of the field
+     */
+    private SortField createSortField(final String property, final boolean descending) {
+        switch (property) {
+        case EmbeddedMovieIndex.ID_FIELD:
+            return new SortField(EmbeddedMovieIndex.ID_FIELD, SortField.Type.STRING, descending);
+        case EmbeddedMovieIndex.RATING_FIELD:
+            return new SortField(property, SortField.Type.DOUBLE, descending);
+        case EmbeddedMovieIndex.RELEASE_YEAR_FIELD:
+            return new SortField(property, SortField.Type.INT, descending);
+        default:
+            return new SortField(property, SortField.Type.LONG, descending);
+        }
+    }
+
+    /**
+     * Creates the position after which a page starts, from the sort values of
+     * the last movie of the previous page. The document number only breaks ties
+     * of equal values, which the sort by id doesn't have.
+     * 
+     * @param sort
+     *            The sort
+     * @param searchAfter
+     *            The sort values
+     * @return The position
+     */
+    private FieldDoc createAfter(final Sort sort, final Object[] searchAfter) {
+        final SortField[] sortFields = sort.getSort();
+        final Object[] values = new Object[sortFields.length];
+        for (int i = 0; i < sortFields.length; i++) {
+            switch (sortFields[i].getType()) {
+            case DOUBLE:
+                values[i] = ((Number) searchAfter[i]).doubleValue();
+                break;
+            case INT:
+                values[i] = ((Number) searchAfter[i]).intValue();
+                break;
+            case LONG:
+                values[i] = ((Number) searchAfter[i]).longValue();
+                break;
+            default:
+                values[i] = new BytesRef(searchAfter[i].toString());
+                break;
+            }
+        }
+
+        return new FieldDoc(Integer.MAX_VALUE, Float.NaN, values);
+    }
+
+    /**
+     * Creates the page of movies of a search. Without counting, the extra movie
+     * is dropped and the total only counts the movies up to it, so the page has a
+     * next page if the extra movie was found.
+     * 
+     * @param movies
+     *            The movies found
+     * @param pageable
+     *            The pageable criteria
+     * @param totalHits
+     *            The total hits of the search
+     * @param countTotal
+     *            Indicates if the search counted all the matching movies
+     * @return The page of movies
+     */
+    private AggregatedPage<MovieDto> createPage(final List<MovieDto> movies, final Pageable pageable,
+        final long totalHits, final boolean countTotal) {
+
+        if (countTotal) {
+            return new AggregatedPageImpl<MovieDto>(movies, pageable, totalHits);
+        }
+
+        final long total = pageable.getOffset() + movies.size();
+        final List<MovieDto> pageMovies = (movies.size() > pageable.getPageSize())
+            ? movies.subList(0, pageable.getPageSize())
+            : movies;
+
+        return new AggregatedPageImpl<MovieDto>(pageMovies, pageable, total);
+    }
+}
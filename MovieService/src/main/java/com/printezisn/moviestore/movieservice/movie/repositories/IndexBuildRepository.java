@@ -0,0 +1,14 @@
+package com.printezisn.moviestore.movieservice.movie.repositories;
+
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+import com.printezisn.moviestore.movieservice.movie.entities.IndexBuild;
+
+/**
+ * The repository layer for the search indices that are being built
+ */
+@Repository
+public interface IndexBuildRepository extends MongoRepository<IndexBuild, String> {
+
+}
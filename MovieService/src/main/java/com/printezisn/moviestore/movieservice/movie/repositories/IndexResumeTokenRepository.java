@@ -0,0 +1,14 @@
+package com.printezisn.moviestore.movieservice.movie.repositories;
+
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+import com.printezisn.moviestore.movieservice.movie.entities.IndexResumeToken;
+
+/**
+ * The repository layer for change stream resume tokens
+ */
+@Repository
+public interface IndexResumeTokenRepository extends MongoRepository<IndexResumeToken, String> {
+
+}
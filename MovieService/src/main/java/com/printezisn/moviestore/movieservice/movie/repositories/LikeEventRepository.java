@@ -0,0 +1,14 @@
+package com.printezisn.moviestore.movieservice.movie.repositories;
+
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+import com.printezisn.moviestore.movieservice.movie.entities.LikeEvent;
+
+/**
+ * The repository layer for the events of the like journal
+ */
+@Repository
+public interface LikeEventRepository extends MongoRepository<LikeEvent, String> {
+
+}
@@ -0,0 +1,22 @@
+package com.printezisn.moviestore.movieservice.movie.repositories;
+
+import java.util.Optional;
+
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+import com.printezisn.moviestore.movieservice.movie.entities.ReindexJob;
+
+/**
+ * The repository layer for full reindexes
+ */
+@Repository
+public interface ReindexJobRepository extends MongoRepository<ReindexJob, String> {
+
+    /**
+     * Returns the most recent reindex
+     * 
+     * @return The reindex, or empty if there is none
+     */
+    Optional<ReindexJob> findFirstByOrderByCreationTimestampDesc();
+}
@@ -1,12 +1,22 @@
 package com.printezisn.moviestore.movieservice.movie.services;
 
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.time.Instant;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
+import com.printezisn.moviestore.common.models.movie.MovieImportResultModel;
 import com.printezisn.moviestore.common.models.movie.MoviePagedResultModel;
 import com.printezisn.moviestore.common.dto.movie.MovieDto;
+import com.printezisn.moviestore.common.dto.movie.MovieLikeStatusDto;
+import com.printezisn.moviestore.common.dto.movie.MovieReindexStatusDto;
+import com.printezisn.moviestore.common.dto.movie.MovieSuggestionDto;
 import com.printezisn.moviestore.movieservice.movie.exceptions.MovieConditionalException;
 import com.printezisn.moviestore.movieservice.movie.exceptions.MovieNotFoundException;
+import com.printezisn.moviestore.movieservice.movie.exceptions.MovieValidationException;
+import com.printezisn.moviestore.movieservice.movie.helpers.MovieExportFormat;
 
 /**
  * The service layer for movies
@@ -24,10 +34,110 @@ public interface MovieService {
      *            The sorting field
      * @param isAscending
      *            Indicates if the sorting is ascending or descending
+     * @param cursor
+     *            The cursor of the page. When it's present, it's used instead of
+     *            the page number and the sorting.
+     * @param filters
+     *            The filters of the search, each one with a field and a range,
+     *            e.g. "releaseYear:1990-2000". Every page of a search must have the
+     *            same filters.
+     * @param withFacets
+     *            Indicates if the facets of the search are returned
+     * @param fields
+     *            The fields of the movies that are returned, or an empty list for
+     *            all the fields. The id and the sorting field are always returned.
+     * @param size
+     *            The page size, which is limited to a maximum
+     * @param countTotal
+     *            Indicates if all the matching movies are counted. Otherwise, only
+     *            one more movie than the page size is fetched to find if there is a
+     *            next page, and the total pages are only the pages found so far.
      * @return The movies found
+     * @throws MovieValidationException
+     *             Exception thrown if the cursor, a filter or a field is invalid
      */
     MoviePagedResultModel searchMovies(final Optional<String> text, final Optional<Integer> pageNumber,
-        final Optional<String> sortField, final boolean isAscending);
+        final Optional<String> sortField, final boolean isAscending, final Optional<String> cursor,
+        final List<String> filters, final boolean withFacets, final List<String> fields,
+        final Optional<Integer> size, final boolean countTotal) throws MovieValidationException;
+
+    /**
+     * Imports movies from a stream of newline delimited JSON records
+     * 
+     * @param input
+     *            The stream of the records
+     * @param ordered
+     *            Indicates if the import stops at the first record that fails, or
+     *            skips the records that fail
+     * @return The result of the import, with the errors of the records that
+     *         failed
+     */
+    MovieImportResultModel importMovies(final InputStream input, final boolean ordered);
+
+    /**
+     * Exports the movies that are not deleted to a stream
+     * 
+     * @param output
+     *            The stream
+     * @param format
+     *            The format of the export
+     * @param updatedSince
+     *            The time since when the exported movies were created or edited
+     *            (Optional)
+     */
+    void exportMovies(final OutputStream output, final MovieExportFormat format, final Optional<Instant> updatedSince);
+
+    /**
+     * Starts a full reindex, which copies all the movies to a fresh search index
+     * in the background
+     * 
+     * @return The progress of the reindex
+     * @throws MovieNotFoundException
+     *             Exception thrown if the search index can't be reindexed
+     * @throws MovieConditionalException
+     *             Exception thrown if a reindex is already running
+     */
+    MovieReindexStatusDto startReindex() throws MovieNotFoundException, MovieConditionalException;
+
+    /**
+     * Resumes the most recent full reindex, if it didn't complete
+     * 
+     * @return The progress of the reindex
+     * @throws MovieNotFoundException
+     *             Exception thrown if there is no reindex to resume
+     * @throws MovieConditionalException
+     *             Exception thrown if a reindex is already running
+     */
+    MovieReindexStatusDto resumeReindex() throws MovieNotFoundException, MovieConditionalException;
+
+    /**
+     * Cancels the full reindex in progress
+     * 
+     * @return The progress of the reindex
+     * @throws MovieNotFoundException
+     *             Exception thrown if the search index can't be reindexed
+     * @throws MovieConditionalException
+     *             Exception thrown if no reindex is running
+     */
+    MovieReindexStatusDto cancelReindex() throws MovieNotFoundException, MovieConditionalException;
+
+    /**
+     * Returns the progress of the most recent full reindex
+     * 
+     * @return The progress of the reindex
+     * @throws MovieNotFoundException
+     *             Exception thrown if there was never a reindex
+     */
+    MovieReindexStatusDto getReindexStatus() throws MovieNotFoundException;
+
+    /**
+     * Suggests movies whose titles start with a prefix
+     * 
+     * @param prefix
+     *            The prefix
+     * @return The most liked movies whose titles start with the prefix
+     */
+    List<MovieSuggestionDto> suggestMovies(final String prefix);
 
     /**
      * Returns a movie
@@ -75,18 +185,17 @@ public interface MovieService {
     void deleteMovie(final UUID id) throws MovieConditionalException;
 
     /**
-     * Adds a like to a movie
+     * Adds a like to a movie. When likes are buffered or journaled, the like
+     * is written later and a missing movie is not reported.
      * 
      * @param movieId
      *            The id of the movie to like
      * @param account
      *            The account that likes the movie
-     * @throws MovieConditionalException
-     *             Exception thrown in case of conditional update failure
      * @throws MovieNotFoundException
      *             Exception thrown if the movie is not found
      */
-    void likeMovie(final UUID movieId, final String account) throws MovieConditionalException, MovieNotFoundException;
+    void likeMovie(final UUID movieId, final String account) throws MovieNotFoundException;
 
     /**
      * Checks if an account has liked a movie
@@ -100,17 +209,29 @@ public interface MovieService {
     boolean hasLiked(final UUID movieId, final String account);
 
     /**
-     * Removes a like from a movie
+     * Returns the like status of many movies for an account, i.e. if the account
+     * has liked each movie and its total likes
+     * 
+     * @param movieIds
+     *            The ids of the movies
+     * @param account
+     *            The account (Optional). Without an account, none of the movies
+     *            is indicated as liked.
+     * @return The like statuses, in the order of the ids. Movies that are not
+     *         found are skipped.
+     */
+    List<MovieLikeStatusDto> getLikeStatuses(final List<UUID> movieIds, final Optional<String> account);
+
+    /**
+     * Removes a like from a movie. When likes are buffered or journaled, the
+     * unlike is written later and a missing movie is not reported.
      * 
      * @param movieId
      *            The id of the movie to unlike
      * @param account
      *            The account that removes the like from the movie
-     * @throws MovieConditionalException
-     *             Exception thrown in case of conditional update failure
      * @throws MovieNotFoundException
      *             Exception thrown if the movie is not found
      */
-    void unlikeMovie(final UUID movieId, final String account)
-        throws MovieConditionalException, MovieNotFoundException;
+    void unlikeMovie(final UUID movieId, final String account) throws MovieNotFoundException;
 }
@@ -1,32 +1,65 @@
 package com.printezisn.moviestore.movieservice.movie.services;
 
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.time.Instant;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
 
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.domain.Sort.Direction;
+import org.springframework.data.domain.Sort.Order;
+import org.springframework.data.elasticsearch.core.aggregation.AggregatedPage;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
+import com.printezisn.moviestore.common.models.movie.MovieImportResultModel;
 import com.printezisn.moviestore.common.models.movie.MoviePagedResultModel;
 import com.printezisn.moviestore.common.dto.movie.MovieDto;
+import com.printezisn.moviestore.common.dto.movie.MovieFacetBucketDto;
+import com.printezisn.moviestore.common.dto.movie.MovieLikeStatusDto;
+import com.printezisn.moviestore.common.dto.movie.MovieReindexStatusDto;
+import com.printezisn.moviestore.common.dto.movie.MovieSuggestionDto;
+import com.printezisn.moviestore.movieservice.configuration.properties.SearchFallbackProperties;
+import com.printezisn.moviestore.movieservice.configuration.properties.SearchIndexProperties;
 import com.printezisn.moviestore.movieservice.movie.entities.Movie;
-import com.printezisn.moviestore.movieservice.movie.entities.MovieIndex;
+import com.printezisn.moviestore.movieservice.movie.entities.MovieLike;
 import com.printezisn.moviestore.movieservice.movie.exceptions.MovieConditionalException;
 import com.printezisn.moviestore.movieservice.movie.exceptions.MovieNotFoundException;
 import com.printezisn.moviestore.movieservice.movie.exceptions.MoviePersistenceException;
+import com.printezisn.moviestore.movieservice.movie.exceptions.MovieValidationException;
+import com.printezisn.moviestore.movieservice.movie.helpers.MovieCache;
+import com.printezisn.moviestore.movieservice.movie.helpers.MovieExportFormat;
+import com.printezisn.moviestore.movieservice.movie.helpers.MovieExporter;
+import com.printezisn.moviestore.movieservice.movie.helpers.MovieImporter;
 import com.printezisn.moviestore.movieservice.movie.helpers.MovieIndexHelper;
+import com.printezisn.moviestore.movieservice.movie.helpers.MovieIndexSweeper;
+import com.printezisn.moviestore.movieservice.movie.helpers.MovieLikeBuffer;
+import com.printezisn.moviestore.movieservice.movie.helpers.MovieLikeJournal;
+import com.printezisn.moviestore.movieservice.movie.helpers.MovieLikeReconciler;
+import com.printezisn.moviestore.movieservice.movie.helpers.MovieReindexer;
+import com.printezisn.moviestore.movieservice.movie.helpers.MovieSearchCache;
+import com.printezisn.moviestore.movieservice.movie.helpers.MovieSearchCircuitBreaker;
+import com.printezisn.moviestore.movieservice.movie.helpers.MovieSearchCursor;
+import com.printezisn.moviestore.movieservice.movie.helpers.MovieSearchFacets;
+import com.printezisn.moviestore.movieservice.movie.helpers.MovieSearchFilter;
+import com.printezisn.moviestore.movieservice.movie.helpers.MovieSuggester;
 import com.printezisn.moviestore.movieservice.movie.mappers.MovieMapper;
 import com.printezisn.moviestore.movieservice.movie.repositories.MovieLikeRepository;
 import com.printezisn.moviestore.movieservice.movie.repositories.MovieRepository;
-import com.printezisn.moviestore.movieservice.movie.repositories.MovieIndexRepository;
+import com.printezisn.moviestore.movieservice.movie.repositories.CustomMovieIndexRepository;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -40,45 +73,91 @@ import lombok.extern.slf4j.Slf4j;
 public class MovieServiceImpl implements MovieService {
 
     private static List<String> SORT_FIELDS = Arrays.asList("rating", "releaseYear", "totalLikes");
-    private static final int PAGE_SIZE = 10;
+    private static final List<String> RESPONSE_FIELDS = Arrays.asList("id", "title", "description", "rating",
+        "releaseYear", "totalLikes", "creator");
+    private static final String ID_FIELD = "id";
 
     private final MovieRepository movieRepository;
     private final MovieLikeRepository movieLikeRepository;
-    private final MovieIndexRepository movieIndexRepository;
+    private final CustomMovieIndexRepository movieIndexRepository;
     private final MovieIndexHelper movieIndexHelper;
     private final MovieMapper movieMapper;
+    private final MovieIndexSweeper movieIndexSweeper;
+    private final MovieLikeBuffer movieLikeBuffer;
+    private final MovieLikeJournal movieLikeJournal;
+    private final MovieLikeReconciler movieLikeReconciler;
+    private final MovieSearchCache movieSearchCache;
+    private final MovieCache movieCache;
+    private final MovieSuggester movieSuggester;
+    private final MovieSearchFacets movieSearchFacets;
+    private final MovieSearchCircuitBreaker movieSearchCircuitBreaker;
+    private final MovieImporter movieImporter;
+    private final MovieExporter movieExporter;
+    private final Optional<MovieReindexer> movieReindexer;
+    private final SearchIndexProperties searchIndexProperties;
+    private final SearchFallbackProperties searchFallbackProperties;
 
     /**
      * {@inheritDoc}
      */
     @Override
     public MoviePagedResultModel searchMovies(final Optional<String> text, final Optional<Integer> pageNumber,
-        final Optional<String> sortField, final boolean isAscending) {
+        final Optional<String> sortField, final boolean isAscending, final Optional<String> cursor,
+        final List<String> filters, final boolean withFacets, final List<String> fields,
+        final Optional<Integer> size, final boolean countTotal) throws MovieValidationException {
+
+        final Set<MovieSearchFilter> searchFilters = new HashSet<>();
+        for (final String filter : filters) {
+            searchFilters.add(MovieSearchFilter.parse(filter));
+        }
+
+        final Set<String> searchFields = new HashSet<>();
+        for (final String field : fields) {
+            if (!RESPONSE_FIELDS.contains(field)) {
+                throw new MovieValidationException(String.format("Invalid field %s", field));
+            }
+
+            searchFields.add(field);
+        }
+
+        final MovieSearchCursor searchCursor = cursor.isPresent() ? MovieSearchCursor.decode(cursor.get()) : null;
+        if (searchCursor != null && !SORT_FIELDS.contains(searchCursor.getSortField())) {
+            throw new MovieValidationException(String.format("Invalid cursor %s: unknown sort field %s", cursor.get(),
+                searchCursor.getSortField()));
+        }
 
         try {
-            final String requiredSortField = (sortField.isPresent() && SORT_FIELDS.contains(sortField.get()))
-                ? sortField.get()
-                : SORT_FIELDS.get(0);
-
-            final Pageable pageable = PageRequest.of(
-                Math.max(0, pageNumber.orElse(0)),
-                PAGE_SIZE,
-                isAscending ? Direction.ASC : Direction.DESC,
-                requiredSortField);
-
-            final Page<MovieIndex> page = movieIndexRepository.search(text, pageable);
-            final List<MovieDto> results = page.getContent()
-                .stream()
-                .map(movieMapper::movieIndexToMovieDto)
-                .collect(Collectors.toList());
+            // The cursor holds the sorting and the page number of the page it points to
+            final String requiredSortField;
+            final boolean requiredIsAscending;
+            final int requiredPageNumber;
+            if (searchCursor != null) {
+                requiredSortField = searchCursor.getSortField();
+                requiredIsAscending = searchCursor.isAscending();
+                requiredPageNumber = searchCursor.getPageNumber();
+            }
+            else {
+                requiredSortField = (sortField.isPresent() && SORT_FIELDS.contains(sortField.get()))
+                    ? sortField.get()
+                    : SORT_FIELDS.get(0);
+                requiredIsAscending = isAscending;
+                requiredPageNumber = Math.max(0, pageNumber.orElse(0));
+            }
 
-            return MoviePagedResultModel.builder()
-                .entries(results)
-                .pageNumber(page.getNumber())
-                .totalPages(page.getTotalPages())
-                .sortField(requiredSortField)
-                .isAscending(isAscending)
-                .build();
+            final int requiredPageSize = Math.min(searchIndexProperties.getMaxPageSize(),
+                Math.max(1, size.orElse(searchIndexProperties.getDefaultPageSize())));
+
+            // The id and the sort value of the last movie are always needed for the
+            // cursor of the next page
+            if (!searchFields.isEmpty()) {
+                searchFields.add(ID_FIELD);
+                searchFields.add(requiredSortField);
+            }
+
+            return movieSearchCache.get(text, requiredPageNumber, requiredPageSize, requiredSortField,
+                requiredIsAscending, cursor, searchFilters, searchFields, withFacets, countTotal,
+                () -> searchPage(text, searchFilters, searchFields, withFacets, countTotal, requiredPageNumber,
+                    requiredPageSize, requiredSortField, requiredIsAscending, searchCursor));
         }
         catch (final Exception ex) {
             final String errorMessage = String.format("An error occured while searching movies: %s", ex.getMessage());
@@ -92,14 +171,155 @@ public class MovieServiceImpl implements MovieService {
      * {@inheritDoc}
      */
     @Override
-    public MovieDto getMovie(final UUID id) throws MovieNotFoundException {
+    public MovieImportResultModel importMovies(final InputStream input, final boolean ordered) {
         try {
-            final Movie movie = movieRepository.findById(id.toString()).orElseThrow(() -> new MovieNotFoundException());
-            if (movie.isDeleted()) {
-                throw new MovieNotFoundException();
-            }
+            final MovieImportResultModel result = movieImporter.importMovies(input, ordered);
+            log.info(String.format("Imported %d movies, %d records failed", result.getImported(),
+                result.getFailed()));
 
-            return movieMapper.movieToMovieDto(movie);
+            return result;
+        }
+        catch (final Exception ex) {
+            final String errorMessage = String.format("An error occured while importing movies: %s",
+                ex.getMessage());
+
+            log.error(errorMessage, ex);
+            throw new MoviePersistenceException(errorMessage, ex);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void exportMovies(final OutputStream output, final MovieExportFormat format,
+        final Optional<Instant> updatedSince) {
+
+        try {
+            final long exportedMovies = movieExporter.exportMovies(output, format, updatedSince);
+            log.info(String.format("Exported %d movies", exportedMovies));
+        }
+        catch (final Exception ex) {
+            final String errorMessage = String.format("An error occured while exporting movies: %s",
+                ex.getMessage());
+
+            log.error(errorMessage, ex);
+            throw new MoviePersistenceException(errorMessage, ex);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public MovieReindexStatusDto startReindex() throws MovieNotFoundException, MovieConditionalException {
+        try {
+            return getMovieReindexer().start();
+        }
+        catch (final MovieNotFoundException | MovieConditionalException ex) {
+            throw ex;
+        }
+        catch (final Exception ex) {
+            final String errorMessage = String.format("An error occured while starting the reindex: %s",
+                ex.getMessage());
+
+            log.error(errorMessage, ex);
+            throw new MoviePersistenceException(errorMessage, ex);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public MovieReindexStatusDto resumeReindex() throws MovieNotFoundException, MovieConditionalException {
+        try {
+            return getMovieReindexer().resume();
+        }
+        catch (final MovieNotFoundException | MovieConditionalException ex) {
+            throw ex;
+        }
+        catch (final Exception ex) {
+            final String errorMessage = String.format("An error occured while resuming the reindex: %s",
+                ex.getMessage());
+
+            log.error(errorMessage, ex);
+            throw new MoviePersistenceException(errorMessage, ex);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public MovieReindexStatusDto cancelReindex() throws MovieNotFoundException, MovieConditionalException {
+        try {
+            return getMovieReindexer().cancel();
+        }
+        catch (final MovieNotFoundException | MovieConditionalException ex) {
+            throw ex;
+        }
+        catch (final Exception ex) {
+            final String errorMessage = String.format("An error occured while cancelling the reindex: %s",
+                ex.getMessage());
+
+            log.error(errorMessage, ex);
+            throw new MoviePersistenceException(errorMessage, ex);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public MovieReindexStatusDto getReindexStatus() throws MovieNotFoundException {
+        try {
+            return getMovieReindexer().getStatus()
+                .orElseThrow(() -> new MovieNotFoundException("There was never a reindex"));
+        }
+        catch (final MovieNotFoundException ex) {
+            throw ex;
+        }
+        catch (final Exception ex) {
+            final String errorMessage = String.format("An error occured while reading the reindex: %s",
+                ex.getMessage());
+
+            log.error(errorMessage, ex);
+            throw new MoviePersistenceException(errorMessage, ex);
+        }
+    }
+
+    /**
+     * Returns the reindexer, which is only available with Elasticsearch, as the
+     * embedded search index is populated from the database on its own when its
+     * definition changes
+     * 
+     * @return The reindexer
+     * @throws MovieNotFoundException
+     *             Exception thrown if the reindexer is not available
+     */
+    private MovieReindexer getMovieReindexer() throws MovieNotFoundException {
+        return movieReindexer
+            .orElseThrow(() -> new MovieNotFoundException("The embedded search index can't be reindexed"));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<MovieSuggestionDto> suggestMovies(final String prefix) {
+        return movieSuggester.suggest(prefix);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public MovieDto getMovie(final UUID id) throws MovieNotFoundException {
+        try {
+            return movieCache.get(id.toString(), () -> movieRepository.findActiveMovie(id.toString())
+                .map(movieMapper::movieToMovieDto))
+                .orElseThrow(() -> new MovieNotFoundException());
         }
         catch (final MovieNotFoundException ex) {
             throw ex;
@@ -141,7 +361,7 @@ public class MovieServiceImpl implements MovieService {
             throw new MoviePersistenceException(errorMessage, ex);
         }
 
-        movieIndexHelper.indexMovie(movie);
+        indexWrittenMovie(movie);
 
         return movieDto;
     }
@@ -162,6 +382,7 @@ public class MovieServiceImpl implements MovieService {
 
             final Movie updatedMovie = movieMapper.movieDtoToMovie(movieDto);
             updatedMovie.setRevision(UUID.randomUUID().toString());
+            updatedMovie.setLikesRevision(movie.getLikesRevision());
             updatedMovie.setTotalLikes(movie.getTotalLikes());
             updatedMovie.setUpdated(true);
             updatedMovie.setDeleted(movie.isDeleted());
@@ -172,8 +393,9 @@ public class MovieServiceImpl implements MovieService {
             if (affectedDocuments == 0) {
                 throw new MovieConditionalException();
             }
+            movieCache.invalidate(movieDto.getId().toString());
 
-            movieIndexHelper.indexMovie(movie);
+            indexWrittenMovie(updatedMovie);
         }
         catch (final MovieNotFoundException | MovieConditionalException ex) {
             throw ex;
@@ -210,8 +432,9 @@ public class MovieServiceImpl implements MovieService {
             if (affectedDocuments == 0) {
                 throw new MovieConditionalException();
             }
+            movieCache.invalidate(id.toString());
 
-            movieIndexHelper.indexMovie(movie.get());
+            indexWrittenMovie(movie.get());
         }
         catch (final MovieConditionalException ex) {
             throw ex;
@@ -229,30 +452,25 @@ public class MovieServiceImpl implements MovieService {
      * {@inheritDoc}
      */
     @Override
-    public void likeMovie(final UUID movieId, final String account)
-        throws MovieConditionalException, MovieNotFoundException {
-
+    public void likeMovie(final UUID movieId, final String account) throws MovieNotFoundException {
         try {
-            final Movie movie = movieRepository.findById(movieId.toString())
-                .orElseThrow(() -> new MovieNotFoundException());
-            if (movie.isDeleted()) {
-                throw new MovieNotFoundException();
+            if (movieLikeJournal.isEnabled()) {
+                checkMovieExists(movieId);
+                movieLikeJournal.append(movieId.toString(), account, true);
+                return;
             }
-
-            final String currentRevision = movie.getRevision();
-            movie.setRevision(UUID.randomUUID().toString());
-            movie.setUpdated(true);
-            movie.getPendingLikes().add(account);
-            movie.getPendingUnlikes().remove(account);
-
-            final long affectedDocuments = movieRepository.updateMovie(movie, currentRevision);
-            if (affectedDocuments == 0) {
-                throw new MovieConditionalException();
+            if (movieLikeBuffer.isEnabled()) {
+                checkMovieExists(movieId);
+                movieLikeBuffer.add(movieId.toString(), account, true);
+                return;
             }
 
+            final Movie movie = movieRepository.likeMovie(movieId.toString(), account)
+                .orElseThrow(() -> new MovieNotFoundException());
+
             movieIndexHelper.indexMovie(movie);
         }
-        catch (final MovieNotFoundException | MovieConditionalException ex) {
+        catch (final MovieNotFoundException ex) {
             throw ex;
         }
         catch (final Exception ex) {
@@ -268,30 +486,25 @@ public class MovieServiceImpl implements MovieService {
      * {@inheritDoc}
      */
     @Override
-    public void unlikeMovie(final UUID movieId, final String account)
-        throws MovieConditionalException, MovieNotFoundException {
-
+    public void unlikeMovie(final UUID movieId, final String account) throws MovieNotFoundException {
         try {
-            final Movie movie = movieRepository.findById(movieId.toString())
-                .orElseThrow(() -> new MovieNotFoundException());
-            if (movie.isDeleted()) {
-                throw new MovieNotFoundException();
+            if (movieLikeJournal.isEnabled()) {
+                checkMovieExists(movieId);
+                movieLikeJournal.append(movieId.toString(), account, false);
+                return;
             }
-
-            final String currentRevision = movie.getRevision();
-            movie.setRevision(UUID.randomUUID().toString());
-            movie.setUpdated(true);
-            movie.getPendingLikes().remove(account);
-            movie.getPendingUnlikes().add(account);
-
-            final long affectedDocuments = movieRepository.updateMovie(movie, currentRevision);
-            if (affectedDocuments == 0) {
-                throw new MovieConditionalException();
+            if (movieLikeBuffer.isEnabled()) {
+                checkMovieExists(movieId);
+                movieLikeBuffer.add(movieId.toString(), account, false);
+                return;
             }
 
+            final Movie movie = movieRepository.unlikeMovie(movieId.toString(), account)
+                .orElseThrow(() -> new MovieNotFoundException());
+
             movieIndexHelper.indexMovie(movie);
         }
-        catch (final MovieNotFoundException | MovieConditionalException ex) {
+        catch (final MovieNotFoundException ex) {
             throw ex;
         }
         catch (final Exception ex) {
@@ -303,6 +516,37 @@ public class MovieServiceImpl implements MovieService {
         }
     }
 
+    /**
+     * Checks if a movie exists and is not deleted, before a like or unlike is
+     * accepted without updating the movie. The movie is read through the cache of
+     * movies.
+     * 
+     * @param movieId
+     *            The id of the movie
+     * @throws MovieNotFoundException
+     *             Exception thrown if the movie doesn't exist or is deleted
+     */
+    private void checkMovieExists(final UUID movieId) throws MovieNotFoundException {
+        movieCache.get(movieId.toString(), () -> movieRepository.findActiveMovie(movieId.toString())
+            .map(movieMapper::movieToMovieDto))
+            .orElseThrow(() -> new MovieNotFoundException());
+    }
+
+    /**
+     * Sends a movie that was written by a request to the search index. The
+     * request waits for the bulk write only if it's configured to read its own
+     * writes, otherwise the movie is indexed with the next flush.
+     * 
+     * @param movie
+     *            The movie to index
+     */
+    private void indexWrittenMovie(final Movie movie) {
+        final CompletableFuture<Void> indexing = movieIndexHelper.indexMovie(movie);
+        if (searchIndexProperties.isReadYourWrites()) {
+            indexing.join();
+        }
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -320,16 +564,229 @@ public class MovieServiceImpl implements MovieService {
     }
 
     /**
-     * Updates the search index at a regular interval
+     * {@inheritDoc}
      */
-    @Scheduled(fixedRateString = "${searchIndex.fixedRate}")
+    @Override
+    public List<MovieLikeStatusDto> getLikeStatuses(final List<UUID> movieIds, final Optional<String> account) {
+        try {
+            final List<String> ids = movieIds.stream().map(UUID::toString).distinct().collect(Collectors.toList());
+
+            // Reads the likes of the account with a single query
+            final Set<String> likedMovieIds = account.isPresent()
+                ? StreamSupport
+                    .stream(movieLikeRepository.findAllById(ids.stream()
+                        .map(id -> id + "-" + account.get())
+                        .collect(Collectors.toList())).spliterator(), false)
+                    .map(MovieLike::getMovieId)
+                    .collect(Collectors.toSet())
+                : Collections.emptySet();
+
+            // Reads only the total likes of the movies with a single query
+            final Map<String, Long> totalLikes = movieRepository.findTotalLikes(ids).stream()
+                .collect(Collectors.toMap(Movie::getId, Movie::getTotalLikes));
+
+            return ids.stream()
+                .filter(totalLikes::containsKey)
+                .map(id -> {
+                    final MovieLikeStatusDto likeStatus = new MovieLikeStatusDto();
+                    likeStatus.setMovieId(UUID.fromString(id));
+                    likeStatus.setLiked(likedMovieIds.contains(id));
+                    likeStatus.setTotalLikes(totalLikes.get(id).intValue());
+
+                    return likeStatus;
+                })
+                .collect(Collectors.toList());
+        }
+        catch (final Exception ex) {
+            final String errorMessage = String.format("An error occured while checking likes of account %s: %s",
+                account.orElse(null), ex.getMessage());
+
+            log.error(errorMessage, ex);
+            throw new MoviePersistenceException(errorMessage, ex);
+        }
+    }
+
+    /**
+     * Updates the search index at a regular interval. When movies are indexed
+     * from the change stream, this acts as a safety sweep for failed indexing.
+     */
+    @Scheduled(fixedRateString = "#{@searchIndexProperties.pollingRate}")
     public void updateSearchIndex() {
         try {
-            // Loads the recently updated movies and indexes them
-            movieRepository.findByUpdated(true).forEach(movieIndexHelper::indexMovie);
+            // Streams the recently updated movies and indexes them
+            movieIndexSweeper.sweep();
+        }
+        catch (final InterruptedException ex) {
+            Thread.currentThread().interrupt();
         }
         catch (final Exception ex) {
             log.error("An error occured while loading movies to index: " + ex.getMessage(), ex);
         }
     }
+
+    /**
+     * Corrects the drift of the total likes of movies at a regular interval, one
+     * chunk of movies at a time. While likes are recorded in the journal, only the
+     * node that consumes the journal corrects the drift, between two batches of
+     * the journal, so that a like that was folded but not counted yet isn't
+     * counted twice.
+     */
+    @Scheduled(fixedRateString = "#{@likeReconciliationProperties.fixedRate}")
+    public void reconcileLikes() {
+        try {
+            if (movieLikeJournal.isEnabled()) {
+                movieLikeJournal.runBetweenBatches(movieLikeReconciler::reconcile);
+            }
+            else {
+                movieLikeReconciler.reconcile();
+            }
+        }
+        catch (final Exception ex) {
+            log.error("An error occured while reconciling the likes of movies: " + ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * Searches for a page of movies in the search index. The facets are
+     * aggregated by the same search, unless they are already cached for the text
+     * and the filters. The search is sent to the database instead when the search
+     * index is unavailable.
+     * 
+     * @param text
+     *            The text to search for
+     * @param filters
+     *            The filters of the search
+     * @param fields
+     *            The fields of the movies that are returned, or an empty set for
+     *            all the fields
+     * @param withFacets
+     *            Indicates if the facets of the search are returned
+     * @param countTotal
+     *            Indicates if all the matching movies are counted
+     * @param pageNumber
+     *            The page number
+     * @param pageSize
+     *            The page size
+     * @param sortField
+     *            The sorting field
+     * @param isAscending
+     *            Indicates if the sorting is ascending or descending
+     * @param searchCursor
+     *            The cursor of the page, or null if the page is found by its
+     *            number
+     * @return The movies found
+     */
+    private MoviePagedResultModel searchPage(final Optional<String> text, final Set<MovieSearchFilter> filters,
+        final Set<String> fields, final boolean withFacets, final boolean countTotal, final int pageNumber,
+        final int pageSize, final String sortField, final boolean isAscending, final MovieSearchCursor searchCursor) {
+
+        // The id breaks the ties, so that every movie has a unique position to
+        // continue after
+        final Pageable pageable = PageRequest.of(
+            pageNumber,
+            pageSize,
+            Sort.by(isAscending ? Direction.ASC : Direction.DESC, sortField)
+                .and(Sort.by(Direction.ASC, ID_FIELD)));
+
+        final Map<String, List<MovieFacetBucketDto>> cachedFacets = withFacets
+            ? movieSearchCache.getFacets(text, filters)
+            : null;
+        final boolean aggregate = withFacets && cachedFacets == null;
+        final Object[] searchAfter = (searchCursor != null) ? searchCursor.getSearchAfter() : null;
+
+        return movieSearchCircuitBreaker.run(() -> {
+            final AggregatedPage<MovieDto> page = (searchAfter != null)
+                ? movieIndexRepository.searchAfter(text, filters, fields, aggregate, countTotal, pageable,
+                    searchAfter)
+                : movieIndexRepository.search(text, filters, fields, aggregate, countTotal, pageable);
+
+            return MoviePagedResultModel.builder()
+                .entries(page.getContent())
+                .pageNumber(page.getNumber())
+                .totalPages(page.getTotalPages())
+                .hasNext(page.hasNext())
+                .sortField(sortField)
+                .isAscending(isAscending)
+                .nextCursor(createNextCursor(page, sortField, isAscending))
+                .facets(aggregate ? movieSearchFacets.read(page.getAggregations()) : cachedFacets)
+                .build();
+        }, () -> searchFallbackPage(text, filters, fields, pageable, searchAfter, cachedFacets));
+    }
+
+    /**
+     * Searches for a page of movies in the database, while the search index is
+     * unavailable. The result is marked as degraded and has the facets only if
+     * they are cached.
+     * 
+     * @param text
+     *            The text to search for
+     * @param filters
+     *            The filters of the search
+     * @param fields
+     *            The fields of the movies that are returned, or an empty set for
+     *            all the fields
+     * @param pageable
+     *            The paging and sorting of the search
+     * @param searchAfter
+     *            The sort value and the id of the movie after which the page
+     *            starts, or null if the page is found by its number
+     * @param cachedFacets
+     *            The cached facets of the search, or null if there are none
+     * @return The movies found
+     */
+    private MoviePagedResultModel searchFallbackPage(final Optional<String> text,
+        final Set<MovieSearchFilter> filters, final Set<String> fields, final Pageable pageable,
+        final Object[] searchAfter, final Map<String, List<MovieFacetBucketDto>> cachedFacets) {
+
+        final Order order = pageable.getSort().iterator().next();
+        final Page<MovieDto> page = movieRepository.searchActiveMovies(text, filters, fields, pageable, searchAfter,
+            searchFallbackProperties.getMaxTime())
+            .map(movieMapper::movieToMovieDto);
+
+        return MoviePagedResultModel.builder()
+            .entries(page.getContent())
+            .pageNumber(page.getNumber())
+            .totalPages(page.getTotalPages())
+            .hasNext(page.hasNext())
+            .sortField(order.getProperty())
+            .isAscending(order.isAscending())
+            .nextCursor(createNextCursor(page, order.getProperty(), order.isAscending()))
+            .facets(cachedFacets)
+            .degraded(true)
+            .build();
+    }
+
+    /**
+     * Creates the cursor of the page that follows a page of search results
+     * 
+     * @param page
+     *            The page of search results
+     * @param sortField
+     *            The sorting field
+     * @param isAscending
+     *            Indicates if the sorting is ascending or descending
+     * @return The encoded cursor, or null if there is no next page
+     */
+    private String createNextCursor(final Page<MovieDto> page, final String sortField, final boolean isAscending) {
+        if (!page.hasContent() || !page.hasNext()) {
+            return null;
+        }
+
+        final MovieDto lastMovie = page.getContent().get(page.getContent().size() - 1);
+        final Number sortValue;
+        switch (sortField) {
+            case "releaseYear":
+                sortValue = lastMovie.getReleaseYear();
+                break;
+            case "totalLikes":
+                sortValue = lastMovie.getTotalLikes();
+                break;
+            default:
+                sortValue = lastMovie.getRating();
+                break;
+        }
+
+        return new MovieSearchCursor(page.getNumber() + 1, sortField, isAscending, sortValue,
+            lastMovie.getId().toString()).encode();
+    }
 }
@@ -167,7 +167,8 @@ public class MovieIntegrationTest {
     }
 
     /**
-     * Tests the scenario in which the movie is deleted successfully
+     * Tests the scenario in which the movie is deleted successfully and can't be
+     * read anymore
      */
     @Test
     public void test_deleteMovie_success() throws Exception {
@@ -177,6 +178,9 @@ public class MovieIntegrationTest {
             return mockMvc.perform(get("/movie/delete/" + movieDto.getId()))
                 .andExpect(status().isOk());
         }, ex -> true);
+
+        mockMvc.perform(get("/movie/get/" + movieDto.getId()))
+            .andExpect(status().isNotFound());
     }
 
     /**
@@ -2,35 +2,59 @@ package com.printezisn.moviestore.movieservice.movie.controllers;
 
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.springframework.context.MessageSource;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.ResultActions;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.printezisn.moviestore.common.models.movie.MovieImportResultModel;
 import com.printezisn.moviestore.common.models.movie.MoviePagedResultModel;
 import com.printezisn.moviestore.movieservice.movie.controllers.MovieController;
 import com.printezisn.moviestore.common.AppUtils;
 import com.printezisn.moviestore.common.dto.movie.MovieDto;
+import com.printezisn.moviestore.common.dto.movie.MovieFacetBucketDto;
+import com.printezisn.moviestore.common.dto.movie.MovieImportErrorDto;
+import com.printezisn.moviestore.common.dto.movie.MovieLikeStatusDto;
+import com.printezisn.moviestore.common.dto.movie.MovieReindexStatusDto;
+import com.printezisn.moviestore.common.dto.movie.MovieSuggestionDto;
+import com.printezisn.moviestore.movieservice.configuration.properties.MovieExportProperties;
 import com.printezisn.moviestore.movieservice.movie.exceptions.MovieConditionalException;
 import com.printezisn.moviestore.movieservice.movie.exceptions.MovieNotFoundException;
+import com.printezisn.moviestore.movieservice.movie.exceptions.MovieValidationException;
+import com.printezisn.moviestore.movieservice.movie.helpers.MovieExportFormat;
 import com.printezisn.moviestore.movieservice.movie.services.MovieService;
 
+import static org.junit.Assert.assertEquals;
 import static org.mockito.Mockito.when;
 import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.anyBoolean;
 import static org.mockito.Mockito.anyString;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.eq;
 import static org.mockito.Mockito.verify;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import java.time.Instant;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Locale;
 import java.util.Optional;
 import java.util.UUID;
@@ -46,6 +70,8 @@ public class MovieControllerTest {
     private static final int TEST_RELEASE_YEAR = 1988;
     private static final int TEST_TOTAL_LIKES = 5;
     private static final String TEST_CREATOR = "test_creator";
+    private static final String NEXT_CURSOR = "next_cursor";
+    private static final long EXPORT_TIMEOUT = 120000;
 
     @Mock
     private MovieService movieService;
@@ -70,7 +96,10 @@ public class MovieControllerTest {
 
         appUtils = new AppUtils(messageSource);
 
-        movieController = new MovieController(movieService, appUtils);
+        final MovieExportProperties movieExportProperties = new MovieExportProperties();
+        movieExportProperties.setTimeout(EXPORT_TIMEOUT);
+
+        movieController = new MovieController(movieService, appUtils, movieExportProperties);
 
         mockMvc = MockMvcBuilders.standaloneSetup(movieController).build();
     }
@@ -95,12 +124,16 @@ public class MovieControllerTest {
             .totalPages(totalPages)
             .sortField(sortField.get())
             .isAscending(isAscending)
+            .nextCursor(NEXT_CURSOR)
             .build();
 
-        when(movieService.searchMovies(text, pageNumber, sortField, isAscending)).thenReturn(pagedResult);
+        when(movieService.searchMovies(text, pageNumber, sortField, isAscending, Optional.empty(),
+            Collections.emptyList(), false, Collections.emptyList(), Optional.empty(), true))
+            .thenReturn(pagedResult);
 
         final ResultActions resultActions = mockMvc.perform(get(url))
             .andExpect(status().isOk())
+            .andExpect(jsonPath("nextCursor").value(NEXT_CURSOR))
             .andExpect(jsonPath("pageNumber").value(pageNumber.get()))
             .andExpect(jsonPath("totalPages").value(totalPages))
             .andExpect(jsonPath("sortField").value(sortField.get()))
@@ -111,6 +144,110 @@ public class MovieControllerTest {
         expectMovieValues(resultActions, movieDto.getId(), Optional.of("entries[0]"));
     }
 
+    /**
+     * Tests if movies are searched with a cursor
+     */
+    @Test
+    public void test_searchMovies_cursor() throws Exception {
+        final String cursor = "cursor";
+        final MoviePagedResultModel pagedResult = MoviePagedResultModel.builder()
+            .entries(Arrays.asList(createMovie()))
+            .pageNumber(1)
+            .totalPages(2)
+            .build();
+
+        when(movieService.searchMovies(Optional.empty(), Optional.empty(), Optional.empty(), true,
+            Optional.of(cursor), Collections.emptyList(), false, Collections.emptyList(), Optional.empty(), true))
+                .thenReturn(pagedResult);
+
+        mockMvc.perform(get("/movie/search?cursor=" + cursor))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("pageNumber").value(1))
+            .andExpect(jsonPath("nextCursor").doesNotExist());
+    }
+
+    /**
+     * Tests if movies are searched with filters and facets
+     */
+    @Test
+    public void test_searchMovies_facets() throws Exception {
+        final MovieFacetBucketDto bucket = new MovieFacetBucketDto();
+        bucket.setKey("1990-2000");
+        bucket.setFrom(1990.0);
+        bucket.setTo(2000.0);
+        bucket.setCount(3);
+        final MoviePagedResultModel pagedResult = MoviePagedResultModel.builder()
+            .entries(Arrays.asList(createMovie()))
+            .facets(Collections.singletonMap("releaseYear", Arrays.asList(bucket)))
+            .build();
+
+        when(movieService.searchMovies(Optional.empty(), Optional.empty(), Optional.empty(), true,
+            Optional.empty(), Arrays.asList("releaseYear:1990-2000", "rating:8-"), true, Collections.emptyList(),
+            Optional.empty(), true)).thenReturn(pagedResult);
+
+        mockMvc.perform(get("/movie/search?filter=releaseYear:1990-2000&filter=rating:8-&facets=true"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("facets.releaseYear[0].key").value("1990-2000"))
+            .andExpect(jsonPath("facets.releaseYear[0].from").value(1990.0))
+            .andExpect(jsonPath("facets.releaseYear[0].to").value(2000.0))
+            .andExpect(jsonPath("facets.releaseYear[0].count").value(3));
+    }
+
+    /**
+     * Tests if movies are searched with specific fields and page size, without
+     * counting
+     */
+    @Test
+    public void test_searchMovies_fields() throws Exception {
+        final MovieDto movieDto = new MovieDto();
+        movieDto.setId(UUID.randomUUID());
+        movieDto.setTitle(TEST_TITLE);
+        final MoviePagedResultModel pagedResult = MoviePagedResultModel.builder()
+            .entries(Arrays.asList(movieDto))
+            .build();
+
+        when(movieService.searchMovies(Optional.empty(), Optional.empty(), Optional.empty(), true,
+            Optional.empty(), Collections.emptyList(), false, Arrays.asList("title", "rating"), Optional.of(20),
+            false)).thenReturn(pagedResult);
+
+        mockMvc.perform(get("/movie/search?fields=title,rating&size=20&count=false"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("entries[0].title").value(TEST_TITLE))
+            .andExpect(jsonPath("entries[0].description").doesNotExist());
+    }
+
+    /**
+     * Tests the scenario in which the cursor is invalid
+     */
+    @Test
+    public void test_searchMovies_invalidCursor() throws Exception {
+        when(movieService.searchMovies(any(), any(), any(), anyBoolean(), any(), any(), anyBoolean(), any(), any(),
+            anyBoolean()))
+            .thenThrow(new MovieValidationException("invalid"));
+
+        mockMvc.perform(get("/movie/search?cursor=invalid")).andExpect(status().isBadRequest());
+    }
+
+    /**
+     * Tests if movies are suggested
+     */
+    @Test
+    public void test_suggestMovies_success() throws Exception {
+        final MovieSuggestionDto suggestion = new MovieSuggestionDto();
+        suggestion.setId(UUID.randomUUID());
+        suggestion.setTitle(TEST_TITLE);
+        suggestion.setTotalLikes(TEST_TOTAL_LIKES);
+
+        when(movieService.suggestMovies("tes")).thenReturn(Arrays.asList(suggestion));
+
+        mockMvc.perform(get("/movie/suggest?prefix=tes"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$[0].id").value(suggestion.getId().toString()))
+            .andExpect(jsonPath("$[0].title").value(TEST_TITLE))
+            .andExpect(jsonPath("$[0].totalLikes").value(TEST_TOTAL_LIKES))
+            .andExpect(jsonPath("$.length()").value(1));
+    }
+
     /**
      * Tests the scenario in which the movie is not found
      */
@@ -174,6 +311,153 @@ public class MovieControllerTest {
         expectMovieValues(resultActions, movieDto.getId(), Optional.of("result"));
     }
 
+    /**
+     * Tests if movies are imported from the body of the request
+     */
+    @Test
+    public void test_importMovies_success() throws Exception {
+        final MovieImportErrorDto error = new MovieImportErrorDto();
+        error.setLine(2);
+        error.setErrors(Arrays.asList("message.movie.error.titleRequired"));
+        final MovieImportResultModel result = MovieImportResultModel.builder()
+            .imported(1)
+            .failed(1)
+            .errors(Arrays.asList(error))
+            .build();
+        final ArgumentCaptor<InputStream> inputCaptor = ArgumentCaptor.forClass(InputStream.class);
+        final String content = "{\"title\":\"" + TEST_TITLE + "\"}\n{}\n";
+
+        when(movieService.importMovies(inputCaptor.capture(), eq(true))).thenAnswer(invocation -> {
+            assertEquals(content, new String(invocation.<InputStream> getArgument(0).readAllBytes(),
+                StandardCharsets.UTF_8));
+            return result;
+        });
+
+        mockMvc.perform(post("/movie/import?ordered=true")
+            .content(content)
+            .contentType("application/x-ndjson"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.imported").value(1))
+            .andExpect(jsonPath("$.failed").value(1))
+            .andExpect(jsonPath("$.errors[0].line").value(2))
+            .andExpect(jsonPath("$.errors[0].errors[0]").value("message.movie.error.titleRequired"));
+    }
+
+    /**
+     * Tests if an import with a different content type is rejected
+     */
+    @Test
+    public void test_importMovies_unsupportedMediaType() throws Exception {
+        mockMvc.perform(post("/movie/import")
+            .content("[]")
+            .contentType(MediaType.APPLICATION_JSON))
+            .andExpect(status().isUnsupportedMediaType());
+    }
+
+    /**
+     * Tests if movies are exported as a stream, limited by the export timeout
+     */
+    @Test
+    public void test_exportMovies_success() throws Exception {
+        final Instant updatedSince = Instant.parse("2018-11-01T10:15:30Z");
+        final String content = "id,title\r\n";
+
+        doAnswer(invocation -> {
+            invocation.<OutputStream> getArgument(0).write(content.getBytes(StandardCharsets.UTF_8));
+            return null;
+        }).when(movieService).exportMovies(any(), eq(MovieExportFormat.CSV), eq(Optional.of(updatedSince)));
+
+        final MvcResult mvcResult = mockMvc.perform(get("/movie/export?format=CSV&updatedSince=" + updatedSince))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+
+        assertEquals(EXPORT_TIMEOUT, mvcResult.getRequest().getAsyncContext().getTimeout());
+
+        mockMvc.perform(asyncDispatch(mvcResult))
+            .andExpect(status().isOk())
+            .andExpect(header().string(HttpHeaders.CONTENT_TYPE, "text/csv"))
+            .andExpect(header().string(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"movies.csv\""))
+            .andExpect(content().string(content));
+    }
+
+    /**
+     * Tests the scenario in which the export format is unknown
+     */
+    @Test
+    public void test_exportMovies_invalidFormat() throws Exception {
+        mockMvc.perform(get("/movie/export?format=xml"))
+            .andExpect(status().isBadRequest());
+    }
+
+    /**
+     * Tests if a reindex is started
+     */
+    @Test
+    public void test_startReindex_success() throws Exception {
+        final MovieReindexStatusDto status = new MovieReindexStatusDto();
+        status.setStatus("RUNNING");
+        status.setTotal(100);
+
+        when(movieService.startReindex()).thenReturn(status);
+
+        mockMvc.perform(post("/movie/reindex"))
+            .andExpect(status().isAccepted())
+            .andExpect(jsonPath("$.status").value("RUNNING"))
+            .andExpect(jsonPath("$.total").value(100));
+    }
+
+    /**
+     * Tests the scenario in which a reindex is already running
+     */
+    @Test
+    public void test_startReindex_conflict() throws Exception {
+        when(movieService.startReindex()).thenThrow(new MovieConditionalException());
+
+        mockMvc.perform(post("/movie/reindex"))
+            .andExpect(status().isConflict());
+    }
+
+    /**
+     * Tests if the progress of a reindex is returned
+     */
+    @Test
+    public void test_getReindexStatus_success() throws Exception {
+        final MovieReindexStatusDto status = new MovieReindexStatusDto();
+        status.setCopied(40);
+        status.setDocumentsPerSecond(20);
+        status.setEtaSeconds(3L);
+
+        when(movieService.getReindexStatus()).thenReturn(status);
+
+        mockMvc.perform(get("/movie/reindex"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.copied").value(40))
+            .andExpect(jsonPath("$.documentsPerSecond").value(20.0))
+            .andExpect(jsonPath("$.etaSeconds").value(3));
+    }
+
+    /**
+     * Tests the scenario in which there is no reindex to resume
+     */
+    @Test
+    public void test_resumeReindex_notFound() throws Exception {
+        when(movieService.resumeReindex()).thenThrow(new MovieNotFoundException());
+
+        mockMvc.perform(post("/movie/reindex/resume"))
+            .andExpect(status().isNotFound());
+    }
+
+    /**
+     * Tests the scenario in which there is no reindex to cancel
+     */
+    @Test
+    public void test_cancelReindex_conflict() throws Exception {
+        when(movieService.cancelReindex()).thenThrow(new MovieConditionalException());
+
+        mockMvc.perform(post("/movie/reindex/cancel"))
+            .andExpect(status().isConflict());
+    }
+
     /**
      * Tests the scenario in which there are validation errors
      */
@@ -287,20 +571,6 @@ public class MovieControllerTest {
         mockMvc.perform(get(url)).andExpect(status().isNotFound());
     }
 
-    /**
-     * Tests the scenario in which there is an update conflict
-     */
-    @Test
-    public void test_likeMovie_conflict() throws Exception {
-        final UUID movieId = UUID.randomUUID();
-        final String account = "test_account";
-        final String url = String.format("/movie/like/%s/%s", movieId, account);
-
-        doThrow(new MovieConditionalException()).when(movieService).likeMovie(movieId, account);
-
-        mockMvc.perform(get(url)).andExpect(status().isConflict());
-    }
-
     /**
      * Tests if the movie like is added successfully
      */
@@ -329,20 +599,6 @@ public class MovieControllerTest {
         mockMvc.perform(get(url)).andExpect(status().isNotFound());
     }
 
-    /**
-     * Tests the scenario in which there is an update conflict
-     */
-    @Test
-    public void test_unlikeMovie_conflict() throws Exception {
-        final UUID movieId = UUID.randomUUID();
-        final String account = "test_account";
-        final String url = String.format("/movie/unlike/%s/%s", movieId, account);
-
-        doThrow(new MovieConditionalException()).when(movieService).unlikeMovie(movieId, account);
-
-        mockMvc.perform(get(url)).andExpect(status().isConflict());
-    }
-
     /**
      * Tests if the movie like is removed successfully
      */
@@ -389,6 +645,48 @@ public class MovieControllerTest {
             .andExpect(jsonPath("$").value(false));
     }
 
+    /**
+     * Tests if the like statuses of many movies are returned
+     */
+    @Test
+    public void test_getLikeStatuses_success() throws Exception {
+        final UUID movieId1 = UUID.randomUUID();
+        final UUID movieId2 = UUID.randomUUID();
+        final String account = "test_account";
+        final String url = String.format("/movie/likestatus/%s?ids=%s,%s", account, movieId1, movieId2);
+
+        final MovieLikeStatusDto likeStatus = new MovieLikeStatusDto();
+        likeStatus.setMovieId(movieId1);
+        likeStatus.setLiked(true);
+        likeStatus.setTotalLikes(TEST_TOTAL_LIKES);
+
+        when(movieService.getLikeStatuses(Arrays.asList(movieId1, movieId2), Optional.of(account)))
+            .thenReturn(Arrays.asList(likeStatus));
+
+        mockMvc.perform(get(url))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$[0].movieId").value(movieId1.toString()))
+            .andExpect(jsonPath("$[0].liked").value(true))
+            .andExpect(jsonPath("$[0].totalLikes").value(TEST_TOTAL_LIKES))
+            .andExpect(jsonPath("$.length()").value(1));
+    }
+
+    /**
+     * Tests if the like statuses of many movies are returned without an account
+     */
+    @Test
+    public void test_getLikeStatuses_noAccount() throws Exception {
+        final UUID movieId = UUID.randomUUID();
+        final String url = String.format("/movie/likestatus?ids=%s", movieId);
+
+        when(movieService.getLikeStatuses(Arrays.asList(movieId), Optional.empty()))
+            .thenReturn(Collections.emptyList());
+
+        mockMvc.perform(get(url))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.length()").value(0));
+    }
+
     /**
      * Expects the returned values of a movie
      * 
@@ -0,0 +1,323 @@
+package com.printezisn.moviestore.movieservice.movie.helpers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Collections;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.elasticsearch.action.DocWriteRequest.OpType;
+import org.elasticsearch.action.bulk.BulkItemResponse;
+import org.elasticsearch.action.bulk.BulkRequestBuilder;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.action.delete.DeleteAction;
+import org.elasticsearch.action.delete.DeleteRequestBuilder;
+import org.elasticsearch.action.delete.DeleteResponse;
+import org.elasticsearch.action.index.IndexAction;
+import org.elasticsearch.action.index.IndexRequestBuilder;
+import org.elasticsearch.action.index.IndexResponse;
+import org.elasticsearch.action.support.WriteRequest.RefreshPolicy;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.index.shard.ShardId;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.data.elasticsearch.core.ElasticsearchTemplate;
+import org.springframework.data.elasticsearch.core.mapping.ElasticsearchPersistentEntity;
+
+import com.printezisn.moviestore.movieservice.configuration.properties.SearchIndexProperties;
+import com.printezisn.moviestore.movieservice.movie.entities.MovieIndex;
+import com.printezisn.moviestore.movieservice.movie.exceptions.MoviePersistenceException;
+
+/**
+ * Class that contains unit tests for the ElasticsearchMovieIndexWriter class
+ */
+public class ElasticsearchMovieIndexWriterTest {
+
+    private static final String INDEX_NAME = "test_index";
+    private static final String INDEX_TYPE = "movies";
+    private static final ShardId SHARD_ID = new ShardId(INDEX_NAME, UUID.randomUUID().toString(), 0);
+
+    @Mock
+    private ElasticsearchTemplate elasticsearchTemplate;
+
+    @Mock
+    private ElasticsearchPersistentEntity<MovieIndex> persistentEntity;
+
+    @Mock
+    private Client client;
+
+    @Mock
+    private BulkRequestBuilder bulkRequestBuilder;
+
+    @Mock
+    private MovieSearchCache movieSearchCache;
+
+    @Mock
+    private MovieIndexManager movieIndexManager;
+
+    private SearchIndexProperties searchIndexProperties;
+
+    private ElasticsearchMovieIndexWriter movieIndexWriter;
+
+    /**
+     * Initializes the test class
+     */
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+
+        when(elasticsearchTemplate.getClient()).thenReturn(client);
+        doReturn(persistentEntity).when(elasticsearchTemplate).getPersistentEntityFor(MovieIndex.class);
+        when(persistentEntity.getIndexName()).thenReturn(INDEX_NAME);
+        when(persistentEntity.getIndexType()).thenReturn(INDEX_TYPE);
+        when(client.prepareBulk()).thenReturn(bulkRequestBuilder);
+        when(client.prepareIndex(any(), any(), any()))
+            .thenAnswer(invocation -> new IndexRequestBuilder(client, IndexAction.INSTANCE, INDEX_NAME));
+        when(client.prepareDelete(any(), any(), any()))
+            .thenAnswer(invocation -> new DeleteRequestBuilder(client, DeleteAction.INSTANCE, INDEX_NAME));
+        when(bulkRequestBuilder.setRefreshPolicy(any(RefreshPolicy.class))).thenReturn(bulkRequestBuilder);
+        when(movieIndexManager.isAliasAvailable()).thenReturn(true);
+
+        searchIndexProperties = new SearchIndexProperties();
+        searchIndexProperties.setBulkRefreshPolicy("wait_for");
+        searchIndexProperties.setWorkerThreads(2);
+
+        movieIndexWriter = new ElasticsearchMovieIndexWriter(elasticsearchTemplate, searchIndexProperties,
+            movieSearchCache, movieIndexManager);
+    }
+
+    /**
+     * Stops the writer
+     */
+    @After
+    public void tearDown() {
+        movieIndexWriter.stop();
+    }
+
+    /**
+     * Tests if pending writes are sent in a single bulk request
+     */
+    @Test
+    public void test_flush_success() {
+        final MovieIndex movieIndex = createMovieIndex();
+        final String deletedId = UUID.randomUUID().toString();
+
+        when(bulkRequestBuilder.get()).thenReturn(new BulkResponse(new BulkItemResponse[] {
+            new BulkItemResponse(0, OpType.INDEX,
+                new IndexResponse(SHARD_ID, INDEX_TYPE, movieIndex.getId(), 1, 1, 1, true)),
+            new BulkItemResponse(1, OpType.DELETE,
+                new DeleteResponse(SHARD_ID, INDEX_TYPE, deletedId, 1, 1, 1, true))
+        }, 1));
+
+        final CompletableFuture<Void> indexResult = movieIndexWriter.index(movieIndex);
+        final CompletableFuture<Void> deleteResult = movieIndexWriter.delete(deletedId);
+        movieIndexWriter.flush();
+        await(indexResult);
+        await(deleteResult);
+
+        verify(client).prepareBulk();
+        verify(bulkRequestBuilder).setRefreshPolicy(RefreshPolicy.WAIT_UNTIL);
+        verify(bulkRequestBuilder).add(any(IndexRequestBuilder.class));
+        verify(bulkRequestBuilder).add(any(DeleteRequestBuilder.class));
+        verify(movieSearchCache).invalidate(Collections.singletonList(movieIndex),
+            Collections.singletonList(deletedId));
+
+        assertTrue(indexResult.isDone());
+        assertFalse(indexResult.isCompletedExceptionally());
+        assertTrue(deleteResult.isDone());
+        assertFalse(deleteResult.isCompletedExceptionally());
+    }
+
+    /**
+     * Tests if writes are also sent to an index that is being built, and fail if
+     * any of their copies fails
+     */
+    @Test
+    public void test_flush_buildingIndex() {
+        final MovieIndex movieIndex = createMovieIndex();
+        final String buildingIndex = INDEX_NAME + "_new";
+
+        when(movieIndexManager.getBuildingIndices()).thenReturn(Collections.singletonList(buildingIndex));
+        when(bulkRequestBuilder.get()).thenReturn(new BulkResponse(new BulkItemResponse[] {
+            new BulkItemResponse(0, OpType.INDEX,
+                new IndexResponse(SHARD_ID, INDEX_TYPE, movieIndex.getId(), 1, 1, 1, true)),
+            new BulkItemResponse(1, OpType.INDEX, new BulkItemResponse.Failure(buildingIndex, INDEX_TYPE,
+                movieIndex.getId(), new RuntimeException("failure")))
+        }, 1));
+
+        final CompletableFuture<Void> result = movieIndexWriter.index(movieIndex);
+        movieIndexWriter.flush();
+        await(result);
+
+        verify(client).prepareIndex(INDEX_NAME, INDEX_TYPE, movieIndex.getId());
+        verify(client).prepareIndex(buildingIndex, INDEX_TYPE, movieIndex.getId());
+        assertTrue(result.isCompletedExceptionally());
+    }
+
+    /**
+     * Tests if writes are only sent to the index that is being built before the
+     * alias exists
+     */
+    @Test
+    public void test_flush_noAlias() {
+        final MovieIndex movieIndex = createMovieIndex();
+        final String buildingIndex = INDEX_NAME + "_new";
+
+        when(movieIndexManager.isAliasAvailable()).thenReturn(false);
+        when(movieIndexManager.getBuildingIndices()).thenReturn(Collections.singletonList(buildingIndex));
+        when(bulkRequestBuilder.get()).thenReturn(new BulkResponse(new BulkItemResponse[] {
+            new BulkItemResponse(0, OpType.INDEX,
+                new IndexResponse(SHARD_ID, INDEX_TYPE, movieIndex.getId(), 1, 1, 1, true))
+        }, 1));
+
+        final CompletableFuture<Void> result = movieIndexWriter.index(movieIndex);
+        movieIndexWriter.flush();
+        await(result);
+
+        verify(client).prepareIndex(buildingIndex, INDEX_TYPE, movieIndex.getId());
+        verify(client, never()).prepareIndex(INDEX_NAME, INDEX_TYPE, movieIndex.getId());
+        assertFalse(result.isCompletedExceptionally());
+    }
+
+    /**
+     * Tests if the failure of a single item is reported only for this item
+     */
+    @Test
+    public void test_flush_itemFailure() {
+        final MovieIndex failedMovieIndex = createMovieIndex();
+        final MovieIndex movieIndex = createMovieIndex();
+
+        when(bulkRequestBuilder.get()).thenReturn(new BulkResponse(new BulkItemResponse[] {
+            new BulkItemResponse(0, OpType.INDEX, new BulkItemResponse.Failure(INDEX_NAME, INDEX_TYPE,
+                failedMovieIndex.getId(), new RuntimeException("failure"))),
+            new BulkItemResponse(1, OpType.INDEX,
+                new IndexResponse(SHARD_ID, INDEX_TYPE, movieIndex.getId(), 1, 1, 1, true))
+        }, 1));
+
+        final CompletableFuture<Void> failedResult = movieIndexWriter.index(failedMovieIndex);
+        final CompletableFuture<Void> result = movieIndexWriter.index(movieIndex);
+        movieIndexWriter.flush();
+        await(failedResult);
+        await(result);
+
+        assertTrue(failedResult.isCompletedExceptionally());
+        assertTrue(result.isDone());
+        assertFalse(result.isCompletedExceptionally());
+        verify(movieSearchCache).invalidate(Collections.singletonList(movieIndex),
+            Collections.singletonList(failedMovieIndex.getId()));
+    }
+
+    /**
+     * Tests if all the writes fail when the bulk request fails
+     */
+    @Test
+    public void test_flush_bulkFailure() {
+        when(bulkRequestBuilder.get()).thenThrow(new RuntimeException("failure"));
+
+        final CompletableFuture<Void> result = movieIndexWriter.index(createMovieIndex());
+        movieIndexWriter.flush();
+        await(result);
+
+        assertTrue(result.isCompletedExceptionally());
+    }
+
+    /**
+     * Tests if the futures of the writes are completed on the callback threads,
+     * so that a slow callback doesn't delay the next flush
+     */
+    @Test
+    public void test_flush_callbackThreads() throws Exception {
+        final MovieIndex slowMovieIndex = createMovieIndex();
+        final MovieIndex movieIndex = createMovieIndex();
+        final CountDownLatch slowCallback = new CountDownLatch(1);
+        final String[] callbackThread = { null };
+
+        when(bulkRequestBuilder.get())
+            .thenReturn(new BulkResponse(new BulkItemResponse[] { new BulkItemResponse(0, OpType.INDEX,
+                new IndexResponse(SHARD_ID, INDEX_TYPE, slowMovieIndex.getId(), 1, 1, 1, true)) }, 1))
+            .thenReturn(new BulkResponse(new BulkItemResponse[] { new BulkItemResponse(0, OpType.INDEX,
+                new IndexResponse(SHARD_ID, INDEX_TYPE, movieIndex.getId(), 1, 1, 1, true)) }, 1));
+
+        final CompletableFuture<Void> slowResult = movieIndexWriter.index(slowMovieIndex)
+            .thenRun(() -> {
+                callbackThread[0] = Thread.currentThread().getName();
+                try {
+                    slowCallback.await();
+                }
+                catch (final InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+        movieIndexWriter.flush();
+
+        final CompletableFuture<Void> result = movieIndexWriter.index(movieIndex);
+        movieIndexWriter.flush();
+        await(result);
+
+        assertFalse(result.isCompletedExceptionally());
+        assertFalse(slowResult.isDone());
+
+        slowCallback.countDown();
+        await(slowResult);
+
+        assertTrue(callbackThread[0].startsWith("movie-index-callback-"));
+    }
+
+    /**
+     * Tests if writes that are queued after the writer is stopped are rejected
+     * instead of waiting for a flush that never happens
+     */
+    @Test
+    public void test_index_stopped() {
+        movieIndexWriter.stop();
+
+        final CompletableFuture<Void> result = movieIndexWriter.index(createMovieIndex());
+
+        assertTrue(result.isCompletedExceptionally());
+        result.exceptionally(ex -> {
+            assertEquals(MoviePersistenceException.class, ex.getClass());
+            return null;
+        });
+        verify(client, never()).prepareBulk();
+    }
+
+    /**
+     * Waits until a write is completed, successfully or not
+     * 
+     * @param result
+     *            The future of the write
+     */
+    private void await(final CompletableFuture<Void> result) {
+        try {
+            result.handle((value, ex) -> value).get(10, TimeUnit.SECONDS);
+        }
+        catch (final Exception ex) {
+            throw new IllegalStateException("The write wasn't completed", ex);
+        }
+    }
+
+    /**
+     * Creates a MovieIndex object
+     * 
+     * @return The MovieIndex object
+     */
+    private MovieIndex createMovieIndex() {
+        final MovieIndex movieIndex = new MovieIndex();
+        movieIndex.setId(UUID.randomUUID().toString());
+        movieIndex.setTitle("Test Title");
+
+        return movieIndex;
+    }
+}
@@ -0,0 +1,412 @@
+package com.printezisn.moviestore.movieservice.movie.helpers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.anyInt;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopDocs;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.data.util.CloseableIterator;
+
+import com.printezisn.moviestore.common.dto.movie.MovieDto;
+import com.printezisn.moviestore.movieservice.configuration.properties.EmbeddedSearchProperties;
+import com.printezisn.moviestore.movieservice.configuration.properties.SearchIndexProperties;
+import com.printezisn.moviestore.movieservice.movie.entities.Movie;
+import com.printezisn.moviestore.movieservice.movie.entities.MovieIndex;
+import com.printezisn.moviestore.movieservice.movie.mappers.MovieMapper;
+import com.printezisn.moviestore.movieservice.movie.repositories.MovieRepository;
+
+/**
+ * Class that contains unit tests for the EmbeddedMovieIndex class
+ */
+public class EmbeddedMovieIndexTest {
+
+    private static final long AWAIT_TIMEOUT = 10000;
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Mock
+    private MovieSearchCache movieSearchCache;
+
+    @Mock
+    private MovieRepository movieRepository;
+
+    @Mock
+    private MovieMapper movieMapper;
+
+    private EmbeddedSearchProperties embeddedSearchProperties;
+
+    private SearchIndexProperties searchIndexProperties;
+
+    private EmbeddedMovieIndex embeddedMovieIndex;
+
+    /**
+     * Initializes the test class
+     */
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+
+        embeddedSearchProperties = new EmbeddedSearchProperties();
+        embeddedSearchProperties.setPath(temporaryFolder.getRoot().getAbsolutePath());
+        searchIndexProperties = new SearchIndexProperties();
+        searchIndexProperties.setBulkFlushInterval(60000);
+
+        when(movieMapper.movieToMovieIndex(any())).thenAnswer(invocation -> toMovieIndex(invocation.getArgument(0)));
+        when(movieRepository.streamActiveMovies(anyInt())).thenReturn(stream(Collections.emptyIterator()));
+
+        embeddedMovieIndex = createEmbeddedMovieIndex();
+    }
+
+    /**
+     * Closes the index
+     * 
+     * @throws IOException
+     *             Exception thrown if the index can't be closed
+     */
+    @After
+    public void tearDown() throws IOException {
+        embeddedMovieIndex.stop();
+    }
+
+    /**
+     * Tests if writes become visible and complete when they are flushed
+     * 
+     * @throws Exception
+     *             Exception thrown in case of error
+     */
+    @Test
+    public void test_flush_success() throws Exception {
+        startAndAwaitPopulation();
+        clearInvocations(movieSearchCache);
+
+        final MovieIndex movieIndex = createMovieIndex("The Matrix");
+        final CompletableFuture<Void> result = embeddedMovieIndex.index(movieIndex);
+
+        assertFalse(result.isDone());
+        assertNull(find(movieIndex.getId()));
+
+        embeddedMovieIndex.flush();
+
+        assertTrue(result.isDone());
+        assertFalse(result.isCompletedExceptionally());
+        verify(movieSearchCache).invalidate(Collections.singletonList(movieIndex), Collections.emptyList());
+
+        final MovieDto movieDto = find(movieIndex.getId());
+        assertEquals(movieIndex.getId(), movieDto.getId().toString());
+        assertEquals(movieIndex.getTitle(), movieDto.getTitle());
+        assertEquals(movieIndex.getDescription(), movieDto.getDescription());
+        assertEquals(movieIndex.getRating(), movieDto.getRating(), 0);
+        assertEquals(movieIndex.getReleaseYear(), movieDto.getReleaseYear().intValue());
+        assertEquals(movieIndex.getTotalLikes(), (long) movieDto.getTotalLikes());
+        assertEquals(movieIndex.getCreator(), movieDto.getCreator());
+    }
+
+    /**
+     * Tests if indexing a movie again replaces its document and if deleting it
+     * removes its document
+     * 
+     * @throws Exception
+     *             Exception thrown in case of error
+     */
+    @Test
+    public void test_flush_updateAndDelete() throws Exception {
+        startAndAwaitPopulation();
+
+        final MovieIndex movieIndex = createMovieIndex("The Matrix");
+        embeddedMovieIndex.index(movieIndex);
+        embeddedMovieIndex.flush();
+
+        movieIndex.setTitle("The Matrix Reloaded");
+        embeddedMovieIndex.index(movieIndex);
+        embeddedMovieIndex.flush();
+
+        assertEquals(1, count());
+        assertEquals("The Matrix Reloaded", find(movieIndex.getId()).getTitle());
+
+        final CompletableFuture<Void> result = embeddedMovieIndex.delete(movieIndex.getId());
+        embeddedMovieIndex.flush();
+
+        assertTrue(result.isDone());
+        assertEquals(0, count());
+    }
+
+    /**
+     * Tests if writes fail when the index is closed
+     * 
+     * @throws Exception
+     *             Exception thrown in case of error
+     */
+    @Test
+    public void test_index_closed() throws Exception {
+        startAndAwaitPopulation();
+        embeddedMovieIndex.stop();
+
+        final CompletableFuture<Void> result = embeddedMovieIndex.index(createMovieIndex("The Matrix"));
+
+        assertTrue(result.isCompletedExceptionally());
+
+        embeddedMovieIndex = createEmbeddedMovieIndex();
+        embeddedMovieIndex.start();
+    }
+
+    /**
+     * Tests if a new index is populated with the movies of the database, and if
+     * it's not populated again when it's opened
+     * 
+     * @throws Exception
+     *             Exception thrown in case of error
+     */
+    @Test
+    public void test_start_populate() throws Exception {
+        final Movie movie1 = createMovie("The Matrix");
+        final Movie movie2 = createMovie("Alien");
+        when(movieRepository.streamActiveMovies(searchIndexProperties.getBulkSize()))
+            .thenReturn(stream(Arrays.asList(movie1, movie2).iterator()));
+
+        embeddedMovieIndex.start();
+        awaitCount(2);
+        embeddedMovieIndex.stop();
+
+        embeddedMovieIndex = createEmbeddedMovieIndex();
+        embeddedMovieIndex.start();
+
+        assertTrue(embeddedMovieIndex.isPopulated());
+        assertEquals(2, count());
+        assertEquals(movie2.getTitle(), find(movie2.getId()).getTitle());
+        verify(movieRepository).streamActiveMovies(anyInt());
+    }
+
+    /**
+     * Tests if the population doesn't replace movies that were written after it
+     * started
+     * 
+     * @throws Exception
+     *             Exception thrown in case of error
+     */
+    @Test
+    public void test_start_populateConcurrentWrites() throws Exception {
+        final Movie movie1 = createMovie("The Matrix");
+        final Movie movie2 = createMovie("Alien");
+        final Movie movie3 = createMovie("Heat");
+        final Iterator<Movie> movies = Arrays.asList(movie1, movie2, movie3).iterator();
+        when(movieRepository.streamActiveMovies(searchIndexProperties.getBulkSize()))
+            .thenReturn(stream(new Iterator<Movie>() {
+                @Override
+                public boolean hasNext() {
+                    return movies.hasNext();
+                }
+
+                @Override
+                public Movie next() {
+                    final Movie movie = movies.next();
+                    if (movie == movie1) {
+                        final MovieIndex movieIndex = toMovieIndex(movie2);
+                        movieIndex.setTitle("Aliens");
+                        embeddedMovieIndex.index(movieIndex);
+                        embeddedMovieIndex.delete(movie3.getId());
+                    }
+
+                    return movie;
+                }
+            }));
+
+        embeddedMovieIndex.start();
+        awaitCount(2);
+
+        assertEquals("Aliens", find(movie2.getId()).getTitle());
+        assertNull(find(movie3.getId()));
+    }
+
+    /**
+     * Tests if texts are analyzed like the fields of the Elasticsearch index
+     * 
+     * @throws Exception
+     *             Exception thrown in case of error
+     */
+    @Test
+    public void test_analyze() throws Exception {
+        embeddedMovieIndex.start();
+
+        assertEquals(Arrays.asList("the", "matrix"), embeddedMovieIndex.analyze(EmbeddedMovieIndex.TITLE_FIELD,
+            "The Matrix"));
+        assertEquals(Arrays.asList("mat", "atr", "tri", "rix"),
+            embeddedMovieIndex.analyze(EmbeddedMovieIndex.TITLE_NGRAM_FIELD, "Matrix"));
+        assertEquals(Arrays.asList("the", "matrix"),
+            embeddedMovieIndex.analyze(EmbeddedMovieIndex.TITLE_PREFIX_FIELD, "The Matrix"));
+    }
+
+    /**
+     * Creates the component with the properties and the mocks of the test class
+     * 
+     * @return The component
+     */
+    private EmbeddedMovieIndex createEmbeddedMovieIndex() {
+        return new EmbeddedMovieIndex(embeddedSearchProperties, searchIndexProperties, movieSearchCache,
+            movieRepository, movieMapper);
+    }
+
+    /**
+     * Starts the component and waits until the index is populated
+     * 
+     * @throws Exception
+     *             Exception thrown in case of error
+     */
+    private void startAndAwaitPopulation() throws Exception {
+        embeddedMovieIndex.start();
+
+        final long deadline = System.currentTimeMillis() + AWAIT_TIMEOUT;
+        while (!embeddedMovieIndex.isPopulated() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+
+        assertTrue(embeddedMovieIndex.isPopulated());
+    }
+
+    /**
+     * Waits until the index has a number of movies
+     * 
+     * @param expectedCount
+     *            The number of movies
+     * @throws Exception
+     *             Exception thrown in case of error
+     */
+    private void awaitCount(final int expectedCount) throws Exception {
+        final long deadline = System.currentTimeMillis() + AWAIT_TIMEOUT;
+        while (count() != expectedCount && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+            embeddedMovieIndex.flush();
+        }
+
+        assertEquals(expectedCount, count());
+    }
+
+    /**
+     * Counts the movies of the index
+     * 
+     * @return The number of movies
+     * @throws IOException
+     *             Exception thrown if the index can't be read
+     */
+    private int count() throws IOException {
+        return embeddedMovieIndex.search(searcher -> searcher.count(new MatchAllDocsQuery()));
+    }
+
+    /**
+     * Finds a movie in the index
+     * 
+     * @param id
+     *            The id of the movie
+     * @return The movie, or null if it's not found
+     * @throws IOException
+     *             Exception thrown if the index can't be read
+     */
+    private MovieDto find(final String id) throws IOException {
+        return embeddedMovieIndex.search(searcher -> {
+            final TopDocs topDocs = searcher.search(new TermQuery(new Term(EmbeddedMovieIndex.ID_FIELD, id)), 1);
+
+            return (topDocs.scoreDocs.length == 0)
+                ? null
+                : embeddedMovieIndex.readMovie(searcher.doc(topDocs.scoreDocs[0].doc));
+        });
+    }
+
+    /**
+     * Creates a closeable iterator of movies
+     * 
+     * @param movies
+     *            The movies
+     * @return The closeable iterator
+     */
+    private CloseableIterator<Movie> stream(final Iterator<Movie> movies) {
+        return new CloseableIterator<Movie>() {
+            @Override
+            public boolean hasNext() {
+                return movies.hasNext();
+            }
+
+            @Override
+            public Movie next() {
+                return movies.next();
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+
+    /**
+     * Creates a test movie
+     * 
+     * @param title
+     *            The title of the movie
+     * @return The movie
+     */
+    private Movie createMovie(final String title) {
+        final Movie movie = new Movie();
+        movie.setId(UUID.randomUUID().toString());
+        movie.setTitle(title);
+        movie.setDescription("Description of " + title);
+        movie.setRating(8.5);
+        movie.setReleaseYear(1999);
+        movie.setTotalLikes(10);
+        movie.setCreator("creator");
+
+        return movie;
+    }
+
+    /**
+     * Creates a test movie index
+     * 
+     * @param title
+     *            The title of the movie
+     * @return The movie index
+     */
+    private MovieIndex createMovieIndex(final String title) {
+        return toMovieIndex(createMovie(title));
+    }
+
+    /**
+     * Converts a movie to a movie index, like the mapper
+     * 
+     * @param movie
+     *            The movie
+     * @return The movie index
+     */
+    private MovieIndex toMovieIndex(final Movie movie) {
+        final MovieIndex movieIndex = new MovieIndex();
+        movieIndex.setId(movie.getId());
+        movieIndex.setTitle(movie.getTitle());
+        movieIndex.setDescription(movie.getDescription());
+        movieIndex.setRating(movie.getRating());
+        movieIndex.setReleaseYear(movie.getReleaseYear());
+        movieIndex.setTotalLikes(movie.getTotalLikes());
+        movieIndex.setCreator(movie.getCreator());
+
+        return movieIndex;
+    }
+}
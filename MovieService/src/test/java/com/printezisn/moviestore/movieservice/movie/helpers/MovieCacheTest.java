@@ -0,0 +1,133 @@
+package com.printezisn.moviestore.movieservice.movie.helpers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.util.Optional;
+import java.util.UUID;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.printezisn.moviestore.common.dto.movie.MovieDto;
+import com.printezisn.moviestore.movieservice.configuration.properties.MovieCacheProperties;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Class that contains unit tests for the MovieCache class
+ */
+public class MovieCacheTest {
+
+    private MovieCacheProperties movieCacheProperties;
+
+    private MeterRegistry meterRegistry;
+
+    private MovieCache movieCache;
+
+    /**
+     * Initializes the test class
+     */
+    @Before
+    public void setUp() {
+        movieCacheProperties = new MovieCacheProperties();
+        meterRegistry = new SimpleMeterRegistry();
+
+        movieCache = new MovieCache(movieCacheProperties, meterRegistry);
+    }
+
+    /**
+     * Tests if a movie is read only once while it's cached
+     */
+    @Test
+    public void test_get_hit() {
+        final String id = UUID.randomUUID().toString();
+
+        final MovieDto movie = read(id);
+
+        assertSame(movie, read(id));
+        assertEquals(1, meterRegistry.get("movies.cache.hits").counter().count(), 0);
+        assertEquals(1, meterRegistry.get("movies.cache.misses").counter().count(), 0);
+    }
+
+    /**
+     * Tests if a movie that doesn't exist is cached as missing
+     */
+    @Test
+    public void test_get_notFound() {
+        final String id = UUID.randomUUID().toString();
+
+        movieCache.get(id, () -> Optional.empty());
+
+        assertFalse(movieCache.get(id, () -> Optional.of(new MovieDto())).isPresent());
+    }
+
+    /**
+     * Tests if a movie is read again after it's invalidated
+     */
+    @Test
+    public void test_get_invalidated() {
+        final String id = UUID.randomUUID().toString();
+
+        final MovieDto movie = read(id);
+        movieCache.invalidate(id);
+
+        assertNotSame(movie, read(id));
+    }
+
+    /**
+     * Tests if a movie that is written while it's read is not cached
+     */
+    @Test
+    public void test_get_invalidatedDuringRead() {
+        final String id = UUID.randomUUID().toString();
+
+        movieCache.get(id, () -> {
+            movieCache.invalidate(id);
+            return Optional.of(new MovieDto());
+        });
+
+        assertEquals(0, movieCache.getSize());
+    }
+
+    /**
+     * Tests if expired movies are read again
+     */
+    @Test
+    public void test_get_expired() {
+        movieCacheProperties.setTimeToLive(0);
+        final String id = UUID.randomUUID().toString();
+
+        final MovieDto movie = read(id);
+
+        assertNotSame(movie, read(id));
+    }
+
+    /**
+     * Tests if the least recently used movie is evicted when the cache is full
+     */
+    @Test
+    public void test_get_eviction() {
+        movieCacheProperties.setMaxEntries(1);
+
+        read(UUID.randomUUID().toString());
+        read(UUID.randomUUID().toString());
+
+        assertEquals(1, movieCache.getSize());
+        assertEquals(1, meterRegistry.get("movies.cache.evictions").counter().count(), 0);
+    }
+
+    /**
+     * Reads a movie through the cache, creating a new movie on every miss
+     * 
+     * @param id
+     *            The id of the movie
+     * @return The movie
+     */
+    private MovieDto read(final String id) {
+        return movieCache.get(id, () -> Optional.of(new MovieDto())).get();
+    }
+}
@@ -0,0 +1,171 @@
+package com.printezisn.moviestore.movieservice.movie.helpers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+import org.bson.BsonDocument;
+import org.bson.BsonString;
+import org.bson.Document;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.MongoConverter;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+
+import com.mongodb.MongoNamespace;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.mongodb.client.model.changestream.OperationType;
+import com.printezisn.moviestore.movieservice.configuration.properties.SearchIndexProperties;
+import com.printezisn.moviestore.movieservice.movie.entities.IndexResumeToken;
+import com.printezisn.moviestore.movieservice.movie.entities.Movie;
+import com.printezisn.moviestore.movieservice.movie.repositories.IndexResumeTokenRepository;
+
+/**
+ * Class that contains unit tests for the MovieChangeStreamListener class
+ */
+public class MovieChangeStreamListenerTest {
+
+    private static final MongoNamespace NAMESPACE = new MongoNamespace("moviestore.movies");
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @Mock
+    private MongoConverter mongoConverter;
+
+    @Mock
+    private IndexResumeTokenRepository indexResumeTokenRepository;
+
+    @Mock
+    private MovieIndexHelper movieIndexHelper;
+
+    private MovieChangeStreamListener movieChangeStreamListener;
+
+    /**
+     * Initializes the test class
+     */
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+
+        when(mongoTemplate.getConverter()).thenReturn(mongoConverter);
+        when(movieIndexHelper.indexMovie(any())).thenReturn(CompletableFuture.completedFuture(null));
+
+        movieChangeStreamListener = new MovieChangeStreamListener(mongoTemplate, indexResumeTokenRepository,
+            movieIndexHelper, new SearchIndexProperties());
+    }
+
+    /**
+     * Tests if a changed movie is indexed and the resume token is stored
+     */
+    @Test
+    public void test_processChange_indexMovie() {
+        final Document fullDocument = new Document();
+        final BsonDocument resumeToken = new BsonDocument("_data", new BsonString(UUID.randomUUID().toString()));
+        final Movie movie = new Movie();
+        final ArgumentCaptor<IndexResumeToken> resumeTokenCaptor = ArgumentCaptor.forClass(IndexResumeToken.class);
+
+        when(mongoConverter.read(Movie.class, fullDocument)).thenReturn(movie);
+
+        movieChangeStreamListener.processChange(new ChangeStreamDocument<>(resumeToken, NAMESPACE, fullDocument,
+            null, OperationType.UPDATE, null));
+
+        verify(movieIndexHelper).indexMovie(movie);
+        verify(indexResumeTokenRepository).save(resumeTokenCaptor.capture());
+
+        assertEquals(resumeToken, BsonDocument.parse(resumeTokenCaptor.getValue().getToken()));
+    }
+
+    /**
+     * Tests if the change of a deleted movie is passed on as a deletion, so that
+     * the movie is removed from the search index instead of being indexed again
+     */
+    @Test
+    public void test_processChange_deleteMovie() {
+        final String id = UUID.randomUUID().toString();
+        final Document fullDocument = new Document("_id", id)
+            .append("title", "Title")
+            .append("updated", true)
+            .append("deleted", true);
+        final BsonDocument resumeToken = new BsonDocument("_data", new BsonString(UUID.randomUUID().toString()));
+        final ArgumentCaptor<Movie> movieCaptor = ArgumentCaptor.forClass(Movie.class);
+
+        when(mongoTemplate.getConverter())
+            .thenReturn(new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, new MongoMappingContext()));
+
+        movieChangeStreamListener.processChange(new ChangeStreamDocument<>(resumeToken, NAMESPACE, fullDocument,
+            null, OperationType.UPDATE, null));
+
+        verify(movieIndexHelper).indexMovie(movieCaptor.capture());
+
+        assertEquals(id, movieCaptor.getValue().getId());
+        assertTrue(movieCaptor.getValue().isDeleted());
+    }
+
+    /**
+     * Tests the scenario in which the change has no document
+     */
+    @Test
+    public void test_processChange_noDocument() {
+        final BsonDocument resumeToken = new BsonDocument("_data", new BsonString(UUID.randomUUID().toString()));
+
+        movieChangeStreamListener.processChange(new ChangeStreamDocument<>(resumeToken, NAMESPACE, null,
+            null, OperationType.UPDATE, null));
+
+        verify(movieIndexHelper, never()).indexMovie(any());
+        verify(indexResumeTokenRepository).save(any());
+    }
+
+    /**
+     * Tests if the resume tokens are saved only after the movies are indexed, in
+     * the order of the changes
+     */
+    @Test
+    public void test_processChange_waitForIndex() {
+        final Document firstDocument = new Document("_id", "1");
+        final Document secondDocument = new Document("_id", "2");
+        final Movie firstMovie = new Movie();
+        final Movie secondMovie = new Movie();
+        final BsonDocument firstResumeToken = new BsonDocument("_data", new BsonString("1"));
+        final BsonDocument secondResumeToken = new BsonDocument("_data", new BsonString("2"));
+        final CompletableFuture<Void> firstIndexed = new CompletableFuture<>();
+        final CompletableFuture<Void> secondIndexed = new CompletableFuture<>();
+        final ArgumentCaptor<IndexResumeToken> resumeTokenCaptor = ArgumentCaptor.forClass(IndexResumeToken.class);
+
+        firstMovie.setId("1");
+        secondMovie.setId("2");
+        when(mongoConverter.read(Movie.class, firstDocument)).thenReturn(firstMovie);
+        when(mongoConverter.read(Movie.class, secondDocument)).thenReturn(secondMovie);
+        when(movieIndexHelper.indexMovie(firstMovie)).thenReturn(firstIndexed);
+        when(movieIndexHelper.indexMovie(secondMovie)).thenReturn(secondIndexed);
+
+        movieChangeStreamListener.processChange(new ChangeStreamDocument<>(firstResumeToken, NAMESPACE, firstDocument,
+            null, OperationType.UPDATE, null));
+        movieChangeStreamListener.processChange(new ChangeStreamDocument<>(secondResumeToken, NAMESPACE,
+            secondDocument, null, OperationType.UPDATE, null));
+
+        secondIndexed.complete(null);
+        verify(indexResumeTokenRepository, never()).save(any());
+
+        firstIndexed.complete(null);
+        verify(indexResumeTokenRepository, times(2)).save(resumeTokenCaptor.capture());
+
+        final List<IndexResumeToken> resumeTokens = resumeTokenCaptor.getAllValues();
+        assertEquals(firstResumeToken, BsonDocument.parse(resumeTokens.get(0).getToken()));
+        assertEquals(secondResumeToken, BsonDocument.parse(resumeTokens.get(1).getToken()));
+    }
+}
@@ -0,0 +1,221 @@
+package com.printezisn.moviestore.movieservice.movie.helpers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.eq;
+import static org.mockito.Mockito.isNull;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.data.util.CloseableIterator;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.printezisn.moviestore.common.dto.movie.MovieDto;
+import com.printezisn.moviestore.movieservice.configuration.properties.MovieExportProperties;
+import com.printezisn.moviestore.movieservice.movie.entities.Movie;
+import com.printezisn.moviestore.movieservice.movie.mappers.MovieMapper;
+import com.printezisn.moviestore.movieservice.movie.repositories.MovieRepository;
+
+/**
+ * Class that contains unit tests for the MovieExporter class
+ */
+public class MovieExporterTest {
+
+    private static final int BATCH_SIZE = 2;
+    private static final Instant TIMESTAMP = Instant.parse("2018-11-01T10:15:30Z");
+
+    @Mock
+    private MovieRepository movieRepository;
+
+    @Mock
+    private MovieMapper movieMapper;
+
+    @Mock
+    private CloseableIterator<Movie> movieIterator;
+
+    private ObjectMapper objectMapper;
+
+    private MovieExporter movieExporter;
+
+    /**
+     * Initializes the test class
+     */
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+
+        final MovieExportProperties movieExportProperties = new MovieExportProperties();
+        movieExportProperties.setBatchSize(BATCH_SIZE);
+
+        when(movieMapper.movieToMovieDto(any())).thenAnswer(invocation -> {
+            final Movie movie = invocation.getArgument(0);
+            final MovieDto movieDto = new MovieDto();
+            movieDto.setId(UUID.fromString(movie.getId()));
+            movieDto.setTitle(movie.getTitle());
+            movieDto.setDescription(movie.getDescription());
+            movieDto.setRating(8.5);
+            movieDto.setReleaseYear(1999);
+            movieDto.setTotalLikes(3);
+            movieDto.setCreationTimestamp(TIMESTAMP);
+            movieDto.setUpdateTimestamp(TIMESTAMP);
+            movieDto.setCreator("creator");
+
+            return movieDto;
+        });
+
+        objectMapper = new ObjectMapper().findAndRegisterModules()
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        movieExporter = new MovieExporter(movieRepository, movieMapper, objectMapper, movieExportProperties);
+    }
+
+    /**
+     * Tests if movies are exported as newline delimited JSON
+     */
+    @Test
+    public void test_exportMovies_ndjson() throws Exception {
+        final List<Movie> movies = Arrays.asList(createMovie("Title 1", "Description"),
+            createMovie("Title 2", "Description"));
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        final CloseableIterator<Movie> cursor = stream(movies);
+
+        when(movieRepository.streamExportedMovies(isNull(), eq(BATCH_SIZE))).thenReturn(cursor);
+
+        assertEquals(2, movieExporter.exportMovies(output, MovieExportFormat.NDJSON, Optional.empty()));
+
+        final String[] lines = output.toString(StandardCharsets.UTF_8).split("\n", -1);
+        assertEquals(3, lines.length);
+        for (int i = 0; i < movies.size(); i++) {
+            final MovieDto movieDto = objectMapper.readValue(lines[i], MovieDto.class);
+            assertEquals(movies.get(i).getId(), movieDto.getId().toString());
+            assertEquals(movies.get(i).getTitle(), movieDto.getTitle());
+            assertEquals(TIMESTAMP, movieDto.getUpdateTimestamp());
+        }
+        assertEquals("", lines[2]);
+        verify(movieIterator).close();
+    }
+
+    /**
+     * Tests if movies updated since a time are exported as CSV, with the values
+     * that contain separators or quotes escaped
+     */
+    @Test
+    public void test_exportMovies_csv() throws Exception {
+        final Movie movie1 = createMovie("Title, with comma", "Said \"hi\"\nand left");
+        final Movie movie2 = createMovie("Title", "Description");
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        final CloseableIterator<Movie> cursor = stream(Arrays.asList(movie1, movie2));
+
+        when(movieRepository.streamExportedMovies(TIMESTAMP.toEpochMilli(), BATCH_SIZE)).thenReturn(cursor);
+
+        assertEquals(2, movieExporter.exportMovies(output, MovieExportFormat.CSV, Optional.of(TIMESTAMP)));
+
+        final String expected = "id,title,description,rating,releaseYear,totalLikes,creationTimestamp,"
+            + "updateTimestamp,creator\r\n"
+            + movie1.getId() + ",\"Title, with comma\",\"Said \"\"hi\"\"\nand left\",8.5,1999,3,"
+            + TIMESTAMP + "," + TIMESTAMP + ",creator\r\n"
+            + movie2.getId() + ",Title,Description,8.5,1999,3," + TIMESTAMP + "," + TIMESTAMP + ",creator\r\n";
+        assertEquals(expected, output.toString(StandardCharsets.UTF_8));
+        verify(movieIterator).close();
+    }
+
+    /**
+     * Tests if the stream is flushed after every batch and at the end
+     */
+    @Test
+    public void test_exportMovies_flushesBatches() throws Exception {
+        final int[] flushes = { 0 };
+        final OutputStream output = new ByteArrayOutputStream() {
+            @Override
+            public void flush() {
+                flushes[0]++;
+            }
+        };
+
+        final CloseableIterator<Movie> cursor = stream(Arrays.asList(createMovie("Title 1", "Description"),
+            createMovie("Title 2", "Description"), createMovie("Title 3", "Description")));
+
+        when(movieRepository.streamExportedMovies(isNull(), eq(BATCH_SIZE))).thenReturn(cursor);
+
+        assertEquals(3, movieExporter.exportMovies(output, MovieExportFormat.NDJSON, Optional.empty()));
+        assertEquals(2, flushes[0]);
+    }
+
+    /**
+     * Tests if the cursor is closed when the stream fails to be written
+     */
+    @Test
+    public void test_exportMovies_writeFailure() throws Exception {
+        final OutputStream output = new OutputStream() {
+            @Override
+            public void write(final int b) throws IOException {
+                throw new IOException("Broken pipe");
+            }
+        };
+
+        final CloseableIterator<Movie> cursor = stream(Arrays.asList(createMovie("Title 1", "Description"),
+            createMovie("Title 2", "Description"), createMovie("Title 3", "Description")));
+
+        when(movieRepository.streamExportedMovies(isNull(), eq(BATCH_SIZE))).thenReturn(cursor);
+
+        try {
+            movieExporter.exportMovies(output, MovieExportFormat.CSV, Optional.empty());
+            fail("The export should fail");
+        }
+        catch (final IOException ex) {
+            assertEquals("Broken pipe", ex.getMessage());
+        }
+        verify(movieIterator).close();
+    }
+
+    /**
+     * Sets up the mocked cursor to return movies
+     * 
+     * @param movies
+     *            The movies
+     * @return The mocked cursor
+     */
+    private CloseableIterator<Movie> stream(final List<Movie> movies) {
+        final Iterator<Movie> iterator = movies.iterator();
+        when(movieIterator.hasNext()).thenAnswer(invocation -> iterator.hasNext());
+        when(movieIterator.next()).thenAnswer(invocation -> iterator.next());
+
+        return movieIterator;
+    }
+
+    /**
+     * Creates a test movie
+     * 
+     * @param title
+     *            The title of the movie
+     * @param description
+     *            The description of the movie
+     * @return The movie
+     */
+    private Movie createMovie(final String title, final String description) {
+        final Movie movie = new Movie();
+        movie.setId(UUID.randomUUID().toString());
+        movie.setTitle(title);
+        movie.setDescription(description);
+
+        return movie;
+    }
+}
@@ -0,0 +1,247 @@
+package com.printezisn.moviestore.movieservice.movie.helpers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.anyBoolean;
+import static org.mockito.Mockito.anyList;
+import static org.mockito.Mockito.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+import javax.validation.Validation;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.printezisn.moviestore.common.dto.movie.MovieDto;
+import com.printezisn.moviestore.common.models.movie.MovieImportResultModel;
+import com.printezisn.moviestore.movieservice.configuration.properties.MovieImportProperties;
+import com.printezisn.moviestore.movieservice.movie.entities.Movie;
+import com.printezisn.moviestore.movieservice.movie.entities.MovieIndex;
+import com.printezisn.moviestore.movieservice.movie.exceptions.MoviePersistenceException;
+import com.printezisn.moviestore.movieservice.movie.mappers.MovieMapper;
+import com.printezisn.moviestore.movieservice.movie.repositories.MovieRepository;
+
+/**
+ * Class that contains unit tests for the MovieImporter class
+ */
+public class MovieImporterTest {
+
+    private static final int BATCH_SIZE = 2;
+    private static final String VALID_RECORD = "{\"title\":\"Title\",\"description\":\"Description\","
+        + "\"rating\":8.5,\"releaseYear\":1999,\"creator\":\"creator\"}";
+    private static final String INVALID_RECORD = "{\"description\":\"Description\",\"rating\":11,"
+        + "\"releaseYear\":1999,\"creator\":\"creator\"}";
+
+    @Mock
+    private MovieRepository movieRepository;
+
+    @Mock
+    private MovieIndexWriter movieIndexWriter;
+
+    @Mock
+    private MovieMapper movieMapper;
+
+    @Mock
+    private MovieSuggester movieSuggester;
+
+    private MovieImportProperties movieImportProperties;
+
+    private MovieImporter movieImporter;
+
+    /**
+     * Initializes the test class
+     */
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+
+        movieImportProperties = new MovieImportProperties();
+        movieImportProperties.setBatchSize(BATCH_SIZE);
+
+        when(movieMapper.movieDtoToMovie(any())).thenAnswer(invocation -> {
+            final MovieDto movieDto = invocation.getArgument(0);
+            final Movie movie = new Movie();
+            movie.setId(movieDto.getId().toString());
+            movie.setTitle(movieDto.getTitle());
+
+            return movie;
+        });
+        when(movieMapper.movieToMovieIndex(any())).thenAnswer(invocation -> {
+            final MovieIndex movieIndex = new MovieIndex();
+            movieIndex.setId(invocation.<Movie> getArgument(0).getId());
+
+            return movieIndex;
+        });
+        when(movieRepository.insertMovies(anyList(), anyBoolean())).thenReturn(Collections.emptyMap());
+        when(movieIndexWriter.index(any())).thenReturn(CompletableFuture.completedFuture(null));
+
+        movieImporter = new MovieImporter(movieRepository, movieIndexWriter, movieMapper, movieSuggester,
+            Validation.buildDefaultValidatorFactory().getValidator(), new ObjectMapper().findAndRegisterModules(),
+            movieImportProperties);
+    }
+
+    /**
+     * Tests if valid records are inserted in batches and indexed
+     */
+    @Test
+    public void test_importMovies_success() throws Exception {
+        final String id = UUID.randomUUID().toString();
+        final ArgumentCaptor<List<Movie>> batchCaptor = ArgumentCaptor.forClass(List.class);
+
+        final MovieImportResultModel result = importMovies(false, VALID_RECORD,
+            VALID_RECORD.replace("{", "{\"id\":\"" + id + "\","), "", VALID_RECORD);
+
+        assertEquals(3, result.getImported());
+        assertEquals(0, result.getFailed());
+        assertFalse(result.isAborted());
+        verify(movieRepository, times(2)).insertMovies(batchCaptor.capture(), eq(false));
+        verify(movieIndexWriter, times(3)).index(any());
+        verify(movieSuggester, times(3)).update(any(), eq("Title"), eq(0L));
+        verify(movieRepository, never()).markUpdated(any());
+
+        final List<Movie> firstBatch = batchCaptor.getAllValues().get(0);
+        assertEquals(2, firstBatch.size());
+        assertEquals(1, batchCaptor.getAllValues().get(1).size());
+        assertEquals(id, firstBatch.get(1).getId());
+        assertNotNull(firstBatch.get(0).getId());
+        assertNotNull(firstBatch.get(0).getRevision());
+        assertFalse(firstBatch.get(0).isUpdated());
+    }
+
+    /**
+     * Tests if invalid records are reported with their line numbers and skipped
+     */
+    @Test
+    public void test_importMovies_invalidRecords() throws Exception {
+        final MovieImportResultModel result = importMovies(false, VALID_RECORD, INVALID_RECORD, "{\"title\":",
+            VALID_RECORD);
+
+        assertEquals(2, result.getImported());
+        assertEquals(2, result.getFailed());
+        assertEquals(2, result.getErrors().size());
+        assertEquals(2, result.getErrors().get(0).getLine());
+        assertEquals(Arrays.asList("message.movie.error.ratingMaxValue", "message.movie.error.titleRequired"),
+            result.getErrors().get(0).getErrors());
+        assertEquals(3, result.getErrors().get(1).getLine());
+        assertTrue(result.getErrors().get(1).getErrors().get(0).startsWith("Invalid record"));
+    }
+
+    /**
+     * Tests if the number of reported errors is limited, while all the failed
+     * records are counted
+     */
+    @Test
+    public void test_importMovies_maxErrors() throws Exception {
+        movieImportProperties.setMaxErrors(1);
+
+        final MovieImportResultModel result = importMovies(false, INVALID_RECORD, INVALID_RECORD, "null");
+
+        assertEquals(3, result.getFailed());
+        assertEquals(1, result.getErrors().size());
+    }
+
+    /**
+     * Tests if an ordered import stops at the first invalid record
+     */
+    @Test
+    public void test_importMovies_orderedInvalidRecord() throws Exception {
+        final MovieImportResultModel result = importMovies(true, VALID_RECORD, INVALID_RECORD, VALID_RECORD);
+
+        assertTrue(result.isAborted());
+        assertEquals(0, result.getImported());
+        assertEquals(1, result.getFailed());
+        verify(movieRepository, never()).insertMovies(anyList(), anyBoolean());
+    }
+
+    /**
+     * Tests if the movies that fail to be inserted are reported, and if an
+     * ordered import stops after them
+     */
+    @Test
+    public void test_importMovies_orderedInsertFailure() throws Exception {
+        when(movieRepository.insertMovies(anyList(), eq(true)))
+            .thenReturn(Collections.singletonMap(0, "E11000 duplicate key error"));
+
+        final MovieImportResultModel result = importMovies(true, VALID_RECORD, VALID_RECORD, VALID_RECORD);
+
+        assertTrue(result.isAborted());
+        assertEquals(0, result.getImported());
+        assertEquals(1, result.getFailed());
+        assertEquals(1, result.getErrors().get(0).getLine());
+        assertEquals(Arrays.asList("E11000 duplicate key error"), result.getErrors().get(0).getErrors());
+        verify(movieRepository, times(1)).insertMovies(anyList(), eq(true));
+        verify(movieIndexWriter, never()).index(any());
+    }
+
+    /**
+     * Tests if an unordered import keeps the movies that were inserted when other
+     * movies of the batch fail
+     */
+    @Test
+    public void test_importMovies_unorderedInsertFailure() throws Exception {
+        when(movieRepository.insertMovies(anyList(), eq(false)))
+            .thenReturn(Collections.singletonMap(0, "E11000 duplicate key error"));
+
+        final MovieImportResultModel result = importMovies(false, VALID_RECORD, VALID_RECORD);
+
+        assertFalse(result.isAborted());
+        assertEquals(1, result.getImported());
+        assertEquals(1, result.getFailed());
+        verify(movieIndexWriter, times(1)).index(any());
+    }
+
+    /**
+     * Tests if the movies that fail to be indexed are marked as updated
+     */
+    @Test
+    public void test_importMovies_indexFailure() throws Exception {
+        final CompletableFuture<Void> failedWrite = new CompletableFuture<>();
+        failedWrite.completeExceptionally(new MoviePersistenceException("error", null));
+        final ArgumentCaptor<Collection<String>> idsCaptor = ArgumentCaptor.forClass(Collection.class);
+
+        when(movieIndexWriter.index(any())).thenReturn(failedWrite);
+
+        final MovieImportResultModel result = importMovies(false, VALID_RECORD);
+
+        assertEquals(1, result.getImported());
+        verify(movieRepository).markUpdated(idsCaptor.capture());
+        assertEquals(1, idsCaptor.getValue().size());
+        verify(movieSuggester, never()).update(any(), any(), eq(0L));
+    }
+
+    /**
+     * Imports records
+     * 
+     * @param ordered
+     *            Indicates if the import stops at the first record that fails
+     * @param records
+     *            The records, one per line
+     * @return The result of the import
+     * @throws Exception
+     *             Exception thrown if the import fails
+     */
+    private MovieImportResultModel importMovies(final boolean ordered, final String... records) throws Exception {
+        final byte[] input = String.join("\n", records).getBytes(StandardCharsets.UTF_8);
+
+        return movieImporter.importMovies(new ByteArrayInputStream(input), ordered);
+    }
+}
@@ -3,14 +3,21 @@ package com.printezisn.moviestore.movieservice.movie.helpers;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.anyLong;
+import static org.mockito.Mockito.anyString;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
 import static org.mockito.Mockito.when;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashSet;
+import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -19,9 +26,8 @@ import org.mockito.MockitoAnnotations;
 
 import com.printezisn.moviestore.movieservice.movie.entities.Movie;
 import com.printezisn.moviestore.movieservice.movie.entities.MovieIndex;
-import com.printezisn.moviestore.movieservice.movie.entities.MovieLike;
+import com.printezisn.moviestore.movieservice.movie.exceptions.MoviePersistenceException;
 import com.printezisn.moviestore.movieservice.movie.mappers.MovieMapper;
-import com.printezisn.moviestore.movieservice.movie.repositories.MovieIndexRepository;
 import com.printezisn.moviestore.movieservice.movie.repositories.MovieLikeRepository;
 import com.printezisn.moviestore.movieservice.movie.repositories.MovieRepository;
 
@@ -37,11 +43,17 @@ public class MovieIndexHelperTest {
     private MovieLikeRepository movieLikeRepository;
 
     @Mock
-    private MovieIndexRepository movieIndexRepository;
+    private MovieIndexWriter movieIndexWriter;
 
     @Mock
     private MovieMapper movieMapper;
 
+    @Mock
+    private MovieCache movieCache;
+
+    @Mock
+    private MovieSuggester movieSuggester;
+
     private MovieIndexHelper movieIndexHelper;
 
     /**
@@ -51,8 +63,8 @@ public class MovieIndexHelperTest {
     public void setUp() {
         MockitoAnnotations.initMocks(this);
 
-        movieIndexHelper = new MovieIndexHelper(movieRepository, movieLikeRepository, movieIndexRepository,
-            movieMapper);
+        movieIndexHelper = new MovieIndexHelper(movieRepository, movieLikeRepository, movieIndexWriter,
+            movieMapper, movieCache, movieSuggester);
     }
 
     /**
@@ -62,13 +74,22 @@ public class MovieIndexHelperTest {
     public void test_indexMovie_deleteMovie() {
         final Movie movie = new Movie();
         movie.setId(UUID.randomUUID().toString());
+        movie.setRevision(UUID.randomUUID().toString());
+        movie.setLikesRevision(UUID.randomUUID().toString());
         movie.setDeleted(true);
+        movie.setUpdated(true);
+
+        when(movieIndexWriter.delete(movie.getId())).thenReturn(CompletableFuture.completedFuture(null));
 
         movieIndexHelper.indexMovie(movie);
 
-        verify(movieRepository).deleteById(movie.getId());
-        verify(movieIndexRepository).deleteById(movie.getId());
-        verify(movieLikeRepository).deleteByMovieId(movie.getId());
+        verify(movieIndexWriter).delete(movie.getId());
+        verify(movieCache).invalidate(movie.getId());
+        verify(movieSuggester).remove(movie.getId());
+        verify(movieRepository).updateIndexedMovie(movie, movie.getRevision(), movie.getLikesRevision());
+        verify(movieRepository, never()).deleteById(movie.getId());
+        verifyZeroInteractions(movieLikeRepository);
+        assertFalse(movie.isUpdated());
     }
 
     /**
@@ -77,29 +98,33 @@ public class MovieIndexHelperTest {
     @Test
     public void test_indexMovie_updateMovie() {
         final String currentRevision = UUID.randomUUID().toString();
+        final String currentLikesRevision = UUID.randomUUID().toString();
         final Movie movie = new Movie();
         movie.setId(UUID.randomUUID().toString());
         movie.setRevision(currentRevision);
-        movie.setPendingLikes(new HashSet<>(Arrays.asList("account1")));
+        movie.setLikesRevision(currentLikesRevision);
+        movie.setTotalLikes(3);
+        movie.setPendingLikes(new HashSet<>(Arrays.asList("account1", "account3")));
         movie.setPendingUnlikes(new HashSet<>(Arrays.asList("account2")));
 
         final MovieIndex movieIndex = new MovieIndex();
 
-        final MovieLike movieLike = new MovieLike();
-        movieLike.setId(movie.getId() + "-account1");
-        movieLike.setMovieId(movie.getId());
-        movieLike.setAccount("account1");
-
-        when(movieRepository.findByUpdated(true)).thenReturn(Arrays.asList(movie));
         when(movieMapper.movieToMovieIndex(movie)).thenReturn(movieIndex);
-        when(movieLikeRepository.countByMovieId(movie.getId())).thenReturn(5L);
+        when(movieLikeRepository.addLike(movie.getId(), "account1")).thenReturn(true);
+        when(movieLikeRepository.addLike(movie.getId(), "account3")).thenReturn(true);
+        when(movieLikeRepository.removeLike(movie.getId(), "account2")).thenReturn(false);
+        when(movieIndexWriter.index(movieIndex)).thenReturn(CompletableFuture.completedFuture(null));
 
         movieIndexHelper.indexMovie(movie);
 
-        verify(movieLikeRepository).save(movieLike);
-        verify(movieLikeRepository).deleteById(movie.getId() + "-account2");
-        verify(movieIndexRepository).save(movieIndex);
-        verify(movieRepository).updateMovie(movie, currentRevision);
+        verify(movieLikeRepository).addLike(movie.getId(), "account1");
+        verify(movieLikeRepository).addLike(movie.getId(), "account3");
+        verify(movieLikeRepository).removeLike(movie.getId(), "account2");
+        verify(movieRepository).incrementTotalLikes(movie.getId(), 2);
+        verify(movieCache).invalidate(movie.getId());
+        verify(movieIndexWriter).index(movieIndex);
+        verify(movieSuggester).update(movie.getId(), movie.getTitle(), 5L);
+        verify(movieRepository).updateIndexedMovie(movie, currentRevision, currentLikesRevision);
 
         assertEquals(5L, movie.getTotalLikes());
         assertTrue(movie.getPendingLikes().isEmpty());
@@ -107,6 +132,36 @@ public class MovieIndexHelperTest {
         assertFalse(movie.isUpdated());
     }
 
+    /**
+     * Tests if the database updates that follow the write to the search index run
+     * on the given executor
+     */
+    @Test
+    public void test_indexMovie_executor() {
+        final Movie movie = new Movie();
+        movie.setId(UUID.randomUUID().toString());
+        movie.setRevision(UUID.randomUUID().toString());
+        movie.setPendingLikes(new HashSet<>());
+        movie.setPendingUnlikes(new HashSet<>());
+
+        final MovieIndex movieIndex = new MovieIndex();
+        final List<Runnable> tasks = new ArrayList<>();
+
+        when(movieMapper.movieToMovieIndex(movie)).thenReturn(movieIndex);
+        when(movieIndexWriter.index(movieIndex)).thenReturn(CompletableFuture.completedFuture(null));
+
+        final CompletableFuture<Void> result = movieIndexHelper.indexMovie(movie, tasks::add);
+
+        verify(movieRepository, never()).updateIndexedMovie(any(), any(), any());
+        assertFalse(result.isDone());
+        assertEquals(1, tasks.size());
+
+        tasks.get(0).run();
+
+        verify(movieRepository).updateIndexedMovie(movie, movie.getRevision(), movie.getLikesRevision());
+        assertTrue(result.isDone());
+    }
+
     /**
      * Tests the scenario in which an exception is thrown while processing a movie
      */
@@ -116,10 +171,37 @@ public class MovieIndexHelperTest {
         movie.setId(UUID.randomUUID().toString());
         movie.setDeleted(true);
 
-        doThrow(new RuntimeException()).when(movieLikeRepository).deleteByMovieId(movie.getId());
+        when(movieIndexWriter.delete(movie.getId())).thenReturn(CompletableFuture.completedFuture(null));
+        doThrow(new RuntimeException()).when(movieSuggester).remove(movie.getId());
 
         movieIndexHelper.indexMovie(movie);
 
-        verify(movieRepository, never()).deleteById(movie.getId());
+        verify(movieRepository, never()).updateIndexedMovie(any(), any(), any());
+    }
+
+    /**
+     * Tests the scenario in which the movie fails to be written to the search index
+     */
+    @Test
+    public void test_indexMovie_indexFailure() {
+        final Movie movie = new Movie();
+        movie.setId(UUID.randomUUID().toString());
+        movie.setRevision(UUID.randomUUID().toString());
+        movie.setUpdated(true);
+        movie.setPendingLikes(new HashSet<>());
+        movie.setPendingUnlikes(new HashSet<>());
+
+        final MovieIndex movieIndex = new MovieIndex();
+        final CompletableFuture<Void> failedWrite = new CompletableFuture<>();
+        failedWrite.completeExceptionally(new MoviePersistenceException("error", null));
+
+        when(movieMapper.movieToMovieIndex(movie)).thenReturn(movieIndex);
+        when(movieIndexWriter.index(movieIndex)).thenReturn(failedWrite);
+
+        movieIndexHelper.indexMovie(movie).join();
+
+        verify(movieRepository, never()).updateIndexedMovie(movie, movie.getRevision(), movie.getLikesRevision());
+        verify(movieRepository, never()).incrementTotalLikes(anyString(), anyLong());
+        assertTrue(movie.isUpdated());
     }
 }
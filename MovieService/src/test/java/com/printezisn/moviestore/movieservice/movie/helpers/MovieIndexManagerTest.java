@@ -0,0 +1,549 @@
+package com.printezisn.moviestore.movieservice.movie.helpers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.RETURNS_SELF;
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.eq;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Stream;
+
+import org.elasticsearch.action.DocWriteRequest.OpType;
+import org.elasticsearch.action.admin.indices.alias.IndicesAliasesRequestBuilder;
+import org.elasticsearch.action.admin.indices.create.CreateIndexRequestBuilder;
+import org.elasticsearch.action.admin.indices.delete.DeleteIndexRequestBuilder;
+import org.elasticsearch.action.admin.indices.get.GetIndexRequestBuilder;
+import org.elasticsearch.action.admin.indices.get.GetIndexResponse;
+import org.elasticsearch.action.admin.indices.refresh.RefreshRequestBuilder;
+import org.elasticsearch.action.bulk.BulkItemResponse;
+import org.elasticsearch.action.bulk.BulkRequestBuilder;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.action.delete.DeleteAction;
+import org.elasticsearch.action.delete.DeleteRequestBuilder;
+import org.elasticsearch.action.delete.DeleteResponse;
+import org.elasticsearch.action.index.IndexAction;
+import org.elasticsearch.action.index.IndexRequestBuilder;
+import org.elasticsearch.action.search.ClearScrollRequestBuilder;
+import org.elasticsearch.action.search.SearchRequestBuilder;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.action.search.SearchScrollRequestBuilder;
+import org.elasticsearch.client.AdminClient;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.client.IndicesAdminClient;
+import org.elasticsearch.client.transport.NoNodeAvailableException;
+import org.elasticsearch.cluster.metadata.AliasMetaData;
+import org.elasticsearch.cluster.metadata.MappingMetaData;
+import org.elasticsearch.common.collect.ImmutableOpenMap;
+import org.elasticsearch.common.text.Text;
+import org.elasticsearch.index.engine.VersionConflictEngineException;
+import org.elasticsearch.index.shard.ShardId;
+import org.elasticsearch.search.SearchHit;
+import org.elasticsearch.search.SearchHits;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.data.elasticsearch.core.ElasticsearchTemplate;
+import org.springframework.data.elasticsearch.core.mapping.ElasticsearchPersistentEntity;
+import org.springframework.data.util.CloseableIterator;
+
+import com.printezisn.moviestore.movieservice.configuration.properties.SearchIndexProperties;
+import com.printezisn.moviestore.movieservice.movie.entities.IndexBuild;
+import com.printezisn.moviestore.movieservice.movie.entities.Movie;
+import com.printezisn.moviestore.movieservice.movie.entities.MovieIndex;
+import com.printezisn.moviestore.movieservice.movie.exceptions.MoviePersistenceException;
+import com.printezisn.moviestore.movieservice.movie.mappers.MovieMapper;
+import com.printezisn.moviestore.movieservice.movie.repositories.IndexBuildRepository;
+import com.printezisn.moviestore.movieservice.movie.repositories.MovieRepository;
+
+/**
+ * Class that contains unit tests for the MovieIndexManager class
+ */
+public class MovieIndexManagerTest {
+
+    private static final String ALIAS = "test_index";
+    private static final String INDEX_TYPE = "movies";
+    private static final String OLD_INDEX = ALIAS + "_old";
+    private static final long TIMEOUT = 5000;
+    private static final long WAIT = 300;
+
+    @Mock
+    private ElasticsearchTemplate elasticsearchTemplate;
+
+    @Mock
+    private ElasticsearchPersistentEntity<MovieIndex> persistentEntity;
+
+    @Mock
+    private MovieRepository movieRepository;
+
+    @Mock
+    private MovieMapper movieMapper;
+
+    @Mock
+    private CloseableIterator<Movie> movieIterator;
+
+    @Mock
+    private GetIndexResponse getIndexResponse;
+
+    private GetIndexRequestBuilder getIndexRequestBuilder;
+
+    @Mock
+    private Client client;
+
+    @Mock
+    private AdminClient adminClient;
+
+    @Mock
+    private BulkRequestBuilder bulkRequestBuilder;
+
+    @Mock
+    private IndicesAdminClient indicesAdminClient;
+
+    @Mock
+    private IndexBuildRepository indexBuildRepository;
+
+    @Mock
+    private SearchResponse searchResponse;
+
+    @Mock
+    private SearchResponse scrollResponse;
+
+    private final Map<String, IndexBuild> builds = new ConcurrentHashMap<>();
+
+    private SearchIndexProperties searchIndexProperties;
+
+    private MovieIndexManager movieIndexManager;
+
+    /**
+     * Initializes the test class
+     */
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+
+        getIndexRequestBuilder = mock(GetIndexRequestBuilder.class, RETURNS_SELF);
+        when(client.admin()).thenReturn(adminClient);
+        when(adminClient.indices()).thenReturn(indicesAdminClient);
+        when(elasticsearchTemplate.getClient()).thenReturn(client);
+        doReturn(persistentEntity).when(elasticsearchTemplate).getPersistentEntityFor(MovieIndex.class);
+        when(persistentEntity.getIndexName()).thenReturn(ALIAS);
+        when(persistentEntity.getIndexType()).thenReturn(INDEX_TYPE);
+        when(indicesAdminClient.prepareGetIndex()).thenReturn(getIndexRequestBuilder);
+        when(getIndexRequestBuilder.get()).thenReturn(getIndexResponse);
+        when(indicesAdminClient.prepareCreate(any())).thenReturn(mock(CreateIndexRequestBuilder.class, RETURNS_SELF));
+        when(indicesAdminClient.prepareAliases()).thenReturn(mock(IndicesAliasesRequestBuilder.class, RETURNS_SELF));
+        when(indicesAdminClient.prepareDelete(any())).thenReturn(mock(DeleteIndexRequestBuilder.class));
+        final SearchRequestBuilder searchRequestBuilder = mock(SearchRequestBuilder.class, RETURNS_SELF);
+        final SearchScrollRequestBuilder searchScrollRequestBuilder = mock(SearchScrollRequestBuilder.class,
+            RETURNS_SELF);
+        when(indicesAdminClient.prepareRefresh(any())).thenReturn(mock(RefreshRequestBuilder.class));
+        when(client.prepareSearch(any())).thenReturn(searchRequestBuilder);
+        when(searchRequestBuilder.get()).thenReturn(searchResponse);
+        when(searchResponse.getHits()).thenReturn(SearchHits.empty());
+        when(client.prepareSearchScroll(any())).thenReturn(searchScrollRequestBuilder);
+        when(searchScrollRequestBuilder.get()).thenReturn(scrollResponse);
+        when(scrollResponse.getHits()).thenReturn(SearchHits.empty());
+        when(client.prepareClearScroll()).thenReturn(mock(ClearScrollRequestBuilder.class, RETURNS_SELF));
+        when(indexBuildRepository.save(any())).thenAnswer(invocation -> {
+            final IndexBuild build = invocation.getArgument(0);
+            builds.put(build.getId(), build);
+            return build;
+        });
+        when(indexBuildRepository.findById(any()))
+            .thenAnswer(invocation -> Optional.ofNullable(builds.get(invocation.getArgument(0))));
+        when(indexBuildRepository.findAll()).thenAnswer(invocation -> new ArrayList<>(builds.values()));
+        doAnswer(invocation -> builds.remove(invocation.getArgument(0))).when(indexBuildRepository)
+            .deleteById(any());
+
+        searchIndexProperties = new SearchIndexProperties();
+        searchIndexProperties.setRebuildDiscoveryInterval(10);
+
+        movieIndexManager = new MovieIndexManager(elasticsearchTemplate, movieRepository, movieMapper,
+            searchIndexProperties, indexBuildRepository);
+    }
+
+    /**
+     * Cleans up after each test
+     */
+    @After
+    public void tearDown() {
+        movieIndexManager.stop();
+    }
+
+    /**
+     * Tests if nothing is built when the alias points to the current version
+     */
+    @Test
+    public void test_start_upToDate() throws Exception {
+        when(getIndexResponse.getIndices()).thenAnswer(invocation -> new String[] {
+            movieIndexManager.getVersionedIndexName() });
+        when(getIndexResponse.getAliases()).thenAnswer(invocation -> aliases(
+            movieIndexManager.getVersionedIndexName()));
+
+        movieIndexManager.start();
+
+        waitForCurrentVersionInUse();
+        verify(indicesAdminClient, after(WAIT).never()).prepareCreate(anyString());
+    }
+
+    /**
+     * Tests if the startup doesn't wait for the search index, and the alias is
+     * checked as soon as the search index can be read
+     */
+    @Test
+    public void test_start_searchIndexUnavailable() throws Exception {
+        when(getIndexRequestBuilder.get()).thenThrow(new NoNodeAvailableException("down"))
+            .thenReturn(getIndexResponse);
+        when(getIndexResponse.getIndices()).thenAnswer(invocation -> new String[] {
+            movieIndexManager.getVersionedIndexName() });
+        when(getIndexResponse.getAliases()).thenAnswer(invocation -> aliases(
+            movieIndexManager.getVersionedIndexName()));
+
+        movieIndexManager.start();
+
+        waitForCurrentVersionInUse();
+        verify(indicesAdminClient, never()).prepareCreate(anyString());
+    }
+
+    /**
+     * Tests if nothing is built when the alias points to an index of a newer
+     * version, which was built by a node of a newer deployment
+     */
+    @Test
+    public void test_start_newerVersion() throws Exception {
+        when(getIndexResponse.getIndices()).thenReturn(new String[] { OLD_INDEX });
+        when(getIndexResponse.getAliases()).thenReturn(aliases(OLD_INDEX));
+        when(getIndexResponse.getMappings()).thenReturn(mappings(OLD_INDEX, 2));
+
+        movieIndexManager.start();
+
+        verify(indexBuildRepository, timeout(TIMEOUT)).findAll();
+        verify(indicesAdminClient, after(WAIT).never()).prepareCreate(anyString());
+        assertFalse(movieIndexManager.isCurrentVersionInUse());
+    }
+
+    /**
+     * Tests if the alias isn't moved to a fresh index of a full reindex when it
+     * points to an index of a newer version
+     */
+    @Test
+    public void test_completeBuildingIndex_newerVersion() throws Exception {
+        when(getIndexResponse.getIndices()).thenReturn(new String[] { OLD_INDEX });
+        when(getIndexResponse.getAliases()).thenReturn(aliases(OLD_INDEX));
+        when(getIndexResponse.getMappings()).thenReturn(mappings(OLD_INDEX, 2));
+        movieIndexManager.start();
+        final String indexName = movieIndexManager.createBuildingIndex();
+
+        try {
+            movieIndexManager.completeBuildingIndex(indexName);
+            fail();
+        }
+        catch (final MoviePersistenceException ex) {
+            verify(indicesAdminClient, never()).prepareAliases();
+            verify(indicesAdminClient, never()).prepareDelete(OLD_INDEX);
+        }
+    }
+
+    /**
+     * Tests if the current version is built in the background when there is no
+     * index, and the alias is created only after it's populated
+     */
+    @Test
+    public void test_start_noIndex() throws Exception {
+        when(getIndexResponse.getIndices()).thenReturn(new String[0]);
+        when(getIndexResponse.getAliases()).thenReturn(ImmutableOpenMap.of());
+        when(movieRepository.streamActiveMovies(any(Integer.class))).thenReturn(movieIterator);
+
+        movieIndexManager.start();
+
+        assertFalse(movieIndexManager.isAliasAvailable());
+        verify(indicesAdminClient, timeout(TIMEOUT)).prepareAliases();
+        assertTrue(movieIndexManager.getVersionedIndexName().startsWith(ALIAS + "_"));
+
+        final InOrder inOrder = inOrder(indicesAdminClient, movieRepository, client);
+        inOrder.verify(indicesAdminClient).prepareCreate(movieIndexManager.getVersionedIndexName());
+        inOrder.verify(movieRepository).streamActiveMovies(any(Integer.class));
+        inOrder.verify(client).prepareSearch(movieIndexManager.getVersionedIndexName());
+        inOrder.verify(indicesAdminClient).prepareAliases();
+    }
+
+    /**
+     * Tests if the documents of movies that were deleted while the index was
+     * populated are removed before the alias is moved to it
+     */
+    @Test
+    public void test_start_removesDeletedMovies() throws Exception {
+        final String deletedId = UUID.randomUUID().toString();
+        final String activeId = UUID.randomUUID().toString();
+
+        when(getIndexResponse.getIndices()).thenReturn(new String[0]);
+        when(getIndexResponse.getAliases()).thenReturn(ImmutableOpenMap.of());
+        when(movieRepository.streamActiveMovies(any(Integer.class))).thenReturn(movieIterator);
+        when(searchResponse.getHits()).thenReturn(new SearchHits(new SearchHit[] {
+            new SearchHit(0, deletedId, new Text(INDEX_TYPE), Collections.emptyMap()),
+            new SearchHit(1, activeId, new Text(INDEX_TYPE), Collections.emptyMap())
+        }, 2, 1));
+        when(movieRepository.findActiveMovieIds(any())).thenReturn(Collections.singleton(activeId));
+        when(client.prepareBulk()).thenReturn(bulkRequestBuilder);
+        when(client.prepareDelete(any(), any(), any()))
+            .thenAnswer(invocation -> new DeleteRequestBuilder(client, DeleteAction.INSTANCE, ALIAS));
+        when(bulkRequestBuilder.get()).thenReturn(new BulkResponse(new BulkItemResponse[] {
+            new BulkItemResponse(0, OpType.DELETE,
+                new DeleteResponse(new ShardId(ALIAS, "uuid", 0), INDEX_TYPE, deletedId, 1, 1, 1, false))
+        }, 1));
+
+        movieIndexManager.start();
+
+        verify(indicesAdminClient, timeout(TIMEOUT)).prepareAliases();
+        final InOrder inOrder = inOrder(client, indicesAdminClient);
+        inOrder.verify(client).prepareDelete(movieIndexManager.getVersionedIndexName(), INDEX_TYPE, deletedId);
+        inOrder.verify(indicesAdminClient).prepareAliases();
+        verify(client, never()).prepareDelete(movieIndexManager.getVersionedIndexName(), INDEX_TYPE, activeId);
+        verify(client).prepareClearScroll();
+    }
+
+    /**
+     * Tests if a new version is built from the database in the background and
+     * replaces the old one, ignoring movies that were already written to it
+     */
+    @Test
+    public void test_start_oldVersion() throws Exception {
+        final Movie movie = new Movie();
+        movie.setId(UUID.randomUUID().toString());
+
+        when(getIndexResponse.getIndices()).thenReturn(new String[] { OLD_INDEX });
+        when(getIndexResponse.getAliases()).thenReturn(aliases(OLD_INDEX));
+        when(movieRepository.streamActiveMovies(any(Integer.class))).thenReturn(movieIterator);
+        when(movieIterator.hasNext()).thenReturn(true, false);
+        when(movieIterator.next()).thenReturn(movie);
+        when(movieMapper.movieToMovieIndex(movie)).thenReturn(new MovieIndex());
+        when(client.prepareBulk()).thenReturn(bulkRequestBuilder);
+        when(client.prepareIndex(any(), any(), any()))
+            .thenAnswer(invocation -> new IndexRequestBuilder(client, IndexAction.INSTANCE, ALIAS));
+        when(bulkRequestBuilder.get()).thenReturn(new BulkResponse(new BulkItemResponse[] {
+            new BulkItemResponse(0, OpType.CREATE, new BulkItemResponse.Failure(ALIAS, INDEX_TYPE, movie.getId(),
+                new VersionConflictEngineException(new ShardId(ALIAS, "uuid", 0), INDEX_TYPE, movie.getId(),
+                    "conflict")))
+        }, 1));
+
+        movieIndexManager.start();
+
+        verify(indicesAdminClient, timeout(TIMEOUT)).prepareDelete(OLD_INDEX);
+        verify(indicesAdminClient).prepareCreate(movieIndexManager.getVersionedIndexName());
+        verify(client).prepareIndex(movieIndexManager.getVersionedIndexName(), INDEX_TYPE, movie.getId());
+        assertFalse(movieIndexManager.isCurrentVersionInUse());
+    }
+
+    /**
+     * Tests if nothing is built when the alias points to a full reindex of the
+     * current version
+     */
+    @Test
+    public void test_start_upToDateAfterReindex() throws Exception {
+        when(getIndexResponse.getIndices()).thenAnswer(invocation -> new String[] {
+            movieIndexManager.getVersionedIndexName() + "_1" });
+        when(getIndexResponse.getAliases()).thenAnswer(invocation -> aliases(
+            movieIndexManager.getVersionedIndexName() + "_1"));
+
+        movieIndexManager.start();
+
+        verify(indexBuildRepository, timeout(TIMEOUT)).findAll();
+        verify(indicesAdminClient, after(WAIT).never()).prepareCreate(anyString());
+    }
+
+    /**
+     * Tests if the fresh index of a full reindex receives the writes until it
+     * replaces the old index
+     */
+    @Test
+    public void test_buildingIndex_lifecycle() throws Exception {
+        final List<String> indices = new CopyOnWriteArrayList<>();
+        when(indicesAdminClient.prepareCreate(any())).thenAnswer(invocation -> {
+            indices.add(invocation.getArgument(0));
+            return mock(CreateIndexRequestBuilder.class, RETURNS_SELF);
+        });
+        when(getIndexResponse.getIndices()).thenAnswer(invocation -> Stream.concat(
+            Stream.of(movieIndexManager.getVersionedIndexName()), indices.stream()).toArray(String[]::new));
+        when(getIndexResponse.getAliases()).thenAnswer(invocation -> aliases(
+            movieIndexManager.getVersionedIndexName()));
+        when(getIndexResponse.getSetting(anyString(), eq("index.creation_date")))
+            .thenReturn(String.valueOf(Instant.now().toEpochMilli()));
+        movieIndexManager.start();
+        final String oldIndexName = movieIndexManager.getVersionedIndexName();
+
+        final String indexName = movieIndexManager.createBuildingIndex();
+
+        assertTrue(indexName.startsWith(oldIndexName + "_"));
+        verify(indicesAdminClient).prepareCreate(indexName);
+        waitForBuildingIndices(Collections.singletonList(indexName));
+        verify(indexBuildRepository, timeout(TIMEOUT).atLeast(2)).save(any());
+        assertTrue(builds.containsKey(indexName));
+
+        movieIndexManager.completeBuildingIndex(indexName);
+
+        verify(indicesAdminClient).prepareAliases();
+        verify(indicesAdminClient).prepareDelete(oldIndexName);
+        verify(indicesAdminClient, never()).prepareDelete(indexName);
+        verify(indexBuildRepository).deleteById(indexName);
+    }
+
+    /**
+     * Tests if an index that is not behind the alias and has no record, or whose
+     * record wasn't refreshed within the rebuild timeout, is deleted instead of
+     * receiving the writes, while an index whose record is refreshed by another
+     * node receives them
+     */
+    @Test
+    public void test_discover_abandonedIndices() throws Exception {
+        final String orphanIndex = ALIAS + "_orphan";
+        final String staleIndex = ALIAS + "_stale";
+        final String buildingIndex = ALIAS + "_building";
+        builds.put(staleIndex, createBuild(staleIndex, 0));
+        builds.put(buildingIndex, createBuild(buildingIndex, Instant.now().toEpochMilli()));
+        when(getIndexResponse.getIndices()).thenAnswer(invocation -> new String[] {
+            movieIndexManager.getVersionedIndexName(), orphanIndex, staleIndex, buildingIndex });
+        when(getIndexResponse.getAliases()).thenAnswer(invocation -> aliases(
+            movieIndexManager.getVersionedIndexName()));
+
+        movieIndexManager.start();
+
+        verify(indicesAdminClient, timeout(TIMEOUT)).prepareDelete(orphanIndex);
+        verify(indicesAdminClient, timeout(TIMEOUT)).prepareDelete(staleIndex);
+        verify(indexBuildRepository, timeout(TIMEOUT)).deleteById(staleIndex);
+        verify(indicesAdminClient, never()).prepareDelete(buildingIndex);
+        waitForBuildingIndices(Collections.singletonList(buildingIndex));
+    }
+
+    /**
+     * Tests if the fresh index of a full reindex that is released stops being
+     * refreshed, and is deleted when the rebuild timeout expires
+     */
+    @Test
+    public void test_buildingIndex_released() throws Exception {
+        final List<String> indices = new CopyOnWriteArrayList<>();
+        when(indicesAdminClient.prepareCreate(any())).thenAnswer(invocation -> {
+            indices.add(invocation.getArgument(0));
+            return mock(CreateIndexRequestBuilder.class, RETURNS_SELF);
+        });
+        when(getIndexResponse.getIndices()).thenAnswer(invocation -> Stream.concat(
+            Stream.of(movieIndexManager.getVersionedIndexName()), indices.stream()).toArray(String[]::new));
+        when(getIndexResponse.getAliases()).thenAnswer(invocation -> aliases(
+            movieIndexManager.getVersionedIndexName()));
+        searchIndexProperties.setRebuildTimeout(500);
+        movieIndexManager.start();
+        final String indexName = movieIndexManager.createBuildingIndex();
+
+        movieIndexManager.releaseBuildingIndex(indexName);
+
+        verify(indicesAdminClient, timeout(TIMEOUT)).prepareDelete(indexName);
+        verify(indexBuildRepository, timeout(TIMEOUT)).deleteById(indexName);
+    }
+
+    /**
+     * Waits until the indices that are being built are discovered
+     * 
+     * @param indexNames
+     *            The names of the indices
+     * @throws InterruptedException
+     *             Exception thrown if the wait is interrupted
+     */
+    private void waitForBuildingIndices(final List<String> indexNames) throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + TIMEOUT;
+        while (!indexNames.equals(movieIndexManager.getBuildingIndices()) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+
+        assertEquals(indexNames, movieIndexManager.getBuildingIndices());
+    }
+
+    /**
+     * Waits until the alias is found to point to the current version
+     * 
+     * @throws InterruptedException
+     *             Exception thrown if the wait is interrupted
+     */
+    private void waitForCurrentVersionInUse() throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + TIMEOUT;
+        while (!movieIndexManager.isCurrentVersionInUse() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+
+        assertTrue(movieIndexManager.isCurrentVersionInUse());
+    }
+
+    /**
+     * Creates the record of an index that is being built
+     * 
+     * @param indexName
+     *            The name of the index
+     * @param updateTimestamp
+     *            The last time the record was refreshed
+     * @return The record
+     */
+    private IndexBuild createBuild(final String indexName, final long updateTimestamp) {
+        final IndexBuild build = new IndexBuild();
+        build.setId(indexName);
+        build.setUpdateTimestamp(updateTimestamp);
+
+        return build;
+    }
+
+    /**
+     * Returns the aliases of indices that point to the alias
+     * 
+     * @param indexName
+     *            The name of the index
+     * @return The aliases
+     */
+    private ImmutableOpenMap<String, List<AliasMetaData>> aliases(final String indexName) {
+        return ImmutableOpenMap.<String, List<AliasMetaData>> builder()
+            .fPut(indexName, Collections.singletonList(AliasMetaData.builder(ALIAS).build()))
+            .build();
+    }
+
+    /**
+     * Returns the mapping of an index with a version in its metadata
+     * 
+     * @param indexName
+     *            The name of the index
+     * @param version
+     *            The version of the index
+     * @return The mappings
+     * @throws IOException
+     *             Exception thrown if the mapping can't be created
+     */
+    private ImmutableOpenMap<String, ImmutableOpenMap<String, MappingMetaData>> mappings(final String indexName,
+        final int version) throws IOException {
+
+        final MappingMetaData mapping = new MappingMetaData(INDEX_TYPE,
+            Collections.singletonMap("_meta", Collections.singletonMap("version", version)));
+
+        return ImmutableOpenMap.<String, ImmutableOpenMap<String, MappingMetaData>> builder()
+            .fPut(indexName, ImmutableOpenMap.<String, MappingMetaData> builder().fPut(INDEX_TYPE, mapping).build())
+            .build();
+    }
+}
@@ -0,0 +1,221 @@
+package com.printezisn.moviestore.movieservice.movie.helpers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.data.util.CloseableIterator;
+
+import com.printezisn.moviestore.movieservice.configuration.properties.SearchIndexProperties;
+import com.printezisn.moviestore.movieservice.movie.entities.Movie;
+import com.printezisn.moviestore.movieservice.movie.entities.MovieIndex;
+import com.printezisn.moviestore.movieservice.movie.mappers.MovieMapper;
+import com.printezisn.moviestore.movieservice.movie.repositories.MovieLikeRepository;
+import com.printezisn.moviestore.movieservice.movie.repositories.MovieRepository;
+
+/**
+ * Class that contains unit tests for the MovieIndexSweeper class
+ */
+public class MovieIndexSweeperTest {
+
+    @Mock
+    private MovieRepository movieRepository;
+
+    @Mock
+    private MovieIndexHelper movieIndexHelper;
+
+    @Mock
+    private CloseableIterator<Movie> movieIterator;
+
+    @Mock
+    private MovieLikeRepository movieLikeRepository;
+
+    @Mock
+    private MovieIndexWriter movieIndexWriter;
+
+    @Mock
+    private MovieMapper movieMapper;
+
+    @Mock
+    private MovieCache movieCache;
+
+    @Mock
+    private MovieSuggester movieSuggester;
+
+    private SearchIndexProperties searchIndexProperties;
+
+    private MovieIndexSweeper movieIndexSweeper;
+
+    /**
+     * Initializes the test class
+     */
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+
+        searchIndexProperties = new SearchIndexProperties();
+        searchIndexProperties.setWorkerThreads(4);
+        searchIndexProperties.setMaxInFlight(2);
+
+        when(movieIndexHelper.indexMovie(any(), any())).thenReturn(CompletableFuture.completedFuture(null));
+
+        movieIndexSweeper = new MovieIndexSweeper(movieRepository, movieIndexHelper, searchIndexProperties);
+        movieIndexSweeper.start();
+    }
+
+    /**
+     * Stops the sweeper
+     */
+    @After
+    public void tearDown() {
+        movieIndexSweeper.stop();
+    }
+
+    /**
+     * Tests if the updated movies are streamed and indexed
+     */
+    @Test
+    public void test_sweep_success() throws Exception {
+        final List<Movie> movies = Arrays.asList(createMovie(), createMovie(), createMovie(), createMovie(),
+            createMovie());
+        final Iterator<Movie> iterator = movies.iterator();
+
+        when(movieRepository.streamUpdatedMovies(searchIndexProperties.getSweepBatchSize()))
+            .thenReturn(movieIterator);
+        when(movieIterator.hasNext()).thenAnswer(invocation -> iterator.hasNext());
+        when(movieIterator.next()).thenAnswer(invocation -> iterator.next());
+
+        final long total = movieIndexSweeper.sweep();
+
+        assertEquals(movies.size(), total);
+        movies.forEach(movie -> verify(movieIndexHelper).indexMovie(eq(movie), any()));
+        verify(movieIterator).close();
+    }
+
+    /**
+     * Tests if the sweeper waits for movies whose indexing is still in progress
+     */
+    @Test
+    public void test_indexMovies_waitsForPendingMovies() throws Exception {
+        final Movie movie = createMovie();
+        final CompletableFuture<Void> result = new CompletableFuture<>();
+
+        when(movieIndexHelper.indexMovie(eq(movie), any())).thenReturn(result);
+
+        final CompletableFuture<Long> total = CompletableFuture.supplyAsync(() -> {
+            try {
+                return movieIndexSweeper.indexMovies(Arrays.asList(movie).iterator());
+            }
+            catch (final InterruptedException ex) {
+                throw new RuntimeException(ex);
+            }
+        });
+
+        Thread.sleep(100);
+        assertFalse(total.isDone());
+
+        result.complete(null);
+        assertEquals(1L, total.get().longValue());
+    }
+
+    /**
+     * Tests if the database updates that follow the writes to the search index run
+     * in parallel on the workers of the movies, even though the writes are
+     * completed by a single thread
+     */
+    @Test
+    public void test_indexMovies_parallelUpdates() throws Exception {
+        final int workers = searchIndexProperties.getWorkerThreads();
+        final MovieIndexHelper realMovieIndexHelper = new MovieIndexHelper(movieRepository, movieLikeRepository,
+            movieIndexWriter, movieMapper, movieCache, movieSuggester);
+        final MovieIndexSweeper parallelSweeper = new MovieIndexSweeper(movieRepository, realMovieIndexHelper,
+            searchIndexProperties);
+        final ExecutorService writerThread = Executors.newSingleThreadExecutor();
+
+        // Each update waits until the updates of all the partitions run at the same time
+        final CyclicBarrier barrier = new CyclicBarrier(workers);
+        final Set<String> updateThreads = ConcurrentHashMap.newKeySet();
+
+        when(movieMapper.movieToMovieIndex(any())).thenReturn(new MovieIndex());
+        when(movieIndexWriter.index(any()))
+            .thenAnswer(invocation -> CompletableFuture.runAsync(() -> {}, writerThread));
+        when(movieRepository.updateIndexedMovie(any(), any(), any())).thenAnswer(invocation -> {
+            updateThreads.add(Thread.currentThread().getName());
+            barrier.await(10, TimeUnit.SECONDS);
+
+            return 1L;
+        });
+
+        searchIndexProperties.setMaxInFlight(workers);
+        parallelSweeper.start();
+        try {
+            assertEquals(workers, parallelSweeper.indexMovies(createMoviesOfAllPartitions(workers).iterator()));
+        }
+        finally {
+            parallelSweeper.stop();
+            writerThread.shutdown();
+        }
+
+        verify(movieRepository, times(workers)).updateIndexedMovie(any(), any(), any());
+        assertEquals(workers, updateThreads.size());
+        assertTrue(updateThreads.stream().allMatch(name -> name.startsWith("movie-index-worker-")));
+    }
+
+    /**
+     * Creates a movie for each partition of the workers
+     * 
+     * @param workers
+     *            The number of workers
+     * @return The movies
+     */
+    private List<Movie> createMoviesOfAllPartitions(final int workers) {
+        final List<Movie> movies = new ArrayList<>();
+        final Set<Integer> partitions = new HashSet<>();
+        while (partitions.size() < workers) {
+            final Movie movie = createMovie();
+            movie.setPendingLikes(new HashSet<>());
+            movie.setPendingUnlikes(new HashSet<>());
+            if (partitions.add(Math.floorMod(movie.getId().hashCode(), workers))) {
+                movies.add(movie);
+            }
+        }
+
+        return movies;
+    }
+
+    /**
+     * Creates a movie
+     * 
+     * @return The movie
+     */
+    private Movie createMovie() {
+        final Movie movie = new Movie();
+        movie.setId(UUID.randomUUID().toString());
+
+        return movie;
+    }
+}
@@ -0,0 +1,227 @@
+package com.printezisn.moviestore.movieservice.movie.helpers;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import com.printezisn.moviestore.movieservice.configuration.properties.LikeBufferProperties;
+import com.printezisn.moviestore.movieservice.movie.repositories.MovieRepository;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Class that contains unit tests for the MovieLikeBuffer class
+ */
+public class MovieLikeBufferTest {
+
+    private static final String ACCOUNT = "test_account";
+
+    @Mock
+    private MovieRepository movieRepository;
+
+    private LikeBufferProperties likeBufferProperties;
+
+    private MeterRegistry meterRegistry;
+
+    private MovieLikeBuffer movieLikeBuffer;
+
+    /**
+     * Initializes the test class
+     */
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+
+        likeBufferProperties = new LikeBufferProperties();
+        likeBufferProperties.setEnabled(true);
+        likeBufferProperties.setMaxEvents(2);
+
+        meterRegistry = new SimpleMeterRegistry();
+
+        movieLikeBuffer = new MovieLikeBuffer(movieRepository, likeBufferProperties, meterRegistry);
+    }
+
+    /**
+     * Tests if only the last event of an account is written for a movie
+     */
+    @SuppressWarnings("unchecked")
+    @Test
+    public void test_flush_lastEventWins() {
+        final String movieId = UUID.randomUUID().toString();
+        final ArgumentCaptor<Map<String, Map<String, Boolean>>> likesCaptor = ArgumentCaptor.forClass(Map.class);
+
+        movieLikeBuffer.add(movieId, ACCOUNT, true);
+        movieLikeBuffer.add(movieId, ACCOUNT, false);
+        movieLikeBuffer.add(movieId, ACCOUNT, true);
+
+        assertEquals(1, movieLikeBuffer.getDepth());
+
+        movieLikeBuffer.flush();
+
+        verify(movieRepository).applyLikes(likesCaptor.capture());
+        assertEquals(Collections.singletonMap(movieId, Collections.singletonMap(ACCOUNT, true)),
+            likesCaptor.getValue());
+        assertEquals(0, movieLikeBuffer.getDepth());
+        assertEquals(1, meterRegistry.get("movies.likes.buffer.flush").timer().count());
+    }
+
+    /**
+     * Tests if nothing is written when the buffer is empty
+     */
+    @Test
+    public void test_flush_empty() {
+        movieLikeBuffer.flush();
+
+        verify(movieRepository, never()).applyLikes(any());
+    }
+
+    /**
+     * Tests if an event is written immediately when the buffer is full
+     */
+    @Test
+    public void test_add_bufferFull() {
+        final String movieId = UUID.randomUUID().toString();
+
+        movieLikeBuffer.add(movieId, "account1", true);
+        movieLikeBuffer.add(movieId, "account2", true);
+        movieLikeBuffer.add(movieId, "account3", false);
+
+        verify(movieRepository).applyLikes(
+            Collections.singletonMap(movieId, Collections.singletonMap("account3", false)));
+        assertEquals(2, movieLikeBuffer.getDepth());
+        assertEquals(1, meterRegistry.get("movies.likes.buffer.overflow").counter().count(), 0);
+    }
+
+    /**
+     * Tests if the events are kept in the buffer when the write fails, without
+     * replacing newer events
+     */
+    @Test
+    public void test_flush_writeFailure() {
+        final String movieId = UUID.randomUUID().toString();
+
+        movieLikeBuffer.add(movieId, ACCOUNT, true);
+        doThrow(new RuntimeException("failure")).when(movieRepository).applyLikes(any());
+        movieLikeBuffer.flush();
+
+        assertEquals(1, movieLikeBuffer.getDepth());
+
+        movieLikeBuffer.add(movieId, ACCOUNT, false);
+        movieLikeBuffer.add(movieId, "account2", true);
+
+        final Map<String, Boolean> expectedLikes = new HashMap<>();
+        expectedLikes.put(ACCOUNT, false);
+        expectedLikes.put("account2", true);
+
+        movieLikeBuffer.flush();
+
+        verify(movieRepository, times(2)).applyLikes(any());
+        verify(movieRepository).applyLikes(Collections.singletonMap(movieId, expectedLikes));
+        assertEquals(2, movieLikeBuffer.getDepth());
+    }
+
+    /**
+     * Tests if an event is written immediately when the buffer is full, without
+     * waiting for the batch being written
+     * 
+     * @throws Exception
+     *             Exception thrown in case of error
+     */
+    @Test
+    public void test_add_bufferFullDuringFlush() throws Exception {
+        final String movieId = UUID.randomUUID().toString();
+        final String otherMovieId = UUID.randomUUID().toString();
+        final CountDownLatch writeStarted = new CountDownLatch(1);
+        final CountDownLatch writeReleased = new CountDownLatch(1);
+
+        doAnswer(invocation -> {
+            writeStarted.countDown();
+            writeReleased.await(1, TimeUnit.MINUTES);
+            return null;
+        }).when(movieRepository).applyLikes(Collections.singletonMap(movieId, Collections.singletonMap(ACCOUNT, true)));
+
+        movieLikeBuffer.add(movieId, ACCOUNT, true);
+        final Thread flushThread = new Thread(movieLikeBuffer::flush);
+        flushThread.start();
+        writeStarted.await(1, TimeUnit.MINUTES);
+
+        movieLikeBuffer.add(otherMovieId, "account1", true);
+        movieLikeBuffer.add(otherMovieId, "account2", true);
+        movieLikeBuffer.add(otherMovieId, "account3", false);
+
+        verify(movieRepository).applyLikes(
+            Collections.singletonMap(otherMovieId, Collections.singletonMap("account3", false)));
+        assertEquals(1, meterRegistry.get("movies.likes.buffer.overflow").counter().count(), 0);
+
+        writeReleased.countDown();
+        flushThread.join();
+    }
+
+    /**
+     * Tests if an event that doesn't fit in the buffer is written after the batch
+     * that contains the same movie, and if failed events are dropped when the
+     * buffer is full
+     * 
+     * @throws Exception
+     *             Exception thrown in case of error
+     */
+    @Test
+    public void test_add_bufferFullWhileMovieWritten() throws Exception {
+        final String movieId = UUID.randomUUID().toString();
+        final String otherMovieId = UUID.randomUUID().toString();
+        final Map<String, Map<String, Boolean>> batch = Collections.singletonMap(movieId,
+            Collections.singletonMap(ACCOUNT, true));
+        final Map<String, Map<String, Boolean>> overflowEvent = Collections.singletonMap(movieId,
+            Collections.singletonMap(ACCOUNT, false));
+        final CountDownLatch writeStarted = new CountDownLatch(1);
+        final CountDownLatch writeReleased = new CountDownLatch(1);
+
+        doAnswer(invocation -> {
+            writeStarted.countDown();
+            writeReleased.await(1, TimeUnit.MINUTES);
+            throw new RuntimeException("failure");
+        }).when(movieRepository).applyLikes(batch);
+
+        movieLikeBuffer.add(movieId, ACCOUNT, true);
+        final Thread flushThread = new Thread(movieLikeBuffer::flush);
+        flushThread.start();
+        writeStarted.await(1, TimeUnit.MINUTES);
+
+        movieLikeBuffer.add(otherMovieId, "account1", true);
+        movieLikeBuffer.add(otherMovieId, "account2", true);
+        final Thread addThread = new Thread(() -> movieLikeBuffer.add(movieId, ACCOUNT, false));
+        addThread.start();
+
+        verify(movieRepository, after(200).never()).applyLikes(overflowEvent);
+
+        writeReleased.countDown();
+        flushThread.join();
+        addThread.join();
+
+        final InOrder inOrder = inOrder(movieRepository);
+        inOrder.verify(movieRepository).applyLikes(batch);
+        inOrder.verify(movieRepository).applyLikes(overflowEvent);
+        assertEquals(2, movieLikeBuffer.getDepth());
+    }
+}
@@ -0,0 +1,201 @@
+package com.printezisn.moviestore.movieservice.movie.helpers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.anyString;
+import static org.mockito.Mockito.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.UUID;
+
+import org.bson.Document;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import com.printezisn.moviestore.movieservice.configuration.properties.LikeJournalProperties;
+import com.printezisn.moviestore.movieservice.movie.entities.LikeEvent;
+import com.printezisn.moviestore.movieservice.movie.entities.LikeJournalConsumer;
+import com.printezisn.moviestore.movieservice.movie.repositories.LikeEventRepository;
+import com.printezisn.moviestore.movieservice.movie.repositories.MovieLikeRepository;
+import com.printezisn.moviestore.movieservice.movie.repositories.MovieRepository;
+
+/**
+ * Class that contains unit tests for the MovieLikeJournal class
+ */
+public class MovieLikeJournalTest {
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @Mock
+    private LikeEventRepository likeEventRepository;
+
+    @Mock
+    private MovieLikeRepository movieLikeRepository;
+
+    @Mock
+    private MovieRepository movieRepository;
+
+    @Mock
+    private MovieCache movieCache;
+
+    private MovieLikeJournal movieLikeJournal;
+
+    /**
+     * Initializes the test class
+     */
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+
+        movieLikeJournal = new MovieLikeJournal(mongoTemplate, likeEventRepository, movieLikeRepository,
+            movieRepository, new LikeJournalProperties(), movieCache);
+    }
+
+    /**
+     * Tests if an event is appended to the journal
+     */
+    @Test
+    public void test_append_success() {
+        final String movieId = UUID.randomUUID().toString();
+        final ArgumentCaptor<LikeEvent> likeEventCaptor = ArgumentCaptor.forClass(LikeEvent.class);
+
+        movieLikeJournal.append(movieId, "test_account", true);
+
+        verify(likeEventRepository).insert(likeEventCaptor.capture());
+        assertNull(likeEventCaptor.getValue().getId());
+        assertEquals(movieId, likeEventCaptor.getValue().getMovieId());
+        assertEquals("test_account", likeEventCaptor.getValue().getAccount());
+        assertEquals(true, likeEventCaptor.getValue().isLiked());
+    }
+
+    /**
+     * Tests if only the last event of each account is folded and the total likes
+     * are adjusted by the likes that were actually added or removed
+     */
+    @Test
+    public void test_fold_success() {
+        final String movieId = UUID.randomUUID().toString();
+
+        when(movieRepository.findActiveMovieIds(Collections.singleton(movieId)))
+            .thenReturn(Collections.singleton(movieId));
+        when(movieLikeRepository.addLike(movieId, "account1")).thenReturn(true);
+        when(movieLikeRepository.addLike(movieId, "account2")).thenReturn(true);
+        when(movieLikeRepository.removeLike(movieId, "account3")).thenReturn(false);
+
+        movieLikeJournal.fold(Arrays.asList(
+            createLikeEvent(movieId, "account1", false),
+            createLikeEvent(movieId, "account1", true),
+            createLikeEvent(movieId, "account2", true),
+            createLikeEvent(movieId, "account3", false)));
+
+        verify(movieLikeRepository, never()).removeLike(movieId, "account1");
+        verify(movieRepository).applyLikeCounts(Collections.singletonMap(movieId, 2L));
+        verify(movieCache).invalidate(Collections.singleton(movieId));
+    }
+
+    /**
+     * Tests if the events of movies that don't exist or are deleted are ignored
+     */
+    @Test
+    public void test_fold_inactiveMovie() {
+        final String movieId = UUID.randomUUID().toString();
+
+        when(movieRepository.findActiveMovieIds(any())).thenReturn(new HashSet<>());
+
+        movieLikeJournal.fold(Arrays.asList(createLikeEvent(movieId, "account1", true)));
+
+        verify(movieLikeRepository, never()).addLike(anyString(), anyString());
+        verify(movieRepository).applyLikeCounts(Collections.emptyMap());
+    }
+
+    /**
+     * Tests if the lease of the consumer is acquired by this node, so that a task
+     * runs between two batches of the consumer
+     */
+    @Test
+    public void test_acquireLease_success() {
+        final ArgumentCaptor<Update> updateCaptor = ArgumentCaptor.forClass(Update.class);
+        final Runnable task = mock(Runnable.class);
+
+        assertTrue(movieLikeJournal.acquireLease());
+        assertTrue(movieLikeJournal.runBetweenBatches(task));
+
+        verify(mongoTemplate).findAndModify(any(Query.class), updateCaptor.capture(),
+            any(FindAndModifyOptions.class), eq(LikeJournalConsumer.class));
+        verify(task).run();
+        final Document update = (Document) updateCaptor.getValue().getUpdateObject().get("$set");
+        assertTrue(update.getLong("leaseExpiration") > Instant.now().toEpochMilli());
+    }
+
+    /**
+     * Tests the scenario in which another node holds the lease of the consumer, so
+     * that no task runs on this node
+     */
+    @Test
+    public void test_acquireLease_heldByAnotherNode() {
+        final Runnable task = mock(Runnable.class);
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class),
+            eq(LikeJournalConsumer.class))).thenThrow(new DuplicateKeyException("duplicate key"));
+
+        assertFalse(movieLikeJournal.acquireLease());
+        assertFalse(movieLikeJournal.runBetweenBatches(task));
+
+        verify(task, never()).run();
+    }
+
+    /**
+     * Tests if the lease of the consumer is released when the component stops
+     */
+    @Test
+    public void test_stop_releasesLease() {
+        final ArgumentCaptor<Update> updateCaptor = ArgumentCaptor.forClass(Update.class);
+
+        movieLikeJournal.acquireLease();
+        movieLikeJournal.stop();
+
+        verify(mongoTemplate).updateFirst(any(Query.class), updateCaptor.capture(), eq(LikeJournalConsumer.class));
+        final Document update = (Document) updateCaptor.getValue().getUpdateObject().get("$set");
+        assertEquals(0, update.get("leaseExpiration"));
+        assertFalse(movieLikeJournal.runBetweenBatches(mock(Runnable.class)));
+    }
+
+    /**
+     * Creates a like event
+     * 
+     * @param movieId
+     *            The id of the movie
+     * @param account
+     *            The account
+     * @param liked
+     *            Indicates if the account likes the movie
+     * @return The like event
+     */
+    private LikeEvent createLikeEvent(final String movieId, final String account, final boolean liked) {
+        final LikeEvent likeEvent = new LikeEvent();
+        likeEvent.setId(UUID.randomUUID().toString());
+        likeEvent.setMovieId(movieId);
+        likeEvent.setAccount(account);
+        likeEvent.setLiked(liked);
+
+        return likeEvent;
+    }
+}
@@ -0,0 +1,142 @@
+package com.printezisn.moviestore.movieservice.movie.helpers;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.anyLong;
+import static org.mockito.Mockito.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import com.printezisn.moviestore.movieservice.configuration.properties.LikeReconciliationProperties;
+import com.printezisn.moviestore.movieservice.movie.entities.Movie;
+import com.printezisn.moviestore.movieservice.movie.repositories.MovieLikeRepository;
+import com.printezisn.moviestore.movieservice.movie.repositories.MovieRepository;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Class that contains unit tests for the MovieLikeReconciler class
+ */
+public class MovieLikeReconcilerTest {
+
+    private static final int CHUNK_SIZE = 2;
+
+    @Mock
+    private MovieRepository movieRepository;
+
+    @Mock
+    private MovieLikeRepository movieLikeRepository;
+
+    @Mock
+    private MovieCache movieCache;
+
+    private MeterRegistry meterRegistry;
+
+    private MovieLikeReconciler movieLikeReconciler;
+
+    /**
+     * Initializes the test class
+     */
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+
+        final LikeReconciliationProperties likeReconciliationProperties = new LikeReconciliationProperties();
+        likeReconciliationProperties.setChunkSize(CHUNK_SIZE);
+
+        meterRegistry = new SimpleMeterRegistry();
+
+        movieLikeReconciler = new MovieLikeReconciler(movieRepository, movieLikeRepository,
+            likeReconciliationProperties, movieCache, meterRegistry);
+    }
+
+    /**
+     * Tests if the total likes that drifted are corrected and the next run
+     * continues with the next chunk
+     */
+    @Test
+    public void test_reconcile_drift() {
+        final Movie driftedMovie = createMovie(5, false);
+        final Movie correctMovie = createMovie(2, false);
+        final Map<String, Long> likeCounts = new HashMap<>();
+        likeCounts.put(driftedMovie.getId(), 3L);
+        likeCounts.put(correctMovie.getId(), 2L);
+
+        when(movieRepository.findLikeCountsAfter(null, CHUNK_SIZE))
+            .thenReturn(Arrays.asList(driftedMovie, correctMovie));
+        when(movieLikeRepository.countByMovieIds(any())).thenReturn(likeCounts);
+        when(movieRepository.correctTotalLikes(driftedMovie, 3L)).thenReturn(1L);
+
+        final long drift = movieLikeReconciler.reconcile();
+        movieLikeReconciler.reconcile();
+
+        assertEquals(2, drift);
+        verify(movieRepository, never()).correctTotalLikes(eq(correctMovie), anyLong());
+        verify(movieCache).invalidate(driftedMovie.getId());
+        verify(movieRepository).findLikeCountsAfter(correctMovie.getId(), CHUNK_SIZE);
+        assertEquals(2, meterRegistry.get("movies.likes.reconciliation.drift").counter().count(), 0);
+        assertEquals(1, meterRegistry.get("movies.likes.reconciliation.corrected").counter().count(), 0);
+    }
+
+    /**
+     * Tests if movies with pending likes are skipped
+     */
+    @Test
+    public void test_reconcile_updatedMovie() {
+        final Movie movie = createMovie(5, true);
+
+        when(movieRepository.findLikeCountsAfter(null, CHUNK_SIZE)).thenReturn(Arrays.asList(movie));
+        when(movieLikeRepository.countByMovieIds(any())).thenReturn(Collections.emptyMap());
+
+        final long drift = movieLikeReconciler.reconcile();
+        movieLikeReconciler.reconcile();
+
+        assertEquals(0, drift);
+        verify(movieRepository, never()).correctTotalLikes(any(), anyLong());
+    }
+
+    /**
+     * Tests if nothing is corrected when the movie changed since it was read
+     */
+    @Test
+    public void test_reconcile_concurrentUpdate() {
+        final Movie movie = createMovie(5, false);
+
+        when(movieRepository.findLikeCountsAfter(null, CHUNK_SIZE)).thenReturn(Arrays.asList(movie));
+        when(movieLikeRepository.countByMovieIds(any())).thenReturn(Collections.singletonMap(movie.getId(), 4L));
+        when(movieRepository.correctTotalLikes(movie, 4L)).thenReturn(0L);
+
+        assertEquals(0, movieLikeReconciler.reconcile());
+    }
+
+    /**
+     * Creates a movie
+     * 
+     * @param totalLikes
+     *            The total likes of the movie
+     * @param updated
+     *            Indicates if the movie has pending updates
+     * @return The movie
+     */
+    private Movie createMovie(final long totalLikes, final boolean updated) {
+        final Movie movie = new Movie();
+        movie.setId(UUID.randomUUID().toString());
+        movie.setTotalLikes(totalLikes);
+        movie.setUpdated(updated);
+
+        return movie;
+    }
+}
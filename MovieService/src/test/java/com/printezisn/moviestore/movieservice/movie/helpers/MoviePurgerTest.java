@@ -0,0 +1,166 @@
+package com.printezisn.moviestore.movieservice.movie.helpers;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.UUID;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import com.printezisn.moviestore.movieservice.configuration.properties.MoviePurgeProperties;
+import com.printezisn.moviestore.movieservice.movie.entities.Movie;
+import com.printezisn.moviestore.movieservice.movie.repositories.MovieLikeRepository;
+import com.printezisn.moviestore.movieservice.movie.repositories.MovieRepository;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Class that contains unit tests for the MoviePurger class
+ */
+public class MoviePurgerTest {
+
+    private static final int MOVIES_PER_RUN = 2;
+    private static final int BATCH_SIZE = 3;
+
+    @Mock
+    private MovieRepository movieRepository;
+
+    @Mock
+    private MovieLikeRepository movieLikeRepository;
+
+    private MoviePurgeProperties moviePurgeProperties;
+
+    private MeterRegistry meterRegistry;
+
+    private MoviePurger moviePurger;
+
+    /**
+     * Initializes the test class
+     */
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+
+        moviePurgeProperties = new MoviePurgeProperties();
+        moviePurgeProperties.setMoviesPerRun(MOVIES_PER_RUN);
+        moviePurgeProperties.setBatchSize(BATCH_SIZE);
+        moviePurgeProperties.setMaxLikesPerSecond(100000);
+
+        meterRegistry = new SimpleMeterRegistry();
+
+        moviePurger = new MoviePurger(movieRepository, movieLikeRepository, moviePurgeProperties, meterRegistry);
+    }
+
+    /**
+     * Tests if the likes of a deleted movie are deleted in batches, recording the
+     * progress, before the movie is deleted
+     */
+    @Test
+    public void test_purge_success() throws Exception {
+        final Movie movie = createMovie(0);
+
+        when(movieRepository.findPurgeableMovies(MOVIES_PER_RUN)).thenReturn(Arrays.asList(movie));
+        when(movieLikeRepository.deleteBatchByMovieId(movie.getId(), BATCH_SIZE)).thenReturn(3L, 2L, 0L);
+
+        assertEquals(1, moviePurger.purge());
+
+        final InOrder inOrder = inOrder(movieRepository);
+        inOrder.verify(movieRepository).incrementPurgedLikes(movie.getId(), 3L);
+        inOrder.verify(movieRepository).incrementPurgedLikes(movie.getId(), 2L);
+        inOrder.verify(movieRepository).deletePurgeableMovie(movie.getId());
+        assertEquals(5L, movie.getPurgedLikes());
+        assertEquals(5, meterRegistry.get("movies.purge.likes").counter().count(), 0);
+        assertEquals(1, meterRegistry.get("movies.purge.movies").counter().count(), 0);
+        assertEquals(0, meterRegistry.get("movies.purge.pending").gauge().value(), 0);
+    }
+
+    /**
+     * Tests if a purge that was interrupted continues from its progress
+     */
+    @Test
+    public void test_purge_resume() throws Exception {
+        final Movie movie = createMovie(1000);
+
+        when(movieRepository.findPurgeableMovies(MOVIES_PER_RUN)).thenReturn(Arrays.asList(movie));
+        when(movieLikeRepository.deleteBatchByMovieId(movie.getId(), BATCH_SIZE)).thenReturn(1L, 0L);
+
+        moviePurger.purge();
+
+        verify(movieRepository).incrementPurgedLikes(movie.getId(), 1L);
+        verify(movieRepository).deletePurgeableMovie(movie.getId());
+        assertEquals(1001L, movie.getPurgedLikes());
+    }
+
+    /**
+     * Tests if the likes are deleted without throttling when the maximum rate is
+     * zero
+     */
+    @Test
+    public void test_purge_unthrottled() throws Exception {
+        final Movie movie = createMovie(0);
+        moviePurgeProperties.setMaxLikesPerSecond(0);
+
+        when(movieRepository.findPurgeableMovies(MOVIES_PER_RUN)).thenReturn(Arrays.asList(movie));
+        when(movieLikeRepository.deleteBatchByMovieId(movie.getId(), BATCH_SIZE)).thenReturn(3L, 0L);
+
+        assertEquals(1, moviePurger.purge());
+
+        verify(movieRepository).incrementPurgedLikes(movie.getId(), 3L);
+        verify(movieRepository).deletePurgeableMovie(movie.getId());
+    }
+
+    /**
+     * Tests if a movie isn't deleted when its likes fail to be deleted
+     */
+    @Test(expected = RuntimeException.class)
+    public void test_purge_failure() throws Exception {
+        final Movie movie = createMovie(0);
+
+        when(movieRepository.findPurgeableMovies(MOVIES_PER_RUN)).thenReturn(Arrays.asList(movie));
+        doThrow(new RuntimeException()).when(movieLikeRepository).deleteBatchByMovieId(movie.getId(), BATCH_SIZE);
+
+        try {
+            moviePurger.purge();
+        }
+        finally {
+            verify(movieRepository, never()).deletePurgeableMovie(movie.getId());
+            assertEquals(1, meterRegistry.get("movies.purge.pending").gauge().value(), 0);
+        }
+    }
+
+    /**
+     * Tests if nothing is purged when there are no deleted movies
+     */
+    @Test
+    public void test_purge_empty() throws Exception {
+        when(movieRepository.findPurgeableMovies(MOVIES_PER_RUN)).thenReturn(Collections.emptyList());
+
+        assertEquals(0, moviePurger.purge());
+    }
+
+    /**
+     * Creates a deleted movie
+     * 
+     * @param purgedLikes
+     *            The number of likes of the movie that are already purged
+     * @return The movie
+     */
+    private Movie createMovie(final long purgedLikes) {
+        final Movie movie = new Movie();
+        movie.setId(UUID.randomUUID().toString());
+        movie.setPurgedLikes(purgedLikes);
+
+        return movie;
+    }
+}
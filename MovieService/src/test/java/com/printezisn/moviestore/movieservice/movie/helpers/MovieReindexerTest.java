@@ -0,0 +1,369 @@
+package com.printezisn.moviestore.movieservice.movie.helpers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.anyBoolean;
+import static org.mockito.Mockito.anyInt;
+import static org.mockito.Mockito.anyList;
+import static org.mockito.Mockito.anyString;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.eq;
+import static org.mockito.Mockito.isNull;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.data.util.CloseableIterator;
+
+import com.printezisn.moviestore.common.dto.movie.MovieReindexStatusDto;
+import com.printezisn.moviestore.movieservice.configuration.properties.ReindexProperties;
+import com.printezisn.moviestore.movieservice.movie.entities.Movie;
+import com.printezisn.moviestore.movieservice.movie.entities.ReindexJob;
+import com.printezisn.moviestore.movieservice.movie.entities.ReindexJob.Partition;
+import com.printezisn.moviestore.movieservice.movie.entities.ReindexJob.Status;
+import com.printezisn.moviestore.movieservice.movie.exceptions.MovieConditionalException;
+import com.printezisn.moviestore.movieservice.movie.exceptions.MovieNotFoundException;
+import com.printezisn.moviestore.movieservice.movie.exceptions.MoviePersistenceException;
+import com.printezisn.moviestore.movieservice.movie.repositories.MovieRepository;
+import com.printezisn.moviestore.movieservice.movie.repositories.ReindexJobRepository;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Class that contains unit tests for the MovieReindexer class
+ */
+public class MovieReindexerTest {
+
+    private static final String INDEX_NAME = "test_index_v1_1";
+    private static final long TIMEOUT = 5000;
+
+    @Mock
+    private MovieRepository movieRepository;
+
+    @Mock
+    private ReindexJobRepository reindexJobRepository;
+
+    @Mock
+    private MovieIndexManager movieIndexManager;
+
+    private ReindexProperties reindexProperties;
+
+    private MovieReindexer movieReindexer;
+
+    /**
+     * Initializes the test class
+     */
+    @Before
+    public void setUp() throws Exception {
+        MockitoAnnotations.initMocks(this);
+
+        reindexProperties = new ReindexProperties();
+        reindexProperties.setPartitions(2);
+        reindexProperties.setThreads(2);
+        reindexProperties.setBatchSize(2);
+
+        when(reindexJobRepository.save(any())).thenAnswer(invocation -> invocation.getArgument(0));
+        when(reindexJobRepository.findFirstByOrderByCreationTimestampDesc()).thenReturn(Optional.empty());
+        when(movieIndexManager.createBuildingIndex()).thenReturn(INDEX_NAME);
+        when(movieRepository.countActiveMovies()).thenReturn(3L);
+
+        movieReindexer = new MovieReindexer(movieRepository, reindexJobRepository, movieIndexManager,
+            reindexProperties, new SimpleMeterRegistry());
+    }
+
+    /**
+     * Cleans up after each test
+     */
+    @After
+    public void tearDown() {
+        movieReindexer.stop();
+    }
+
+    /**
+     * Tests if the ranges of ids are copied in batches and the alias is moved to
+     * the fresh index
+     */
+    @Test
+    public void test_start_success() throws Exception {
+        when(movieRepository.streamActiveMovieRange(isNull(), eq(true), eq("80"), eq(2)))
+            .thenAnswer(invocation -> stream(createMovie("10"), createMovie("20"), createMovie("30")));
+        when(movieRepository.streamActiveMovieRange(eq("80"), eq(true), isNull(), eq(2)))
+            .thenAnswer(invocation -> stream());
+
+        final MovieReindexStatusDto status = movieReindexer.start();
+
+        assertEquals(Status.RUNNING.name(), status.getStatus());
+        assertEquals(3, status.getTotal());
+        verify(movieIndexManager, timeout(TIMEOUT)).completeBuildingIndex(INDEX_NAME);
+        verify(movieIndexManager, times(2)).createDocuments(eq(INDEX_NAME), anyList());
+
+        waitForStatus(Status.COMPLETED);
+        final MovieReindexStatusDto completedStatus = movieReindexer.getStatus().get();
+        assertEquals(INDEX_NAME, completedStatus.getIndexName());
+        assertEquals(3, completedStatus.getCopied());
+        assertNull(completedStatus.getEtaSeconds());
+        verify(movieIndexManager, never()).releaseBuildingIndex(anyString());
+    }
+
+    /**
+     * Tests the scenario in which a reindex is already running
+     */
+    @Test(expected = MovieConditionalException.class)
+    public void test_start_alreadyRunning() throws Exception {
+        final CountDownLatch latch = new CountDownLatch(1);
+        when(movieIndexManager.createBuildingIndex()).thenAnswer(invocation -> {
+            latch.await(TIMEOUT, TimeUnit.MILLISECONDS);
+            return INDEX_NAME;
+        });
+
+        try {
+            movieReindexer.start();
+            movieReindexer.start();
+        }
+        finally {
+            latch.countDown();
+        }
+    }
+
+    /**
+     * Tests if the fresh index of an unfinished reindex is deleted when a new one
+     * starts
+     */
+    @Test
+    public void test_start_discardsUnfinished() throws Exception {
+        final ReindexJob lastJob = createJob(Status.CANCELLED);
+        when(reindexJobRepository.findFirstByOrderByCreationTimestampDesc()).thenReturn(Optional.of(lastJob));
+        when(movieRepository.streamActiveMovieRange(any(), anyBoolean(), any(), anyInt()))
+            .thenAnswer(invocation -> stream());
+
+        movieReindexer.start();
+
+        verify(movieIndexManager).deleteBuildingIndex("old_index");
+        verify(movieIndexManager, timeout(TIMEOUT)).completeBuildingIndex(INDEX_NAME);
+    }
+
+    /**
+     * Tests if a cancelled reindex doesn't move the alias
+     */
+    @Test
+    public void test_cancel_success() throws Exception {
+        final CountDownLatch latch = new CountDownLatch(1);
+        when(movieIndexManager.createBuildingIndex()).thenAnswer(invocation -> {
+            latch.await(TIMEOUT, TimeUnit.MILLISECONDS);
+            return INDEX_NAME;
+        });
+        when(movieRepository.streamActiveMovieRange(any(), anyBoolean(), any(), anyInt()))
+            .thenAnswer(invocation -> stream(createMovie("10")));
+
+        movieReindexer.start();
+        movieReindexer.cancel();
+        latch.countDown();
+
+        waitForStatus(Status.CANCELLED);
+        verify(movieIndexManager, never()).createDocuments(anyString(), anyList());
+        verify(movieIndexManager, never()).completeBuildingIndex(anyString());
+        verify(movieIndexManager).releaseBuildingIndex(INDEX_NAME);
+    }
+
+    /**
+     * Tests the scenario in which there is no reindex to cancel
+     */
+    @Test(expected = MovieConditionalException.class)
+    public void test_cancel_notRunning() throws Exception {
+        movieReindexer.cancel();
+    }
+
+    /**
+     * Tests if a reindex resumes after the last copied movie of each range that
+     * is not done
+     */
+    @Test
+    public void test_resume_success() throws Exception {
+        final ReindexJob lastJob = createJob(Status.FAILED);
+        lastJob.getPartitions().get(0).setLastId("30");
+        lastJob.getPartitions().get(0).setCopied(2);
+        lastJob.getPartitions().get(1).setDone(true);
+        lastJob.setCopied(2);
+        when(reindexJobRepository.findFirstByOrderByCreationTimestampDesc()).thenReturn(Optional.of(lastJob));
+        when(movieRepository.streamActiveMovieRange("30", false, "80", 2))
+            .thenAnswer(invocation -> stream(createMovie("40")));
+
+        final MovieReindexStatusDto status = movieReindexer.resume();
+
+        assertEquals(Status.RUNNING.name(), status.getStatus());
+        verify(movieIndexManager, timeout(TIMEOUT)).completeBuildingIndex("old_index");
+        verify(movieIndexManager).resumeBuildingIndex("old_index");
+        verify(movieRepository, never()).streamActiveMovieRange(eq("80"), anyBoolean(), any(), anyInt());
+
+        waitForStatus(Status.COMPLETED);
+        assertEquals(3, movieReindexer.getStatus().get().getCopied());
+        assertEquals("40", lastJob.getPartitions().get(0).getLastId());
+    }
+
+    /**
+     * Tests the scenario in which there is no reindex to resume
+     */
+    @Test(expected = MovieNotFoundException.class)
+    public void test_resume_notFound() throws Exception {
+        when(reindexJobRepository.findFirstByOrderByCreationTimestampDesc())
+            .thenReturn(Optional.of(createJob(Status.COMPLETED)));
+
+        movieReindexer.resume();
+    }
+
+    /**
+     * Tests if a reindex whose bulk writes fail is recorded as failed and keeps
+     * the progress of its ranges
+     */
+    @Test
+    public void test_start_failure() throws Exception {
+        when(movieRepository.streamActiveMovieRange(any(), anyBoolean(), any(), anyInt()))
+            .thenAnswer(invocation -> stream(createMovie("10")));
+        doThrow(new MoviePersistenceException("Bulk failure", null)).when(movieIndexManager)
+            .createDocuments(anyString(), anyList());
+
+        movieReindexer.start();
+
+        waitForStatus(Status.FAILED);
+        assertEquals("Bulk failure", movieReindexer.getStatus().get().getError());
+        verify(movieIndexManager, never()).completeBuildingIndex(anyString());
+        verify(movieIndexManager).releaseBuildingIndex(INDEX_NAME);
+    }
+
+    /**
+     * Tests if the ids are split into ranges by their first hexadecimal digits
+     */
+    @Test
+    public void test_start_partitions() throws Exception {
+        reindexProperties.setPartitions(4);
+        final CountDownLatch latch = new CountDownLatch(1);
+        when(movieIndexManager.createBuildingIndex()).thenAnswer(invocation -> {
+            latch.await(TIMEOUT, TimeUnit.MILLISECONDS);
+            return INDEX_NAME;
+        });
+
+        movieReindexer.start();
+        movieReindexer.cancel();
+        latch.countDown();
+
+        final ReindexJob job = lastSavedJob();
+        assertEquals(Arrays.asList(null, "40", "80", "c0"), job.getPartitions().stream()
+            .map(Partition::getFromId).collect(Collectors.toList()));
+        assertEquals(Arrays.asList("40", "80", "c0", null), job.getPartitions().stream()
+            .map(Partition::getToId).collect(Collectors.toList()));
+    }
+
+    /**
+     * Waits until the reindex has a status
+     * 
+     * @param status
+     *            The status
+     */
+    private void waitForStatus(final Status status) throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + TIMEOUT;
+        while (!status.name().equals(movieReindexer.getStatus().get().getStatus())
+            && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+
+        assertEquals(status.name(), movieReindexer.getStatus().get().getStatus());
+    }
+
+    /**
+     * Returns the job that was saved last
+     * 
+     * @return The job
+     */
+    private ReindexJob lastSavedJob() {
+        final ArgumentCaptor<ReindexJob> captor = ArgumentCaptor.forClass(ReindexJob.class);
+        verify(reindexJobRepository, atLeastOnce()).save(captor.capture());
+        final List<ReindexJob> jobs = captor.getAllValues();
+
+        return jobs.get(jobs.size() - 1);
+    }
+
+    /**
+     * Creates an unfinished reindex with two ranges
+     * 
+     * @param status
+     *            The status of the reindex
+     * @return The reindex
+     */
+    private ReindexJob createJob(final Status status) {
+        final Partition first = new Partition();
+        first.setToId("80");
+        final Partition second = new Partition();
+        second.setFromId("80");
+
+        final ReindexJob job = new ReindexJob();
+        job.setId(UUID.randomUUID().toString());
+        job.setStatus(status);
+        job.setIndexName("old_index");
+        job.setTotal(3);
+        job.setPartitions(Arrays.asList(first, second));
+
+        return job;
+    }
+
+    /**
+     * Creates a cursor of movies
+     * 
+     * @param movies
+     *            The movies
+     * @return The cursor
+     */
+    private CloseableIterator<Movie> stream(final Movie... movies) {
+        final Iterator<Movie> iterator = (movies.length > 0) ? Arrays.asList(movies).iterator()
+            : Collections.<Movie> emptyIterator();
+
+        return new CloseableIterator<Movie>() {
+            @Override
+            public boolean hasNext() {
+                return iterator.hasNext();
+            }
+
+            @Override
+            public Movie next() {
+                return iterator.next();
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+
+    /**
+     * Creates a test movie
+     * 
+     * @param id
+     *            The id of the movie
+     * @return The movie
+     */
+    private Movie createMovie(final String id) {
+        final Movie movie = new Movie();
+        movie.setId(id);
+
+        return movie;
+    }
+}
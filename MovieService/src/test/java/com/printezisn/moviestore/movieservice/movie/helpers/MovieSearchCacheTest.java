@@ -0,0 +1,271 @@
+package com.printezisn.moviestore.movieservice.movie.helpers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.printezisn.moviestore.common.dto.movie.MovieFacetBucketDto;
+import com.printezisn.moviestore.common.models.movie.MoviePagedResultModel;
+import com.printezisn.moviestore.movieservice.configuration.properties.SearchCacheProperties;
+import com.printezisn.moviestore.movieservice.movie.entities.MovieIndex;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Class that contains unit tests for the MovieSearchCache class
+ */
+public class MovieSearchCacheTest {
+
+    private static final String SORT_FIELD = "rating";
+    private static final int PAGE_SIZE = 10;
+    private static final String MOVIE_ID = "movie";
+
+    private SearchCacheProperties searchCacheProperties;
+
+    private MeterRegistry meterRegistry;
+
+    private MovieSearchCache movieSearchCache;
+
+    /**
+     * Initializes the test class
+     */
+    @Before
+    public void setUp() {
+        searchCacheProperties = new SearchCacheProperties();
+        searchCacheProperties.setRefreshDelay(0);
+
+        meterRegistry = new SimpleMeterRegistry();
+
+        movieSearchCache = new MovieSearchCache(searchCacheProperties, meterRegistry);
+    }
+
+    /**
+     * Tests if equivalent searches share the same cached result
+     */
+    @Test
+    public void test_get_hit() {
+        final MoviePagedResultModel result = search(Optional.of("The  Matrix"), 0);
+        final MoviePagedResultModel cachedResult = search(Optional.of(" the matrix "), 0);
+
+        assertSame(result, cachedResult);
+        assertNotSame(result, search(Optional.of("the matrix"), 1));
+        assertEquals(1, meterRegistry.get("movies.search.cache.hits").counter().count(), 0);
+        assertEquals(2, meterRegistry.get("movies.search.cache.misses").counter().count(), 0);
+    }
+
+    /**
+     * Tests if pages with different cursors are cached separately
+     */
+    @Test
+    public void test_get_cursor() {
+        final MoviePagedResultModel result = search(Optional.empty(), 1, Optional.of("first"));
+
+        assertSame(result, search(Optional.empty(), 1, Optional.of("first")));
+        assertNotSame(result, search(Optional.empty(), 1, Optional.of("second")));
+        assertNotSame(result, search(Optional.empty(), 1));
+    }
+
+    /**
+     * Tests if the cached results are not served after the index is written
+     */
+    @Test
+    public void test_get_invalidated() {
+        final MoviePagedResultModel result = search(Optional.empty(), 0);
+        movieSearchCache.invalidate();
+
+        assertNotSame(result, search(Optional.empty(), 0));
+        assertEquals(1, movieSearchCache.getSize());
+    }
+
+    /**
+     * Tests if the cached results survive a write that only changes the total
+     * likes of a movie that was indexed before
+     */
+    @Test
+    public void test_invalidate_likesOnly() {
+        final MovieIndex movie = createMovieIndex();
+        movieSearchCache.invalidate(Collections.singletonList(movie), Collections.emptyList());
+        final MoviePagedResultModel result = search(Optional.empty(), 0);
+
+        final MovieIndex likedMovie = createMovieIndex();
+        likedMovie.setTotalLikes(movie.getTotalLikes() + 1);
+        movieSearchCache.invalidate(Collections.singletonList(likedMovie), Collections.emptyList());
+
+        assertSame(result, search(Optional.empty(), 0));
+    }
+
+    /**
+     * Tests if the cached results are invalidated by a write that changes the
+     * content of a movie, by the first write of a movie and by a delete
+     */
+    @Test
+    public void test_invalidate_contentChanged() {
+        final MovieIndex movie = createMovieIndex();
+        MoviePagedResultModel result = search(Optional.empty(), 0);
+        movieSearchCache.invalidate(Collections.singletonList(movie), Collections.emptyList());
+        assertNotSame(result, search(Optional.empty(), 0));
+
+        result = search(Optional.empty(), 0);
+        final MovieIndex editedMovie = createMovieIndex();
+        editedMovie.setTitle("Edited Title");
+        movieSearchCache.invalidate(Collections.singletonList(editedMovie), Collections.emptyList());
+        assertNotSame(result, search(Optional.empty(), 0));
+
+        result = search(Optional.empty(), 0);
+        movieSearchCache.invalidate(Collections.emptyList(), Collections.singletonList(MOVIE_ID));
+        assertNotSame(result, search(Optional.empty(), 0));
+    }
+
+    /**
+     * Tests if results aren't cached while the last write may not be searchable
+     * yet
+     */
+    @Test
+    public void test_get_refreshDelay() {
+        searchCacheProperties.setRefreshDelay(60000);
+        movieSearchCache.invalidate();
+
+        final MoviePagedResultModel result = search(Optional.empty(), 0);
+
+        assertNotSame(result, search(Optional.empty(), 0));
+        assertEquals(0, movieSearchCache.getSize());
+    }
+
+    /**
+     * Tests if expired results are not served
+     */
+    @Test
+    public void test_get_expired() {
+        searchCacheProperties.setTimeToLive(0);
+
+        final MoviePagedResultModel result = search(Optional.empty(), 0);
+
+        assertNotSame(result, search(Optional.empty(), 0));
+    }
+
+    /**
+     * Tests if the least recently used result is evicted when the cache is full
+     */
+    @Test
+    public void test_get_eviction() {
+        searchCacheProperties.setMaxEntries(2);
+
+        final MoviePagedResultModel firstResult = search(Optional.empty(), 0);
+        final MoviePagedResultModel secondResult = search(Optional.empty(), 1);
+        search(Optional.empty(), 0);
+        search(Optional.empty(), 2);
+
+        assertEquals(2, movieSearchCache.getSize());
+        assertSame(firstResult, search(Optional.empty(), 0));
+        assertNotSame(secondResult, search(Optional.empty(), 1));
+        assertEquals(2, meterRegistry.get("movies.search.cache.evictions").counter().count(), 0);
+    }
+
+    /**
+     * Tests if the facets of a result are cached by the text and the filters
+     */
+    @Test
+    public void test_getFacets_cached() {
+        final Set<MovieSearchFilter> filters = Collections.singleton(new MovieSearchFilter("rating", 8.0, null));
+        final Map<String, List<MovieFacetBucketDto>> facets = Collections.singletonMap("rating",
+            Collections.emptyList());
+
+        movieSearchCache.get(Optional.of("Matrix"), 0, PAGE_SIZE, SORT_FIELD, false, Optional.empty(), filters,
+            Collections.emptySet(), true, true, () -> MoviePagedResultModel.builder().facets(facets).build());
+
+        assertSame(facets, movieSearchCache.getFacets(Optional.of(" matrix"), filters));
+        assertNull(movieSearchCache.getFacets(Optional.of("matrix"), Collections.emptySet()));
+        assertNull(movieSearchCache.getFacets(Optional.of("alien"), filters));
+
+        movieSearchCache.invalidate();
+
+        assertNull(movieSearchCache.getFacets(Optional.of("matrix"), filters));
+    }
+
+    /**
+     * Tests if degraded results are not cached
+     */
+    @Test
+    public void test_get_degraded() {
+        final MoviePagedResultModel result = movieSearchCache.get(Optional.empty(), 0, PAGE_SIZE, SORT_FIELD, false,
+            Optional.empty(), Collections.emptySet(), Collections.emptySet(), false, true,
+            () -> MoviePagedResultModel.builder().degraded(true).build());
+
+        assertNotSame(result, search(Optional.empty(), 0));
+        assertEquals(1, movieSearchCache.getSize());
+    }
+
+    /**
+     * Tests if nothing is cached when the cache is disabled
+     */
+    @Test
+    public void test_get_disabled() {
+        searchCacheProperties.setEnabled(false);
+
+        final MoviePagedResultModel result = search(Optional.empty(), 0);
+
+        assertNotSame(result, search(Optional.empty(), 0));
+        assertEquals(0, movieSearchCache.getSize());
+    }
+
+    /**
+     * Creates the indexed document of a test movie
+     * 
+     * @return The document
+     */
+    private MovieIndex createMovieIndex() {
+        final MovieIndex movieIndex = new MovieIndex();
+        movieIndex.setId(MOVIE_ID);
+        movieIndex.setTitle("Title");
+        movieIndex.setDescription("Description");
+        movieIndex.setRating(7.5);
+        movieIndex.setReleaseYear(1999);
+        movieIndex.setTotalLikes(10);
+
+        return movieIndex;
+    }
+
+    /**
+     * Searches through the cache, creating a new result on every miss
+     * 
+     * @param text
+     *            The search text
+     * @param pageNumber
+     *            The page number
+     * @return The result of the search
+     */
+    private MoviePagedResultModel search(final Optional<String> text, final int pageNumber) {
+        return search(text, pageNumber, Optional.empty());
+    }
+
+    /**
+     * Searches through the cache, creating a new result on every miss
+     * 
+     * @param text
+     *            The search text
+     * @param pageNumber
+     *            The page number
+     * @param cursor
+     *            The cursor of the page
+     * @return The result of the search
+     */
+    private MoviePagedResultModel search(final Optional<String> text, final int pageNumber,
+        final Optional<String> cursor) {
+
+        return movieSearchCache.get(text, pageNumber, PAGE_SIZE, SORT_FIELD, false, cursor, Collections.emptySet(),
+            Collections.emptySet(), false, true, () -> MoviePagedResultModel.builder()
+                .pageNumber(pageNumber)
+                .build());
+    }
+}
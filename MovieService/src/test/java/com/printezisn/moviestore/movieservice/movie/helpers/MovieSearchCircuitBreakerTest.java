@@ -0,0 +1,185 @@
+package com.printezisn.moviestore.movieservice.movie.helpers;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.printezisn.moviestore.movieservice.configuration.properties.SearchFallbackProperties;
+import com.printezisn.moviestore.movieservice.movie.helpers.MovieSearchCircuitBreaker.State;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Class that contains unit tests for the MovieSearchCircuitBreaker class
+ */
+public class MovieSearchCircuitBreakerTest {
+
+    private static final String SEARCH_RESULT = "search";
+    private static final String FALLBACK_RESULT = "fallback";
+
+    private SearchFallbackProperties searchFallbackProperties;
+
+    private MeterRegistry meterRegistry;
+
+    private MovieSearchCircuitBreaker movieSearchCircuitBreaker;
+
+    private AtomicInteger searches;
+
+    /**
+     * Initializes the test class
+     */
+    @Before
+    public void setUp() {
+        searchFallbackProperties = new SearchFallbackProperties();
+        searchFallbackProperties.setFailureThreshold(2);
+        searchFallbackProperties.setOpenDuration(60000);
+
+        meterRegistry = new SimpleMeterRegistry();
+        searches = new AtomicInteger();
+
+        movieSearchCircuitBreaker = new MovieSearchCircuitBreaker(searchFallbackProperties, meterRegistry);
+    }
+
+    /**
+     * Tests if searches are sent to the search index while it works
+     */
+    @Test
+    public void test_run_closed() {
+        assertEquals(SEARCH_RESULT, movieSearchCircuitBreaker.run(this::search, () -> FALLBACK_RESULT));
+        assertEquals(State.CLOSED, movieSearchCircuitBreaker.getState());
+        assertEquals(0, meterRegistry.get("movies.search.fallbacks").counter().count(), 0);
+    }
+
+    /**
+     * Tests if a failed search is served by the fallback, and if the circuit
+     * opens after consecutive failures so that the search index isn't called
+     */
+    @Test
+    public void test_run_open() {
+        assertEquals(FALLBACK_RESULT, movieSearchCircuitBreaker.run(this::fail, () -> FALLBACK_RESULT));
+        assertEquals(State.CLOSED, movieSearchCircuitBreaker.getState());
+        assertEquals(FALLBACK_RESULT, movieSearchCircuitBreaker.run(this::fail, () -> FALLBACK_RESULT));
+        assertEquals(State.OPEN, movieSearchCircuitBreaker.getState());
+
+        assertEquals(FALLBACK_RESULT, movieSearchCircuitBreaker.run(this::search, () -> FALLBACK_RESULT));
+        assertEquals(2, searches.get());
+        assertEquals(3, meterRegistry.get("movies.search.fallbacks").counter().count(), 0);
+        assertEquals(2, meterRegistry.get("movies.search.failures").counter().count(), 0);
+        assertEquals(State.OPEN.ordinal(), meterRegistry.get("movies.search.circuit.state").gauge().value(), 0);
+    }
+
+    /**
+     * Tests if a success resets the consecutive failures
+     */
+    @Test
+    public void test_run_success() {
+        movieSearchCircuitBreaker.run(this::fail, () -> FALLBACK_RESULT);
+        movieSearchCircuitBreaker.run(this::search, () -> FALLBACK_RESULT);
+        movieSearchCircuitBreaker.run(this::fail, () -> FALLBACK_RESULT);
+
+        assertEquals(State.CLOSED, movieSearchCircuitBreaker.getState());
+    }
+
+    /**
+     * Tests if slow searches are returned but count as failures
+     */
+    @Test
+    public void test_run_slow() {
+        searchFallbackProperties.setSlowCallThreshold(-1);
+
+        assertEquals(SEARCH_RESULT, movieSearchCircuitBreaker.run(this::search, () -> FALLBACK_RESULT));
+        assertEquals(SEARCH_RESULT, movieSearchCircuitBreaker.run(this::search, () -> FALLBACK_RESULT));
+        assertEquals(State.OPEN, movieSearchCircuitBreaker.getState());
+    }
+
+    /**
+     * Tests if the circuit closes after a successful probe
+     */
+    @Test
+    public void test_run_probe() {
+        searchFallbackProperties.setOpenDuration(0);
+        movieSearchCircuitBreaker.run(this::fail, () -> FALLBACK_RESULT);
+        movieSearchCircuitBreaker.run(this::fail, () -> FALLBACK_RESULT);
+
+        assertEquals(SEARCH_RESULT, movieSearchCircuitBreaker.run(this::search, () -> FALLBACK_RESULT));
+        assertEquals(State.CLOSED, movieSearchCircuitBreaker.getState());
+    }
+
+    /**
+     * Tests if the circuit opens again after a failed probe, and if only one
+     * probe is sent at a time
+     */
+    @Test
+    public void test_run_failedProbe() {
+        searchFallbackProperties.setOpenDuration(0);
+        movieSearchCircuitBreaker.run(this::fail, () -> FALLBACK_RESULT);
+        movieSearchCircuitBreaker.run(this::fail, () -> FALLBACK_RESULT);
+
+        final Supplier<String> probe = () -> {
+            assertEquals(State.HALF_OPEN, movieSearchCircuitBreaker.getState());
+            assertEquals(FALLBACK_RESULT, movieSearchCircuitBreaker.run(this::search, () -> FALLBACK_RESULT));
+
+            return fail();
+        };
+
+        assertEquals(FALLBACK_RESULT, movieSearchCircuitBreaker.run(probe, () -> FALLBACK_RESULT));
+        assertEquals(State.OPEN, movieSearchCircuitBreaker.getState());
+        assertEquals(3, searches.get());
+    }
+
+    /**
+     * Tests if a search that finishes after the circuit opened doesn't close it
+     */
+    @Test
+    public void test_run_staleSuccess() {
+        final Supplier<String> slowSearch = () -> {
+            movieSearchCircuitBreaker.run(this::fail, () -> FALLBACK_RESULT);
+            movieSearchCircuitBreaker.run(this::fail, () -> FALLBACK_RESULT);
+            assertEquals(State.OPEN, movieSearchCircuitBreaker.getState());
+
+            return search();
+        };
+
+        assertEquals(SEARCH_RESULT, movieSearchCircuitBreaker.run(slowSearch, () -> FALLBACK_RESULT));
+        assertEquals(State.OPEN, movieSearchCircuitBreaker.getState());
+        assertEquals(FALLBACK_RESULT, movieSearchCircuitBreaker.run(this::search, () -> FALLBACK_RESULT));
+        assertEquals(3, searches.get());
+    }
+
+    /**
+     * Tests if the fallback is not used when it's disabled
+     */
+    @Test(expected = IllegalStateException.class)
+    public void test_run_disabled() {
+        searchFallbackProperties.setEnabled(false);
+
+        movieSearchCircuitBreaker.run(this::fail, () -> FALLBACK_RESULT);
+    }
+
+    /**
+     * A search that succeeds
+     * 
+     * @return The result of the search
+     */
+    private String search() {
+        searches.incrementAndGet();
+
+        return SEARCH_RESULT;
+    }
+
+    /**
+     * A search that fails
+     * 
+     * @return Nothing, as the search always fails
+     */
+    private String fail() {
+        searches.incrementAndGet();
+
+        throw new IllegalStateException("Search index unavailable");
+    }
+}
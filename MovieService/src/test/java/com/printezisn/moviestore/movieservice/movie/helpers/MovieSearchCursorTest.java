@@ -0,0 +1,65 @@
+package com.printezisn.moviestore.movieservice.movie.helpers;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.UUID;
+
+import org.junit.Test;
+
+import com.printezisn.moviestore.movieservice.movie.exceptions.MovieValidationException;
+
+/**
+ * Class that contains unit tests for the MovieSearchCursor class
+ */
+public class MovieSearchCursorTest {
+
+    private static final String SORT_FIELD = "rating";
+
+    /**
+     * Tests if a cursor is decoded to the values it was encoded with
+     */
+    @Test
+    public void test_decode_success() throws Exception {
+        final String id = UUID.randomUUID().toString();
+        final String encodedCursor = new MovieSearchCursor(3, SORT_FIELD, true, 7.5, id).encode();
+
+        final MovieSearchCursor cursor = MovieSearchCursor.decode(encodedCursor);
+
+        assertEquals(3, cursor.getPageNumber());
+        assertEquals(SORT_FIELD, cursor.getSortField());
+        assertTrue(cursor.isAscending());
+        assertArrayEquals(new Object[] { 7.5, id }, cursor.getSearchAfter());
+    }
+
+    /**
+     * Tests if integral sort values are decoded as longs
+     */
+    @Test
+    public void test_decode_integralValue() throws Exception {
+        final String encodedCursor = new MovieSearchCursor(1, "releaseYear", false, 1988,
+            UUID.randomUUID().toString()).encode();
+
+        assertEquals(1988L, MovieSearchCursor.decode(encodedCursor).getSortValue());
+    }
+
+    /**
+     * Tests the scenario in which the cursor is not valid base64
+     */
+    @Test(expected = MovieValidationException.class)
+    public void test_decode_invalidEncoding() throws Exception {
+        MovieSearchCursor.decode("not a cursor!");
+    }
+
+    /**
+     * Tests the scenario in which the cursor has invalid values
+     */
+    @Test(expected = MovieValidationException.class)
+    public void test_decode_invalidValues() throws Exception {
+        MovieSearchCursor.decode(Base64.getUrlEncoder().encodeToString(
+            "1:rating:true:abc:id".getBytes(StandardCharsets.UTF_8)));
+    }
+}
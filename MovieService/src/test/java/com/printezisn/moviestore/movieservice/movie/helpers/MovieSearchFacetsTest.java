@@ -0,0 +1,108 @@
+package com.printezisn.moviestore.movieservice.movie.helpers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import org.elasticsearch.search.aggregations.AbstractAggregationBuilder;
+import org.elasticsearch.search.aggregations.Aggregations;
+import org.elasticsearch.search.aggregations.bucket.histogram.Histogram;
+import org.elasticsearch.search.aggregations.bucket.range.Range;
+import org.elasticsearch.search.aggregations.bucket.range.RangeAggregationBuilder;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.printezisn.moviestore.common.dto.movie.MovieFacetBucketDto;
+import com.printezisn.moviestore.movieservice.configuration.properties.SearchFacetProperties;
+
+/**
+ * Class that contains unit tests for the MovieSearchFacets class
+ */
+public class MovieSearchFacetsTest {
+
+    private MovieSearchFacets movieSearchFacets;
+
+    /**
+     * Initializes the test class
+     */
+    @Before
+    public void setUp() {
+        movieSearchFacets = new MovieSearchFacets(new SearchFacetProperties());
+    }
+
+    /**
+     * Tests if an aggregation is created for every facet, with keys that can be
+     * used as filters
+     */
+    @Test
+    public void test_createAggregations_success() {
+        final List<AbstractAggregationBuilder<?>> aggregations = movieSearchFacets.createAggregations();
+
+        assertEquals(Arrays.asList("releaseYear", "rating", "totalLikes"), aggregations.stream()
+            .map(AbstractAggregationBuilder::getName)
+            .collect(Collectors.toList()));
+        assertEquals(Arrays.asList("-2", "2-4", "4-6", "6-8", "8-"),
+            ((RangeAggregationBuilder) aggregations.get(1)).ranges().stream()
+                .map(range -> range.getKey())
+                .collect(Collectors.toList()));
+    }
+
+    /**
+     * Tests if the buckets of the facets are read, skipping the empty ones
+     */
+    @Test
+    public void test_read_success() {
+        final Histogram releaseYears = mock(Histogram.class);
+        final Histogram.Bucket releaseYearBucket = mock(Histogram.Bucket.class);
+        when(releaseYears.getName()).thenReturn("releaseYear");
+        when(releaseYearBucket.getKey()).thenReturn(1990.0);
+        when(releaseYearBucket.getDocCount()).thenReturn(4L);
+        doReturn(Arrays.asList(releaseYearBucket)).when(releaseYears).getBuckets();
+
+        final Range ratings = mock(Range.class);
+        final Range.Bucket lowRatingBucket = mock(Range.Bucket.class);
+        final Range.Bucket highRatingBucket = mock(Range.Bucket.class);
+        when(ratings.getName()).thenReturn("rating");
+        when(lowRatingBucket.getFrom()).thenReturn(Double.NEGATIVE_INFINITY);
+        when(lowRatingBucket.getTo()).thenReturn(2.0);
+        when(lowRatingBucket.getDocCount()).thenReturn(0L);
+        when(highRatingBucket.getFrom()).thenReturn(8.0);
+        when(highRatingBucket.getTo()).thenReturn(Double.POSITIVE_INFINITY);
+        when(highRatingBucket.getDocCount()).thenReturn(2L);
+        doReturn(Arrays.asList(lowRatingBucket, highRatingBucket)).when(ratings).getBuckets();
+
+        final Map<String, List<MovieFacetBucketDto>> facets = movieSearchFacets.read(
+            new Aggregations(Arrays.asList(releaseYears, ratings)));
+
+        assertEquals(Arrays.asList("releaseYear", "rating"), Arrays.asList(facets.keySet().toArray()));
+
+        final MovieFacetBucketDto releaseYear = facets.get("releaseYear").get(0);
+        assertEquals("1990-2000", releaseYear.getKey());
+        assertEquals(1990, releaseYear.getFrom(), 0);
+        assertEquals(2000, releaseYear.getTo(), 0);
+        assertEquals(4, releaseYear.getCount());
+
+        assertEquals(1, facets.get("rating").size());
+        final MovieFacetBucketDto rating = facets.get("rating").get(0);
+        assertEquals("8-", rating.getKey());
+        assertEquals(8, rating.getFrom(), 0);
+        assertNull(rating.getTo());
+        assertEquals(2, rating.getCount());
+    }
+
+    /**
+     * Tests if there are no facets without aggregations
+     */
+    @Test
+    public void test_read_noAggregations() {
+        assertTrue(movieSearchFacets.read(null).isEmpty());
+    }
+}
@@ -0,0 +1,78 @@
+package com.printezisn.moviestore.movieservice.movie.helpers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+import com.printezisn.moviestore.movieservice.movie.exceptions.MovieValidationException;
+
+/**
+ * Class that contains unit tests for the MovieSearchFilter class
+ */
+public class MovieSearchFilterTest {
+
+    /**
+     * Tests if a filter with both bounds is parsed
+     */
+    @Test
+    public void test_parse_success() throws Exception {
+        final MovieSearchFilter filter = MovieSearchFilter.parse("rating:6.5-8");
+
+        assertEquals("rating", filter.getField());
+        assertEquals(6.5, filter.getFrom(), 0);
+        assertEquals(8, filter.getTo(), 0);
+    }
+
+    /**
+     * Tests if a filter without a bound is parsed
+     */
+    @Test
+    public void test_parse_unbounded() throws Exception {
+        assertNull(MovieSearchFilter.parse("totalLikes:-10").getFrom());
+        assertNull(MovieSearchFilter.parse("releaseYear:2000-").getTo());
+    }
+
+    /**
+     * Tests if the keys of the ranges are parsed back to the same ranges
+     */
+    @Test
+    public void test_createKey_parsed() throws Exception {
+        assertEquals("1990-2000", MovieSearchFilter.createKey(1990.0, 2000.0));
+        assertEquals("-2.5", MovieSearchFilter.createKey(null, 2.5));
+        assertEquals(new MovieSearchFilter("rating", 8.0, null),
+            MovieSearchFilter.parse("rating:" + MovieSearchFilter.createKey(8.0, null)));
+    }
+
+    /**
+     * Tests the scenario in which the field is unknown
+     */
+    @Test(expected = MovieValidationException.class)
+    public void test_parse_unknownField() throws Exception {
+        MovieSearchFilter.parse("title:1-2");
+    }
+
+    /**
+     * Tests the scenario in which the range has no bounds
+     */
+    @Test(expected = MovieValidationException.class)
+    public void test_parse_noBounds() throws Exception {
+        MovieSearchFilter.parse("rating:-");
+    }
+
+    /**
+     * Tests the scenario in which the range is empty
+     */
+    @Test(expected = MovieValidationException.class)
+    public void test_parse_emptyRange() throws Exception {
+        MovieSearchFilter.parse("rating:8-6");
+    }
+
+    /**
+     * Tests the scenario in which a bound is not a number
+     */
+    @Test(expected = MovieValidationException.class)
+    public void test_parse_invalidBound() throws Exception {
+        MovieSearchFilter.parse("rating:a-6");
+    }
+}
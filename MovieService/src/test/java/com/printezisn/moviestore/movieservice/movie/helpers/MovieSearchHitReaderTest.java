@@ -0,0 +1,97 @@
+package com.printezisn.moviestore.movieservice.movie.helpers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.text.Text;
+import org.elasticsearch.search.SearchHit;
+import org.elasticsearch.search.SearchHits;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.printezisn.moviestore.common.dto.movie.MovieDto;
+
+/**
+ * Class that contains unit tests for the MovieSearchHitReader class
+ */
+public class MovieSearchHitReaderTest {
+
+    private static final String INDEX_TYPE = "movies";
+
+    private MovieSearchHitReader movieSearchHitReader;
+
+    /**
+     * Initializes the test class
+     */
+    @Before
+    public void setUp() {
+        movieSearchHitReader = new MovieSearchHitReader(new ObjectMapper());
+    }
+
+    /**
+     * Tests if the movies are decoded from the sources of the hits, in the order
+     * of the hits
+     */
+    @Test
+    public void test_read_success() throws Exception {
+        final UUID firstId = UUID.randomUUID();
+        final UUID secondId = UUID.randomUUID();
+        final SearchHits searchHits = new SearchHits(new SearchHit[] {
+            createHit(0, firstId, "{\"id\":\"%s\",\"title\":\"Title\",\"description\":\"Description\","
+                + "\"rating\":7.5,\"releaseYear\":2000,\"totalLikes\":3,\"creator\":\"creator\"}"),
+            createHit(1, secondId, "{\"id\":\"%s\",\"title\":\"Other\",\"unknown\":{\"nested\":[1,2]}}")
+        }, 2, 1);
+
+        final List<MovieDto> movies = movieSearchHitReader.read(searchHits);
+
+        assertEquals(2, movies.size());
+        assertEquals(firstId, movies.get(0).getId());
+        assertEquals("Title", movies.get(0).getTitle());
+        assertEquals("Description", movies.get(0).getDescription());
+        assertEquals(7.5, movies.get(0).getRating(), 0);
+        assertEquals(2000, movies.get(0).getReleaseYear().intValue());
+        assertEquals(3, movies.get(0).getTotalLikes());
+        assertEquals("creator", movies.get(0).getCreator());
+        assertEquals(secondId, movies.get(1).getId());
+        assertEquals("Other", movies.get(1).getTitle());
+        assertNull(movies.get(1).getRating());
+    }
+
+    /**
+     * Tests if no movies are returned when there are no hits
+     */
+    @Test
+    public void test_read_noHits() throws Exception {
+        assertTrue(movieSearchHitReader.read(SearchHits.empty()).isEmpty());
+    }
+
+    /**
+     * Creates a search hit whose source is a slice of a larger buffer
+     * 
+     * @param docId
+     *            The document id of the hit
+     * @param id
+     *            The id of the movie
+     * @param sourceFormat
+     *            The format of the source, with a placeholder for the id
+     * @return The search hit
+     */
+    private SearchHit createHit(final int docId, final UUID id, final String sourceFormat) {
+        final byte[] source = String.format(sourceFormat, id).getBytes(StandardCharsets.UTF_8);
+        final byte[] buffer = new byte[source.length + 2];
+        System.arraycopy(source, 0, buffer, 1, source.length);
+
+        final SearchHit hit = new SearchHit(docId, id.toString(), new Text(INDEX_TYPE), Collections.emptyMap());
+        hit.sourceRef(new BytesArray(buffer, 1, source.length));
+
+        return hit;
+    }
+}
@@ -0,0 +1,242 @@
+package com.printezisn.moviestore.movieservice.movie.helpers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.data.util.CloseableIterator;
+
+import com.printezisn.moviestore.common.dto.movie.MovieSuggestionDto;
+import com.printezisn.moviestore.movieservice.configuration.properties.SuggestProperties;
+import com.printezisn.moviestore.movieservice.movie.entities.Movie;
+import com.printezisn.moviestore.movieservice.movie.repositories.MovieRepository;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Class that contains unit tests for the MovieSuggester class
+ */
+public class MovieSuggesterTest {
+
+    @Mock
+    private MovieRepository movieRepository;
+
+    private SuggestProperties suggestProperties;
+
+    private MeterRegistry meterRegistry;
+
+    private MovieSuggester movieSuggester;
+
+    /**
+     * Initializes the test class
+     */
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+
+        suggestProperties = new SuggestProperties();
+        suggestProperties.setMaxResults(2);
+        suggestProperties.setMaxPrefixLength(5);
+        meterRegistry = new SimpleMeterRegistry();
+
+        movieSuggester = new MovieSuggester(movieRepository, suggestProperties, meterRegistry);
+    }
+
+    /**
+     * Tests if the most liked movies are suggested, limited to the maximum results
+     */
+    @Test
+    public void test_suggest_mostLiked() {
+        final String id1 = update("The Matrix", 10);
+        update("The Mask", 5);
+        final String id3 = update("The Mummy", 20);
+        update("Alien", 100);
+
+        assertEquals(Arrays.asList(id3, id1), suggest("the m"));
+        assertEquals(Arrays.asList(id1), suggest("the mat"));
+        assertEquals(4, meterRegistry.get("movies.suggest.size").gauge().value(), 0);
+    }
+
+    /**
+     * Tests if the prefix and the titles are compared without case, accents and
+     * punctuation
+     */
+    @Test
+    public void test_suggest_normalized() {
+        final String id = update("Amélie: Le Fabuleux Destin", 1);
+
+        assertEquals(Arrays.asList(id), suggest("AME"));
+        assertEquals(Arrays.asList(id), suggest("amelie le"));
+        assertEquals(Arrays.asList(id), suggest("  Amélie -- LE fab"));
+        assertTrue(suggest("  ").isEmpty());
+        assertTrue(suggest(null).isEmpty());
+    }
+
+    /**
+     * Tests if prefixes longer than the depth of the index are filtered by the
+     * whole titles
+     */
+    @Test
+    public void test_suggest_longPrefix() {
+        final String id1 = update("Star Wars", 3);
+        final String id2 = update("Star Trek", 5);
+        final String id3 = update("Stardust", 10);
+
+        assertEquals(Arrays.asList(id3, id2), suggest("star"));
+        assertEquals(Arrays.asList(id1), suggest("star w"));
+        assertEquals(Arrays.asList(id2), suggest("star tr"));
+        assertTrue(suggest("star x").isEmpty());
+    }
+
+    /**
+     * Tests if a movie is moved when its title or its likes change
+     */
+    @Test
+    public void test_update_changed() {
+        final String id1 = update("Heat", 1);
+        final String id2 = update("Her", 2);
+
+        assertEquals(Arrays.asList(id2, id1), suggest("he"));
+
+        movieSuggester.update(id1, "Heat", 3);
+        assertEquals(Arrays.asList(id1, id2), suggest("he"));
+
+        movieSuggester.update(id1, "Ronin", 3);
+        assertEquals(Arrays.asList(id2), suggest("he"));
+        assertEquals(Arrays.asList(id1), suggest("ro"));
+        assertEquals(2, movieSuggester.getSize());
+    }
+
+    /**
+     * Tests if a removed movie is not suggested
+     */
+    @Test
+    public void test_remove_success() {
+        final String id1 = update("Jaws", 1);
+        final String id2 = update("Jaws 2", 1);
+
+        movieSuggester.remove(id2);
+        movieSuggester.remove(UUID.randomUUID().toString());
+
+        assertEquals(Arrays.asList(id1), suggest("jaws"));
+
+        movieSuggester.remove(id1);
+
+        assertTrue(suggest("j").isEmpty());
+        assertEquals(0, movieSuggester.getSize());
+    }
+
+    /**
+     * Tests if the movies are loaded, skipping the movies that are changed while
+     * loading
+     */
+    @Test
+    public void test_load_skipsChanged() {
+        final Movie movie1 = createMovie("Up", 1);
+        final Movie movie2 = createMovie("Us", 2);
+        final Movie movie3 = createMovie("Ugetsu", 3);
+        final Iterator<Movie> movies = Arrays.asList(movie1, movie2, movie3).iterator();
+
+        when(movieRepository.streamActiveMovies(suggestProperties.getLoadBatchSize()))
+            .thenReturn(new CloseableIterator<Movie>() {
+                @Override
+                public boolean hasNext() {
+                    return movies.hasNext();
+                }
+
+                @Override
+                public Movie next() {
+                    final Movie movie = movies.next();
+                    if (movie == movie1) {
+                        movieSuggester.update(movie2.getId(), "Us", 10);
+                        movieSuggester.remove(movie3.getId());
+                    }
+
+                    return movie;
+                }
+
+                @Override
+                public void close() {
+                }
+            });
+
+        movieSuggester.load();
+
+        assertEquals(Arrays.asList(movie2.getId(), movie1.getId()), suggest("u"));
+        assertEquals(10, movieSuggester.suggest("us").get(0).getTotalLikes());
+
+        movieSuggester.update(movie3.getId(), "Ugetsu", 3);
+        assertEquals(3, movieSuggester.getSize());
+    }
+
+    /**
+     * Tests if nothing is suggested when the suggestions are disabled
+     */
+    @Test
+    public void test_suggest_disabled() {
+        suggestProperties.setEnabled(false);
+
+        update("Psycho", 1);
+
+        assertTrue(suggest("psy").isEmpty());
+    }
+
+    /**
+     * Adds a movie to the suggester
+     * 
+     * @param title
+     *            The title of the movie
+     * @param totalLikes
+     *            The total likes of the movie
+     * @return The id of the movie
+     */
+    private String update(final String title, final long totalLikes) {
+        final String id = UUID.randomUUID().toString();
+        movieSuggester.update(id, title, totalLikes);
+
+        return id;
+    }
+
+    /**
+     * Returns the ids of the suggested movies
+     * 
+     * @param prefix
+     *            The prefix
+     * @return The ids of the movies
+     */
+    private List<String> suggest(final String prefix) {
+        return movieSuggester.suggest(prefix).stream()
+            .map(MovieSuggestionDto::getId)
+            .map(UUID::toString)
+            .collect(Collectors.toList());
+    }
+
+    /**
+     * Creates a movie
+     * 
+     * @param title
+     *            The title of the movie
+     * @param totalLikes
+     *            The total likes of the movie
+     * @return The movie
+     */
+    private Movie createMovie(final String title, final long totalLikes) {
+        final Movie movie = new Movie();
+        movie.setId(UUID.randomUUID().toString());
+        movie.setTitle(title);
+        movie.setTotalLikes(totalLikes);
+
+        return movie;
+    }
+}
@@ -0,0 +1,116 @@
+package com.printezisn.moviestore.movieservice.movie.repositories;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.eq;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.UUID;
+
+import org.bson.Document;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import com.mongodb.client.result.UpdateResult;
+import com.printezisn.moviestore.movieservice.movie.entities.Movie;
+
+/**
+ * Class that contains unit tests for the CustomMovieRepositoryImpl class
+ */
+public class CustomMovieRepositoryImplTest {
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    private CustomMovieRepositoryImpl customMovieRepository;
+
+    /**
+     * Initializes the test class
+     */
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+
+        customMovieRepository = new CustomMovieRepositoryImpl(mongoTemplate);
+    }
+
+    /**
+     * Tests if a deleted movie is stored as deleted and updated, so that it's
+     * removed from the search index and purged afterwards
+     */
+    @Test
+    public void test_updateMovie_deleted() {
+        final Movie movie = createMovie();
+        movie.setDeleted(true);
+
+        final Document stored = updateMovie(movie, "revision");
+
+        assertEquals(true, stored.get("deleted"));
+        assertEquals(true, stored.get("updated"));
+        assertEquals(movie.getRevision(), stored.get("revision"));
+    }
+
+    /**
+     * Tests if an edited movie is stored as not deleted
+     */
+    @Test
+    public void test_updateMovie_edited() {
+        final Movie movie = createMovie();
+
+        final Document stored = updateMovie(movie, "revision");
+
+        assertEquals(false, stored.get("deleted"));
+        assertEquals(movie.getTitle(), stored.get("title"));
+    }
+
+    /**
+     * Updates a movie and returns the fields that are set on the stored document,
+     * checking that the update is conditional on the current revision
+     * 
+     * @param movie
+     *            The movie
+     * @param currentRevision
+     *            The current revision of the movie
+     * @return The fields that are set
+     */
+    private Document updateMovie(final Movie movie, final String currentRevision) {
+        when(mongoTemplate.updateFirst(any(Query.class), any(Update.class), eq(Movie.class)))
+            .thenReturn(UpdateResult.acknowledged(1, 1L, null));
+
+        assertEquals(1, customMovieRepository.updateMovie(movie, currentRevision));
+
+        final ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        final ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        verify(mongoTemplate).updateFirst(query.capture(), update.capture(), eq(Movie.class));
+
+        final String criteria = query.getValue().getQueryObject().toJson();
+        assertTrue(criteria.contains(movie.getId()));
+        assertTrue(criteria.contains(currentRevision));
+
+        return (Document) update.getValue().getUpdateObject().get("$set");
+    }
+
+    /**
+     * Creates a test movie
+     * 
+     * @return The movie
+     */
+    private Movie createMovie() {
+        final Movie movie = new Movie();
+        movie.setId(UUID.randomUUID().toString());
+        movie.setRevision(UUID.randomUUID().toString());
+        movie.setTitle("Title");
+        movie.setDescription("Description");
+        movie.setUpdated(true);
+
+        return movie;
+    }
+}
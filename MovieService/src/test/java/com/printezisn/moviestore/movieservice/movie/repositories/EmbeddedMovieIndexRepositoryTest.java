@@ -0,0 +1,356 @@
+package com.printezisn.moviestore.movieservice.movie.repositories;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.anyInt;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Sort.Direction;
+import org.springframework.data.elasticsearch.core.aggregation.AggregatedPage;
+import org.springframework.data.util.CloseableIterator;
+
+import com.printezisn.moviestore.common.dto.movie.MovieDto;
+import com.printezisn.moviestore.movieservice.configuration.properties.EmbeddedSearchProperties;
+import com.printezisn.moviestore.movieservice.configuration.properties.SearchIndexProperties;
+import com.printezisn.moviestore.movieservice.movie.entities.Movie;
+import com.printezisn.moviestore.movieservice.movie.entities.MovieIndex;
+import com.printezisn.moviestore.movieservice.movie.helpers.EmbeddedMovieIndex;
+import com.printezisn.moviestore.movieservice.movie.helpers.MovieSearchCache;
+import com.printezisn.moviestore.movieservice.movie.helpers.MovieSearchFilter;
+import com.printezisn.moviestore.movieservice.movie.mappers.MovieMapper;
+
+/**
+ * Class that contains unit tests for the EmbeddedMovieIndexRepository class
+ */
+public class EmbeddedMovieIndexRepositoryTest {
+
+    private static final long AWAIT_TIMEOUT = 10000;
+    private static final String MATRIX_ID = createId(1);
+    private static final String RELOADED_ID = createId(2);
+    private static final String ALIEN_ID = createId(3);
+    private static final String HEAT_ID = createId(4);
+    private static final String AMELIE_ID = createId(5);
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Mock
+    private MovieSearchCache movieSearchCache;
+
+    @Mock
+    private MovieRepository movieRepository;
+
+    @Mock
+    private MovieMapper movieMapper;
+
+    private SearchIndexProperties searchIndexProperties;
+
+    private EmbeddedMovieIndex embeddedMovieIndex;
+
+    private EmbeddedMovieIndexRepository embeddedMovieIndexRepository;
+
+    /**
+     * Initializes the test class
+     * 
+     * @throws Exception
+     *             Exception thrown in case of error
+     */
+    @Before
+    public void setUp() throws Exception {
+        MockitoAnnotations.initMocks(this);
+
+        final EmbeddedSearchProperties embeddedSearchProperties = new EmbeddedSearchProperties();
+        embeddedSearchProperties.setPath(temporaryFolder.getRoot().getAbsolutePath());
+        searchIndexProperties = new SearchIndexProperties();
+        searchIndexProperties.setBulkFlushInterval(60000);
+
+        when(movieRepository.streamActiveMovies(anyInt())).thenReturn(new CloseableIterator<Movie>() {
+            @Override
+            public boolean hasNext() {
+                return false;
+            }
+
+            @Override
+            public Movie next() {
+                return null;
+            }
+
+            @Override
+            public void close() {
+            }
+        });
+
+        embeddedMovieIndex = new EmbeddedMovieIndex(embeddedSearchProperties, searchIndexProperties,
+            movieSearchCache, movieRepository, movieMapper);
+        embeddedMovieIndex.start();
+
+        final long deadline = System.currentTimeMillis() + AWAIT_TIMEOUT;
+        while (!embeddedMovieIndex.isPopulated() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+
+        embeddedMovieIndex.index(createMovieIndex(MATRIX_ID, "The Matrix", "A hacker learns the truth", 8.7, 1999,
+            100));
+        embeddedMovieIndex.index(createMovieIndex(RELOADED_ID, "The Matrix Reloaded", "Neo returns", 7.2, 2003,
+            50));
+        embeddedMovieIndex.index(createMovieIndex(ALIEN_ID, "Alien", "A crew meets a creature", 8.5, 1979, 80));
+        embeddedMovieIndex.index(createMovieIndex(HEAT_ID, "Heat", "A detective hunts a thief", 8.3, 1995, 30));
+        embeddedMovieIndex.index(createMovieIndex(AMELIE_ID, "Amelie", "A shy waitress", 8.3, 2001, 30));
+        embeddedMovieIndex.flush();
+
+        embeddedMovieIndexRepository = new EmbeddedMovieIndexRepository(embeddedMovieIndex, searchIndexProperties);
+    }
+
+    /**
+     * Closes the index
+     * 
+     * @throws IOException
+     *             Exception thrown if the index can't be closed
+     */
+    @After
+    public void tearDown() throws IOException {
+        embeddedMovieIndex.stop();
+    }
+
+    /**
+     * Tests if substrings of the text are matched through the n-gram subfields
+     */
+    @Test
+    public void test_search_ngram() {
+        final AggregatedPage<MovieDto> result = search("atri", Collections.emptySet(), true,
+            createPageable(0, 10, "rating"));
+
+        assertEquals(Arrays.asList(MATRIX_ID, RELOADED_ID), getIds(result));
+        assertEquals(2, result.getTotalElements());
+        assertNull(result.getAggregations());
+    }
+
+    /**
+     * Tests if words that are too short to have n-grams are matched by the prefix
+     * of the title
+     */
+    @Test
+    public void test_search_prefix() {
+        final AggregatedPage<MovieDto> result = search("Al", Collections.emptySet(), true,
+            createPageable(0, 10, "rating"));
+
+        assertEquals(Arrays.asList(ALIEN_ID), getIds(result));
+    }
+
+    /**
+     * Tests if fuzzy matching is added when the n-gram subfields have too few hits
+     */
+    @Test
+    public void test_search_fuzzyFallback() {
+        final AggregatedPage<MovieDto> result = search("Matirx", Collections.emptySet(), true,
+            createPageable(0, 10, "rating"));
+
+        assertEquals(Arrays.asList(MATRIX_ID, RELOADED_ID), getIds(result));
+    }
+
+    /**
+     * Tests if the words of the text are matched with an edit distance of up to
+     * two in fuzzy search mode
+     */
+    @Test
+    public void test_search_fuzzyMode() {
+        searchIndexProperties.setSearchMode(SearchIndexProperties.FUZZY_SEARCH_MODE);
+
+        final AggregatedPage<MovieDto> result = search("Alein", Collections.emptySet(), true,
+            createPageable(0, 10, "rating"));
+
+        assertEquals(Arrays.asList(ALIEN_ID), getIds(result));
+    }
+
+    /**
+     * Tests if the filters keep the movies within their ranges, with exclusive
+     * upper bounds
+     */
+    @Test
+    public void test_search_filters() {
+        final Set<MovieSearchFilter> releaseYearFilter = Set.of(new MovieSearchFilter("releaseYear", 1995.0,
+            2001.0));
+        final Set<MovieSearchFilter> ratingFilter = Set.of(new MovieSearchFilter("rating", 8.5, null));
+        final Set<MovieSearchFilter> totalLikesFilter = Set.of(new MovieSearchFilter("totalLikes", null, 50.0));
+
+        assertEquals(Arrays.asList(MATRIX_ID, HEAT_ID),
+            getIds(search("", releaseYearFilter, true, createPageable(0, 10, "rating"))));
+        assertEquals(Arrays.asList(MATRIX_ID, ALIEN_ID),
+            getIds(search("", ratingFilter, true, createPageable(0, 10, "rating"))));
+        assertEquals(Arrays.asList(HEAT_ID, AMELIE_ID),
+            getIds(search("", totalLikesFilter, true, createPageable(0, 10, "rating"))));
+    }
+
+    /**
+     * Tests if the movies are sorted and paged, with the id breaking ties
+     */
+    @Test
+    public void test_search_paging() {
+        final AggregatedPage<MovieDto> result = search("", Collections.emptySet(), true,
+            createPageable(1, 2, "totalLikes"));
+
+        assertEquals(Arrays.asList(RELOADED_ID, HEAT_ID), getIds(result));
+        assertEquals(5, result.getTotalElements());
+        assertTrue(result.hasNext());
+    }
+
+    /**
+     * Tests if a search without counting only shows if there is a next page
+     */
+    @Test
+    public void test_search_countFree() {
+        final AggregatedPage<MovieDto> firstPage = search("", Collections.emptySet(), false,
+            createPageable(0, 2, "totalLikes"));
+        final AggregatedPage<MovieDto> lastPage = search("", Collections.emptySet(), false,
+            createPageable(2, 2, "totalLikes"));
+
+        assertEquals(Arrays.asList(MATRIX_ID, ALIEN_ID), getIds(firstPage));
+        assertEquals(3, firstPage.getTotalElements());
+        assertTrue(firstPage.hasNext());
+        assertEquals(Arrays.asList(AMELIE_ID), getIds(lastPage));
+        assertFalse(lastPage.hasNext());
+    }
+
+    /**
+     * Tests if a page starts after the sort values of the last movie of the
+     * previous page
+     */
+    @Test
+    public void test_searchAfter() {
+        final AggregatedPage<MovieDto> result = embeddedMovieIndexRepository.searchAfter(Optional.empty(),
+            Collections.emptySet(), Collections.emptySet(), false, true, createPageable(0, 2, "totalLikes"),
+            new Object[] { 30L, HEAT_ID });
+
+        assertEquals(Arrays.asList(AMELIE_ID), getIds(result));
+        assertEquals(5, result.getTotalElements());
+    }
+
+    /**
+     * Tests if only the requested fields of the movies are loaded
+     */
+    @Test
+    public void test_search_fields() {
+        final AggregatedPage<MovieDto> result = embeddedMovieIndexRepository.search(Optional.of("Alien"),
+            Collections.emptySet(), Set.of("id", "title"), false, true, createPageable(0, 10, "rating"));
+
+        final MovieDto movieDto = result.getContent().get(0);
+        assertEquals(ALIEN_ID, movieDto.getId().toString());
+        assertEquals("Alien", movieDto.getTitle());
+        assertNull(movieDto.getDescription());
+        assertNull(movieDto.getRating());
+    }
+
+    /**
+     * Searches for movies with all the fields
+     * 
+     * @param text
+     *            The text used as filter
+     * @param filters
+     *            The ranges that the movies must be in
+     * @param countTotal
+     *            Indicates if all the matching movies are counted
+     * @param pageable
+     *            The pageable criteria
+     * @return The movies found
+     */
+    private AggregatedPage<MovieDto> search(final String text, final Set<MovieSearchFilter> filters,
+        final boolean countTotal, final Pageable pageable) {
+
+        return embeddedMovieIndexRepository.search(Optional.of(text), filters, Collections.emptySet(), false,
+            countTotal, pageable);
+    }
+
+    /**
+     * Creates pageable criteria sorted descending by a field and ascending by id,
+     * like the searches of the service
+     * 
+     * @param pageNumber
+     *            The page number
+     * @param pageSize
+     *            The page size
+     * @param sortField
+     *            The sort field
+     * @return The pageable criteria
+     */
+    private Pageable createPageable(final int pageNumber, final int pageSize, final String sortField) {
+        return PageRequest.of(pageNumber, pageSize,
+            Sort.by(Direction.DESC, sortField).and(Sort.by(Direction.ASC, "id")));
+    }
+
+    /**
+     * Returns the ids of the movies of a page
+     * 
+     * @param page
+     *            The page
+     * @return The ids
+     */
+    private List<String> getIds(final AggregatedPage<MovieDto> page) {
+        return page.getContent().stream()
+            .map(movieDto -> movieDto.getId().toString())
+            .collect(Collectors.toList());
+    }
+
+    /**
+     * Creates an id that sorts by a number
+     * 
+     * @param number
+     *            The number
+     * @return The id
+     */
+    private static String createId(final int number) {
+        return new UUID(0, number).toString();
+    }
+
+    /**
+     * Creates a test movie index
+     * 
+     * @param id
+     *            The id of the movie
+     * @param title
+     *            The title of the movie
+     * @param description
+     *            The description of the movie
+     * @param rating
+     *            The rating of the movie
+     * @param releaseYear
+     *            The release year of the movie
+     * @param totalLikes
+     *            The total likes of the movie
+     * @return The movie index
+     */
+    private MovieIndex createMovieIndex(final String id, final String title, final String description,
+        final double rating, final int releaseYear, final long totalLikes) {
+
+        final MovieIndex movieIndex = new MovieIndex();
+        movieIndex.setId(id);
+        movieIndex.setTitle(title);
+        movieIndex.setDescription(description);
+        movieIndex.setRating(rating);
+        movieIndex.setReleaseYear(releaseYear);
+        movieIndex.setTotalLikes(totalLikes);
+        movieIndex.setCreator("creator");
+
+        return movieIndex;
+    }
+}
@@ -1,44 +1,88 @@
 package com.printezisn.moviestore.movieservice.movie.services;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.time.Instant;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.stream.Collectors;
 
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
-import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.elasticsearch.core.aggregation.AggregatedPage;
 
+import com.printezisn.moviestore.common.models.movie.MovieImportResultModel;
 import com.printezisn.moviestore.common.models.movie.MoviePagedResultModel;
 import com.printezisn.moviestore.common.dto.movie.MovieDto;
+import com.printezisn.moviestore.common.dto.movie.MovieLikeStatusDto;
+import com.printezisn.moviestore.common.dto.movie.MovieReindexStatusDto;
+import com.printezisn.moviestore.common.dto.movie.MovieSuggestionDto;
+import com.printezisn.moviestore.movieservice.configuration.properties.MovieCacheProperties;
+import com.printezisn.moviestore.movieservice.configuration.properties.SearchCacheProperties;
+import com.printezisn.moviestore.movieservice.configuration.properties.SearchFacetProperties;
+import com.printezisn.moviestore.movieservice.configuration.properties.SearchFallbackProperties;
+import com.printezisn.moviestore.movieservice.configuration.properties.SearchIndexProperties;
 import com.printezisn.moviestore.movieservice.movie.entities.Movie;
 import com.printezisn.moviestore.movieservice.movie.entities.MovieLike;
-import com.printezisn.moviestore.movieservice.movie.entities.MovieIndex;
 import com.printezisn.moviestore.movieservice.movie.exceptions.MovieConditionalException;
 import com.printezisn.moviestore.movieservice.movie.exceptions.MovieNotFoundException;
 import com.printezisn.moviestore.movieservice.movie.exceptions.MoviePersistenceException;
+import com.printezisn.moviestore.movieservice.movie.exceptions.MovieValidationException;
+import com.printezisn.moviestore.movieservice.movie.helpers.MovieCache;
+import com.printezisn.moviestore.movieservice.movie.helpers.MovieExportFormat;
+import com.printezisn.moviestore.movieservice.movie.helpers.MovieExporter;
+import com.printezisn.moviestore.movieservice.movie.helpers.MovieImporter;
+import com.printezisn.moviestore.movieservice.movie.helpers.MovieReindexer;
 import com.printezisn.moviestore.movieservice.movie.helpers.MovieIndexHelper;
+import com.printezisn.moviestore.movieservice.movie.helpers.MovieIndexSweeper;
+import com.printezisn.moviestore.movieservice.movie.helpers.MovieLikeBuffer;
+import com.printezisn.moviestore.movieservice.movie.helpers.MovieLikeJournal;
+import com.printezisn.moviestore.movieservice.movie.helpers.MovieLikeReconciler;
+import com.printezisn.moviestore.movieservice.movie.helpers.MovieSearchCache;
+import com.printezisn.moviestore.movieservice.movie.helpers.MovieSearchCircuitBreaker;
+import com.printezisn.moviestore.movieservice.movie.helpers.MovieSuggester;
+import com.printezisn.moviestore.movieservice.movie.helpers.MovieSearchCursor;
+import com.printezisn.moviestore.movieservice.movie.helpers.MovieSearchFacets;
+import com.printezisn.moviestore.movieservice.movie.helpers.MovieSearchFilter;
 import com.printezisn.moviestore.movieservice.movie.mappers.MovieMapper;
 import com.printezisn.moviestore.movieservice.movie.repositories.MovieLikeRepository;
 import com.printezisn.moviestore.movieservice.movie.repositories.MovieRepository;
 import com.printezisn.moviestore.movieservice.movie.repositories.MovieIndexRepository;
 import com.printezisn.moviestore.movieservice.movie.services.MovieServiceImpl;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.when;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.eq;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.anyBoolean;
+import static org.mockito.Mockito.anyLong;
 import static org.mockito.Mockito.anyString;
 
 /**
@@ -70,7 +114,35 @@ public class MovieServiceImplTest {
     private MovieMapper movieMapper;
 
     @Mock
-    private Page<MovieIndex> pagedResult;
+    private MovieIndexSweeper movieIndexSweeper;
+
+    @Mock
+    private MovieLikeBuffer movieLikeBuffer;
+
+    @Mock
+    private MovieLikeJournal movieLikeJournal;
+
+    @Mock
+    private MovieLikeReconciler movieLikeReconciler;
+
+    @Mock
+    private MovieSuggester movieSuggester;
+
+    @Mock
+    private MovieImporter movieImporter;
+
+    @Mock
+    private MovieExporter movieExporter;
+
+    @Mock
+    private MovieReindexer movieReindexer;
+
+    @Mock
+    private AggregatedPage<MovieDto> pagedResult;
+
+    private SearchIndexProperties searchIndexProperties;
+
+    private SearchFallbackProperties searchFallbackProperties;
 
     private MovieServiceImpl movieService;
 
@@ -81,8 +153,18 @@ public class MovieServiceImplTest {
     public void setUp() {
         MockitoAnnotations.initMocks(this);
 
+        when(movieIndexHelper.indexMovie(any())).thenReturn(CompletableFuture.completedFuture(null));
+
+        searchIndexProperties = new SearchIndexProperties();
+        searchFallbackProperties = new SearchFallbackProperties();
         this.movieService = new MovieServiceImpl(movieRepository, movieLikeRepository,
-            movieIndexRepository, movieIndexHelper, movieMapper);
+            movieIndexRepository, movieIndexHelper, movieMapper, movieIndexSweeper, movieLikeBuffer,
+            movieLikeJournal, movieLikeReconciler,
+            new MovieSearchCache(new SearchCacheProperties(), new SimpleMeterRegistry()),
+            new MovieCache(new MovieCacheProperties(), new SimpleMeterRegistry()), movieSuggester,
+            new MovieSearchFacets(new SearchFacetProperties()),
+            new MovieSearchCircuitBreaker(searchFallbackProperties, new SimpleMeterRegistry()), movieImporter,
+            movieExporter, Optional.of(movieReindexer), searchIndexProperties, searchFallbackProperties);
     }
 
     /**
@@ -91,19 +173,19 @@ public class MovieServiceImplTest {
     @Test
     public void test_searchMovies_success() throws Exception {
         final MovieDto movieDto = new MovieDto();
-        final MovieIndex movieIndex = new MovieIndex();
-        final List<MovieIndex> contentList = Arrays.asList(movieIndex);
+        final List<MovieDto> contentList = Arrays.asList(movieDto);
         final ArgumentCaptor<Pageable> pageableCaptor = ArgumentCaptor.forClass(Pageable.class);
 
-        when(movieMapper.movieIndexToMovieDto(movieIndex)).thenReturn(movieDto);
-        when(movieIndexRepository.search(eq(Optional.of(SEARCH_TEXT)), pageableCaptor.capture()))
+        when(movieIndexRepository.search(eq(Optional.of(SEARCH_TEXT)), eq(Collections.emptySet()),
+            eq(Collections.emptySet()), eq(false), eq(true), pageableCaptor.capture()))
             .thenReturn(pagedResult);
         when(pagedResult.getContent()).thenReturn(contentList);
         when(pagedResult.getNumber()).thenReturn(PAGE_NUMBER);
         when(pagedResult.getTotalPages()).thenReturn(TOTAL_PAGES);
 
         final MoviePagedResultModel result = movieService.searchMovies(Optional.of(SEARCH_TEXT),
-            Optional.of(PAGE_NUMBER), Optional.of(SORT_FIELD), IS_ASCENDING);
+            Optional.of(PAGE_NUMBER), Optional.of(SORT_FIELD), IS_ASCENDING, Optional.empty(),
+            Collections.emptyList(), false, Collections.emptyList(), Optional.empty(), true);
 
         assertEquals(PAGE_NUMBER, pageableCaptor.getValue().getPageNumber());
         assertEquals(IS_ASCENDING, pageableCaptor.getValue().getSort().getOrderFor(SORT_FIELD).isAscending());
@@ -122,19 +204,19 @@ public class MovieServiceImplTest {
     @Test
     public void test_searchMovies_defaultValue() throws Exception {
         final MovieDto movieDto = new MovieDto();
-        final MovieIndex movieIndex = new MovieIndex();
-        final List<MovieIndex> contentList = Arrays.asList(movieIndex);
+        final List<MovieDto> contentList = Arrays.asList(movieDto);
         final ArgumentCaptor<Pageable> pageableCaptor = ArgumentCaptor.forClass(Pageable.class);
 
-        when(movieMapper.movieIndexToMovieDto(movieIndex)).thenReturn(movieDto);
-        when(movieIndexRepository.search(eq(Optional.empty()), pageableCaptor.capture()))
+        when(movieIndexRepository.search(eq(Optional.empty()), eq(Collections.emptySet()),
+            eq(Collections.emptySet()), eq(false), eq(true), pageableCaptor.capture()))
             .thenReturn(pagedResult);
         when(pagedResult.getContent()).thenReturn(contentList);
         when(pagedResult.getNumber()).thenReturn(DEFAULT_PAGE_NUMBER);
         when(pagedResult.getTotalPages()).thenReturn(TOTAL_PAGES);
 
         final MoviePagedResultModel result = movieService.searchMovies(Optional.empty(),
-            Optional.empty(), Optional.empty(), IS_ASCENDING);
+            Optional.empty(), Optional.empty(), IS_ASCENDING, Optional.empty(), Collections.emptyList(), false,
+            Collections.emptyList(), Optional.empty(), true);
 
         assertEquals(DEFAULT_PAGE_NUMBER, pageableCaptor.getValue().getPageNumber());
         assertEquals(IS_ASCENDING, pageableCaptor.getValue().getSort().getOrderFor(DEFAULT_SORT_FIELD).isAscending());
@@ -154,19 +236,19 @@ public class MovieServiceImplTest {
     @Test
     public void test_searchMovies_invalidSortField() throws Exception {
         final MovieDto movieDto = new MovieDto();
-        final MovieIndex movieIndex = new MovieIndex();
-        final List<MovieIndex> contentList = Arrays.asList(movieIndex);
+        final List<MovieDto> contentList = Arrays.asList(movieDto);
         final ArgumentCaptor<Pageable> pageableCaptor = ArgumentCaptor.forClass(Pageable.class);
 
-        when(movieMapper.movieIndexToMovieDto(movieIndex)).thenReturn(movieDto);
-        when(movieIndexRepository.search(eq(Optional.of(SEARCH_TEXT)), pageableCaptor.capture()))
+        when(movieIndexRepository.search(eq(Optional.of(SEARCH_TEXT)), eq(Collections.emptySet()),
+            eq(Collections.emptySet()), eq(false), eq(true), pageableCaptor.capture()))
             .thenReturn(pagedResult);
         when(pagedResult.getContent()).thenReturn(contentList);
         when(pagedResult.getNumber()).thenReturn(PAGE_NUMBER);
         when(pagedResult.getTotalPages()).thenReturn(TOTAL_PAGES);
 
         final MoviePagedResultModel result = movieService.searchMovies(Optional.of(SEARCH_TEXT),
-            Optional.of(PAGE_NUMBER), Optional.of("wrong"), IS_ASCENDING);
+            Optional.of(PAGE_NUMBER), Optional.of("wrong"), IS_ASCENDING, Optional.empty(),
+            Collections.emptyList(), false, Collections.emptyList(), Optional.empty(), true);
 
         assertEquals(PAGE_NUMBER, pageableCaptor.getValue().getPageNumber());
         assertEquals(IS_ASCENDING, pageableCaptor.getValue().getSort().getOrderFor(DEFAULT_SORT_FIELD).isAscending());
@@ -185,19 +267,19 @@ public class MovieServiceImplTest {
     @Test
     public void test_searchMovies_invalidPageNumber() throws Exception {
         final MovieDto movieDto = new MovieDto();
-        final MovieIndex movieIndex = new MovieIndex();
-        final List<MovieIndex> contentList = Arrays.asList(movieIndex);
+        final List<MovieDto> contentList = Arrays.asList(movieDto);
         final ArgumentCaptor<Pageable> pageableCaptor = ArgumentCaptor.forClass(Pageable.class);
 
-        when(movieMapper.movieIndexToMovieDto(movieIndex)).thenReturn(movieDto);
-        when(movieIndexRepository.search(eq(Optional.of(SEARCH_TEXT)), pageableCaptor.capture()))
+        when(movieIndexRepository.search(eq(Optional.of(SEARCH_TEXT)), eq(Collections.emptySet()),
+            eq(Collections.emptySet()), eq(false), eq(true), pageableCaptor.capture()))
             .thenReturn(pagedResult);
         when(pagedResult.getContent()).thenReturn(contentList);
         when(pagedResult.getNumber()).thenReturn(DEFAULT_PAGE_NUMBER);
         when(pagedResult.getTotalPages()).thenReturn(TOTAL_PAGES);
 
         final MoviePagedResultModel result = movieService.searchMovies(Optional.of(SEARCH_TEXT),
-            Optional.of(-1), Optional.of(SORT_FIELD), IS_ASCENDING);
+            Optional.of(-1), Optional.of(SORT_FIELD), IS_ASCENDING, Optional.empty(), Collections.emptyList(), false,
+            Collections.emptyList(), Optional.empty(), true);
 
         assertEquals(DEFAULT_PAGE_NUMBER, pageableCaptor.getValue().getPageNumber());
         assertEquals(IS_ASCENDING, pageableCaptor.getValue().getSort().getOrderFor(SORT_FIELD).isAscending());
@@ -211,20 +293,460 @@ public class MovieServiceImplTest {
     }
 
     /**
-     * Tests the scenario in which the search operation throws a runtime exception
+     * Tests if the cursor of the next page points after the last movie of the
+     * page
+     */
+    @Test
+    public void test_searchMovies_nextCursor() throws Exception {
+        final MovieDto movieDto = new MovieDto();
+        movieDto.setId(UUID.randomUUID());
+        movieDto.setTotalLikes(7);
+
+        when(movieIndexRepository.search(eq(Optional.of(SEARCH_TEXT)), eq(Collections.emptySet()),
+            eq(Collections.emptySet()), eq(false), eq(true), any(Pageable.class)))
+            .thenReturn(pagedResult);
+        when(pagedResult.getContent()).thenReturn(Arrays.asList(movieDto));
+        when(pagedResult.getNumber()).thenReturn(PAGE_NUMBER);
+        when(pagedResult.hasContent()).thenReturn(true);
+        when(pagedResult.hasNext()).thenReturn(true);
+
+        final MoviePagedResultModel result = movieService.searchMovies(Optional.of(SEARCH_TEXT),
+            Optional.of(PAGE_NUMBER), Optional.of(SORT_FIELD), IS_ASCENDING, Optional.empty(),
+            Collections.emptyList(), false, Collections.emptyList(), Optional.empty(), true);
+        final MovieSearchCursor cursor = MovieSearchCursor.decode(result.getNextCursor());
+
+        assertTrue(result.isHasNext());
+        assertEquals(PAGE_NUMBER + 1, cursor.getPageNumber());
+        assertEquals(SORT_FIELD, cursor.getSortField());
+        assertEquals(IS_ASCENDING, cursor.isAscending());
+        assertEquals(7L, cursor.getSortValue());
+        assertEquals(movieDto.getId().toString(), cursor.getId());
+    }
+
+    /**
+     * Tests if there is no cursor after the last page
+     */
+    @Test
+    public void test_searchMovies_lastPage() throws Exception {
+        when(movieIndexRepository.search(eq(Optional.of(SEARCH_TEXT)), eq(Collections.emptySet()),
+            eq(Collections.emptySet()), eq(false), eq(true), any(Pageable.class)))
+            .thenReturn(pagedResult);
+        when(pagedResult.getContent()).thenReturn(Arrays.asList(new MovieDto()));
+        when(pagedResult.hasContent()).thenReturn(true);
+        when(pagedResult.hasNext()).thenReturn(false);
+
+        final MoviePagedResultModel result = movieService.searchMovies(Optional.of(SEARCH_TEXT),
+            Optional.of(PAGE_NUMBER), Optional.of(SORT_FIELD), IS_ASCENDING, Optional.empty(),
+            Collections.emptyList(), false, Collections.emptyList(), Optional.empty(), true);
+
+        assertFalse(result.isHasNext());
+        assertNull(result.getNextCursor());
+    }
+
+    /**
+     * Tests if a search without counting asks the repository for the next page
+     * only
+     */
+    @Test
+    public void test_searchMovies_countFree() throws Exception {
+        final MovieDto movieDto = new MovieDto();
+        movieDto.setId(UUID.randomUUID());
+
+        when(movieIndexRepository.search(eq(Optional.of(SEARCH_TEXT)), eq(Collections.emptySet()),
+            eq(Collections.emptySet()), eq(false), eq(false), any(Pageable.class)))
+            .thenReturn(pagedResult);
+        when(pagedResult.getContent()).thenReturn(Arrays.asList(movieDto));
+        when(pagedResult.getNumber()).thenReturn(PAGE_NUMBER);
+        when(pagedResult.hasContent()).thenReturn(true);
+        when(pagedResult.hasNext()).thenReturn(true);
+
+        final MoviePagedResultModel result = movieService.searchMovies(Optional.of(SEARCH_TEXT),
+            Optional.of(PAGE_NUMBER), Optional.of(SORT_FIELD), IS_ASCENDING, Optional.empty(),
+            Collections.emptyList(), false, Collections.emptyList(), Optional.empty(), false);
+
+        assertTrue(result.isHasNext());
+        assertNotNull(result.getNextCursor());
+        verify(movieIndexRepository, never()).search(any(), any(), any(), anyBoolean(), eq(true), any());
+    }
+
+    /**
+     * Tests if a cursor continues the search after its movie, with its sorting
+     * and page number
+     */
+    @Test
+    public void test_searchMovies_cursor() throws Exception {
+        final String id = UUID.randomUUID().toString();
+        final String cursor = new MovieSearchCursor(PAGE_NUMBER, SORT_FIELD, !IS_ASCENDING, 7L, id).encode();
+        final ArgumentCaptor<Pageable> pageableCaptor = ArgumentCaptor.forClass(Pageable.class);
+        final ArgumentCaptor<Object[]> searchAfterCaptor = ArgumentCaptor.forClass(Object[].class);
+
+        when(movieIndexRepository.searchAfter(eq(Optional.of(SEARCH_TEXT)), eq(Collections.emptySet()),
+            eq(Collections.emptySet()), eq(false), eq(true),
+            pageableCaptor.capture(), searchAfterCaptor.capture())).thenReturn(pagedResult);
+        when(pagedResult.getContent()).thenReturn(Collections.emptyList());
+        when(pagedResult.getNumber()).thenReturn(PAGE_NUMBER);
+
+        final MoviePagedResultModel result = movieService.searchMovies(Optional.of(SEARCH_TEXT),
+            Optional.of(DEFAULT_PAGE_NUMBER), Optional.of(DEFAULT_SORT_FIELD), IS_ASCENDING, Optional.of(cursor),
+            Collections.emptyList(), false, Collections.emptyList(), Optional.empty(), true);
+
+        assertEquals(PAGE_NUMBER, pageableCaptor.getValue().getPageNumber());
+        assertFalse(pageableCaptor.getValue().getSort().getOrderFor(SORT_FIELD).isAscending());
+        assertNotNull(pageableCaptor.getValue().getSort().getOrderFor("id"));
+        assertArrayEquals(new Object[] { 7L, id }, searchAfterCaptor.getValue());
+        assertEquals(PAGE_NUMBER, result.getPageNumber());
+        assertEquals(SORT_FIELD, result.getSortField());
+        assertFalse(result.isAscending());
+        verify(movieIndexRepository, never()).search(any(Optional.class), any(), any(), anyBoolean(), eq(true),
+            any(Pageable.class));
+    }
+
+    /**
+     * Tests the scenario in which the cursor is invalid
+     */
+    @Test(expected = MovieValidationException.class)
+    public void test_searchMovies_invalidCursor() throws Exception {
+        final String cursor = new MovieSearchCursor(PAGE_NUMBER, "title", IS_ASCENDING, 7L,
+            UUID.randomUUID().toString()).encode();
+
+        movieService.searchMovies(Optional.of(SEARCH_TEXT), Optional.empty(), Optional.empty(), IS_ASCENDING,
+            Optional.of(cursor), Collections.emptyList(), false, Collections.emptyList(), Optional.empty(), true);
+    }
+
+    /**
+     * Tests if equivalent searches are served from the cache
+     */
+    @Test
+    public void test_searchMovies_cached() throws Exception {
+        when(movieIndexRepository.search(eq(Optional.of(SEARCH_TEXT)), eq(Collections.emptySet()),
+            eq(Collections.emptySet()), eq(false), eq(true), any(Pageable.class)))
+            .thenReturn(pagedResult);
+        when(pagedResult.getContent()).thenReturn(Collections.emptyList());
+
+        final MoviePagedResultModel result = movieService.searchMovies(Optional.of(SEARCH_TEXT),
+            Optional.of(PAGE_NUMBER), Optional.of(SORT_FIELD), IS_ASCENDING, Optional.empty(),
+            Collections.emptyList(), false, Collections.emptyList(), Optional.empty(), true);
+        final MoviePagedResultModel cachedResult = movieService.searchMovies(Optional.of(" TEST "),
+            Optional.of(PAGE_NUMBER), Optional.of(SORT_FIELD), IS_ASCENDING, Optional.empty(),
+            Collections.emptyList(), false, Collections.emptyList(), Optional.empty(), true);
+
+        assertSame(result, cachedResult);
+        verify(movieIndexRepository, times(1)).search(any(Optional.class), any(), any(), anyBoolean(), eq(true),
+            any(Pageable.class));
+    }
+
+    /**
+     * Tests if the filters are passed to the search index
+     */
+    @Test
+    public void test_searchMovies_filters() throws Exception {
+        final Set<MovieSearchFilter> filters = new HashSet<>(Arrays.asList(
+            new MovieSearchFilter("releaseYear", 1990.0, 2000.0),
+            new MovieSearchFilter("rating", 8.0, null)));
+
+        when(movieIndexRepository.search(eq(Optional.of(SEARCH_TEXT)), eq(filters), eq(Collections.emptySet()),
+            eq(false), eq(true),
+            any(Pageable.class))).thenReturn(pagedResult);
+        when(pagedResult.getContent()).thenReturn(Collections.emptyList());
+
+        final MoviePagedResultModel result = movieService.searchMovies(Optional.of(SEARCH_TEXT),
+            Optional.of(PAGE_NUMBER), Optional.of(SORT_FIELD), IS_ASCENDING, Optional.empty(),
+            Arrays.asList("releaseYear:1990-2000", "rating:8-"), false, Collections.emptyList(), Optional.empty(),
+            true);
+
+        assertNull(result.getFacets());
+        verify(movieIndexRepository).search(eq(Optional.of(SEARCH_TEXT)), eq(filters), eq(Collections.emptySet()),
+            eq(false), eq(true),
+            any(Pageable.class));
+    }
+
+    /**
+     * Tests the scenario in which a filter is invalid
+     */
+    @Test(expected = MovieValidationException.class)
+    public void test_searchMovies_invalidFilter() throws Exception {
+        movieService.searchMovies(Optional.of(SEARCH_TEXT), Optional.empty(), Optional.empty(), IS_ASCENDING,
+            Optional.empty(), Arrays.asList("title:a-b"), false, Collections.emptyList(), Optional.empty(), true);
+    }
+
+    /**
+     * Tests if only the requested fields are fetched, along with the id and the
+     * sorting field
+     */
+    @Test
+    public void test_searchMovies_fields() throws Exception {
+        final Set<String> fields = new HashSet<>(Arrays.asList("id", "title", SORT_FIELD));
+
+        when(movieIndexRepository.search(eq(Optional.of(SEARCH_TEXT)), eq(Collections.emptySet()), eq(fields),
+            eq(false), eq(true), any(Pageable.class))).thenReturn(pagedResult);
+        when(pagedResult.getContent()).thenReturn(Collections.emptyList());
+
+        movieService.searchMovies(Optional.of(SEARCH_TEXT), Optional.of(PAGE_NUMBER), Optional.of(SORT_FIELD),
+            IS_ASCENDING, Optional.empty(), Collections.emptyList(), false, Arrays.asList("title"),
+            Optional.empty(), true);
+
+        verify(movieIndexRepository).search(eq(Optional.of(SEARCH_TEXT)), eq(Collections.emptySet()), eq(fields),
+            eq(false), eq(true), any(Pageable.class));
+    }
+
+    /**
+     * Tests the scenario in which a field is invalid
+     */
+    @Test(expected = MovieValidationException.class)
+    public void test_searchMovies_invalidField() throws Exception {
+        movieService.searchMovies(Optional.of(SEARCH_TEXT), Optional.empty(), Optional.empty(), IS_ASCENDING,
+            Optional.empty(), Collections.emptyList(), false, Arrays.asList("pendingLikes"), Optional.empty(), true);
+    }
+
+    /**
+     * Tests if the page size is limited to the maximum
+     */
+    @Test
+    public void test_searchMovies_size() throws Exception {
+        final ArgumentCaptor<Pageable> pageableCaptor = ArgumentCaptor.forClass(Pageable.class);
+
+        when(movieIndexRepository.search(eq(Optional.of(SEARCH_TEXT)), eq(Collections.emptySet()),
+            eq(Collections.emptySet()), eq(false), eq(true), pageableCaptor.capture())).thenReturn(pagedResult);
+        when(pagedResult.getContent()).thenReturn(Collections.emptyList());
+
+        movieService.searchMovies(Optional.of(SEARCH_TEXT), Optional.of(PAGE_NUMBER), Optional.of(SORT_FIELD),
+            IS_ASCENDING, Optional.empty(), Collections.emptyList(), false, Collections.emptyList(), Optional.of(25),
+            true);
+        movieService.searchMovies(Optional.of(SEARCH_TEXT), Optional.of(PAGE_NUMBER), Optional.of(SORT_FIELD),
+            IS_ASCENDING, Optional.empty(), Collections.emptyList(), false, Collections.emptyList(),
+            Optional.of(1000), true);
+        movieService.searchMovies(Optional.of(SEARCH_TEXT), Optional.of(PAGE_NUMBER), Optional.of(SORT_FIELD),
+            IS_ASCENDING, Optional.empty(), Collections.emptyList(), false, Collections.emptyList(),
+            Optional.empty(), true);
+
+        assertEquals(Arrays.asList(25, 100, 10), pageableCaptor.getAllValues().stream()
+            .map(Pageable::getPageSize)
+            .collect(Collectors.toList()));
+    }
+
+    /**
+     * Tests if the facets are aggregated once and reused by the other pages of
+     * the same search
+     */
+    @Test
+    public void test_searchMovies_facets() throws Exception {
+        when(movieIndexRepository.search(eq(Optional.of(SEARCH_TEXT)), eq(Collections.emptySet()),
+            eq(Collections.emptySet()), anyBoolean(), eq(true),
+            any(Pageable.class))).thenReturn(pagedResult);
+        when(pagedResult.getContent()).thenReturn(Collections.emptyList());
+
+        final MoviePagedResultModel result = movieService.searchMovies(Optional.of(SEARCH_TEXT),
+            Optional.of(PAGE_NUMBER), Optional.of(SORT_FIELD), IS_ASCENDING, Optional.empty(),
+            Collections.emptyList(), true, Collections.emptyList(), Optional.empty(), true);
+        final MoviePagedResultModel nextResult = movieService.searchMovies(Optional.of(SEARCH_TEXT),
+            Optional.of(PAGE_NUMBER + 1), Optional.of(SORT_FIELD), IS_ASCENDING, Optional.empty(),
+            Collections.emptyList(), true, Collections.emptyList(), Optional.empty(), true);
+
+        assertNotNull(result.getFacets());
+        assertSame(result.getFacets(), nextResult.getFacets());
+        verify(movieIndexRepository).search(eq(Optional.of(SEARCH_TEXT)), eq(Collections.emptySet()),
+            eq(Collections.emptySet()), eq(true), eq(true), any(Pageable.class));
+        verify(movieIndexRepository).search(eq(Optional.of(SEARCH_TEXT)), eq(Collections.emptySet()),
+            eq(Collections.emptySet()), eq(false), eq(true), any(Pageable.class));
+    }
+
+    /**
+     * Tests if movies are searched in the database when the search index fails,
+     * and if the result is marked as degraded
+     */
+    @Test
+    public void test_searchMovies_fallback() throws Exception {
+        final Movie movie = new Movie();
+        final MovieDto movieDto = new MovieDto();
+        movieDto.setId(UUID.randomUUID());
+        movieDto.setTotalLikes(7);
+        final ArgumentCaptor<Pageable> pageableCaptor = ArgumentCaptor.forClass(Pageable.class);
+
+        when(movieIndexRepository.search(eq(Optional.of(SEARCH_TEXT)), eq(Collections.emptySet()),
+            eq(Collections.emptySet()), eq(false), eq(true), any(Pageable.class)))
+            .thenThrow(new RuntimeException());
+        when(movieRepository.searchActiveMovies(eq(Optional.of(SEARCH_TEXT)), eq(Collections.emptySet()),
+            eq(Collections.emptySet()), pageableCaptor.capture(), eq(null), eq(searchFallbackProperties.getMaxTime())))
+            .thenAnswer(invocation -> new PageImpl<>(Arrays.asList(movie), invocation.getArgument(3),
+                invocation.<Pageable> getArgument(3).getOffset() + 2));
+        when(movieMapper.movieToMovieDto(movie)).thenReturn(movieDto);
+
+        final MoviePagedResultModel result = movieService.searchMovies(Optional.of(SEARCH_TEXT),
+            Optional.of(PAGE_NUMBER), Optional.of(SORT_FIELD), IS_ASCENDING, Optional.empty(),
+            Collections.emptyList(), false, Collections.emptyList(), Optional.of(1), true);
+        final MovieSearchCursor cursor = MovieSearchCursor.decode(result.getNextCursor());
+
+        assertTrue(result.isDegraded());
+        assertEquals(Arrays.asList(movieDto), result.getEntries());
+        assertEquals(PAGE_NUMBER, result.getPageNumber());
+        assertTrue(result.isHasNext());
+        assertEquals(PAGE_NUMBER, pageableCaptor.getValue().getPageNumber());
+        assertEquals(PAGE_NUMBER + 1, cursor.getPageNumber());
+        assertEquals(SORT_FIELD, cursor.getSortField());
+        assertEquals(7L, cursor.getSortValue());
+    }
+
+    /**
+     * Tests if the page of a cursor is searched in the database after the movie
+     * of the cursor when the search index fails
+     */
+    @Test
+    public void test_searchMovies_fallbackCursor() throws Exception {
+        final MovieSearchCursor searchCursor = new MovieSearchCursor(2, SORT_FIELD, IS_ASCENDING, 7L,
+            UUID.randomUUID().toString());
+
+        when(movieIndexRepository.searchAfter(any(), any(), any(), anyBoolean(), anyBoolean(), any(Pageable.class),
+            any())).thenThrow(new RuntimeException());
+        when(movieRepository.searchActiveMovies(any(), any(), any(), any(Pageable.class), any(),
+            eq(searchFallbackProperties.getMaxTime())))
+            .thenReturn(new PageImpl<>(Collections.emptyList(), PageRequest.of(2, 10), 20));
+
+        final MoviePagedResultModel result = movieService.searchMovies(Optional.of(SEARCH_TEXT), Optional.empty(),
+            Optional.empty(), false, Optional.of(searchCursor.encode()), Collections.emptyList(), false,
+            Collections.emptyList(), Optional.empty(), true);
+
+        assertTrue(result.isDegraded());
+        assertNull(result.getNextCursor());
+        verify(movieRepository).searchActiveMovies(eq(Optional.of(SEARCH_TEXT)), eq(Collections.emptySet()),
+            eq(Collections.emptySet()), any(Pageable.class), eq(searchCursor.getSearchAfter()),
+            eq(searchFallbackProperties.getMaxTime()));
+    }
+
+    /**
+     * Tests if the search index is used without a fallback when the fallback is
+     * disabled
+     */
+    @Test(expected = MoviePersistenceException.class)
+    public void test_searchMovies_fallbackDisabled() throws Exception {
+        searchFallbackProperties.setEnabled(false);
+
+        when(movieIndexRepository.search(eq(Optional.of(SEARCH_TEXT)), eq(Collections.emptySet()),
+            eq(Collections.emptySet()), eq(false), eq(true), any(Pageable.class)))
+            .thenThrow(new RuntimeException());
+
+        try {
+            movieService.searchMovies(Optional.of(SEARCH_TEXT), Optional.of(PAGE_NUMBER), Optional.of(SORT_FIELD),
+                IS_ASCENDING, Optional.empty(), Collections.emptyList(), false, Collections.emptyList(),
+                Optional.empty(), true);
+        }
+        finally {
+            verify(movieRepository, never()).searchActiveMovies(any(), any(), any(), any(), any(), anyLong());
+        }
+    }
+
+    /**
+     * Tests the scenario in which both the search index and the fallback throw a
+     * runtime exception
      */
     @Test(expected = MoviePersistenceException.class)
     public void test_searchMovies_exception() throws Exception {
-        final MovieDto movieDto = new MovieDto();
-        final MovieIndex movieIndex = new MovieIndex();
         final ArgumentCaptor<Pageable> pageableCaptor = ArgumentCaptor.forClass(Pageable.class);
 
-        when(movieMapper.movieIndexToMovieDto(movieIndex)).thenReturn(movieDto);
-        when(movieIndexRepository.search(eq(Optional.of(SEARCH_TEXT)), pageableCaptor.capture()))
+        when(movieIndexRepository.search(eq(Optional.of(SEARCH_TEXT)), eq(Collections.emptySet()),
+            eq(Collections.emptySet()), eq(false), eq(true), pageableCaptor.capture()))
+            .thenThrow(new RuntimeException());
+        when(movieRepository.searchActiveMovies(any(), any(), any(), any(), any(), anyLong()))
             .thenThrow(new RuntimeException());
 
         movieService.searchMovies(Optional.of(SEARCH_TEXT), Optional.of(PAGE_NUMBER), Optional.of(SORT_FIELD),
-            IS_ASCENDING);
+            IS_ASCENDING, Optional.empty(), Collections.emptyList(), false, Collections.emptyList(), Optional.empty(),
+            true);
+    }
+
+    /**
+     * Tests if movies are imported by the importer
+     */
+    @Test
+    public void test_importMovies_success() throws Exception {
+        final InputStream input = new ByteArrayInputStream(new byte[0]);
+        final MovieImportResultModel result = MovieImportResultModel.builder().imported(3).build();
+
+        when(movieImporter.importMovies(input, true)).thenReturn(result);
+
+        assertSame(result, movieService.importMovies(input, true));
+    }
+
+    /**
+     * Tests the scenario in which the stream of an import fails to be read
+     */
+    @Test(expected = MoviePersistenceException.class)
+    public void test_importMovies_exception() throws Exception {
+        final InputStream input = new ByteArrayInputStream(new byte[0]);
+
+        when(movieImporter.importMovies(input, false)).thenThrow(new IOException());
+
+        movieService.importMovies(input, false);
+    }
+
+    /**
+     * Tests if movies are exported by the exporter
+     */
+    @Test
+    public void test_exportMovies_success() throws Exception {
+        final OutputStream output = new ByteArrayOutputStream();
+        final Optional<Instant> updatedSince = Optional.of(Instant.now());
+
+        movieService.exportMovies(output, MovieExportFormat.CSV, updatedSince);
+
+        verify(movieExporter).exportMovies(output, MovieExportFormat.CSV, updatedSince);
+    }
+
+    /**
+     * Tests the scenario in which the stream of an export fails to be written
+     */
+    @Test(expected = MoviePersistenceException.class)
+    public void test_exportMovies_exception() throws Exception {
+        final OutputStream output = new ByteArrayOutputStream();
+
+        when(movieExporter.exportMovies(output, MovieExportFormat.NDJSON, Optional.empty()))
+            .thenThrow(new IOException());
+
+        movieService.exportMovies(output, MovieExportFormat.NDJSON, Optional.empty());
+    }
+
+    /**
+     * Tests if a reindex is started by the reindexer
+     */
+    @Test
+    public void test_startReindex_success() throws Exception {
+        final MovieReindexStatusDto status = new MovieReindexStatusDto();
+
+        when(movieReindexer.start()).thenReturn(status);
+
+        assertSame(status, movieService.startReindex());
+    }
+
+    /**
+     * Tests the scenario in which a reindex is already running
+     */
+    @Test(expected = MovieConditionalException.class)
+    public void test_startReindex_conflict() throws Exception {
+        when(movieReindexer.start()).thenThrow(new MovieConditionalException());
+
+        movieService.startReindex();
+    }
+
+    /**
+     * Tests the scenario in which there was never a reindex
+     */
+    @Test(expected = MovieNotFoundException.class)
+    public void test_getReindexStatus_notFound() throws Exception {
+        when(movieReindexer.getStatus()).thenReturn(Optional.empty());
+
+        movieService.getReindexStatus();
+    }
+
+    /**
+     * Tests if movies are suggested from the suggester
+     */
+    @Test
+    public void test_suggestMovies_success() {
+        final MovieSuggestionDto suggestion = new MovieSuggestionDto();
+        suggestion.setId(UUID.randomUUID());
+
+        when(movieSuggester.suggest(SEARCH_TEXT)).thenReturn(Arrays.asList(suggestion));
+
+        assertEquals(Arrays.asList(suggestion), movieService.suggestMovies(SEARCH_TEXT));
     }
 
     /**
@@ -233,23 +755,29 @@ public class MovieServiceImplTest {
     @Test(expected = MovieNotFoundException.class)
     public void test_getMovie_notFound() throws Exception {
         final UUID id = UUID.randomUUID();
-        when(movieRepository.findById(id.toString())).thenReturn(Optional.empty());
+        when(movieRepository.findActiveMovie(id.toString())).thenReturn(Optional.empty());
 
         movieService.getMovie(id);
     }
 
     /**
-     * Tests the scenario in which the movie is deleted
+     * Tests if a movie that is not found is cached as not found
      */
-    @Test(expected = MovieNotFoundException.class)
-    public void test_getMovie_deleted() throws Exception {
+    @Test
+    public void test_getMovie_notFoundCached() throws Exception {
         final UUID id = UUID.randomUUID();
-        final Movie movie = new Movie();
-        movie.setDeleted(true);
-
-        when(movieRepository.findById(id.toString())).thenReturn(Optional.of(movie));
-
-        movieService.getMovie(id);
+        when(movieRepository.findActiveMovie(id.toString())).thenReturn(Optional.empty());
+
+        for (int i = 0; i < 2; i++) {
+            try {
+                movieService.getMovie(id);
+            }
+            catch (final MovieNotFoundException ex) {
+                // Expected
+            }
+        }
+
+        verify(movieRepository, times(1)).findActiveMovie(id.toString());
     }
 
     /**
@@ -261,7 +789,7 @@ public class MovieServiceImplTest {
         final Movie movie = new Movie();
         final MovieDto movieDto = new MovieDto();
 
-        when(movieRepository.findById(id.toString())).thenReturn(Optional.of(movie));
+        when(movieRepository.findActiveMovie(id.toString())).thenReturn(Optional.of(movie));
         when(movieMapper.movieToMovieDto(movie)).thenReturn(movieDto);
 
         final MovieDto result = movieService.getMovie(id);
@@ -269,6 +797,31 @@ public class MovieServiceImplTest {
         assertEquals(movieDto, result);
     }
 
+    /**
+     * Tests if a movie is read again after it's updated
+     */
+    @Test
+    public void test_getMovie_invalidatedOnUpdate() throws Exception {
+        final UUID id = UUID.randomUUID();
+        final Movie movie = new Movie();
+        movie.setId(id.toString());
+        final MovieDto movieDto = new MovieDto();
+        movieDto.setId(id);
+
+        when(movieRepository.findActiveMovie(id.toString())).thenReturn(Optional.of(movie));
+        when(movieRepository.findById(id.toString())).thenReturn(Optional.of(movie));
+        when(movieMapper.movieToMovieDto(movie)).thenReturn(movieDto);
+        when(movieMapper.movieDtoToMovie(movieDto)).thenReturn(new Movie());
+        when(movieRepository.updateMovie(any(), any())).thenReturn(1L);
+
+        movieService.getMovie(id);
+        movieService.getMovie(id);
+        movieService.updateMovie(movieDto);
+        movieService.getMovie(id);
+
+        verify(movieRepository, times(2)).findActiveMovie(id.toString());
+    }
+
     /**
      * Tests the scenario in which the get operation throws a runtime exception
      */
@@ -276,7 +829,7 @@ public class MovieServiceImplTest {
     public void test_getMovie_exception() throws Exception {
         final UUID id = UUID.randomUUID();
 
-        when(movieRepository.findById(id.toString())).thenThrow(new RuntimeException());
+        when(movieRepository.findActiveMovie(id.toString())).thenThrow(new RuntimeException());
 
         movieService.getMovie(id);
     }
@@ -310,6 +863,42 @@ public class MovieServiceImplTest {
         assertNotNull(movie.getPendingUnlikes().size());
     }
 
+    /**
+     * Tests if movie creation doesn't wait for the bulk write of the search index
+     * by default
+     */
+    @Test
+    public void test_createMovie_doesNotWaitForIndexWrite() throws Exception {
+        final MovieDto movieDto = new MovieDto();
+        final Movie movie = new Movie();
+
+        when(movieMapper.movieDtoToMovie(movieDto)).thenReturn(movie);
+        when(movieIndexHelper.indexMovie(movie)).thenReturn(new CompletableFuture<>());
+
+        assertEquals(movieDto, movieService.createMovie(movieDto));
+        verify(movieIndexHelper).indexMovie(movie);
+    }
+
+    /**
+     * Tests if movie creation waits for the bulk write of the search index when
+     * the requests read their own writes
+     */
+    @Test(expected = CompletionException.class)
+    public void test_createMovie_waitsForIndexWrite() throws Exception {
+        searchIndexProperties.setWaitForIndexWrite(true);
+        searchIndexProperties.setBulkRefreshPolicy("wait_for");
+
+        final MovieDto movieDto = new MovieDto();
+        final Movie movie = new Movie();
+        final CompletableFuture<Void> indexing = new CompletableFuture<>();
+        indexing.completeExceptionally(new RuntimeException());
+
+        when(movieMapper.movieDtoToMovie(movieDto)).thenReturn(movie);
+        when(movieIndexHelper.indexMovie(movie)).thenReturn(indexing);
+
+        movieService.createMovie(movieDto);
+    }
+
     /**
      * Tests the scenario in which the create operation throws a runtime exception
      */
@@ -387,7 +976,43 @@ public class MovieServiceImplTest {
         assertEquals(1, updatedMovie.getPendingUnlikes().size());
         assertTrue(updatedMovie.getPendingUnlikes().contains("account2"));
 
-        verify(movieIndexHelper).indexMovie(movie);
+        verify(movieIndexHelper).indexMovie(updatedMovie);
+    }
+
+    /**
+     * Tests if an edited movie that has been liked is marked as indexed, because
+     * the indexed state is stored only if the likes revision hasn't changed
+     */
+    @Test
+    public void test_updateMovie_likedMovie() throws Exception {
+        final MovieDto movieDto = new MovieDto();
+        movieDto.setId(UUID.randomUUID());
+
+        final String currentRevision = UUID.randomUUID().toString();
+        final String likesRevision = UUID.randomUUID().toString();
+        final Movie movie = new Movie();
+        movie.setRevision(currentRevision);
+        movie.setLikesRevision(likesRevision);
+        movie.setTotalLikes(2);
+
+        final Movie updatedMovie = new Movie();
+
+        when(movieRepository.findById(movieDto.getId().toString())).thenReturn(Optional.of(movie));
+        when(movieMapper.movieDtoToMovie(movieDto)).thenReturn(updatedMovie);
+        when(movieRepository.updateMovie(updatedMovie, currentRevision)).thenReturn(1L);
+        when(movieIndexHelper.indexMovie(updatedMovie)).thenAnswer(invocation -> {
+            final Movie indexedMovie = invocation.getArgument(0);
+            if (likesRevision.equals(indexedMovie.getLikesRevision())) {
+                indexedMovie.setUpdated(false);
+            }
+
+            return CompletableFuture.completedFuture(null);
+        });
+
+        movieService.updateMovie(movieDto);
+
+        assertEquals(likesRevision, updatedMovie.getLikesRevision());
+        assertFalse(updatedMovie.isUpdated());
     }
 
     /**
@@ -521,77 +1146,98 @@ public class MovieServiceImplTest {
     }
 
     /**
-     * Tests the scenario in which the movie is not found
+     * Tests the scenario in which the movie is not found or is deleted
      */
     @Test(expected = MovieNotFoundException.class)
     public void test_likeMovie_movieNotFound() throws Exception {
         final UUID movieId = UUID.randomUUID();
 
-        when(movieRepository.findById(movieId.toString())).thenReturn(Optional.empty());
+        when(movieRepository.likeMovie(movieId.toString(), "test_account")).thenReturn(Optional.empty());
 
         movieService.likeMovie(movieId, "test_account");
     }
 
     /**
-     * Tests the scenario in which the movie is deleted
+     * Tests if the movie is liked successfully
      */
-    @Test(expected = MovieNotFoundException.class)
-    public void test_likeMovie_deleted() throws Exception {
+    @Test
+    public void test_likeMovie_success() throws Exception {
         final UUID movieId = UUID.randomUUID();
+        final String account = "test_account";
         final Movie movie = new Movie();
-        movie.setDeleted(true);
 
-        when(movieRepository.findById(movieId.toString())).thenReturn(Optional.of(movie));
+        when(movieRepository.likeMovie(movieId.toString(), account)).thenReturn(Optional.of(movie));
 
-        movieService.likeMovie(movieId, "test_account");
+        movieService.likeMovie(movieId, account);
+
+        verify(movieRepository, never()).findById(anyString());
+        verify(movieRepository, never()).updateMovie(any(), anyString());
+        verify(movieIndexHelper).indexMovie(movie);
     }
 
     /**
-     * Tests if the movie is liked successfully
+     * Tests if the like is added to the buffer when likes are buffered
      */
     @Test
-    public void test_likeMovie_success() throws Exception {
+    public void test_likeMovie_buffered() throws Exception {
         final UUID movieId = UUID.randomUUID();
         final String account = "test_account";
 
-        final String currentRevision = UUID.randomUUID().toString();
-        final Movie movie = new Movie();
-        movie.setRevision(currentRevision);
-        movie.setPendingLikes(new HashSet<>());
-        movie.setPendingUnlikes(new HashSet<>(Arrays.asList(account)));
-
-        when(movieRepository.findById(movieId.toString())).thenReturn(Optional.of(movie));
-        when(movieRepository.updateMovie(movie, currentRevision)).thenReturn(1L);
+        when(movieLikeBuffer.isEnabled()).thenReturn(true);
+        mockActiveMovie(movieId);
 
         movieService.likeMovie(movieId, account);
 
-        assertEquals(1, movie.getPendingLikes().size());
-        assertTrue(movie.getPendingLikes().contains(account));
-        assertEquals(0, movie.getPendingUnlikes().size());
+        verify(movieLikeBuffer).add(movieId.toString(), account, true);
+        verify(movieRepository, never()).likeMovie(anyString(), anyString());
+        verify(movieIndexHelper, never()).indexMovie(any());
+    }
 
-        verify(movieIndexHelper).indexMovie(movie);
+    /**
+     * Tests the scenario in which likes are buffered and the movie is not found
+     * or is deleted
+     */
+    @Test(expected = MovieNotFoundException.class)
+    public void test_likeMovie_bufferedMovieNotFound() throws Exception {
+        final UUID movieId = UUID.randomUUID();
+
+        when(movieLikeBuffer.isEnabled()).thenReturn(true);
+        when(movieRepository.findActiveMovie(movieId.toString())).thenReturn(Optional.empty());
+
+        movieService.likeMovie(movieId, "test_account");
     }
 
     /**
-     * Tests the scenario in which the like operation throws a conditional exception
+     * Tests if the like is appended to the journal when likes are journaled
      */
-    @Test(expected = MovieConditionalException.class)
-    public void test_likeMovie_conditionalException() throws Exception {
+    @Test
+    public void test_likeMovie_journaled() throws Exception {
         final UUID movieId = UUID.randomUUID();
         final String account = "test_account";
 
-        final String currentRevision = UUID.randomUUID().toString();
-        final Movie movie = new Movie();
-        movie.setRevision(currentRevision);
-        movie.setPendingLikes(new HashSet<>());
-        movie.setPendingUnlikes(new HashSet<>());
+        when(movieLikeJournal.isEnabled()).thenReturn(true);
+        when(movieLikeBuffer.isEnabled()).thenReturn(true);
+        mockActiveMovie(movieId);
 
-        final Movie updatedMovie = new Movie();
+        movieService.likeMovie(movieId, account);
 
-        when(movieRepository.findById(movieId.toString())).thenReturn(Optional.of(movie));
-        when(movieRepository.updateMovie(updatedMovie, currentRevision)).thenReturn(0L);
+        verify(movieLikeJournal).append(movieId.toString(), account, true);
+        verify(movieLikeBuffer, never()).add(anyString(), anyString(), anyBoolean());
+        verify(movieRepository, never()).likeMovie(anyString(), anyString());
+    }
 
-        movieService.likeMovie(movieId, account);
+    /**
+     * Tests the scenario in which likes are journaled and the movie is not found
+     * or is deleted
+     */
+    @Test(expected = MovieNotFoundException.class)
+    public void test_likeMovie_journaledMovieNotFound() throws Exception {
+        final UUID movieId = UUID.randomUUID();
+
+        when(movieLikeJournal.isEnabled()).thenReturn(true);
+        when(movieRepository.findActiveMovie(movieId.toString())).thenReturn(Optional.empty());
+
+        movieService.likeMovie(movieId, "test_account");
     }
 
     /**
@@ -602,87 +1248,104 @@ public class MovieServiceImplTest {
         final UUID movieId = UUID.randomUUID();
         final String account = "test_account";
 
-        final String currentRevision = UUID.randomUUID().toString();
-        final Movie movie = new Movie();
-        movie.setRevision(currentRevision);
-
-        when(movieRepository.findById(movieId.toString())).thenReturn(Optional.of(movie));
-        when(movieRepository.updateMovie(movie, currentRevision)).thenThrow(new RuntimeException());
+        when(movieRepository.likeMovie(movieId.toString(), account)).thenThrow(new RuntimeException());
 
         movieService.likeMovie(movieId, account);
     }
 
     /**
-     * Tests the scenario in which the movie is not found
+     * Tests the scenario in which the movie is not found or is deleted
      */
     @Test(expected = MovieNotFoundException.class)
     public void test_unlikeMovie_movieNotFound() throws Exception {
         final UUID movieId = UUID.randomUUID();
 
-        when(movieRepository.findById(movieId.toString())).thenReturn(Optional.empty());
+        when(movieRepository.unlikeMovie(movieId.toString(), "test_account")).thenReturn(Optional.empty());
 
         movieService.unlikeMovie(movieId, "test_account");
     }
 
     /**
-     * Tests the scenario in which the movie is deleted
+     * Tests if the movie is unliked successfully
      */
-    @Test(expected = MovieNotFoundException.class)
-    public void test_unlikeMovie_deleted() throws Exception {
+    @Test
+    public void test_unlikeMovie_success() throws Exception {
         final UUID movieId = UUID.randomUUID();
+        final String account = "test_account";
         final Movie movie = new Movie();
-        movie.setDeleted(true);
 
-        when(movieRepository.findById(movieId.toString())).thenReturn(Optional.of(movie));
+        when(movieRepository.unlikeMovie(movieId.toString(), account)).thenReturn(Optional.of(movie));
 
-        movieService.unlikeMovie(movieId, "test_account");
+        movieService.unlikeMovie(movieId, account);
+
+        verify(movieRepository, never()).findById(anyString());
+        verify(movieRepository, never()).updateMovie(any(), anyString());
+        verify(movieIndexHelper).indexMovie(movie);
     }
 
     /**
-     * Tests if the movie is unliked successfully
+     * Tests if the unlike is added to the buffer when likes are buffered
      */
     @Test
-    public void test_unlikeMovie_success() throws Exception {
+    public void test_unlikeMovie_buffered() throws Exception {
         final UUID movieId = UUID.randomUUID();
         final String account = "test_account";
 
-        final String currentRevision = UUID.randomUUID().toString();
-        final Movie movie = new Movie();
-        movie.setRevision(currentRevision);
-        movie.setPendingLikes(new HashSet<>(Arrays.asList(account)));
-        movie.setPendingUnlikes(new HashSet<>());
-
-        when(movieRepository.findById(movieId.toString())).thenReturn(Optional.of(movie));
-        when(movieRepository.updateMovie(movie, currentRevision)).thenReturn(1L);
+        when(movieLikeBuffer.isEnabled()).thenReturn(true);
+        mockActiveMovie(movieId);
 
         movieService.unlikeMovie(movieId, account);
 
-        assertEquals(0, movie.getPendingLikes().size());
-        assertEquals(1, movie.getPendingUnlikes().size());
-        assertTrue(movie.getPendingUnlikes().contains(account));
+        verify(movieLikeBuffer).add(movieId.toString(), account, false);
+        verify(movieRepository, never()).unlikeMovie(anyString(), anyString());
+        verify(movieIndexHelper, never()).indexMovie(any());
+    }
 
-        verify(movieIndexHelper).indexMovie(movie);
+    /**
+     * Tests the scenario in which likes are buffered and the movie is not found
+     * or is deleted
+     */
+    @Test(expected = MovieNotFoundException.class)
+    public void test_unlikeMovie_bufferedMovieNotFound() throws Exception {
+        final UUID movieId = UUID.randomUUID();
+
+        when(movieLikeBuffer.isEnabled()).thenReturn(true);
+        when(movieRepository.findActiveMovie(movieId.toString())).thenReturn(Optional.empty());
+
+        movieService.unlikeMovie(movieId, "test_account");
     }
 
     /**
-     * Tests the scenario in which the unlike operation throws a conditional
-     * exception
+     * Tests if the unlike is appended to the journal when likes are journaled
      */
-    @Test(expected = MovieConditionalException.class)
-    public void test_unlikeMovie_conditionalException() throws Exception {
+    @Test
+    public void test_unlikeMovie_journaled() throws Exception {
         final UUID movieId = UUID.randomUUID();
         final String account = "test_account";
 
-        final String currentRevision = UUID.randomUUID().toString();
-        final Movie movie = new Movie();
-        movie.setRevision(currentRevision);
-        movie.setPendingLikes(new HashSet<>());
-        movie.setPendingUnlikes(new HashSet<>());
-
-        when(movieRepository.findById(movieId.toString())).thenReturn(Optional.of(movie));
-        when(movieRepository.updateMovie(movie, currentRevision)).thenReturn(0L);
+        when(movieLikeJournal.isEnabled()).thenReturn(true);
+        when(movieLikeBuffer.isEnabled()).thenReturn(true);
+        mockActiveMovie(movieId);
 
         movieService.unlikeMovie(movieId, account);
+
+        verify(movieLikeJournal).append(movieId.toString(), account, false);
+        verify(movieLikeBuffer, never()).add(anyString(), anyString(), anyBoolean());
+        verify(movieRepository, never()).unlikeMovie(anyString(), anyString());
+    }
+
+    /**
+     * Tests the scenario in which likes are journaled and the movie is not found
+     * or is deleted
+     */
+    @Test(expected = MovieNotFoundException.class)
+    public void test_unlikeMovie_journaledMovieNotFound() throws Exception {
+        final UUID movieId = UUID.randomUUID();
+
+        when(movieLikeJournal.isEnabled()).thenReturn(true);
+        when(movieRepository.findActiveMovie(movieId.toString())).thenReturn(Optional.empty());
+
+        movieService.unlikeMovie(movieId, "test_account");
     }
 
     /**
@@ -693,40 +1356,140 @@ public class MovieServiceImplTest {
         final UUID movieId = UUID.randomUUID();
         final String account = "test_account";
 
-        final String currentRevision = UUID.randomUUID().toString();
-        final Movie movie = new Movie();
-        movie.setRevision(currentRevision);
-
-        when(movieRepository.findById(movieId.toString())).thenReturn(Optional.of(movie));
-        when(movieRepository.updateMovie(movie, currentRevision)).thenThrow(new RuntimeException());
+        when(movieRepository.unlikeMovie(movieId.toString(), account)).thenThrow(new RuntimeException());
 
         movieService.unlikeMovie(movieId, account);
     }
 
     /**
-     * Tests the scenario in which the search index is updated successfully
+     * Tests if the like statuses of many movies are read with one query for the
+     * likes and one for the movies
      */
     @Test
-    public void test_updateSearchIndex_success() {
+    public void test_getLikeStatuses_success() {
+        final UUID likedMovieId = UUID.randomUUID();
+        final UUID movieId = UUID.randomUUID();
+        final UUID missingMovieId = UUID.randomUUID();
+        final String account = "test_account";
+
+        final MovieLike movieLike = new MovieLike();
+        movieLike.setId(likedMovieId + "-" + account);
+        movieLike.setMovieId(likedMovieId.toString());
+        movieLike.setAccount(account);
+
+        final Movie likedMovie = new Movie();
+        likedMovie.setId(likedMovieId.toString());
+        likedMovie.setTotalLikes(3);
         final Movie movie = new Movie();
+        movie.setId(movieId.toString());
+
+        when(movieLikeRepository.findAllById(Arrays.asList(likedMovieId + "-" + account, movieId + "-" + account,
+            missingMovieId + "-" + account))).thenReturn(Arrays.asList(movieLike));
+        when(movieRepository.findTotalLikes(
+            Arrays.asList(likedMovieId.toString(), movieId.toString(), missingMovieId.toString())))
+                .thenReturn(Arrays.asList(movie, likedMovie));
+
+        final List<MovieLikeStatusDto> result = movieService.getLikeStatuses(
+            Arrays.asList(likedMovieId, movieId, missingMovieId), Optional.of(account));
+
+        assertEquals(2, result.size());
+        assertEquals(likedMovieId, result.get(0).getMovieId());
+        assertTrue(result.get(0).isLiked());
+        assertEquals(3, result.get(0).getTotalLikes());
+        assertEquals(movieId, result.get(1).getMovieId());
+        assertFalse(result.get(1).isLiked());
+        assertEquals(0, result.get(1).getTotalLikes());
+    }
 
-        when(movieRepository.findByUpdated(true)).thenReturn(Arrays.asList(movie));
+    /**
+     * Tests if no likes are read when there is no account
+     */
+    @Test
+    public void test_getLikeStatuses_noAccount() {
+        final UUID movieId = UUID.randomUUID();
+        final Movie movie = new Movie();
+        movie.setId(movieId.toString());
+        movie.setTotalLikes(2);
 
+        when(movieRepository.findTotalLikes(Arrays.asList(movieId.toString()))).thenReturn(Arrays.asList(movie));
+
+        final List<MovieLikeStatusDto> result = movieService.getLikeStatuses(Arrays.asList(movieId),
+            Optional.empty());
+
+        assertEquals(1, result.size());
+        assertFalse(result.get(0).isLiked());
+        assertEquals(2, result.get(0).getTotalLikes());
+        verify(movieLikeRepository, never()).findAllById(any());
+    }
+
+    /**
+     * Tests the scenario in which reading the like statuses throws an exception
+     */
+    @Test(expected = MoviePersistenceException.class)
+    public void test_getLikeStatuses_exception() {
+        when(movieLikeRepository.findAllById(any())).thenThrow(new RuntimeException());
+
+        movieService.getLikeStatuses(Arrays.asList(UUID.randomUUID()), Optional.of("test_account"));
+    }
+
+    /**
+     * Tests the scenario in which the search index is updated successfully
+     */
+    @Test
+    public void test_updateSearchIndex_success() throws Exception {
         movieService.updateSearchIndex();
 
-        verify(movieIndexHelper).indexMovie(movie);
+        verify(movieIndexSweeper).sweep();
     }
 
     /**
      * Tests the scenario in which an exception is thrown while loading movies
      */
     @Test
-    public void test_updateSearchIndex_loadException() {
-        when(movieRepository.findByUpdated(true)).thenThrow(new RuntimeException());
+    public void test_updateSearchIndex_loadException() throws Exception {
+        when(movieIndexSweeper.sweep()).thenThrow(new RuntimeException());
 
         movieService.updateSearchIndex();
     }
 
+    /**
+     * Tests if the likes of movies are reconciled
+     */
+    @Test
+    public void test_reconcileLikes_success() {
+        movieService.reconcileLikes();
+
+        verify(movieLikeReconciler).reconcile();
+    }
+
+    /**
+     * Tests if the likes of movies are reconciled between two batches of the
+     * journal, while the journal is enabled
+     */
+    @Test
+    public void test_reconcileLikes_journal() {
+        when(movieLikeJournal.isEnabled()).thenReturn(true);
+        when(movieLikeJournal.runBetweenBatches(any())).thenAnswer(invocation -> {
+            invocation.<Runnable> getArgument(0).run();
+            return true;
+        });
+
+        movieService.reconcileLikes();
+
+        verify(movieLikeJournal).runBetweenBatches(any());
+        verify(movieLikeReconciler).reconcile();
+    }
+
+    /**
+     * Tests the scenario in which the reconciliation throws an exception
+     */
+    @Test
+    public void test_reconcileLikes_exception() {
+        when(movieLikeReconciler.reconcile()).thenThrow(new RuntimeException());
+
+        movieService.reconcileLikes();
+    }
+
     /**
      * Tests the scenario in which the account has not liked the movie
      */
@@ -769,4 +1532,18 @@ public class MovieServiceImplTest {
 
         movieService.hasLiked(movieId, account);
     }
+
+    /**
+     * Makes a movie exist and not be deleted
+     * 
+     * @param movieId
+     *            The id of the movie
+     */
+    private void mockActiveMovie(final UUID movieId) {
+        final Movie movie = new Movie();
+        movie.setId(movieId.toString());
+
+        when(movieRepository.findActiveMovie(movieId.toString())).thenReturn(Optional.of(movie));
+        when(movieMapper.movieToMovieDto(movie)).thenReturn(new MovieDto());
+    }
 }
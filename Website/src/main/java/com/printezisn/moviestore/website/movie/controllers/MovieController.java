@@ -4,7 +4,9 @@ import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
@@ -60,6 +62,8 @@ public class MovieController {
      *            The sorting field for the displayed movies
      * @param isAscending
      *            Indicates if the sorting is ascending or descending
+     * @param cursor
+     *            The cursor of the page of the results to view
      * @param httpServletRequest
      *            The HTTP servlet request
      * @param model
@@ -72,12 +76,14 @@ public class MovieController {
         @RequestParam(value = "page", defaultValue = "0") final int pageNumber,
         @RequestParam(value = "sort", defaultValue = "") final String sortField,
         @RequestParam(value = "asc", defaultValue = "false") final boolean isAscending,
+        @RequestParam(value = "cursor", defaultValue = "") final String cursor,
         final HttpServletRequest httpServletRequest,
         final Model model) {
 
         appUtils.setCurrentPage(model, PageConstants.HOME_PAGE);
 
-        final MoviePagedResultModel result = movieService.searchMovies(text, pageNumber, sortField, isAscending);
+        final MoviePagedResultModel result = movieService.searchMovies(text, pageNumber, sortField, isAscending,
+            cursor);
 
         model.addAttribute("entries", result.getEntries());
         model.addAttribute("text", text);
@@ -85,6 +91,8 @@ public class MovieController {
         model.addAttribute("totalPages", result.getTotalPages());
         model.addAttribute("sortField", result.getSortField());
         model.addAttribute("isAscending", result.isAscending());
+        model.addAttribute("nextCursor", result.getNextCursor());
+        model.addAttribute("degraded", result.isDegraded());
 
         final String currentUrl = URLEncoder.encode(appUtils.getLocalUrl(httpServletRequest), StandardCharsets.UTF_8);
         model.addAttribute("currentUrl", currentUrl);
@@ -440,6 +448,37 @@ public class MovieController {
         }
     }
 
+    /**
+     * Returns the like status of many movies, so that all the movies of a page are
+     * loaded with a single request
+     * 
+     * @param authentication
+     *            Information about the current user
+     * @param ids
+     *            The ids of the movies to check
+     * @return The like status of each movie that is found, by movie id
+     */
+    @GetMapping("/movie/likestatus")
+    @ResponseBody
+    public ResponseEntity<Map<UUID, LikeStatus>> likeStatuses(
+        final Authentication authentication,
+        @RequestParam("ids") final List<UUID> ids) {
+
+        try {
+            final String account = (authentication != null && authentication.isAuthenticated())
+                ? authentication.getName()
+                : null;
+            final Map<UUID, LikeStatus> result = new LinkedHashMap<>();
+            movieService.getLikeStatuses(account, ids).forEach(likeStatus -> result.put(likeStatus.getMovieId(),
+                new LikeStatus(likeStatus.getTotalLikes(), likeStatus.isLiked())));
+
+            return ResponseEntity.ok(result);
+        }
+        catch (final Exception ex) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
     /**
      * Adds a like to a movie for the current user
      * 
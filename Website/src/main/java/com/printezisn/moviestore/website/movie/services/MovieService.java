@@ -1,8 +1,10 @@
 package com.printezisn.moviestore.website.movie.services;
 
+import java.util.List;
 import java.util.UUID;
 
 import com.printezisn.moviestore.common.dto.movie.MovieDto;
+import com.printezisn.moviestore.common.dto.movie.MovieLikeStatusDto;
 import com.printezisn.moviestore.common.models.movie.MoviePagedResultModel;
 import com.printezisn.moviestore.common.models.movie.MovieResultModel;
 import com.printezisn.moviestore.website.movie.exceptions.MovieNotFoundException;
@@ -23,10 +25,14 @@ public interface MovieService {
      *            The sorting field
      * @param isAscending
      *            Indicates if the sorting is ascending or descending
+     * @param cursor
+     *            The cursor of the page, returned with the previous page. When
+     *            it's not empty, it's used instead of the page number and the
+     *            sorting.
      * @return The movies found
      */
     MoviePagedResultModel searchMovies(final String text, final int pageNumber, final String sortField,
-        final boolean isAscending);
+        final boolean isAscending, final String cursor);
 
     /**
      * Creates a new movie
@@ -125,4 +131,15 @@ public interface MovieService {
      * @return True if the account has liked the movie, otherwise false
      */
     boolean hasLiked(final String account, final UUID movieId);
+
+    /**
+     * Returns the like status of many movies with a single call
+     * 
+     * @param account
+     *            The account to check, or null if there is no authenticated user
+     * @param movieIds
+     *            The ids of the movies to check
+     * @return The like statuses of the movies that are found
+     */
+    List<MovieLikeStatusDto> getLikeStatuses(final String account, final List<UUID> movieIds);
 }
@@ -1,6 +1,9 @@
 package com.printezisn.moviestore.website.movie.services;
 
+import java.util.Arrays;
+import java.util.List;
 import java.util.UUID;
+import java.util.stream.Collectors;
 
 import org.springframework.context.i18n.LocaleContextHolder;
 import org.springframework.http.HttpStatus;
@@ -10,6 +13,7 @@ import org.springframework.web.client.RestTemplate;
 
 import com.printezisn.moviestore.common.RetryHandler;
 import com.printezisn.moviestore.common.dto.movie.MovieDto;
+import com.printezisn.moviestore.common.dto.movie.MovieLikeStatusDto;
 import com.printezisn.moviestore.common.models.movie.MoviePagedResultModel;
 import com.printezisn.moviestore.common.models.movie.MovieResultModel;
 import com.printezisn.moviestore.website.configuration.properties.ServiceProperties;
@@ -28,7 +32,9 @@ import lombok.extern.slf4j.Slf4j;
 @RequiredArgsConstructor
 public class MovieServiceImpl implements MovieService {
 
-    private static final String SEARCH_URL = "%s/movie/search?text=%s&page=%d&sort=%s&asc=%b&lang=%s";
+    private static final String SEARCH_URL =
+        "%s/movie/search?text=%s&page=%d&sort=%s&asc=%b&fields=%s&count=false&lang=%s";
+    private static final String CURSOR_SEARCH_URL = "%s/movie/search?text=%s&cursor=%s&fields=%s&count=false&lang=%s";
     private static final String CREATE_URL = "%s/movie/new?lang=%s";
     private static final String GET_URL = "%s/movie/get/%s?lang=%s";
     private static final String UPDATE_URL = "%s/movie/update?lang=%s";
@@ -36,6 +42,15 @@ public class MovieServiceImpl implements MovieService {
     private static final String LIKE_URL = "%s/movie/like/%s/%s?lang=%s";
     private static final String UNLIKE_URL = "%s/movie/unlike/%s/%s?lang=%s";
     private static final String HAS_LIKED_URL = "%s/movie/hasliked/%s/%s?lang=%s";
+    private static final String LIKE_STATUS_URL = "%s/movie/likestatus/%s?ids=%s&lang=%s";
+    private static final String ANONYMOUS_LIKE_STATUS_URL = "%s/movie/likestatus?ids=%s&lang=%s";
+
+    /**
+     * The fields shown in the list of movies, so that the descriptions are not
+     * fetched. The list only has previous and next links, so the searches don't
+     * count all the matching movies either.
+     */
+    private static final String LIST_FIELDS = "title,releaseYear,rating,creator";
 
     private final ServiceProperties serviceProperties;
 
@@ -51,10 +66,13 @@ public class MovieServiceImpl implements MovieService {
      */
     @Override
     public MoviePagedResultModel searchMovies(final String text, final int pageNumber, final String sortField,
-        final boolean isAscending) {
+        final boolean isAscending, final String cursor) {
 
-        final String url = String.format(SEARCH_URL, serviceProperties.getMovieServiceUrl(), text, pageNumber,
-            sortField, isAscending, LocaleContextHolder.getLocale().getLanguage());
+        final String url = cursor.isEmpty()
+            ? String.format(SEARCH_URL, serviceProperties.getMovieServiceUrl(), text, pageNumber, sortField,
+                isAscending, LIST_FIELDS, LocaleContextHolder.getLocale().getLanguage())
+            : String.format(CURSOR_SEARCH_URL, serviceProperties.getMovieServiceUrl(), text, cursor, LIST_FIELDS,
+                LocaleContextHolder.getLocale().getLanguage());
 
         try {
             return restTemplate.getForEntity(url, MoviePagedResultModel.class).getBody();
@@ -288,4 +306,27 @@ public class MovieServiceImpl implements MovieService {
             throw new MoviePersistenceException(errorMessage, ex);
         }
     }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<MovieLikeStatusDto> getLikeStatuses(final String account, final List<UUID> movieIds) {
+        final String ids = movieIds.stream().map(UUID::toString).collect(Collectors.joining(","));
+        final String language = LocaleContextHolder.getLocale().getLanguage();
+        final String url = (account != null)
+            ? String.format(LIKE_STATUS_URL, serviceProperties.getMovieServiceUrl(), account, ids, language)
+            : String.format(ANONYMOUS_LIKE_STATUS_URL, serviceProperties.getMovieServiceUrl(), ids, language);
+
+        try {
+            return Arrays.asList(restTemplate.getForEntity(url, MovieLikeStatusDto[].class).getBody());
+        }
+        catch (final Exception ex) {
+            final String errorMessage = String.format(
+                "An error occured while loading the like statuses of account %s: %s", account, ex.getMessage());
+
+            log.error(errorMessage, ex);
+            throw new MoviePersistenceException(errorMessage, ex);
+        }
+    }
 }
@@ -52,10 +52,12 @@ const initFormValidate = () => {
 
 const initLikeStatus = () => {
     const elements = Array.prototype.slice.call(document.querySelectorAll('.like-status'));
-    elements.forEach(element => {
-        import(/* webpackChunkName: 'likeStatus' */ './js/likeStatus').then(({ createLikeStatus }) => {
-           createLikeStatus(element);
-        });
+    if(elements.length === 0) {
+        return;
+    }
+
+    import(/* webpackChunkName: 'likeStatus' */ './js/likeStatus').then(({ createLikeStatuses }) => {
+        createLikeStatuses(elements);
     });
 };
 
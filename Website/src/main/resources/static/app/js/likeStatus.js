@@ -1,7 +1,8 @@
-const load = (movieId, totalLikes, hideOnLoad, showOnLoad, hideOnLike, showOnLike) => {
-    initLoading(hideOnLoad, showOnLoad);
+const load = likeStatuses => {
+    likeStatuses.forEach(likeStatus => initLoading(likeStatus));
 
-    fetch('/movie/likestatus/' + movieId, {
+    const ids = likeStatuses.map(likeStatus => likeStatus.movieId).join(',');
+    fetch('/movie/likestatus?ids=' + ids, {
         method : 'GET',
         headers : {
             'Accept' : 'application/json'
@@ -10,30 +11,40 @@ const load = (movieId, totalLikes, hideOnLoad, showOnLoad, hideOnLike, showOnLik
     })
     .then(response => response.json())
     .then(response => {
-        showOnLoad.forEach(el => el.style.display = 'none');
-        hideOnLoad.forEach(el => el.style.display = '');
+        likeStatuses.forEach(likeStatus => {
+            const status = response[likeStatus.movieId];
+            if(!status) {
+                return;
+            }
 
-        showOnLike.forEach(el => el.style.display = (response.hasLiked ? '' : 'none'));
-        hideOnLike.forEach(el => el.style.display = (response.hasLiked ? 'none' : ''));
+            likeStatus.showOnLoad.forEach(el => el.style.display = 'none');
+            likeStatus.hideOnLoad.forEach(el => el.style.display = '');
 
-        totalLikes.innerHTML = response.totalLikes;
+            likeStatus.showOnLike.forEach(el => el.style.display = (status.hasLiked ? '' : 'none'));
+            likeStatus.hideOnLike.forEach(el => el.style.display = (status.hasLiked ? 'none' : ''));
+
+            likeStatus.totalLikes.innerHTML = status.totalLikes;
+        });
     })
 };
 
-const initLoading = (hideOnLoad, showOnLoad) => {
-    showOnLoad.forEach(el => el.style.display = '');
-    hideOnLoad.forEach(el => el.style.display = 'none');
+const initLoading = likeStatus => {
+    likeStatus.showOnLoad.forEach(el => el.style.display = '');
+    likeStatus.hideOnLoad.forEach(el => el.style.display = 'none');
 };
 
-export const createLikeStatus = element => {
+const createLikeStatus = element => {
     const movieId = element.getAttribute('movie-id');
     const csrfHeader = document.querySelector('meta[name="_csrf_header"]').content;
     const csrf = document.querySelector('meta[name="_csrf"]').content;
-    const totalLikes = element.querySelector('.total-likes');
-    const hideOnLoad = Array.prototype.slice.call(element.querySelectorAll('.hide-on-load'));
-    const showOnLoad = Array.prototype.slice.call(element.querySelectorAll('.show-on-load'));
-    const hideOnLike = Array.prototype.slice.call(element.querySelectorAll('.hide-on-like'));
-    const showOnLike = Array.prototype.slice.call(element.querySelectorAll('.show-on-like'));
+    const likeStatus = {
+        movieId : movieId,
+        totalLikes : element.querySelector('.total-likes'),
+        hideOnLoad : Array.prototype.slice.call(element.querySelectorAll('.hide-on-load')),
+        showOnLoad : Array.prototype.slice.call(element.querySelectorAll('.show-on-load')),
+        hideOnLike : Array.prototype.slice.call(element.querySelectorAll('.hide-on-like')),
+        showOnLike : Array.prototype.slice.call(element.querySelectorAll('.show-on-like'))
+    };
     const likeButtons = Array.prototype.slice.call(element.querySelectorAll('.like-button'));
     const unlikeButtons = Array.prototype.slice.call(element.querySelectorAll('.unlike-button'));
 
@@ -45,7 +56,7 @@ export const createLikeStatus = element => {
 
     likeButtons.forEach(button => {
         button.addEventListener('click', () => {
-            initLoading(hideOnLoad, showOnLoad);
+            initLoading(likeStatus);
 
             fetch('/movie/like', {
                 method : 'post',
@@ -53,13 +64,13 @@ export const createLikeStatus = element => {
                 credentials : 'same-origin',
                 body : `id=${movieId}`,
             })
-            .then(() => load(movieId, totalLikes, hideOnLoad, showOnLoad, hideOnLike, showOnLike));
+            .then(() => load([likeStatus]));
         });
     });
 
     unlikeButtons.forEach(button => {
         button.addEventListener('click', () => {
-            initLoading(hideOnLoad, showOnLoad);
+            initLoading(likeStatus);
 
             fetch('/movie/unlike', {
                 method : 'post',
@@ -67,9 +78,16 @@ export const createLikeStatus = element => {
                 credentials : 'same-origin',
                 body : `id=${movieId}`,
             })
-            .then(() => load(movieId, totalLikes, hideOnLoad, showOnLoad, hideOnLike, showOnLike));
+            .then(() => load([likeStatus]));
         });
     });
 
-    load(movieId, totalLikes, hideOnLoad, showOnLoad, hideOnLike, showOnLike);
-};
\ No newline at end of file
+    return likeStatus;
+};
+
+export const createLikeStatuses = elements => {
+    const likeStatuses = elements.map(element => createLikeStatus(element));
+    if(likeStatuses.length > 0) {
+        load(likeStatuses);
+    }
+};
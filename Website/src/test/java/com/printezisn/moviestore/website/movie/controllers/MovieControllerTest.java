@@ -2,6 +2,7 @@ package com.printezisn.moviestore.website.movie.controllers;
 
 import static org.hamcrest.CoreMatchers.hasItem;
 import static org.hamcrest.CoreMatchers.hasItems;
+import static org.hamcrest.CoreMatchers.nullValue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
@@ -42,6 +43,7 @@ import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 
 import com.printezisn.moviestore.common.AppUtils;
 import com.printezisn.moviestore.common.dto.movie.MovieDto;
+import com.printezisn.moviestore.common.dto.movie.MovieLikeStatusDto;
 import com.printezisn.moviestore.common.models.movie.MoviePagedResultModel;
 import com.printezisn.moviestore.common.models.movie.MovieResultModel;
 import com.printezisn.moviestore.website.movie.exceptions.MovieNotFoundException;
@@ -111,9 +113,10 @@ public class MovieControllerTest {
             .pageNumber(2)
             .totalPages(5)
             .sortField("rating")
+            .nextCursor("test_cursor")
             .build();
 
-        when(movieService.searchMovies("test_text", 2, "rating", true)).thenReturn(result);
+        when(movieService.searchMovies("test_text", 2, "rating", true, "")).thenReturn(result);
 
         mockMvc.perform(get(url))
             .andExpect(status().isOk())
@@ -122,7 +125,47 @@ public class MovieControllerTest {
             .andExpect(model().attribute("page", result.getPageNumber()))
             .andExpect(model().attribute("totalPages", result.getTotalPages()))
             .andExpect(model().attribute("sortField", result.getSortField()))
-            .andExpect(model().attribute("isAscending", result.isAscending()));
+            .andExpect(model().attribute("isAscending", result.isAscending()))
+            .andExpect(model().attribute("nextCursor", result.getNextCursor()))
+            .andExpect(model().attribute("degraded", false));
+    }
+
+    /**
+     * Tests if the index page shows that the search results are degraded
+     */
+    @Test
+    public void test_index_degraded() throws Exception {
+        final MoviePagedResultModel result = MoviePagedResultModel.builder()
+            .sortField("rating")
+            .degraded(true)
+            .build();
+
+        when(movieService.searchMovies("test_text", 0, "", false, "")).thenReturn(result);
+
+        mockMvc.perform(get("/?text=test_text"))
+            .andExpect(status().isOk())
+            .andExpect(view().name("movie/index"))
+            .andExpect(model().attribute("degraded", true));
+    }
+
+    /**
+     * Tests if the index page is rendered with the page of a cursor
+     */
+    @Test
+    public void test_index_cursor() throws Exception {
+        final MoviePagedResultModel result = MoviePagedResultModel.builder()
+            .pageNumber(3)
+            .totalPages(4)
+            .sortField("rating")
+            .build();
+
+        when(movieService.searchMovies("test_text", 0, "", false, "test_cursor")).thenReturn(result);
+
+        mockMvc.perform(get("/?text=test_text&cursor=test_cursor"))
+            .andExpect(status().isOk())
+            .andExpect(view().name("movie/index"))
+            .andExpect(model().attribute("page", result.getPageNumber()))
+            .andExpect(model().attribute("nextCursor", nullValue()));
     }
 
     /**
@@ -876,6 +919,69 @@ public class MovieControllerTest {
             .andExpect(status().isInternalServerError());
     }
 
+    /**
+     * Tests if the like statuses of many movies are returned with a single request
+     */
+    @Test
+    public void test_likeStatuses_success() throws Exception {
+        final UUID movieId1 = UUID.randomUUID();
+        final UUID movieId2 = UUID.randomUUID();
+
+        final MovieLikeStatusDto likeStatus = new MovieLikeStatusDto();
+        likeStatus.setMovieId(movieId1);
+        likeStatus.setLiked(true);
+        likeStatus.setTotalLikes(2);
+
+        when(movieService.getLikeStatuses(TEST_AUTHENTICATED_USER, Arrays.asList(movieId1, movieId2)))
+            .thenReturn(Arrays.asList(likeStatus));
+
+        mockMvc.perform(get("/movie/likestatus")
+            .with(user(TEST_AUTHENTICATED_USER))
+            .param("ids", movieId1 + "," + movieId2))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$['" + movieId1 + "'].totalLikes").value(2))
+            .andExpect(jsonPath("$['" + movieId1 + "'].hasLiked").value(true))
+            .andExpect(jsonPath("$['" + movieId2 + "']").doesNotExist());
+    }
+
+    /**
+     * Tests if the like statuses are loaded without an account when the user is
+     * unauthorized
+     */
+    @Test
+    public void test_likeStatuses_unauthorized() throws Exception {
+        final UUID movieId = UUID.randomUUID();
+
+        final MovieLikeStatusDto likeStatus = new MovieLikeStatusDto();
+        likeStatus.setMovieId(movieId);
+        likeStatus.setTotalLikes(2);
+
+        when(movieService.getLikeStatuses(null, Arrays.asList(movieId))).thenReturn(Arrays.asList(likeStatus));
+
+        mockMvc.perform(get("/movie/likestatus")
+            .param("ids", movieId.toString()))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$['" + movieId + "'].totalLikes").value(2))
+            .andExpect(jsonPath("$['" + movieId + "'].hasLiked").value(false));
+    }
+
+    /**
+     * Tests if the correct result is returned when loading the like statuses
+     * throws an exception
+     */
+    @Test
+    public void test_likeStatuses_exception() throws Exception {
+        final UUID movieId = UUID.randomUUID();
+
+        when(movieService.getLikeStatuses(TEST_AUTHENTICATED_USER, Arrays.asList(movieId)))
+            .thenThrow(new RuntimeException());
+
+        mockMvc.perform(get("/movie/likestatus")
+            .with(user(TEST_AUTHENTICATED_USER))
+            .param("ids", movieId.toString()))
+            .andExpect(status().isInternalServerError());
+    }
+
     /**
      * Tests if the movie is liked successfully
      */
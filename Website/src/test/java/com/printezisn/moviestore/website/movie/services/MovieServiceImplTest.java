@@ -11,6 +11,8 @@ import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.util.Arrays;
+import java.util.List;
 import java.util.Locale;
 import java.util.UUID;
 
@@ -25,6 +27,7 @@ import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.client.RestTemplate;
 
 import com.printezisn.moviestore.common.dto.movie.MovieDto;
+import com.printezisn.moviestore.common.dto.movie.MovieLikeStatusDto;
 import com.printezisn.moviestore.common.models.movie.MoviePagedResultModel;
 import com.printezisn.moviestore.common.models.movie.MovieResultModel;
 import com.printezisn.moviestore.website.configuration.properties.ServiceProperties;
@@ -37,7 +40,10 @@ import com.printezisn.moviestore.website.movie.exceptions.MoviePersistenceExcept
 public class MovieServiceImplTest {
 
     private static final String MOVIE_SERVICE_URL = "http://localhost";
-    private static final String MOVIE_SEARCH_URL = "/movie/search?text=test_text&page=2&sort=rating&asc=true&lang=en";
+    private static final String MOVIE_SEARCH_URL = "/movie/search?text=test_text&page=2&sort=rating&asc=true"
+        + "&fields=title,releaseYear,rating,creator&count=false&lang=en";
+    private static final String MOVIE_CURSOR_SEARCH_URL = "/movie/search?text=test_text&cursor=test_cursor"
+        + "&fields=title,releaseYear,rating,creator&count=false&lang=en";
     private static final String MOVIE_CREATE_PATH = "/movie/new?lang=en";
     private static final String MOVIE_UPDATE_PATH = "/movie/update?lang=en";
     private static final String MOVIE_DELETE_PATH = "/movie/delete/%s?lang=en";
@@ -45,6 +51,8 @@ public class MovieServiceImplTest {
     private static final String MOVIE_LIKE_PATH = "/movie/like/%s/%s?lang=en";
     private static final String MOVIE_UNLIKE_PATH = "/movie/unlike/%s/%s?lang=en";
     private static final String MOVIE_HAS_LIKED_PATH = "/movie/hasliked/%s/%s?lang=en";
+    private static final String MOVIE_LIKE_STATUS_PATH = "/movie/likestatus/%s?ids=%s,%s&lang=en";
+    private static final String MOVIE_ANONYMOUS_LIKE_STATUS_PATH = "/movie/likestatus?ids=%s,%s&lang=en";
 
     @Mock
     private ServiceProperties serviceProperties;
@@ -67,6 +75,9 @@ public class MovieServiceImplTest {
     @Mock
     private ResponseEntity<Boolean> booleanResponse;
 
+    @Mock
+    private ResponseEntity<MovieLikeStatusDto[]> likeStatusesResponse;
+
     private MovieServiceImpl movieService;
 
     /**
@@ -95,7 +106,25 @@ public class MovieServiceImplTest {
         when(searchResponse.getStatusCode()).thenReturn(HttpStatus.OK);
         when(restTemplate.getForEntity(url, MoviePagedResultModel.class)).thenReturn(searchResponse);
 
-        final MoviePagedResultModel result = movieService.searchMovies("test_text", 2, "rating", true);
+        final MoviePagedResultModel result = movieService.searchMovies("test_text", 2, "rating", true, "");
+
+        assertEquals(expectedResult, result);
+    }
+
+    /**
+     * Tests if movies are searched with a cursor
+     */
+    @Test
+    public void test_searchMovies_cursor() throws Exception {
+        final MoviePagedResultModel expectedResult = mock(MoviePagedResultModel.class);
+        final String url = MOVIE_SERVICE_URL + MOVIE_CURSOR_SEARCH_URL;
+
+        when(searchResponse.getBody()).thenReturn(expectedResult);
+        when(searchResponse.getStatusCode()).thenReturn(HttpStatus.OK);
+        when(restTemplate.getForEntity(url, MoviePagedResultModel.class)).thenReturn(searchResponse);
+
+        final MoviePagedResultModel result = movieService.searchMovies("test_text", 2, "rating", true,
+            "test_cursor");
 
         assertEquals(expectedResult, result);
     }
@@ -110,7 +139,7 @@ public class MovieServiceImplTest {
         when(restTemplate.getForEntity(url, MoviePagedResultModel.class))
             .thenThrow(new HttpClientErrorException(HttpStatus.INTERNAL_SERVER_ERROR));
 
-        movieService.searchMovies("test_text", 2, "rating", true);
+        movieService.searchMovies("test_text", 2, "rating", true, "");
     }
 
     /**
@@ -578,4 +607,63 @@ public class MovieServiceImplTest {
 
         movieService.hasLiked(account, movieId);
     }
+
+    /**
+     * Tests if the like statuses of many movies are loaded with a single call
+     */
+    @Test
+    public void test_getLikeStatuses_success() {
+        final String account = "test_account";
+        final UUID movieId1 = UUID.randomUUID();
+        final UUID movieId2 = UUID.randomUUID();
+        final MovieLikeStatusDto likeStatus = new MovieLikeStatusDto();
+        likeStatus.setMovieId(movieId1);
+        likeStatus.setLiked(true);
+        likeStatus.setTotalLikes(3);
+
+        final String url = MOVIE_SERVICE_URL + String.format(MOVIE_LIKE_STATUS_PATH, account, movieId1, movieId2);
+
+        when(likeStatusesResponse.getBody()).thenReturn(new MovieLikeStatusDto[] { likeStatus });
+        when(restTemplate.getForEntity(url, MovieLikeStatusDto[].class)).thenReturn(likeStatusesResponse);
+
+        final List<MovieLikeStatusDto> result = movieService.getLikeStatuses(account,
+            Arrays.asList(movieId1, movieId2));
+
+        assertEquals(Arrays.asList(likeStatus), result);
+    }
+
+    /**
+     * Tests if the like statuses are loaded without an account when there is no
+     * authenticated user
+     */
+    @Test
+    public void test_getLikeStatuses_noAccount() {
+        final UUID movieId1 = UUID.randomUUID();
+        final UUID movieId2 = UUID.randomUUID();
+
+        final String url = MOVIE_SERVICE_URL + String.format(MOVIE_ANONYMOUS_LIKE_STATUS_PATH, movieId1, movieId2);
+
+        when(likeStatusesResponse.getBody()).thenReturn(new MovieLikeStatusDto[0]);
+        when(restTemplate.getForEntity(url, MovieLikeStatusDto[].class)).thenReturn(likeStatusesResponse);
+
+        final List<MovieLikeStatusDto> result = movieService.getLikeStatuses(null, Arrays.asList(movieId1, movieId2));
+
+        assertTrue(result.isEmpty());
+    }
+
+    /**
+     * Tests the scenario in which loading the like statuses throws an exception
+     */
+    @Test(expected = MoviePersistenceException.class)
+    public void test_getLikeStatuses_exception() {
+        final String account = "test_account";
+        final UUID movieId1 = UUID.randomUUID();
+        final UUID movieId2 = UUID.randomUUID();
+
+        final String url = MOVIE_SERVICE_URL + String.format(MOVIE_LIKE_STATUS_PATH, account, movieId1, movieId2);
+
+        when(restTemplate.getForEntity(url, MovieLikeStatusDto[].class)).thenThrow(new RuntimeException());
+
+        movieService.getLikeStatuses(account, Arrays.asList(movieId1, movieId2));
+    }
 }